@@ -0,0 +1,586 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.googlecode.blacken.bsp;
+
+import com.googlecode.blacken.core.Random;
+import com.googlecode.blacken.core.RowBands;
+import com.googlecode.blacken.grid.Regionlike;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * An array-backed Binary Space Partitioning tree.
+ *
+ * <p>This holds the same shape of tree as {@link BSPTree}, but nodes are
+ * plain integer indexes in to parallel <code>int</code> arrays, stored in
+ * level order. Node 0 is the root, and the right child of a node is always
+ * the node after its left child. Point location, overlap queries and leaf
+ * iteration do not allocate.
+ *
+ * <p>The tree is built all at once by
+ * {@link #split(Regionlike, long, int, int, int, double, double, ForkJoinPool)}.
+ * Each node draws from its own random number stream, derived from the seed
+ * and its place in the tree, so a level can be split in parallel and the
+ * result is the same no matter how the work is scheduled. (It is not the
+ * same tree {@link BSPTree#splitRecursive(Random, int, int, int, double,
+ * double)} makes from the same seed, as that shares a single stream.)
+ *
+ * <p>Use {@link #fromTree(BSPTree)} and {@link #toTree()} to move between
+ * this and the pointer-linked form.
+ *
+ * @param <R> room object contained in the leaves
+ * @author Steven Black
+ * @since Blacken 1.2
+ */
+public class FlatBSPTree<R> {
+    /**
+     * Frontier size below which a level is split on the calling thread.
+     */
+    private static final int PARALLEL_THRESHOLD = 64;
+    private static final byte NO_SPLIT = 0;
+    private static final byte HORIZONTAL = 1;
+    private static final byte VERTICAL = 2;
+
+    private int size = 0;
+    private int[] ys;
+    private int[] xs;
+    private int[] heights;
+    private int[] widths;
+    private int[] splits;
+    private int[] lefts;
+    private int[] parents;
+    private int[] levels;
+    private boolean[] horizontals;
+    private int[] leaves;
+    private Object[] contained;
+
+    private FlatBSPTree(int capacity) {
+        capacity = Math.max(capacity, 1);
+        ys = new int[capacity];
+        xs = new int[capacity];
+        heights = new int[capacity];
+        widths = new int[capacity];
+        splits = new int[capacity];
+        lefts = new int[capacity];
+        parents = new int[capacity];
+        levels = new int[capacity];
+        horizontals = new boolean[capacity];
+    }
+
+    private int addNode(int parent, int height, int width, int y, int x) {
+        if (size == ys.length) {
+            int cap = size * 2;
+            ys = Arrays.copyOf(ys, cap);
+            xs = Arrays.copyOf(xs, cap);
+            heights = Arrays.copyOf(heights, cap);
+            widths = Arrays.copyOf(widths, cap);
+            splits = Arrays.copyOf(splits, cap);
+            lefts = Arrays.copyOf(lefts, cap);
+            parents = Arrays.copyOf(parents, cap);
+            levels = Arrays.copyOf(levels, cap);
+            horizontals = Arrays.copyOf(horizontals, cap);
+        }
+        int n = size++;
+        ys[n] = y;
+        xs[n] = x;
+        heights[n] = height;
+        widths[n] = width;
+        splits[n] = -1;
+        lefts[n] = -1;
+        parents[n] = parent;
+        levels[n] = parent == -1 ? 0 : levels[parent] + 1;
+        horizontals[n] = false;
+        return n;
+    }
+
+    private void addChildren(int node, boolean horizontal, int position) {
+        splits[node] = position;
+        horizontals[node] = horizontal;
+        int y = ys[node];
+        int x = xs[node];
+        int h = heights[node];
+        int w = widths[node];
+        int left;
+        if (horizontal) {
+            left = addNode(node, position - y, w, y, x);
+            addNode(node, y + h - position, w, position, x);
+        } else {
+            left = addNode(node, h, position - x, y, x);
+            addNode(node, h, x + w - position, y, position);
+        }
+        lefts[node] = left;
+    }
+
+    private void finish() {
+        int count = 0;
+        for (int n = 0; n < size; n++) {
+            if (lefts[n] == -1) {
+                count++;
+            }
+        }
+        leaves = new int[count];
+        count = 0;
+        for (int n = 0; n < size; n++) {
+            if (lefts[n] == -1) {
+                leaves[count++] = n;
+            }
+        }
+        contained = new Object[size];
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Split a region recursively using the shared fork-join pool.
+     *
+     * @param bounds region covered by the root
+     * @param seed random number seed
+     * @param recursionDepth maximum depth; size constraints may stop sooner
+     * @param minVSize the minimum height of a node
+     * @param minHSize the minimum width of a node
+     * @param maxVRatio the maximum height/width ratio
+     * @param maxHRatio the maximum width/height ratio
+     * @return new tree
+     * @see RowBands#getSharedPool()
+     */
+    public static <R> FlatBSPTree<R> split(Regionlike bounds, long seed,
+            int recursionDepth, int minVSize, int minHSize,
+            double maxVRatio, double maxHRatio) {
+        return split(bounds, seed, recursionDepth, minVSize, minHSize,
+                maxVRatio, maxHRatio, RowBands.getSharedPool());
+    }
+
+    /**
+     * Split a region recursively.
+     *
+     * <p>The splitting rules match
+     * {@link BSPTree#splitRecursive(Random, int, int, int, double, double)}.
+     * Each level is split as a batch; large levels are divided among the
+     * threads of <code>pool</code>.
+     *
+     * @param bounds region covered by the root
+     * @param seed random number seed
+     * @param recursionDepth maximum depth; size constraints may stop sooner
+     * @param minVSize the minimum height of a node
+     * @param minHSize the minimum width of a node
+     * @param maxVRatio the maximum height/width ratio
+     * @param maxHRatio the maximum width/height ratio
+     * @param pool pool to use; <code>null</code> to stay on this thread
+     * @return new tree
+     */
+    public static <R> FlatBSPTree<R> split(Regionlike bounds, long seed,
+            int recursionDepth, int minVSize, int minHSize,
+            double maxVRatio, double maxHRatio, ForkJoinPool pool) {
+        FlatBSPTree<R> tree = new FlatBSPTree<>(64);
+        tree.addNode(-1, bounds.getHeight(), bounds.getWidth(),
+                bounds.getY(), bounds.getX());
+        long[] seeds = {mix(seed)};
+        int levelStart = 0;
+        int levelEnd = 1;
+        for (int depth = recursionDepth; depth != 0 && levelStart < levelEnd; depth--) {
+            int count = levelEnd - levelStart;
+            byte[] decision = new byte[count];
+            int[] positions = new int[count];
+            LevelSplitter job = new LevelSplitter(tree, seeds, levelStart,
+                    decision, positions, 0, count, minVSize, minHSize, maxVRatio, maxHRatio);
+            if (pool == null || count < PARALLEL_THRESHOLD) {
+                job.compute();
+            } else {
+                pool.invoke(job);
+            }
+            long[] nextSeeds = new long[count * 2];
+            int next = 0;
+            for (int i = 0; i < count; i++) {
+                if (decision[i] == NO_SPLIT) {
+                    continue;
+                }
+                tree.addChildren(levelStart + i, decision[i] == HORIZONTAL,
+                        positions[i]);
+                long s = seeds[i];
+                nextSeeds[next++] = mix(s + 0x9e3779b97f4a7c15L);
+                nextSeeds[next++] = mix(s + 0x3c6ef372fe94f82aL);
+            }
+            seeds = nextSeeds;
+            levelStart = levelEnd;
+            levelEnd = tree.size;
+        }
+        tree.finish();
+        return tree;
+    }
+
+    /**
+     * Decides the splits for a range of nodes on one level.
+     *
+     * <p>Nodes only read their own bounds and random stream, and only write
+     * their own slot of <code>decision</code> and <code>positions</code>.
+     */
+    private static class LevelSplitter extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final FlatBSPTree<?> tree;
+        private final long[] seeds;
+        private final int levelStart;
+        private final byte[] decision;
+        private final int[] positions;
+        private final int from;
+        private final int to;
+        private final int minVSize;
+        private final int minHSize;
+        private final double maxVRatio;
+        private final double maxHRatio;
+
+        LevelSplitter(FlatBSPTree<?> tree, long[] seeds, int levelStart,
+                byte[] decision, int[] positions, int from, int to, int minVSize, int minHSize,
+                double maxVRatio, double maxHRatio) {
+            this.tree = tree;
+            this.seeds = seeds;
+            this.levelStart = levelStart;
+            this.decision = decision;
+            this.positions = positions;
+            this.from = from;
+            this.to = to;
+            this.minVSize = minVSize;
+            this.minHSize = minHSize;
+            this.maxVRatio = maxVRatio;
+            this.maxHRatio = maxHRatio;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > PARALLEL_THRESHOLD) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new LevelSplitter(tree, seeds, levelStart, decision,
+                        positions, from, mid, minVSize, minHSize, maxVRatio,
+                        maxHRatio),
+                        new LevelSplitter(tree, seeds, levelStart, decision,
+                        positions, mid, to, minVSize, minHSize, maxVRatio,
+                        maxHRatio));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                int node = levelStart + i;
+                int y = tree.ys[node];
+                int x = tree.xs[node];
+                int height = tree.heights[node];
+                int width = tree.widths[node];
+                if (width < 2*minHSize || height < 2*minVSize) {
+                    decision[i] = NO_SPLIT;
+                    continue;
+                }
+                Random rng = new Random(seeds[i]);
+                boolean horiz;
+                if (width > height * maxHRatio) {
+                    horiz = false;
+                } else if (height > width * maxVRatio) {
+                    horiz = true;
+                } else {
+                    horiz = rng.nextBoolean();
+                }
+                if (horiz) {
+                    decision[i] = HORIZONTAL;
+                    positions[i] = rng.nextInt(y+minVSize, y+height-minVSize);
+                } else {
+                    decision[i] = VERTICAL;
+                    positions[i] = rng.nextInt(x+minHSize, x+width-minHSize);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy a pointer-linked tree.
+     *
+     * @param root root of the tree to copy
+     * @return equivalent flat tree, including contained objects
+     */
+    public static <R> FlatBSPTree<R> fromTree(BSPTree<R> root) {
+        List<BSPTree<R>> order = new ArrayList<>();
+        order.add(root);
+        for (int i = 0; i < order.size(); i++) {
+            BSPTree<R> node = order.get(i);
+            if (!node.isLeaf()) {
+                order.add(child(node, true));
+                order.add(child(node, false));
+            }
+        }
+        FlatBSPTree<R> tree = new FlatBSPTree<>(order.size());
+        Map<BSPTree<R>, Integer> index = new IdentityHashMap<>();
+        tree.addNode(-1, root.getHeight(), root.getWidth(), root.getY(), root.getX());
+        index.put(root, 0);
+        for (BSPTree<R> node : order) {
+            if (node.isLeaf()) {
+                continue;
+            }
+            int n = index.get(node);
+            tree.addChildren(n, node.isHorizontal(), node.getSplitPosition());
+            index.put(child(node, true), tree.lefts[n]);
+            index.put(child(node, false), tree.lefts[n] + 1);
+        }
+        tree.finish();
+        for (BSPTree<R> node : order) {
+            if (node.isLeaf()) {
+                tree.contained[index.get(node)] = node.getContained();
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Get a typed child of a pointer-linked node.
+     *
+     * <p>BSPTree hands back raw children; they always share the parent's
+     * contained type.</p>
+     *
+     * @param node parent node
+     * @param left true for the left child, false for the right child
+     * @return the child node
+     */
+    @SuppressWarnings("unchecked")
+    private static <R> BSPTree<R> child(BSPTree<R> node, boolean left) {
+        return left ? node.getLeftChild() : node.getRightChild();
+    }
+
+    /**
+     * Build the equivalent pointer-linked tree.
+     *
+     * @return new tree, including contained objects
+     */
+    public BSPTree<R> toTree() {
+        BSPTree<R> root = new BSPTree<>(heights[0], widths[0], ys[0], xs[0]);
+        List<BSPTree<R>> nodes = new ArrayList<>(
+                Collections.<BSPTree<R>>nCopies(size, null));
+        nodes.set(0, root);
+        for (int n = 0; n < size; n++) {
+            if (lefts[n] == -1) {
+                if (contained[n] != null) {
+                    nodes.get(n).setContained(getContained(n));
+                }
+                continue;
+            }
+            BSPTree<R> node = nodes.get(n);
+            node.splitOnce(horizontals[n], splits[n]);
+            nodes.set(lefts[n], child(node, true));
+            nodes.set(lefts[n] + 1, child(node, false));
+        }
+        return root;
+    }
+
+    /**
+     * Get the number of nodes.
+     *
+     * @return node count; nodes are numbered 0 to this minus one
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getY(int node) {
+        return ys[node];
+    }
+
+    public int getX(int node) {
+        return xs[node];
+    }
+
+    public int getHeight(int node) {
+        return heights[node];
+    }
+
+    public int getWidth(int node) {
+        return widths[node];
+    }
+
+    public int getLevel(int node) {
+        return levels[node];
+    }
+
+    /**
+     * Get the split position of a node.
+     *
+     * @param node node index
+     * @return split position, or -1 for a leaf
+     */
+    public int getSplitPosition(int node) {
+        return splits[node];
+    }
+
+    public boolean isHorizontal(int node) {
+        return horizontals[node];
+    }
+
+    public boolean isLeaf(int node) {
+        return lefts[node] == -1;
+    }
+
+    /**
+     * Get the left (top or west) child.
+     *
+     * @param node node index
+     * @return child index, or -1 for a leaf
+     */
+    public int getLeftChild(int node) {
+        return lefts[node];
+    }
+
+    /**
+     * Get the right (bottom or east) child.
+     *
+     * @param node node index
+     * @return child index, or -1 for a leaf
+     */
+    public int getRightChild(int node) {
+        return lefts[node] == -1 ? -1 : lefts[node] + 1;
+    }
+
+    /**
+     * Get the parent of a node.
+     *
+     * @param node node index
+     * @return parent index, or -1 for the root
+     */
+    public int getParent(int node) {
+        return parents[node];
+    }
+
+    @SuppressWarnings("unchecked")
+    public R getContained(int node) {
+        return (R) contained[node];
+    }
+
+    public void setContained(int node, R value) {
+        if (lefts[node] != -1) {
+            throw new IllegalStateException("Only leaf nodes can contain data");
+        }
+        contained[node] = value;
+    }
+
+    /**
+     * Get the number of leaves.
+     *
+     * @return leaf count
+     */
+    public int getLeafCount() {
+        return leaves.length;
+    }
+
+    /**
+     * Get a leaf by its position among the leaves (in level order).
+     *
+     * <p>Iterating from 0 to {@link #getLeafCount()} visits every leaf
+     * without allocating.
+     *
+     * @param i leaf number
+     * @return node index
+     */
+    public int getLeaf(int i) {
+        return leaves[i];
+    }
+
+    public boolean contains(int node, int py, int px) {
+        return px >= xs[node] && py >= ys[node]
+                && px < xs[node] + widths[node] && py < ys[node] + heights[node];
+    }
+
+    /**
+     * Find the leaf holding a point.
+     *
+     * @param py y coordinate
+     * @param px x coordinate
+     * @return leaf index, or -1 if the point is outside the tree
+     */
+    public int findNode(int py, int px) {
+        if (!contains(0, py, px)) {
+            return -1;
+        }
+        int n = 0;
+        while (lefts[n] != -1) {
+            int c = horizontals[n] ? py : px;
+            n = c < splits[n] ? lefts[n] : lefts[n] + 1;
+        }
+        return n;
+    }
+
+    private boolean intersects(int node, int height, int width, int y1, int x1) {
+        return y1 < ys[node] + heights[node] && ys[node] < y1 + height
+                && x1 < xs[node] + widths[node] && xs[node] < x1 + width;
+    }
+
+    /**
+     * Find the leaves overlapping a region.
+     *
+     * <p>This walks the tree using the parent links, so it needs no stack.
+     * Leaves are written in left-to-right (in-order) order. If
+     * <code>out</code> is too small the extra leaves are counted but not
+     * stored.
+     *
+     * @param region region to check
+     * @param out receives leaf indexes
+     * @return number of overlapping leaves
+     */
+    public int findOverlapping(Regionlike region, int[] out) {
+        return findOverlapping(region.getHeight(), region.getWidth(),
+                region.getY(), region.getX(), out);
+    }
+
+    /**
+     * Find the leaves overlapping a region.
+     *
+     * @param height region height
+     * @param width region width
+     * @param y1 region y coordinate
+     * @param x1 region x coordinate
+     * @param out receives leaf indexes
+     * @return number of overlapping leaves
+     * @see #findOverlapping(Regionlike, int[])
+     */
+    public int findOverlapping(int height, int width, int y1, int x1, int[] out) {
+        int found = 0;
+        if (size == 0 || !intersects(0, height, width, y1, x1)) {
+            return 0;
+        }
+        int n = 0;
+        while (true) {
+            if (lefts[n] != -1 && intersects(n, height, width, y1, x1)) {
+                n = lefts[n];
+                continue;
+            }
+            if (lefts[n] == -1 && intersects(n, height, width, y1, x1)) {
+                if (found < out.length) {
+                    out[found] = n;
+                }
+                found++;
+            }
+            // climb until we are a left child, then go to its sibling
+            while (n != 0 && n != lefts[parents[n]]) {
+                n = parents[n];
+            }
+            if (n == 0) {
+                return found;
+            }
+            n = n + 1;
+        }
+    }
+}
@@ -22,7 +22,10 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -233,6 +236,11 @@ public class ColorHelper {
         if (alpha == null) {
             alpha = 1.0F;
         }
+        return floatsToColor(red, green, blue, alpha);
+    }
+
+    private static int floatsToColor(float red, float green, float blue,
+                                     float alpha) {
         if (red > 1.0) {
             red = 1.0F;
         }
@@ -249,8 +257,15 @@ public class ColorHelper {
         blue *= 255.0F;
         green *= 255.0F;
         alpha *= 255.0F;
-        return colorFromComponents((int)Math.floor(red), (int)Math.floor(green),
-                         (int)Math.floor(blue), (int)Math.floor(alpha));
+        return makeColor(floor(red), floor(green), floor(blue), floor(alpha),
+                         255);
+    }
+
+    /**
+     * Round down the way the float helpers always have.
+     */
+    private static int floor(float f) {
+        return (int)Math.floor(f);
     }
 
     /**
@@ -372,6 +387,27 @@ public class ColorHelper {
      */
     public static int makeColor(String color)
             throws InvalidStringFormatException {
+        Integer ret = PARSED.get(color);
+        if (ret == null) {
+            ret = parseColor(color);
+            if (PARSED.size() < PARSED_LIMIT) {
+                PARSED.putIfAbsent(color, ret);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Parsed color definitions. UI code tends to use the same handful of
+     * definitions over and over; once the limit is reached new ones are
+     * parsed every time.
+     */
+    private static final int PARSED_LIMIT = 1024;
+    private static final ConcurrentMap<String, Integer> PARSED =
+            new ConcurrentHashMap<>();
+
+    private static int parseColor(String color)
+            throws InvalidStringFormatException {
         color = color.trim();
         if (color.startsWith("[")) {
             String[] subset = color.split("[]]", 2);
@@ -813,11 +849,14 @@ public class ColorHelper {
      * @return color value
      */
     public static int colorFromHSV(float[] hsva) {
-        float h = hsva[0]; float s = hsva[1]; float v = hsva[2];
         float alpha = 1F;
         if (hsva.length > 3) {
             alpha = hsva[3];
         }
+        return hsvToColor(hsva[0], hsva[1], hsva[2], alpha);
+    }
+
+    private static int hsvToColor(float h, float s, float v, float alpha) {
         float r, g, b;
         
         int segment;
@@ -825,11 +864,11 @@ public class ColorHelper {
 
         if (s == 0.0F) {
             r = g = b = v;
-            return colorFromFloatComponents(r, g, b, alpha);
+            return floatsToColor(r, g, b, alpha);
         }
         
         h /= 60.0F;
-        segment = (int)Math.floor(h);
+        segment = floor(h);
         f = h - segment;
         p = v * (1 - s);
         q = v * (1 - s * f);
@@ -843,7 +882,7 @@ public class ColorHelper {
         case 4: r = t; g = p; b = v; break;
         default: r = v; g = p; b = q; break;
         }
-        return colorFromFloatComponents(r, g, b, alpha);
+        return floatsToColor(r, g, b, alpha);
     }
 
     /**
@@ -1133,6 +1172,393 @@ public class ColorHelper {
         return lerp(rgba1, rgba2, colorToFloatComponents(weight));
     }
 
+    /*
+     * Array kernels.
+     *
+     * These give exactly the same answers as the single-color functions
+     * above, one element at a time, but they don't allocate and they keep
+     * the work in plain counted loops over int arrays. They're meant for
+     * whole rows of cells, images and palettes. ColorHelperBenchmark (in the
+     * tests) compares the two.
+     */
+
+    /**
+     * <code>i / 255.0F</code> for every component value.
+     */
+    private static final float[] UNIT = new float[256];
+    /**
+     * sRGB component to linear light (0.0-1.0).
+     */
+    private static final float[] TO_LINEAR = new float[256];
+    /**
+     * Linear light, in steps of 1/4095, back to an sRGB component.
+     */
+    private static final int LINEAR_STEPS = 4095;
+    private static final byte[] FROM_LINEAR = new byte[LINEAR_STEPS + 1];
+    static {
+        for (int i = 0; i < 256; i++) {
+            UNIT[i] = i / 255.0F;
+            double c = i / 255.0;
+            if (c <= 0.04045) {
+                TO_LINEAR[i] = (float)(c / 12.92);
+            } else {
+                TO_LINEAR[i] = (float)Math.pow((c + 0.055) / 1.055, 2.4);
+            }
+        }
+        for (int i = 0; i <= LINEAR_STEPS; i++) {
+            double l = (double)i / LINEAR_STEPS;
+            double c;
+            if (l <= 0.0031308) {
+                c = l * 12.92;
+            } else {
+                c = 1.055 * Math.pow(l, 1 / 2.4) - 0.055;
+            }
+            FROM_LINEAR[i] = (byte)Math.round(c * 255.0);
+        }
+    }
+
+    /**
+     * Convert an sRGB color component to linear light.
+     *
+     * <p>This is a table lookup.</p>
+     *
+     * @param component 0-255
+     * @return 0.0-1.0
+     * @since 1.2
+     */
+    public static float toLinear(int component) {
+        return TO_LINEAR[component & 0xff];
+    }
+
+    /**
+     * Convert linear light back to an sRGB color component.
+     *
+     * <p>This is a table lookup good to 1/4095; the result is within one of
+     * the exact conversion. Values outside 0.0-1.0 are clamped.</p>
+     *
+     * @param linear 0.0-1.0
+     * @return 0-255
+     * @since 1.2
+     */
+    public static int fromLinear(float linear) {
+        if (!(linear > 0F)) {
+            return 0;
+        }
+        if (linear >= 1F) {
+            return 255;
+        }
+        return FROM_LINEAR[(int)(linear * LINEAR_STEPS + 0.5F)] & 0xff;
+    }
+
+    private static int lerpChannel(int c1, int c2, float weight) {
+        return floor(c1 + (c2 - c1) * weight) & 0xff;
+    }
+
+    private static int lerpOne(int rgba1, int rgba2, float weight) {
+        return lerpChannel(rgba1 >>> 24, rgba2 >>> 24, weight) << 24
+                | lerpChannel((rgba1 >>> 16) & 0xff, (rgba2 >>> 16) & 0xff, weight) << 16
+                | lerpChannel((rgba1 >>> 8) & 0xff, (rgba2 >>> 8) & 0xff, weight) << 8
+                | lerpChannel(rgba1 & 0xff, rgba2 & 0xff, weight);
+    }
+
+    private static void checkRange(int arrayLength, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > arrayLength - length) {
+            throw new IndexOutOfBoundsException(String.format(
+                    "range %d+%d outside of %d", offset, length, arrayLength));
+        }
+    }
+
+    /**
+     * Linear interpolation for a whole array of colors.
+     *
+     * <p><code>out[i] = lerp(a[i], b[i], weight[i])</code>.
+     * <code>out</code> may be the same array as <code>a</code> or
+     * <code>b</code>.</p>
+     *
+     * @param a first colors
+     * @param b second colors
+     * @param weight how much of <code>b</code> goes in to <code>a</code>
+     * @param out results; its length is the number of colors
+     * @see #lerp(int, int, float)
+     * @since 1.2
+     */
+    public static void lerp(int[] a, int[] b, float[] weight, int[] out) {
+        lerp(a, b, weight, out, 0, out.length);
+    }
+
+    /**
+     * Linear interpolation for a range of an array of colors.
+     *
+     * <p><code>out[i] = lerp(a[i], b[i], weight[i])</code> for
+     * <code>i</code> from <code>offset</code> to
+     * <code>offset + length - 1</code>.</p>
+     *
+     * @param a first colors
+     * @param b second colors
+     * @param weight how much of <code>b</code> goes in to <code>a</code>
+     * @param out results
+     * @param offset first index
+     * @param length number of colors
+     * @see #lerp(int, int, float)
+     * @since 1.2
+     */
+    public static void lerp(int[] a, int[] b, float[] weight, int[] out,
+                            int offset, int length) {
+        checkRange(a.length, offset, length);
+        checkRange(b.length, offset, length);
+        checkRange(weight.length, offset, length);
+        checkRange(out.length, offset, length);
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            out[i] = lerpOne(a[i], b[i], weight[i]);
+        }
+    }
+
+    /**
+     * Linear interpolation with one weight for a range of colors.
+     *
+     * <p>This is the usual way to fade a row toward another.</p>
+     *
+     * @param a first colors
+     * @param b second colors
+     * @param weight how much of <code>b</code> goes in to <code>a</code>
+     * @param out results
+     * @param offset first index
+     * @param length number of colors
+     * @see #lerp(int, int, float)
+     * @since 1.2
+     */
+    public static void lerp(int[] a, int[] b, float weight, int[] out,
+                            int offset, int length) {
+        checkRange(a.length, offset, length);
+        checkRange(b.length, offset, length);
+        checkRange(out.length, offset, length);
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            out[i] = lerpOne(a[i], b[i], weight);
+        }
+    }
+
+    /**
+     * Linear interpolation in linear light for a range of colors.
+     *
+     * <p>Unlike {@link #lerp(int[], int[], float[], int[], int, int)} the
+     * red, green and blue are mixed after undoing the sRGB gamma, so
+     * a half-way blend of two colors isn't darker than either. Alpha is
+     * mixed directly. Weights outside 0.0-1.0 are clamped.</p>
+     *
+     * @param a first colors
+     * @param b second colors
+     * @param weight how much of <code>b</code> goes in to <code>a</code>
+     * @param out results
+     * @param offset first index
+     * @param length number of colors
+     * @since 1.2
+     */
+    public static void lerpLinear(int[] a, int[] b, float[] weight, int[] out,
+                                  int offset, int length) {
+        checkRange(a.length, offset, length);
+        checkRange(b.length, offset, length);
+        checkRange(weight.length, offset, length);
+        checkRange(out.length, offset, length);
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            int c1 = a[i];
+            int c2 = b[i];
+            float w = weight[i];
+            if (!(w > 0F)) {
+                w = 0F;
+            } else if (w > 1F) {
+                w = 1F;
+            }
+            float r1 = TO_LINEAR[(c1 >>> 16) & 0xff];
+            float g1 = TO_LINEAR[(c1 >>> 8) & 0xff];
+            float b1 = TO_LINEAR[c1 & 0xff];
+            int r = fromLinear(r1 + (TO_LINEAR[(c2 >>> 16) & 0xff] - r1) * w);
+            int g = fromLinear(g1 + (TO_LINEAR[(c2 >>> 8) & 0xff] - g1) * w);
+            int bl = fromLinear(b1 + (TO_LINEAR[c2 & 0xff] - b1) * w);
+            int alpha = lerpChannel(c1 >>> 24, c2 >>> 24, w);
+            out[i] = alpha << 24 | r << 16 | g << 8 | bl;
+        }
+    }
+
+    /**
+     * Alpha blend a range of colors over another.
+     *
+     * <p><code>out[i] = lerp(under[i], over[i])</code>: the alpha of each
+     * <code>over</code> color is its weight and the result keeps the alpha
+     * of <code>under</code>.</p>
+     *
+     * @param under colors underneath
+     * @param over colors on top
+     * @param out results
+     * @param offset first index
+     * @param length number of colors
+     * @see #lerp(int, int)
+     * @since 1.2
+     */
+    public static void blend(int[] under, int[] over, int[] out,
+                             int offset, int length) {
+        checkRange(under.length, offset, length);
+        checkRange(over.length, offset, length);
+        checkRange(out.length, offset, length);
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            int c1 = under[i];
+            int c2 = over[i];
+            float w = UNIT[c2 >>> 24];
+            out[i] = c1 & 0xff000000
+                    | lerpChannel((c1 >>> 16) & 0xff, (c2 >>> 16) & 0xff, w) << 16
+                    | lerpChannel((c1 >>> 8) & 0xff, (c2 >>> 8) & 0xff, w) << 8
+                    | lerpChannel(c1 & 0xff, c2 & 0xff, w);
+        }
+    }
+
+    /**
+     * Multiply a range of colors together.
+     *
+     * @param a first colors
+     * @param b second colors
+     * @param out results
+     * @param offset first index
+     * @param length number of colors
+     * @see #multiply(int, int)
+     * @since 1.2
+     */
+    public static void multiply(int[] a, int[] b, int[] out,
+                                int offset, int length) {
+        checkRange(a.length, offset, length);
+        checkRange(b.length, offset, length);
+        checkRange(out.length, offset, length);
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            int c1 = a[i];
+            int c2 = b[i];
+            out[i] = (c1 >>> 24) * (c2 >>> 24) / 255 << 24
+                    | ((c1 >>> 16) & 0xff) * ((c2 >>> 16) & 0xff) / 255 << 16
+                    | ((c1 >>> 8) & 0xff) * ((c2 >>> 8) & 0xff) / 255 << 8
+                    | (c1 & 0xff) * (c2 & 0xff) / 255;
+        }
+    }
+
+    /**
+     * Add a range of colors together, one channel at a time.
+     *
+     * @param a first colors
+     * @param b second colors
+     * @param out results
+     * @param offset first index
+     * @param length number of colors
+     * @see #add(int, int)
+     * @since 1.2
+     */
+    public static void add(int[] a, int[] b, int[] out,
+                           int offset, int length) {
+        checkRange(a.length, offset, length);
+        checkRange(b.length, offset, length);
+        checkRange(out.length, offset, length);
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            int c1 = a[i];
+            int c2 = b[i];
+            out[i] = Math.min(255, (c1 >>> 24) + (c2 >>> 24)) << 24
+                    | Math.min(255, ((c1 >>> 16) & 0xff) + ((c2 >>> 16) & 0xff)) << 16
+                    | Math.min(255, ((c1 >>> 8) & 0xff) + ((c2 >>> 8) & 0xff)) << 8
+                    | Math.min(255, (c1 & 0xff) + (c2 & 0xff));
+        }
+    }
+
+    /**
+     * The work of {@link #shiftHue(int, float)} and
+     * {@link #scaleSV(int, float, float)} without the arrays.
+     */
+    private static int adjustHSV(int rgba, float shift, float scaleS,
+                                 float scaleV) {
+        int r = (rgba >>> 16) & 0xff;
+        int g = (rgba >>> 8) & 0xff;
+        int b = rgba & 0xff;
+        int min, max;
+        if (r > g) {
+            min = g; max = r;
+        } else {
+            min = r; max = g;
+        }
+        if (b > max) {
+            max = b;
+        }
+        if (b < min) {
+            min = b;
+        }
+        float d = max - min;
+        float h = 0;
+        if (d != 0F) {
+            if (r == max) {
+                h = ((g - b) / d);
+            } else if (g == max) {
+                h = (2 + (b - r) / d);
+            } else {
+                h = (4 + (r - g) / d);
+            }
+        }
+        if (h < 0) {
+            h += 6F;
+        }
+        h = h * 60F + shift;
+        if (h < 0) {
+            h += 360.0;
+        } else if (h >= 360.0) {
+            h -= 360.0;
+        }
+        return hsvToColor(h, UNIT[max - min] * scaleS, UNIT[max] * scaleV,
+                          UNIT[rgba >>> 24]);
+    }
+
+    /**
+     * Shift the hue of a range of colors.
+     *
+     * @param in original colors
+     * @param shift amount to shift (within +/- 360.0)
+     * @param out results; may be <code>in</code>
+     * @param offset first index
+     * @param length number of colors
+     * @see #shiftHue(int, float)
+     * @since 1.2
+     */
+    public static void shiftHue(int[] in, float shift, int[] out,
+                                int offset, int length) {
+        if (shift >= 360.0 || shift <= -360.0) {
+            throw new IllegalArgumentException("shift should be within +/- 360.0");
+        }
+        checkRange(in.length, offset, length);
+        checkRange(out.length, offset, length);
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            out[i] = adjustHSV(in[i], shift, 1F, 1F);
+        }
+    }
+
+    /**
+     * Scale the saturation and value of a range of colors.
+     *
+     * @param in original colors
+     * @param scaleS saturation scale
+     * @param scaleV value scale
+     * @param out results; may be <code>in</code>
+     * @param offset first index
+     * @param length number of colors
+     * @see #scaleSV(int, float, float)
+     * @since 1.2
+     */
+    public static void scaleSV(int[] in, float scaleS, float scaleV, int[] out,
+                               int offset, int length) {
+        checkRange(in.length, offset, length);
+        checkRange(out.length, offset, length);
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            out[i] = adjustHSV(in[i], 0F, scaleS, scaleV);
+        }
+    }
+
     public static int colorFromComponents(Map<String, Integer> components) {
         Integer alpha = components.get(ALPHA);
         if (alpha == null) {
@@ -1309,6 +1735,82 @@ public class ColorHelper {
         return ret;
     }
 
+    /**
+     * Create a gradient as an array.
+     *
+     * <p>This gives the same colors as
+     * {@link #createGradient(List, int, List)} without building any lists,
+     * so it is cheap enough to use for tables that are worked out once and
+     * then indexed every frame.</p>
+     *
+     * @param colors how many colors in the gradient (at least one)
+     * @param rgbaColors colors specifying range of the gradient
+     * @return new array of <code>colors</code> colors
+     * @since 1.2
+     */
+    public static int[] createGradientTable(int colors, int... rgbaColors) {
+        if (colors < 1) {
+            throw new IllegalArgumentException("need at least one color");
+        }
+        if (rgbaColors.length == 0) {
+            throw new IllegalArgumentException("need colors to blend");
+        }
+        int rgbaCount = rgbaColors.length;
+        if (colors == rgbaCount) {
+            return Arrays.copyOf(rgbaColors, colors);
+        }
+        int[] ret = new int[colors];
+        if (rgbaCount == 1) {
+            Arrays.fill(ret, rgbaColors[0]);
+            return ret;
+        }
+        // The list version steps the weight by repeated addition, so the
+        // weights are worked out the same way to give the same rounding.
+        int step = colors - 1;
+        float[] weights = new float[step];
+        float lerpStep = 1.0F / step;
+        float e = 0;
+        for (int s = 0; s < step; s++) {
+            weights[s] = e;
+            e += lerpStep;
+        }
+        int last = (rgbaCount - 1) * step;
+        for (int i = 0; i < colors; i++) {
+            int c = i * (rgbaCount - 1);
+            if (c == last) {
+                ret[i] = rgbaColors[rgbaCount - 1];
+            } else {
+                int m = c / step;
+                ret[i] = lerp(rgbaColors[m], rgbaColors[m + 1], weights[c % step]);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Create a gradient that loops back to its first color.
+     *
+     * <p>The table blends through the colors and back to the first one,
+     * without repeating the first color at the end, so stepping through it
+     * with a wrapping index gives a smooth cycle.</p>
+     *
+     * @param colors how many colors in the table (at least one)
+     * @param rgbaColors colors to cycle through
+     * @return new array of <code>colors</code> colors
+     * @since 1.2
+     */
+    public static int[] createCyclicGradient(int colors, int... rgbaColors) {
+        if (colors < 1) {
+            throw new IllegalArgumentException("need at least one color");
+        }
+        if (rgbaColors.length == 0) {
+            throw new IllegalArgumentException("need colors to blend");
+        }
+        int[] loop = Arrays.copyOf(rgbaColors, rgbaColors.length + 1);
+        loop[rgbaColors.length] = rgbaColors[0];
+        return Arrays.copyOf(createGradientTable(colors + 1, loop), colors);
+    }
+
     public static int guessBlack(ColorPalette palette) {
         Integer black;
         ColorPalette ciPalette = palette;
@@ -1427,7 +1929,7 @@ public class ColorHelper {
             for (int c = 0; c < oldPalette.size(); c++) {
                 if (c >= newPalette.size()) {
                     changedColors.add(c);
-                } else if (newPalette.get(c) != oldPalette.get(c)) {
+                } else if (!Objects.equals(newPalette.get(c), oldPalette.get(c))) {
                     changedColors.add(c);
                 }
             }
@@ -0,0 +1,284 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.googlecode.blacken.colors;
+
+import com.googlecode.blacken.exceptions.InvalidStringFormatException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A fixed table of color names, such as one of the {@link ColorNames} sets.
+ *
+ * <p>The names are placed with a perfect hash: a lookup hashes the name
+ * once, reads one displacement and checks one slot. Names are compared
+ * ignoring case, and the lookup doesn't build a lower-case copy of the
+ * name to do it.</p>
+ *
+ * <p>Tables are built from the same mapping format used by
+ * {@link ColorPalette#putMapping(String[])}. The index of a name is the
+ * index its color gets when the mapping is loaded in to an empty palette.
+ * References to other colors (<code>@{...}</code>) aren't supported.</p>
+ *
+ * @author Steven Black
+ * @since Blacken 1.2
+ */
+public final class ColorNameTable {
+    private static final Map<String[], ColorNameTable> TABLES =
+            new IdentityHashMap<>();
+
+    private final String[] names;
+    private final int[] colors;
+    private final int[] indexes;
+    private final int[] seeds;
+
+    /**
+     * Get the table for a mapping, building it the first time.
+     *
+     * <p>Tables are remembered by array, so this is meant for the fixed
+     * sets in {@link ColorNames}. Changing such an array after its table
+     * has been built isn't noticed.</p>
+     *
+     * @param mapping color mapping
+     * @return table for the mapping
+     */
+    public static ColorNameTable forMapping(String[] mapping) {
+        synchronized (TABLES) {
+            ColorNameTable ret = TABLES.get(mapping);
+            if (ret == null) {
+                ret = new ColorNameTable(mapping);
+                TABLES.put(mapping, ret);
+            }
+            return ret;
+        }
+    }
+
+    /**
+     * Build a table.
+     *
+     * <p>When a name appears more than once (ignoring case), the first one
+     * wins.</p>
+     *
+     * @param mapping color mapping
+     * @throws IllegalArgumentException a line can't be understood
+     */
+    public ColorNameTable(String[] mapping) {
+        Map<String, int[]> found = new LinkedHashMap<>();
+        int index = 0;
+        for (String line : mapping) {
+            if (line.matches("^\\s*(#.*)?$") || line.matches("^[A-Z]+[=].*$")) {
+                continue;
+            }
+            String[] s = line.split("[ \t]+->[ \t]+", 2);
+            String[] lineNames;
+            String colorDef;
+            if (s.length == 1) {
+                lineNames = new String[0];
+                colorDef = s[0];
+            } else {
+                lineNames = s[0].split("[ \t]+/[ \t]+");
+                colorDef = s[1];
+            }
+            int color;
+            try {
+                color = ColorHelper.makeColor(colorDef);
+            } catch (InvalidStringFormatException ex) {
+                throw new IllegalArgumentException("Bad color line: " + line, ex);
+            }
+            for (String name : lineNames) {
+                String key = fold(name);
+                if (!found.containsKey(key)) {
+                    found.put(key, new int[] {color, index});
+                }
+            }
+            index++;
+        }
+        int n = found.size();
+        int slots = Math.max(1, n + n / 4);
+        int bucketCount = Math.max(1, (n + 3) / 4);
+        List<List<String>> buckets = new ArrayList<>(bucketCount);
+        for (int b = 0; b < bucketCount; b++) {
+            buckets.add(new ArrayList<String>());
+        }
+        for (String key : found.keySet()) {
+            buckets.get(bucket(hash(key, 0), bucketCount)).add(key);
+        }
+        List<Integer> order = new ArrayList<>(bucketCount);
+        for (int b = 0; b < bucketCount; b++) {
+            order.add(b);
+        }
+        final List<List<String>> sizes = buckets;
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return sizes.get(b).size() - sizes.get(a).size();
+            }
+        });
+        names = new String[slots];
+        colors = new int[slots];
+        indexes = new int[slots];
+        seeds = new int[bucketCount];
+        int[] tried = new int[slots];
+        for (int b : order) {
+            List<String> keys = buckets.get(b);
+            if (keys.isEmpty()) {
+                break;
+            }
+            for (int seed = 1; ; seed++) {
+                boolean fits = true;
+                for (int k = 0; k < keys.size() && fits; k++) {
+                    int slot = bucket(hash(keys.get(k), seed), slots);
+                    if (names[slot] != null || tried[slot] == seed) {
+                        fits = false;
+                    }
+                    tried[slot] = seed;
+                }
+                if (!fits) {
+                    // the marks from this seed can't match the next one
+                    continue;
+                }
+                seeds[b] = seed;
+                for (String key : keys) {
+                    int slot = bucket(hash(key, seed), slots);
+                    int[] v = found.get(key);
+                    names[slot] = key;
+                    colors[slot] = v[0];
+                    indexes[slot] = v[1];
+                }
+                Arrays.fill(tried, 0);
+                break;
+            }
+        }
+    }
+
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private static String fold(String name) {
+        char[] c = name.toCharArray();
+        for (int i = 0; i < c.length; i++) {
+            c[i] = fold(c[i]);
+        }
+        return new String(c);
+    }
+
+    private static int hash(CharSequence name, int seed) {
+        int h = seed * 0x9E3779B9 ^ 0x811C9DC5;
+        for (int i = 0; i < name.length(); i++) {
+            h = (h ^ fold(name.charAt(i))) * 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    private static int bucket(int hash, int count) {
+        return (hash & 0x7fffffff) % count;
+    }
+
+    private int find(String name) {
+        int slot = bucket(hash(name, seeds[bucket(hash(name, 0), seeds.length)]),
+                          names.length);
+        String found = names[slot];
+        if (found == null || found.length() != name.length()) {
+            return -1;
+        }
+        for (int i = 0; i < found.length(); i++) {
+            if (found.charAt(i) != fold(name.charAt(i))) {
+                return -1;
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * Is a name in the table?
+     *
+     * @param name color name (any case)
+     * @return true if known
+     */
+    public boolean contains(String name) {
+        return find(name) != -1;
+    }
+
+    /**
+     * Get a name as it is stored in the table.
+     *
+     * <p>Stored names are in lower case, as a case-insensitive
+     * {@link ColorPalette} stores them for most locales.</p>
+     *
+     * @param name color name (any case)
+     * @return the stored name, or <code>null</code> if unknown
+     */
+    public String getKey(String name) {
+        int slot = find(name);
+        if (slot == -1) {
+            return null;
+        }
+        return names[slot];
+    }
+
+    /**
+     * Get the color for a name.
+     *
+     * @param name color name (any case)
+     * @return color value, or <code>null</code> if unknown
+     */
+    public Integer getColor(String name) {
+        int slot = find(name);
+        if (slot == -1) {
+            return null;
+        }
+        return colors[slot];
+    }
+
+    /**
+     * Get the palette index for a name.
+     *
+     * @param name color name (any case)
+     * @return index the color has when the mapping is loaded in to an empty
+     *      palette, or -1 if unknown
+     */
+    public int indexOf(String name) {
+        int slot = find(name);
+        if (slot == -1) {
+            return -1;
+        }
+        return indexes[slot];
+    }
+
+    /**
+     * Get the number of names.
+     *
+     * @return number of names
+     */
+    public int size() {
+        int ret = 0;
+        for (String n : names) {
+            if (n != null) {
+                ret++;
+            }
+        }
+        return ret;
+    }
+}
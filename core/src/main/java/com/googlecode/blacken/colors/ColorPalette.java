@@ -24,6 +24,7 @@ import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -109,6 +110,13 @@ public class ColorPalette extends ListMap<String, Integer> {
     private boolean caseInsensitive = false;
     static private Locale defaultPaletteLocale = Locale.ENGLISH;
     private Locale paletteLocale = defaultPaletteLocale;
+    // derived from the values; rebuilt when getChangeCount() moves on
+    private transient int[] argbSnapshot = null;
+    private transient int snapshotChange;
+    private transient int[][] nearestCells = null;
+    private transient int nearestChange;
+    // tables for the standard ColorNames sets loaded in to this palette
+    private transient List<ColorNameTable> nameTables = null;
 
     /**
      * Create a new empty palette.
@@ -410,9 +418,9 @@ public class ColorPalette extends ListMap<String, Integer> {
 
     @Override
     public Integer get(String key) {
-        String k = key;
-        if (this.caseInsensitive) {
-            k = key.toLowerCase(paletteLocale);
+        String k = findKey(key);
+        if (k == null) {
+            return null;
         }
         return super.get(k);
     }
@@ -434,15 +442,195 @@ public class ColorPalette extends ListMap<String, Integer> {
      * @return a 0xAARRGGBB color
      */
     public int getColor(int indexOrColor) {
-        int ret = 0;
-        if (indexOrColor < size() && indexOrColor >= 0) {
+        int[] colors = getArgbSnapshot();
+        if (indexOrColor < colors.length && indexOrColor >= 0) {
             // This is near guaranteed correct.
-            ret = get(indexOrColor);
-        } else {
-            ret = indexOrColor;
+            return colors[indexOrColor];
+        }
+        return indexOrColor;
+    }
+
+    /**
+     * Get every color in the palette as a plain array.
+     *
+     * <p>The array is shared and must not be changed. It is replaced (not
+     * updated) when the palette changes, so a caller holding it keeps a
+     * consistent snapshot. Missing colors are 0.</p>
+     *
+     * @return 0xAARRGGBB colors by index
+     * @since 1.2
+     */
+    public int[] getArgbSnapshot() {
+        int[] ret = argbSnapshot;
+        if (ret == null || snapshotChange != getChangeCount()) {
+            ret = new int[size()];
+            for (int i = 0; i < ret.length; i++) {
+                Integer c = get(i);
+                ret[i] = c == null ? 0 : c;
+            }
+            argbSnapshot = ret;
+            snapshotChange = getChangeCount();
         }
         return ret;
     }
+
+    // weights for the color distance; green matters most to the eye
+    private static final int WEIGHT_RED = 2;
+    private static final int WEIGHT_GREEN = 4;
+    private static final int WEIGHT_BLUE = 3;
+    // the RGB cube is split in to 32x32x32 cells of 8x8x8 colors
+    private static final int CELL_BITS = 5;
+    private static final int CELL_SIZE = 1 << (8 - CELL_BITS);
+
+    private static int distance(int dr, int dg, int db) {
+        return WEIGHT_RED * dr * dr + WEIGHT_GREEN * dg * dg + WEIGHT_BLUE * db * db;
+    }
+
+    private static int nearestOffset(int c, int lo) {
+        if (c < lo) {
+            return lo - c;
+        }
+        if (c > lo + CELL_SIZE - 1) {
+            return c - (lo + CELL_SIZE - 1);
+        }
+        return 0;
+    }
+
+    private static int farthestOffset(int c, int lo) {
+        return Math.max(Math.abs(c - lo), Math.abs(c - (lo + CELL_SIZE - 1)));
+    }
+
+    /**
+     * Find the palette entries that could be nearest to some color in a
+     * cell of the RGB cube.
+     *
+     * <p>Any entry further than the best worst-case entry can be dropped,
+     * so the candidates are usually only a few entries.
+     */
+    private static int[] cellCandidates(int[] colors, int cell) {
+        int r0 = ((cell >> (2 * CELL_BITS)) & 31) * CELL_SIZE;
+        int g0 = ((cell >> CELL_BITS) & 31) * CELL_SIZE;
+        int b0 = (cell & 31) * CELL_SIZE;
+        int bound = Integer.MAX_VALUE;
+        for (int c : colors) {
+            int r = (c >> 16) & 0xff;
+            int g = (c >> 8) & 0xff;
+            int b = c & 0xff;
+            bound = Math.min(bound, distance(farthestOffset(r, r0),
+                    farthestOffset(g, g0), farthestOffset(b, b0)));
+        }
+        int[] found = new int[colors.length];
+        int count = 0;
+        for (int i = 0; i < colors.length; i++) {
+            int c = colors[i];
+            int r = (c >> 16) & 0xff;
+            int g = (c >> 8) & 0xff;
+            int b = c & 0xff;
+            if (distance(nearestOffset(r, r0), nearestOffset(g, g0),
+                    nearestOffset(b, b0)) <= bound) {
+                found[count++] = i;
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    private int[][] getNearestCells() {
+        int[][] ret = nearestCells;
+        if (ret == null || nearestChange != getChangeCount()) {
+            ret = new int[1 << (3 * CELL_BITS)][];
+            nearestCells = ret;
+            nearestChange = getChangeCount();
+        }
+        return ret;
+    }
+
+    private static int nearest(int[] colors, int[][] cells, int argb) {
+        int r = (argb >> 16) & 0xff;
+        int g = (argb >> 8) & 0xff;
+        int b = argb & 0xff;
+        int cell = ((r >> (8 - CELL_BITS)) << (2 * CELL_BITS))
+                | ((g >> (8 - CELL_BITS)) << CELL_BITS) | (b >> (8 - CELL_BITS));
+        int[] candidates = cells[cell];
+        if (candidates == null) {
+            candidates = cellCandidates(colors, cell);
+            cells[cell] = candidates;
+        }
+        int best = -1;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int i : candidates) {
+            int c = colors[i];
+            int d = distance(((c >> 16) & 0xff) - r, ((c >> 8) & 0xff) - g,
+                    (c & 0xff) - b);
+            if (d < bestDistance) {
+                bestDistance = d;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Find the palette index with the color closest to a color.
+     *
+     * <p>Closeness is a weighted RGB distance which favors green, roughly
+     * matching how the eye sees differences. Alpha is ignored. Ties go to
+     * the lowest index.</p>
+     *
+     * <p>The search is cached per small cube of colors, so after warming up
+     * it looks at only a handful of entries.</p>
+     *
+     * @param argb 0xAARRGGBB color
+     * @return palette index, or -1 if the palette is empty
+     * @since 1.2
+     */
+    public int findNearest(int argb) {
+        int[] colors = getArgbSnapshot();
+        if (colors.length == 0) {
+            return -1;
+        }
+        return nearest(colors, getNearestCells(), argb);
+    }
+
+    /**
+     * Map colors to their nearest palette indexes.
+     *
+     * @param argbIn 0xAARRGGBB colors
+     * @param indexOut receives palette indexes; may be <code>argbIn</code>
+     * @see #findNearest(int)
+     * @since 1.2
+     */
+    public void quantize(int[] argbIn, int[] indexOut) {
+        quantize(argbIn, 0, indexOut, 0, argbIn.length);
+    }
+
+    /**
+     * Map a run of colors to their nearest palette indexes.
+     *
+     * @param argbIn 0xAARRGGBB colors
+     * @param inOffset first color to map
+     * @param indexOut receives palette indexes; may be <code>argbIn</code>
+     * @param outOffset where to store the first index
+     * @param length number of colors
+     * @see #findNearest(int)
+     * @since 1.2
+     */
+    public void quantize(int[] argbIn, int inOffset, int[] indexOut,
+            int outOffset, int length) {
+        if (inOffset < 0 || outOffset < 0 || length < 0
+                || inOffset + length > argbIn.length
+                || outOffset + length > indexOut.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        int[] colors = getArgbSnapshot();
+        if (colors.length == 0) {
+            Arrays.fill(indexOut, outOffset, outOffset + length, -1);
+            return;
+        }
+        int[][] cells = getNearestCells();
+        for (int i = 0; i < length; i++) {
+            indexOut[outOffset + i] = nearest(colors, cells, argbIn[inOffset + i]);
+        }
+    }
     /**
      * This is sort of a companion to {@link #getColor(int)}. The
      * <code>keyOrColor</codde> should either be a key (or color label) in to
@@ -454,14 +642,9 @@ public class ColorPalette extends ListMap<String, Integer> {
      * @since 1.1
      */
     public int getColorOrIndex(String keyOrColor) {
-        if (this.containsKey(keyOrColor)) {
-            return this.indexOfKey(keyOrColor);
-        }
-        if (this.caseInsensitive) {
-            String name = keyOrColor.toLowerCase(paletteLocale);
-            if (this.containsKey(name)) {
-                return this.indexOfKey(name);
-            }
+        String key = findKey(keyOrColor);
+        if (key != null) {
+            return this.indexOfKey(key);
         }
 
         try {
@@ -590,9 +773,69 @@ public class ColorPalette extends ListMap<String, Integer> {
                 putKey(names, idx);
             }
         }
+        addNameTable(colors);
         return true;
     }
 
+    /**
+     * Remember the name table for a standard {@link ColorNames} set, so that
+     * case-insensitive lookups of its names need not lower-case them.
+     */
+    private void addNameTable(String[] colors) {
+        if (colors != ColorNames.HTML_COLORS && colors != ColorNames.SVG_COLORS
+                && colors != ColorNames.STANDARD_16_COLORS
+                && colors != ColorNames.CGA_16_COLORS
+                && colors != ColorNames.LIBTCOD_COLORS) {
+            return;
+        }
+        ColorNameTable table = ColorNameTable.forMapping(colors);
+        if (nameTables == null) {
+            nameTables = new ArrayList<>(2);
+        } else if (nameTables.contains(table)) {
+            return;
+        }
+        nameTables.add(table);
+    }
+
+    /**
+     * Find the key a name is stored under.
+     *
+     * <p>For a case-insensitive palette, names from the standard sets are
+     * found through their {@link ColorNameTable} before falling back to
+     * {@link String#toLowerCase(Locale)}. The tables fold case the same way
+     * except for the locales where <code>toLowerCase</code> has special
+     * rules, so those always take the fallback.</p>
+     *
+     * @param name key or name in any case
+     * @return key in the palette, or <code>null</code> if none matches
+     */
+    private String findKey(String name) {
+        if (this.containsKey(name)) {
+            return name;
+        }
+        if (!this.caseInsensitive) {
+            return null;
+        }
+        if (nameTables != null && !hasSpecialCasing(paletteLocale)) {
+            for (ColorNameTable table : nameTables) {
+                String key = table.getKey(name);
+                if (key != null && this.containsKey(key)) {
+                    return key;
+                }
+            }
+        }
+        String key = name.toLowerCase(paletteLocale);
+        if (this.containsKey(key)) {
+            return key;
+        }
+        return null;
+    }
+
+    private static boolean hasSpecialCasing(Locale locale) {
+        String lang = locale.getLanguage();
+        return "tr".equals(lang) || "az".equals(lang) || "lt".equals(lang);
+    }
+
    private int makeColor(String colorDef) {
        Integer colr = null;
         if (colorDef.startsWith("@{")) {
@@ -0,0 +1,79 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.googlecode.blacken.colors;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link ColorTransformer} worked out ahead of time.
+ *
+ * <p>Palette indexes are transformed once when the table is built. Other
+ * values (direct 0xAARRGGBB colors) are transformed the first time they are
+ * seen and remembered. This assumes the transformer always gives the same
+ * answer for the same value, which is true of the palette transformers
+ * once their palettes are set.</p>
+ *
+ * @author Steven Black
+ * @since Blacken 1.2
+ */
+public class TransformTable implements ColorTransformer {
+    private final ColorTransformer transform;
+    private final int[] indexes;
+    private final Map<Integer, Integer> others = new HashMap<>();
+
+    /**
+     * Build a table.
+     *
+     * @param transform transformer to run
+     * @param indexCount number of palette indexes to transform up front
+     */
+    public TransformTable(ColorTransformer transform, int indexCount) {
+        this.transform = transform;
+        indexes = new int[Math.max(0, indexCount)];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = transform.transform(i);
+        }
+    }
+
+    /**
+     * Build a table covering every index of both palettes of a palette
+     * transformer.
+     *
+     * @param transform transformer with its palettes set
+     */
+    public TransformTable(PaletteTransformer transform) {
+        this(transform, Math.max(size(transform.getOldPalette()),
+                size(transform.getNewPalette())));
+    }
+
+    private static int size(ColorPalette palette) {
+        return palette == null ? 0 : palette.size();
+    }
+
+    @Override
+    public int transform(int value) {
+        if (value >= 0 && value < indexes.length) {
+            return indexes[value];
+        }
+        Integer ret = others.get(value);
+        if (ret == null) {
+            ret = transform.transform(value);
+            others.put(value, ret);
+        }
+        return ret;
+    }
+}
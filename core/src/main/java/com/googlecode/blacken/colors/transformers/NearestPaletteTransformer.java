@@ -0,0 +1,105 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012,2013 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.googlecode.blacken.colors.transformers;
+
+import com.googlecode.blacken.colors.ColorHelper;
+import com.googlecode.blacken.colors.ColorPalette;
+import com.googlecode.blacken.colors.PaletteTransformer;
+import java.util.Set;
+
+/**
+ * Palette transformer that moves every color on to the new palette, using
+ * the closest entry when there is no exact match.
+ *
+ * <p>Palette indexes whose color didn't change are kept. Any other color
+ * (a changed index, or a plain 0xAARRGGBB color) becomes the index of the
+ * nearest palette color, as found by {@link ColorPalette#findNearest(int)}.
+ * An empty new palette leaves colors alone.</p>
+ *
+ * @author Steven Black
+ * @since 1.2
+ */
+public class NearestPaletteTransformer implements PaletteTransformer {
+    private ColorPalette newPalette;
+    private ColorPalette oldPalette;
+    private Set<Integer> changedColors;
+    private int whiteIdx;
+    private int blackIdx;
+
+    public NearestPaletteTransformer() {
+        // nothing to do
+    }
+
+    @Override
+    public void setPalettes(ColorPalette newPalette, ColorPalette oldPalette) {
+        if (oldPalette == null) {
+            oldPalette = new ColorPalette();
+            oldPalette.makeUnmodifiable();
+        }
+        if (newPalette == null) {
+            throw new NullPointerException("Both palettes must be set.");
+        }
+        this.newPalette = newPalette;
+        this.oldPalette = oldPalette;
+        changedColors = ColorHelper.findChangedColors(newPalette, oldPalette);
+        if (newPalette.size() > 1) {
+            blackIdx = ColorHelper.guessBlack(newPalette);
+            whiteIdx = ColorHelper.guessWhite(newPalette);
+        } else {
+            // the guesses need two colors to compare
+            blackIdx = 0;
+            whiteIdx = 0;
+        }
+    }
+
+    @Override
+    public ColorPalette getOldPalette() {
+        return oldPalette;
+    }
+
+    @Override
+    public ColorPalette getNewPalette() {
+        return newPalette;
+    }
+
+    @Override
+    public int transform(int i) {
+        int argb = i;
+        if (i >= 0 && i < oldPalette.size()) {
+            if (!changedColors.contains(i)) {
+                return i;
+            }
+            argb = oldPalette.get(i);
+        } else if (i >= 0 && i < newPalette.size()) {
+            // already an index in to the new palette
+            return i;
+        }
+        int ret = newPalette.findNearest(argb);
+        return ret == -1 ? i : ret;
+    }
+
+    @Override
+    public int makeVisible(int i, boolean invert) {
+        if (newPalette.size() == 0) {
+            return i;
+        }
+        if (invert) {
+            return ColorHelper.makeVisible(i, 66, blackIdx, whiteIdx);
+        } else {
+            return ColorHelper.makeVisible(i, 66, whiteIdx, blackIdx);
+        }
+    }
+}
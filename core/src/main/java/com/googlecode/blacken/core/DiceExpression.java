@@ -0,0 +1,230 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.googlecode.blacken.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A dice string, as understood by {@link Random#guess(String)}, parsed once.
+ *
+ * <p>An expression is immutable and rolling it does not allocate, so one
+ * instance can be shared freely. {@link #compile(String)} keeps the
+ * expressions it has seen, so a formula used every turn is only parsed the
+ * first time.</p>
+ *
+ * <p>Rolling an expression asks the generator for exactly the same numbers
+ * in the same order as {@link Random#guess(String)} always has, so seeded
+ * games give the same results.</p>
+ *
+ * @author Steven Black
+ * @since Blacken 1.2
+ */
+public final class DiceExpression {
+    /**
+     * Most expressions {@link #compile(String)} will remember.
+     */
+    public static final int CACHE_LIMIT = 1024;
+    private static final Pattern GUESS_PATTERN =
+        Pattern.compile("\\s*(\\d+)?\\s*(?:([:])\\s*(\\d+))??\\s*(?:([d:])\\s*(\\d+))?\\s*(?:([+-/*])\\s*(\\d+))?\\s*");
+    private static final ConcurrentMap<String, DiceExpression> cache =
+            new ConcurrentHashMap<>();
+
+    private static final int CONSTANT = 0;
+    private static final int DICE = 1;
+    private static final int RANGE = 2;
+    private static final int BEST_OF = 3;
+
+    private final String source;
+    private final int kind;
+    // CONSTANT: value; DICE: count, sides; RANGE: bottom, top (exclusive);
+    // BEST_OF: keep, count, sides
+    private final int a;
+    private final int b;
+    private final int c;
+    private final char op;
+    private final int operand;
+
+    private DiceExpression(String source, int kind, int a, int b, int c,
+            char op, int operand) {
+        this.source = source;
+        this.kind = kind;
+        this.a = a;
+        this.b = b;
+        this.c = c;
+        this.op = op;
+        this.operand = operand;
+    }
+
+    /**
+     * Get the expression for a dice string, parsing it if it has not been
+     * seen before.
+     *
+     * @param str dice string; see {@link Random#guess(String)}
+     * @return compiled expression
+     */
+    public static DiceExpression compile(String str) {
+        DiceExpression ret = cache.get(str);
+        if (ret == null) {
+            ret = parse(str);
+            if (cache.size() < CACHE_LIMIT) {
+                DiceExpression had = cache.putIfAbsent(str, ret);
+                if (had != null) {
+                    ret = had;
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Parse a dice string without touching the cache.
+     *
+     * @param str dice string; see {@link Random#guess(String)}
+     * @return new expression
+     */
+    public static DiceExpression parse(String str) {
+        Matcher mat = GUESS_PATTERN.matcher(str);
+        if (!mat.matches()) {
+            return new DiceExpression(str, CONSTANT, 0, 0, 0, '\0', 0);
+        }
+        String num1 = mat.group(1); // 12
+        String wmode = mat.group(2); // :
+        String wnum = mat.group(3); // 23
+        String mode = mat.group(4); // d:
+        String num2 = mat.group(5); // 34
+        String pmode = mat.group(6); // +-
+        String pnum = mat.group(7); // 45
+        int a, b, w, p;
+        a = num1 == null ? 0 : Integer.parseInt(num1);
+        b = num2 == null ? 0 : Integer.parseInt(num2);
+        w = wnum == null ? 0 : Integer.parseInt(wnum);
+        p = pnum == null ? 0 : Integer.parseInt(pnum);
+        int kind = CONSTANT;
+        int x = 0, y = 0, z = 0;
+        if (num1 != null && num2 != null) {
+            if (wnum != null) {
+                if (":".equals(wmode) && "d".equals(mode)) {
+                    kind = BEST_OF;
+                    x = a;
+                    y = w;
+                    z = b;
+                }
+            } else if ("d".equals(mode)) {
+                kind = DICE;
+                x = a;
+                y = b;
+            } else if (":".equals(mode)) {
+                kind = RANGE;
+                x = a;
+                y = b + 1;
+            }
+        } else if (num1 != null) {
+            if (":".equals(wmode)) {
+                kind = RANGE;
+                x = a;
+                y = w + 1;
+            } else {
+                x = a;
+            }
+        } else if (num2 != null) {
+            if ("d".equals(mode)) {
+                kind = DICE;
+                x = 1;
+                y = b;
+            } else if (":".equals(mode)) {
+                kind = RANGE;
+                x = 0;
+                y = b + 1;
+            }
+        } else if (":".equals(wmode)) {
+            kind = RANGE;
+            x = 0;
+            y = w + 1;
+        }
+        char op = pmode == null ? '\0' : pmode.charAt(0);
+        return new DiceExpression(str, kind, x, y, z, op, p);
+    }
+
+    /**
+     * Roll the expression.
+     *
+     * @param rand generator to roll with
+     * @return result
+     */
+    public int roll(Random rand) {
+        int ret;
+        switch (kind) {
+        case DICE:
+            ret = rand.dice(a, b);
+            break;
+        case RANGE:
+            ret = rand.nextInt(a, b);
+            break;
+        case BEST_OF:
+            ret = rand.bestOf(a, b, c);
+            break;
+        default:
+            ret = a;
+            break;
+        }
+        switch (op) {
+        case '+':
+            ret += operand;
+            break;
+        case '-':
+            ret -= operand;
+            break;
+        case '*':
+            ret *= operand;
+            break;
+        case '/':
+            ret /= operand;
+            break;
+        default:
+            break;
+        }
+        return ret;
+    }
+
+    /**
+     * Roll the expression once for every entry of an array.
+     *
+     * @param rand generator to roll with
+     * @param out array to fill
+     */
+    public void roll(Random rand, int[] out) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = roll(rand);
+        }
+    }
+
+    /**
+     * Check whether rolling needs the generator at all.
+     *
+     * @return true if the result is always the same
+     */
+    public boolean isConstant() {
+        return kind == CONSTANT;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
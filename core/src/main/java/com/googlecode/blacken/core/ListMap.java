@@ -178,6 +178,8 @@ implements List<V>, Cloneable, Serializable {
     protected static class ListMapEntry<W> {
         private W value;
         private int index;
+        // keys labelling this entry; kept in step with keyMap
+        private Set<Object> keys = null;
         protected ListMapEntry() {
             value = null;
             index = -1;
@@ -542,6 +544,11 @@ implements List<V>, Cloneable, Serializable {
     
     private List<ListMapEntry<V>> valueList = null;
     private Map<K, ListMapEntry<V>> keyMap = new HashMap<>();
+    // value to the entries holding it; built on first use
+    private transient Map<Object, List<ListMapEntry<V>>> valueIndex = null;
+    // entries from here on may have stale indexes
+    private transient int staleFrom = Integer.MAX_VALUE;
+    private transient int changeCount = 0;
 
     /**
      * Create a new, empty, ListMap
@@ -599,9 +606,8 @@ implements List<V>, Cloneable, Serializable {
      * @return old index that the entry's key referred to
      */
     protected V add(Entry<K, V> entry) {
-        ListMapEntry<V> e = new ListMapEntry<>(entry.getValue(), this.size());
-        this.valueList.add(e);
-        ListMapEntry<V> old = keyMap.put(entry.getKey(), e);
+        ListMapEntry<V> e = append(entry.getValue());
+        ListMapEntry<V> old = bindKey(entry.getKey(), e);
         if (old == null) {
             return null;
         }
@@ -610,12 +616,14 @@ implements List<V>, Cloneable, Serializable {
 
     @Override
     public void add(int index, V element) {
-        ListMapEntry<V> e = new ListMapEntry<>(element, index);
         if (index == this.valueList.size()) {
-            this.valueList.add(e);
+            append(element);
         } else {
+            ListMapEntry<V> e = new ListMapEntry<>(element, index);
             this.valueList.add(index, e);
-            this.reindex(index+1);
+            indexValue(e);
+            markStale(index+1);
+            changeCount++;
         }
     }
 
@@ -634,9 +642,7 @@ implements List<V>, Cloneable, Serializable {
      * @return true
      */
     public boolean add(K key, V value) {
-        ListMapEntry<V> e = new ListMapEntry<>(value, this.size());
-        this.valueList.add(e);
-        keyMap.put(key, e);
+        bindKey(key, append(value));
         return true;
     }
 
@@ -664,8 +670,16 @@ implements List<V>, Cloneable, Serializable {
 
     @Override
     public boolean add(V value) {
+        append(value);
+        return true;
+    }
+
+    private ListMapEntry<V> append(V value) {
         ListMapEntry<V> e = new ListMapEntry<>(value, valueList.size());
-        return this.valueList.add(e);
+        this.valueList.add(e);
+        indexValue(e);
+        changeCount++;
+        return e;
     }
 
     @Override
@@ -698,7 +712,7 @@ implements List<V>, Cloneable, Serializable {
         for (V value : values) {
             add(index++, value);
         }
-        reindex(index);
+        markStale(index);
         return ret;
     }
 
@@ -718,7 +732,7 @@ implements List<V>, Cloneable, Serializable {
         for (V item : items) {
             add(index++, item);
         }
-        reindex(index);
+        markStale(index);
         return true;
     }
 
@@ -786,6 +800,7 @@ implements List<V>, Cloneable, Serializable {
         for (V value : old) {
             add(value);
         }
+        old.refreshIndexes();
         for (Entry<K, ListMapEntry<V>> entry : old.keyMap.entrySet()) {
             putKey(entry.getKey(), entry.getValue().getIndex() + add);
         }
@@ -843,18 +858,27 @@ implements List<V>, Cloneable, Serializable {
     public void clear() {
         this.valueList.clear();
         clearKeys();
+        valueIndex = null;
+        staleFrom = Integer.MAX_VALUE;
+        changeCount++;
     }
 
     /**
      * Clear the key map.
      */
     public void clearKeys() {
+        for (ListMapEntry<V> entry : keyMap.values()) {
+            if (entry != null && entry.keys != null) {
+                entry.keys.clear();
+            }
+        }
         keyMap.clear();
     }
 
     protected void consolidateEntries(Map<Integer,
             ConsolidatedListMapEntry<K, V>> map) {
         ConsolidatedListMapEntry<K, V> clme;
+        refreshIndexes();
         for (K key : keyMap.keySet()) {
             ListMapEntry<V> entry = keyMap.get(key);
             Integer idx = entry.getIndex();
@@ -870,38 +894,14 @@ implements List<V>, Cloneable, Serializable {
 
     @Override
     public boolean contains(Object value) {
-        for (ListMapEntry<V> entry : this.valueList) {
-            if (entry == null) {
-                continue;
-            } else if (entry.getValue() == null) {
-                if (value == null) {
-                    return true;
-                }
-            } else if (entry.getValue().equals(value)) {
-                return true;
-            }
-        }
-        return false;
+        return valueIndex().containsKey(value);
     }
 
     @Override
     public boolean containsAll(Collection<?> values) {
-        Set<Object> valueSet = new HashSet<>();
-        boolean hasNull = false;
-        for (ListMapEntry<V> entry : this.valueList) {
-            if (entry == null) {
-                continue;
-            } else if (entry.getValue() == null) {
-                hasNull = true;
-            } else {
-                valueSet.add(entry.getValue());
-            }
-        }
+        Map<Object, List<ListMapEntry<V>>> index = valueIndex();
         for (Object value : values) {
-            if (value == null && !hasNull) {
-                return false;
-            }
-            if (!valueSet.contains(value)) {
+            if (!index.containsKey(value)) {
                 return false;
             }
         }
@@ -929,13 +929,26 @@ implements List<V>, Cloneable, Serializable {
      * @return true if there is a key for <code>value</code>
      */
     public boolean containsValue(V value) {
-        Set<Entry<K, V>> set = entrySet();
-        for (Entry<K, V> entry : set) {
-            if (entry.getValue().equals(value)) {
-                return true;
+        return labelledEntry(value) != null;
+    }
+
+    /**
+     * Find an entry holding a value which has at least one key.
+     *
+     * @param value value to find
+     * @return entry or null
+     */
+    private ListMapEntry<V> labelledEntry(Object value) {
+        List<ListMapEntry<V>> entries = valueIndex().get(value);
+        if (entries == null) {
+            return null;
+        }
+        for (ListMapEntry<V> entry : entries) {
+            if (entry.keys != null && !entry.keys.isEmpty()) {
+                return entry;
             }
         }
-        return false;
+        return null;
     }
 
     /**
@@ -1011,25 +1024,20 @@ implements List<V>, Cloneable, Serializable {
     }
 
     /**
-     * Walk the entries to find the key related to a value.
+     * Find a key related to a value.
      * 
-     * <p>This is not considered a key function, and the speed is appropriate
-     * for the priority.
+     * <p>If several keys label the value, any one of them may be returned.
      * 
      * @param value value to find the key for
      * @return key associated with a value
      */
+    @SuppressWarnings("unchecked")
     public K getKey(V value) {
-        Set<Map.Entry<K, V>> entries;
-        entries = entrySet();
-        K found = null;
-        for (Map.Entry<K, V> entry : entries) {
-            if (entry.getValue().equals(value)) {
-                found = entry.getKey();
-                break;
-            }
+        ListMapEntry<V> entry = labelledEntry(value);
+        if (entry == null) {
+            return null;
         }
-        return found;
+        return (K)entry.keys.iterator().next();
     }
 
     @Override
@@ -1045,19 +1053,16 @@ implements List<V>, Cloneable, Serializable {
 
     @Override
     public int indexOf(Object value) {
-        for (int index = 0; index < valueList.size(); index++) {
-            ListMapEntry<V> entry = this.valueList.get(index);
-            if (entry == null) {
-                continue;
-            } else if (entry.getValue() == null) {
-                if (value == null) {
-                    return index;
-                }
-            } else if (entry.getValue().equals(value)) {
-                return index;
-            }
+        List<ListMapEntry<V>> entries = valueIndex().get(value);
+        if (entries == null) {
+            return -1;
+        }
+        refreshIndexes();
+        int ret = Integer.MAX_VALUE;
+        for (ListMapEntry<V> entry : entries) {
+            ret = Math.min(ret, entry.getIndex());
         }
-        return -1;
+        return ret;
     }
 
     /**
@@ -1069,6 +1074,7 @@ implements List<V>, Cloneable, Serializable {
      * @return the index for the key
      */
     public int indexOfKey(K key) {
+        refreshIndexes();
         return keyMap.get(key).getIndex();
     }
 
@@ -1093,19 +1099,16 @@ implements List<V>, Cloneable, Serializable {
 
     @Override
     public int lastIndexOf(Object value) {
-        for (int index = valueList.size()-1; index > 0 ; index--) {
-            ListMapEntry<V> entry = this.valueList.get(index);
-            if (entry == null) {
-                continue;
-            } else if (entry.getValue() == null) {
-                if (value == null) {
-                    return index;
-                }
-            } else if (entry.getValue().equals(value)) {
-                return index;
-            }
+        List<ListMapEntry<V>> entries = valueIndex().get(value);
+        if (entries == null) {
+            return -1;
         }
-        return -1;
+        refreshIndexes();
+        int ret = -1;
+        for (ListMapEntry<V> entry : entries) {
+            ret = Math.max(ret, entry.getIndex());
+        }
+        return ret;
     }
 
     @Override
@@ -1130,6 +1133,7 @@ implements List<V>, Cloneable, Serializable {
             add(entry);
             return null;
         }
+        refreshIndexes();
         return this.set(old.getIndex(), entry.getValue());
     }
     /**
@@ -1150,6 +1154,7 @@ implements List<V>, Cloneable, Serializable {
             this.add(key, value);
             return null;
         }
+        refreshIndexes();
         return this.set(old.getIndex(), value);
     }
     
@@ -1249,10 +1254,11 @@ implements List<V>, Cloneable, Serializable {
      */
     public int putKey(K key, int index) {
         ListMapEntry<V> cur = valueList.get(index);
-        ListMapEntry<V> old = keyMap.put(key, cur);
+        ListMapEntry<V> old = bindKey(key, cur);
         if (old == null) {
             return -1;
         }
+        refreshIndexes();
         return old.getIndex();
     }
 
@@ -1274,10 +1280,11 @@ implements List<V>, Cloneable, Serializable {
      * @return index old index used by the alias
      */
     public int putKey(K newKey, K existingKey) {
-        ListMapEntry<V> old = keyMap.put(newKey, keyMap.get(existingKey)); 
+        ListMapEntry<V> old = bindKey(newKey, keyMap.get(existingKey)); 
         if (old == null) {
             return -1;
         }
+        refreshIndexes();
         return old.getIndex();
     }
 
@@ -1297,30 +1304,133 @@ implements List<V>, Cloneable, Serializable {
         ListMapEntry<V> old;
         cur = valueList.get(index);
         for (K key : keys) {
-            old = keyMap.put(key, cur);
-            if (old == null || old.getIndex() != index) {
+            old = bindKey(key, cur);
+            if (old != cur) {
                 changed = true;
             }
         }
         return changed;
     }
 
+    /**
+     * Point a key at an entry, keeping the entries' key sets in step.
+     *
+     * @param key key to set
+     * @param entry entry for the key
+     * @return entry the key used before
+     */
+    private ListMapEntry<V> bindKey(K key, ListMapEntry<V> entry) {
+        ListMapEntry<V> old = keyMap.put(key, entry);
+        if (old != entry) {
+            if (old != null && old.keys != null) {
+                old.keys.remove(key);
+            }
+            if (entry != null) {
+                if (entry.keys == null) {
+                    entry.keys = new HashSet<>(2);
+                }
+                entry.keys.add(key);
+            }
+        }
+        return old;
+    }
+
+    private Map<Object, List<ListMapEntry<V>>> valueIndex() {
+        if (valueIndex == null) {
+            valueIndex = new HashMap<>(valueList.size() * 2);
+            for (ListMapEntry<V> entry : valueList) {
+                indexValue(entry);
+            }
+        }
+        return valueIndex;
+    }
+
+    private void indexValue(ListMapEntry<V> entry) {
+        if (valueIndex == null) {
+            return;
+        }
+        List<ListMapEntry<V>> entries = valueIndex.get(entry.getValue());
+        if (entries == null) {
+            entries = new ArrayList<>(1);
+            valueIndex.put(entry.getValue(), entries);
+        }
+        entries.add(entry);
+    }
+
+    private void unindexValue(ListMapEntry<V> entry) {
+        if (valueIndex == null) {
+            return;
+        }
+        List<ListMapEntry<V>> entries = valueIndex.get(entry.getValue());
+        if (entries == null) {
+            return;
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i) == entry) {
+                entries.remove(i);
+                break;
+            }
+        }
+        if (entries.isEmpty()) {
+            valueIndex.remove(entry.getValue());
+        }
+    }
+
+    private V setEntry(ListMapEntry<V> e, V value) {
+        V oldValue = e.getValue();
+        unindexValue(e);
+        e.setValue(value);
+        indexValue(e);
+        changeCount++;
+        return oldValue;
+    }
+
+    /**
+     * Get a counter that changes whenever the list of values does.
+     *
+     * <p>Subclasses can compare this with a saved value to know when
+     * something derived from the values needs rebuilding. Changing keys
+     * alone does not change it.
+     *
+     * @return change counter
+     * @since Blacken 1.2
+     */
+    protected int getChangeCount() {
+        return changeCount;
+    }
+
+    /**
+     * Note that the entries from <code>start</code> on have moved.
+     *
+     * <p>The stored indexes are only fixed when next needed, so a run of
+     * removals or insertions costs one pass.
+     *
+     * @param start first entry that may have moved
+     */
+    private void markStale(int start) {
+        if (start < staleFrom) {
+            staleFrom = start;
+        }
+    }
+
     /**
      * Update the index used by the label system to match what is in place.
-     * @param start starting index position
      */
-    private void reindex(int start) {
-        for (int i = start; i < this.valueList.size(); i++) {
-            this.valueList.get(i).setIndex(i);
+    private void refreshIndexes() {
+        if (staleFrom < this.valueList.size()) {
+            for (int i = staleFrom; i < this.valueList.size(); i++) {
+                this.valueList.get(i).setIndex(i);
+            }
         }
+        staleFrom = Integer.MAX_VALUE;
     }
     
     /**
      * Entirely remove an index entry
      * 
-     * <p>This first scans the key map and removes any entries referencing the
-     * index entry and then removes the index entry itself, updating any of the
-     * indexes which may be impacted by the change.
+     * <p>This removes every key referencing the index entry and then removes
+     * the index entry itself. The cost depends on the number of keys for the
+     * entry, not the number of keys in the map.
      *
      * @param index index to remove
      * @return null if not found; otherwise removed value
@@ -1330,22 +1440,22 @@ implements List<V>, Cloneable, Serializable {
         if (index < 0 || index >= valueList.size()) {
             return null;
         }
-        Set<Entry<K, ListMapEntry<V>>> entries = keyMap.entrySet();
-        Iterator<Entry<K, ListMapEntry<V>>> i = entries.iterator();
-        while(i.hasNext()) {
-            Entry<K, ListMapEntry<V>> entry = i.next();
-            if (entry == null) {
-                // should never happen
-                i.remove();
-            } else if (entry.getValue() == null) {
-                continue;
-            } else if (entry.getValue().getIndex() == index) {
-                i.remove();
-            }
-        }
         ListMapEntry<V> old = this.valueList.remove(index);
+        changeCount++;
         if (index != valueList.size()) {
-            reindex(index);
+            markStale(index);
+        }
+        if (old != null && old.keys != null) {
+            for (Object key : old.keys) {
+                // the key set may be stale if keySet() was changed directly
+                if (keyMap.get(key) == old) {
+                    keyMap.remove(key);
+                }
+            }
+            old.keys.clear();
+        }
+        if (old != null) {
+            unindexValue(old);
         }
         if (old == null) {
             return null;
@@ -1394,6 +1504,10 @@ implements List<V>, Cloneable, Serializable {
         if (old == null) {
             return -1;
         }
+        if (old.keys != null) {
+            old.keys.remove(key);
+        }
+        refreshIndexes();
         return old.getIndex();
     }
 
@@ -1426,6 +1540,7 @@ implements List<V>, Cloneable, Serializable {
         if (dir == 0) {
             return;
         }
+        refreshIndexes();
         if (startIdx < 0) {
             startIdx = 0;
         }
@@ -1449,6 +1564,7 @@ implements List<V>, Cloneable, Serializable {
         for (int i = startIdx; i < startIdx + changeCount; i++) {
             this.valueList.get(i).setIndex(i);
         }
+        this.changeCount++;
     }
 
     /**
@@ -1465,10 +1581,7 @@ implements List<V>, Cloneable, Serializable {
      */
     @Override
     public V set(int index, V value) {
-        ListMapEntry<V> e = this.valueList.get(index);
-        V oldValue = e.getValue();
-        e.setValue(value);
-        return oldValue;
+        return setEntry(this.valueList.get(index), value);
     }
     /**
      * Returns the number of values in our list
@@ -20,17 +20,30 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.RandomAccess;
-import java.util.regex.*;
 
 /**
  * An extended random class
  * 
+ * <p>By default this is a {@link java.util.Random}. Given a
+ * {@link RandomSource} it instead draws every number from that source,
+ * which is faster, splittable, and not synchronized. Such an instance
+ * must not be shared between threads; use {@link #split()} to give each
+ * thread (or each parallel task) its own reproducible stream.</p>
+ * 
  * @author yam655
  */
 public class Random extends java.util.Random {
     
     private static final long serialVersionUID = 3049695947451276476L;
     private static Random instance = null;
+    private static final ThreadLocal<Random> threadInstance = new ThreadLocal<Random>() {
+        @Override
+        protected Random initialValue() {
+            return new Random(new Xoroshiro128(SplitMix64.mix64(System.nanoTime()
+                    ^ Thread.currentThread().getId())));
+        }
+    };
+    private RandomSource source = null;
 
     public static Random getInstance() {
         if (instance == null) {
@@ -38,9 +51,20 @@ public class Random extends java.util.Random {
         }
         return instance;
     }
+
+    /**
+     * Get an unsynchronized instance for the current thread.
+     * 
+     * <p>This avoids the contention of sharing {@link #getInstance()}
+     * between threads. It is seeded from the clock, so it is not
+     * reproducible; use {@link #split()} when that matters.</p>
+     * 
+     * @return the current thread's instance
+     */
+    public static Random getThreadInstance() {
+        return threadInstance.get();
+    }
         
-    private final Pattern guessPattern = 
-        Pattern.compile("\\s*(\\d+)?\\s*(?:([:])\\s*(\\d+))??\\s*(?:([d:])\\s*(\\d+))?\\s*(?:([+-/*])\\s*(\\d+))?\\s*");
     /**
      * Create a new random number generator
      */
@@ -55,6 +79,161 @@ public class Random extends java.util.Random {
         super(arg0);
     }
 
+    /**
+     * Create a random number generator drawing from a source.
+     * 
+     * @param source source of random bits
+     */
+    public Random(RandomSource source) {
+        if (source == null) {
+            throw new NullPointerException("source cannot be null");
+        }
+        this.source = source;
+    }
+
+    /**
+     * Get the source this generator draws from.
+     * 
+     * @return the source; <code>null</code> for the classic generator
+     */
+    public RandomSource getSource() {
+        return source;
+    }
+
+    /**
+     * Create a new generator with a stream independent of this one.
+     * 
+     * <p>Splitting advances this generator, so the same splits in the same
+     * order from the same seed always give the same streams. A generator
+     * without a source hands out a {@link SplitMix64} source seeded from
+     * its own next number.</p>
+     * 
+     * @return new generator
+     */
+    public Random split() {
+        if (source == null) {
+            return new Random(new SplitMix64(nextLong()));
+        }
+        return new Random(source.split());
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        if (source == null) {
+            // also reached from the constructor of java.util.Random
+            super.setSeed(seed);
+        } else {
+            source.setSeed(seed);
+        }
+    }
+
+    @Override
+    protected int next(int bits) {
+        if (source == null) {
+            return super.next(bits);
+        }
+        return (int)(source.nextLong() >>> (64 - bits));
+    }
+
+    @Override
+    public int nextInt() {
+        if (source == null) {
+            return super.nextInt();
+        }
+        return (int)(source.nextLong() >>> 32);
+    }
+
+    /**
+     * Find the next integer from 0 (inclusive) to <code>bound</code>
+     * (exclusive).
+     * 
+     * <p>With a source this uses Lemire's multiply-and-shift method, which
+     * is unbiased and rarely needs a division.</p>
+     * 
+     * @param bound exclusive top
+     * @return n where 0 <= n < bound
+     */
+    @Override
+    public int nextInt(int bound) {
+        if (source == null) {
+            return super.nextInt(bound);
+        }
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound must be positive");
+        }
+        long m = (source.nextLong() >>> 32) * bound;
+        long low = m & 0xFFFFFFFFL;
+        if (low < bound) {
+            long threshold = (0x100000000L - bound) % bound;
+            while (low < threshold) {
+                m = (source.nextLong() >>> 32) * bound;
+                low = m & 0xFFFFFFFFL;
+            }
+        }
+        return (int)(m >>> 32);
+    }
+
+    @Override
+    public long nextLong() {
+        if (source == null) {
+            return super.nextLong();
+        }
+        return source.nextLong();
+    }
+
+    @Override
+    public boolean nextBoolean() {
+        if (source == null) {
+            return super.nextBoolean();
+        }
+        return source.nextLong() < 0;
+    }
+
+    @Override
+    public float nextFloat() {
+        if (source == null) {
+            return super.nextFloat();
+        }
+        return (source.nextLong() >>> 40) * 0x1.0p-24F;
+    }
+
+    @Override
+    public double nextDouble() {
+        if (source == null) {
+            return super.nextDouble();
+        }
+        return (source.nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Fill an array with integers from 0 (inclusive) to <code>bound</code>
+     * (exclusive).
+     * 
+     * @param out array to fill
+     * @param bound exclusive top
+     */
+    public void nextInts(int[] out, int bound) {
+        nextInts(out, 0, out.length, bound);
+    }
+
+    /**
+     * Fill part of an array with integers from 0 (inclusive) to
+     * <code>bound</code> (exclusive).
+     * 
+     * @param out array to fill
+     * @param offset first index to fill
+     * @param length number of entries to fill
+     * @param bound exclusive top
+     */
+    public void nextInts(int[] out, int offset, int length, int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound must be positive");
+        }
+        for (int i = offset; i < offset + length; i++) {
+            out[i] = nextInt(bound);
+        }
+    }
+
     /**
      * Find best <code>num</code> out of <code>outof</code> dice with 
      * <code>sides</code>.
@@ -71,19 +250,25 @@ public class Random extends java.util.Random {
             num = outof;
             outof = t;
         }
-        ArrayList<Integer> arr = new ArrayList<>(outof);
-        int ret = 0;
-        while(outof > 0) {
-            arr.add(dice(1, sides));
-            outof -= 1;
-        }
-        Collections.sort(arr);
-        while(num > 0) {
-            ret += arr.get(arr.size()-1);
-            num -= 1;
+        int best = 0;
+        for (int i = 0; i < outof; i++) {
+            int roll = nextInt(sides) + 1;
+            if (roll > best) {
+                best = roll;
+            }
         }
-        return ret;
+        return keepBest(num, best);
+    }
+
+    /*
+     * The bestOf methods have always added the single highest roll num
+     * times, and seeded games depend on the numbers they give, so only
+     * the highest roll needs keeping.
+     */
+    private static int keepBest(int num, int best) {
+        return num > 0 ? num * best : 0;
     }
+
     /**
      * Find the best <code>num</code> numbers in the <code>group</code>
      * 
@@ -121,18 +306,15 @@ public class Random extends java.util.Random {
             num = outof;
             outof = t;
         }
-        ArrayList<Integer> arr = new ArrayList<>(outof);
-        int ret = 0;
-        while(outof > 0) {
-            arr.add(guess(g));
-            outof -= 1;
-        }
-        Collections.sort(arr);
-        while(num > 0) {
-            ret += arr.get(arr.size()-1);
-            num -= 1;
+        DiceExpression expr = DiceExpression.compile(g);
+        int best = Integer.MIN_VALUE;
+        for (int i = 0; i < outof; i++) {
+            int roll = expr.roll(this);
+            if (roll > best) {
+                best = roll;
+            }
         }
-        return ret;
+        return keepBest(num, best);
     }
 
     public <T> T choice(T c0, T... c) {
@@ -206,6 +388,31 @@ public class Random extends java.util.Random {
         }
         return ret;
     }
+    /**
+     * Get all possible results from a set of dice rolls, without boxing.
+     * 
+     * @param num number of dice used
+     * @param sides number of sides on each die
+     * @return array of results
+     */
+    public int[] diceArray(int num, int sides) {
+        int[] ret = new int[num];
+        dice(ret, sides);
+        return ret;
+    }
+
+    /**
+     * Roll one die for every entry of an array.
+     * 
+     * @param out array to fill
+     * @param sides number of sides on each die
+     */
+    public void dice(int[] out, int sides) {
+        for (int c = 0; c < out.length; c++) {
+            out[c] = nextInt(sides) + 1;
+        }
+    }
+
     /**
      * Guess the way to turn the string to a randomized number.
      * 
@@ -226,79 +433,26 @@ public class Random extends java.util.Random {
      *   <li> "/8": divide value by 8
      * </ul></p>
      * 
+     * <p>The string is compiled in to a {@link DiceExpression} the first
+     * time it is seen, so repeated guesses skip the parsing.</p>
+     * 
      * @param str string to guess
      * @return random number
      */
     public int guess(String str) {
+        return DiceExpression.compile(str).roll(this);
+    }
 
-        Matcher mat = guessPattern.matcher(str);
-        int ret = 0;
-        if (mat.matches()) {
-            String num1 = mat.group(1); // 12
-            String wmode = mat.group(2); // :
-            String wnum = mat.group(3); // 23
-            String mode = mat.group(4); // db
-            String num2 = mat.group(5); // 34
-            String pmode = mat.group(6); // +-
-            String pnum = mat.group(7); // 45
-            int a, b, w, p;
-            a = num1 == null ? 0 : Integer.parseInt(num1);
-            b = num2 == null ? 0 : Integer.parseInt(num2);
-            w = wnum == null ? 0 : Integer.parseInt(wnum);
-            p = pnum == null ? 0 : Integer.parseInt(pnum);
-            if (num1 != null && num2 != null) {
-                if (wnum != null) {
-                    if (":".equals(wmode)) { 
-                        if ("d".equals(mode)) { 
-                            ret = bestOf(a, w, b);
-                        }
-                    }
-                } else if ("d".equals(mode)) { 
-                    ret = dice(a, b);
-                } else if (":".equals(mode)) { 
-                    ret = nextInt(a, b+1);
-                }
-            } else if (num1 != null) {
-                if (":".equals(wmode)) { 
-                    ret = nextInt(a, w+1);
-                } else {
-                    ret = a;
-                }
-            } else if (num2 != null) {
-                if (mode != null) {
-                    switch (mode) {
-                        case "d":
-                            ret = dice(1, b);
-                            break;
-                        case ":":
-                            ret = nextInt(0, b+1);
-                            break;
-                    }
-                }
-            } else {
-                if (":".equals(wmode)) { 
-                    ret = nextInt(0, w+1);
-                }
-            }
-            if (pmode != null) {
-                switch (pmode) {
-                    case "+":
-                        ret += p;
-                        break;
-                    case "-":
-                        ret -= p;
-                        break;
-                    case "*":
-                        ret *= p;
-                        break;
-                    case "/":
-                        ret /= p;
-                        break;
-                }
-            }
-        }
-        return ret;
+    /**
+     * Roll a guessed string once for every entry of an array.
+     * 
+     * @param str string to guess; see {@link #guess(String)}
+     * @param out array to fill
+     */
+    public void guess(String str, int[] out) {
+        DiceExpression.compile(str).roll(this, out);
     }
+
     /**
      * Find the next integer within a range.
      * 
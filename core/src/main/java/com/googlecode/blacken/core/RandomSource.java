@@ -0,0 +1,54 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.googlecode.blacken.core;
+
+import java.io.Serializable;
+
+/**
+ * A source of random bits that {@link Random} can run on instead of the
+ * linear congruential generator of {@link java.util.Random}.
+ *
+ * <p>Sources are not thread-safe. Rather than sharing one, give each thread
+ * its own with {@link #split()}.
+ *
+ * @author Steven Black
+ * @since Blacken 1.2
+ */
+public interface RandomSource extends Serializable {
+    /**
+     * Get the next 64 random bits.
+     *
+     * @return random bits
+     */
+    long nextLong();
+
+    /**
+     * Reset the state from a seed.
+     *
+     * @param seed seed
+     */
+    void setSeed(long seed);
+
+    /**
+     * Create a new source whose stream is independent of this one.
+     *
+     * <p>This advances this source, so the same sequence of splits from the
+     * same seed always gives the same streams.
+     *
+     * @return new source
+     */
+    RandomSource split();
+}
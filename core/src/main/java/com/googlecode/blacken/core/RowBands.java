@@ -0,0 +1,126 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.googlecode.blacken.core;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Split a range of rows in to bands and run them on a fork-join pool.
+ *
+ * <p>This is the common plumbing for the grid-wide kernels (fluid solving,
+ * noise generation and the like). The body must only write to the rows it
+ * is given.
+ *
+ * @author Steven Black
+ * @since Blacken 1.2
+ */
+public class RowBands {
+    /**
+     * Default number of rows below which a band is not split further.
+     */
+    public static final int DEFAULT_GRAIN = 16;
+    private static ForkJoinPool sharedPool = null;
+
+    /**
+     * Work done on a band of rows.
+     */
+    public interface Body {
+        /**
+         * Process a band of rows.
+         *
+         * @param from first row (inclusive)
+         * @param to last row (exclusive)
+         */
+        void rows(int from, int to);
+    }
+
+    private RowBands() {
+        // static only
+    }
+
+    /**
+     * Get the pool shared by Blacken's parallel kernels.
+     *
+     * <p>It is created on first use with one thread per processor.
+     *
+     * @return shared pool
+     */
+    public static synchronized ForkJoinPool getSharedPool() {
+        if (sharedPool == null) {
+            sharedPool = new ForkJoinPool();
+        }
+        return sharedPool;
+    }
+
+    /**
+     * Run a body over a range of rows using the default grain.
+     *
+     * @param pool pool to use; <code>null</code> to stay on this thread
+     * @param from first row (inclusive)
+     * @param to last row (exclusive)
+     * @param body work to do
+     */
+    public static void run(ForkJoinPool pool, int from, int to, Body body) {
+        run(pool, from, to, DEFAULT_GRAIN, body);
+    }
+
+    /**
+     * Run a body over a range of rows.
+     *
+     * @param pool pool to use; <code>null</code> to stay on this thread
+     * @param from first row (inclusive)
+     * @param to last row (exclusive)
+     * @param grain smallest band worth handing to another thread
+     * @param body work to do
+     */
+    public static void run(ForkJoinPool pool, int from, int to, int grain, Body body) {
+        if (to <= from) {
+            return;
+        }
+        if (pool == null || to - from <= grain) {
+            body.rows(from, to);
+            return;
+        }
+        pool.invoke(new Band(body, from, to, Math.max(1, grain)));
+    }
+
+    private static class Band extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Body body;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        Band(Body body, int from, int to, int grain) {
+            this.body = body;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                body.rows(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Band(body, from, mid, grain), new Band(body, mid, to, grain));
+        }
+    }
+}
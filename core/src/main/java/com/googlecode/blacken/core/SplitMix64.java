@@ -0,0 +1,88 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.googlecode.blacken.core;
+
+/**
+ * The SplitMix64 generator (Steele, Lea and Flood, "Fast Splittable
+ * Pseudorandom Number Generators").
+ *
+ * <p>This is the same generator as Java 8's
+ * <code>java.util.SplittableRandom</code> and produces the same numbers for
+ * the same seed. Each split gets its own odd increment, so streams from
+ * different splits do not overlap in practice.
+ *
+ * @author Steven Black
+ * @since Blacken 1.2
+ */
+public class SplitMix64 implements RandomSource {
+    private static final long serialVersionUID = 1L;
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private long seed;
+    private final long gamma;
+
+    /**
+     * Create a generator from a seed.
+     *
+     * @param seed seed
+     */
+    public SplitMix64(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    private SplitMix64(long seed, long gamma) {
+        this.seed = seed;
+        this.gamma = gamma;
+    }
+
+    /**
+     * The finalizer used for the output; also a good 64-bit hash.
+     *
+     * @param z value to mix
+     * @return mixed value
+     */
+    public static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        // avoid increments with too few bit transitions
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+
+    @Override
+    public long nextLong() {
+        seed += gamma;
+        return mix64(seed);
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    @Override
+    public SplitMix64 split() {
+        long s = nextLong();
+        seed += gamma;
+        return new SplitMix64(s, mixGamma(seed));
+    }
+}
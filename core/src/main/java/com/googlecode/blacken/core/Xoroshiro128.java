@@ -0,0 +1,104 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.googlecode.blacken.core;
+
+/**
+ * The xoroshiro128++ generator (Blackman and Vigna).
+ *
+ * <p>It has 128 bits of state and a period of 2^128 - 1. Seeds are spread
+ * over the state with {@link SplitMix64}. A split hands the current state
+ * to the new source and jumps this one 2^64 steps ahead, so up to 2^64
+ * splits never overlap.
+ *
+ * @author Steven Black
+ * @since Blacken 1.2
+ */
+public class Xoroshiro128 implements RandomSource {
+    private static final long serialVersionUID = 1L;
+    private static final long[] JUMP = {0x2bd7a6a6e99c2ddcL, 0x0992ccaf6a6fca05L};
+    private long s0;
+    private long s1;
+
+    /**
+     * Create a generator from a seed.
+     *
+     * @param seed seed
+     */
+    public Xoroshiro128(long seed) {
+        setSeed(seed);
+    }
+
+    /**
+     * Create a generator from its raw state.
+     *
+     * @param s0 first half of the state
+     * @param s1 second half of the state
+     */
+    public Xoroshiro128(long s0, long s1) {
+        if (s0 == 0 && s1 == 0) {
+            throw new IllegalArgumentException("State cannot be all zero");
+        }
+        this.s0 = s0;
+        this.s1 = s1;
+    }
+
+    @Override
+    public long nextLong() {
+        long a = s0;
+        long b = s1;
+        long ret = Long.rotateLeft(a + b, 17) + a;
+        b ^= a;
+        s0 = Long.rotateLeft(a, 49) ^ b ^ (b << 21);
+        s1 = Long.rotateLeft(b, 28);
+        return ret;
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        SplitMix64 mix = new SplitMix64(seed);
+        s0 = mix.nextLong();
+        s1 = mix.nextLong();
+        if (s0 == 0 && s1 == 0) {
+            s1 = 1;
+        }
+    }
+
+    /**
+     * Advance 2^64 steps.
+     */
+    public void jump() {
+        long a = 0;
+        long b = 0;
+        for (long j : JUMP) {
+            for (int bit = 0; bit < 64; bit++) {
+                if ((j & (1L << bit)) != 0) {
+                    a ^= s0;
+                    b ^= s1;
+                }
+                nextLong();
+            }
+        }
+        s0 = a;
+        s1 = b;
+    }
+
+    @Override
+    public Xoroshiro128 split() {
+        Xoroshiro128 ret = new Xoroshiro128(s0, s1);
+        jump();
+        return ret;
+    }
+}
@@ -29,7 +29,7 @@ import com.googlecode.blacken.grid.RegionIterator;
 import com.googlecode.blacken.grid.Regionlike;
 import com.googlecode.blacken.terminal.TerminalCellLike;
 import com.googlecode.blacken.terminal.TerminalViewInterface;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 import org.slf4j.Logger;
@@ -42,6 +42,7 @@ import org.slf4j.LoggerFactory;
  */
 public class DungeonUtils {
     static private final Logger LOGGER = LoggerFactory.getLogger(DungeonUtils.class);
+    static private volatile TileRoles<?> lastRoles = null;
     /**
      * Move a block of cells between grids.
      *
@@ -109,23 +110,117 @@ public class DungeonUtils {
     static private Random rng;
 
     public static <T> boolean assignContents(Grid<TIMCell> grid, Grid<T> flatgrid, Map<String, T> config, Room room) {
+        FreeCellIndex<T> free = new FreeCellIndex<>(flatgrid, room, config.get("room:floor"));
+        return assignContents(grid, free, config, room);
+    }
+
+    /**
+     * Assign the contents of a room to random free cells.
+     *
+     * <p>The same <code>free</code> index can be reused between calls for the
+     * same room, so populating a crowded room stays linear.
+     *
+     * @param <T> flat grid cell type
+     * @param grid grid receiving the contents
+     * @param free free-cell index of the room over the flat grid
+     * @param config dungeon config
+     * @param room room holding the contents
+     * @return false
+     */
+    public static <T> boolean assignContents(Grid<TIMCell> grid, FreeCellIndex<T> free, Map<String, T> config, Room room) {
+        T other = config.get("thing:other");
         for (Terrainlike t : room.getContainer("terrain", Terrainlike.class)) {
-            Positionable pos = placeIt(flatgrid, config.get("room:floor"), config.get("thing:other"), room);
+            Positionable pos = placeIt(free, other);
             grid.get(pos).setTerrain(t);
         }
         for (Itemlike i : room.getContainer("item", Itemlike.class)) {
-            Positionable pos = placeIt(flatgrid, config.get("room:floor"), config.get("thing:other"), room);
+            Positionable pos = placeIt(free, other);
             grid.get(pos).setItem(i);
         }
         for (Monsterlike m : room.getContainer("monster", Monsterlike.class)) {
-            Positionable pos = placeIt(flatgrid, config.get("room:floor"), config.get("thing:other"), room);
+            Positionable pos = placeIt(free, other);
             grid.get(pos).setMonster(m);
         }
         return false;
     }
 
+    /**
+     * Assign the contents of a room to random free cells, keeping items and
+     * monsters in entity stores.
+     *
+     * <p>Terrain still goes straight to the grid. Use
+     * {@link EntityStore#syncItems(EntityStore, Grid)} and
+     * {@link EntityStore#syncMonsters(EntityStore, Grid)} to show the
+     * stores' contents in the grid.
+     *
+     * @param <T> flat grid cell type
+     * @param grid grid receiving the terrain
+     * @param items store receiving the items
+     * @param monsters store receiving the monsters
+     * @param free free-cell index of the room over the flat grid
+     * @param config dungeon config
+     * @param room room holding the contents
+     * @return false
+     */
+    public static <T> boolean assignContents(Grid<TIMCell> grid,
+            EntityStore<Itemlike> items, EntityStore<Monsterlike> monsters,
+            FreeCellIndex<T> free, Map<String, T> config, Room room) {
+        T other = config.get("thing:other");
+        for (Terrainlike t : room.getContainer("terrain", Terrainlike.class)) {
+            Positionable pos = placeIt(free, other);
+            grid.get(pos).setTerrain(t);
+        }
+        for (Itemlike i : room.getContainer("item", Itemlike.class)) {
+            Positionable pos = placeIt(free, other);
+            items.add(i, pos.getY(), pos.getX());
+        }
+        for (Monsterlike m : room.getContainer("monster", Monsterlike.class)) {
+            Positionable pos = placeIt(free, other);
+            monsters.add(m, pos.getY(), pos.getX());
+        }
+        return false;
+    }
+
     public static <T> boolean digRoom(Grid<T> grid, Map<String, T> config, Regionlike region) {
+        return digRoom(grid, compiled(config), region);
+    }
+
+    /**
+     * Get the role table for a config map.
+     *
+     * <p>The last table is kept and reused for as long as the config still
+     * holds the same tiles, so the Map versions of {@link #digRoom} and
+     * {@link #addDoor} only compile when the config changes.
+     *
+     * @param <T> tile type
+     * @param config cleaned config map
+     * @return role table for the config
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> TileRoles<T> compiled(Map<String, T> config) {
+        TileRoles<?> roles = lastRoles;
+        if (roles == null || !roles.matches(config)) {
+            roles = SimpleDungeonConfig.compile(config);
+            lastRoles = roles;
+        }
+        return (TileRoles<T>) roles;
+    }
+
+    /**
+     * Dig a room using a precompiled config.
+     *
+     * <p>When digging many rooms, compile the config once with
+     * {@link SimpleDungeonConfig#compile(Map)} and reuse it.
+     *
+     * @param <T> tile type
+     * @param grid grid to dig in
+     * @param roles compiled config
+     * @param region room to dig
+     * @return true if the room intersected existing rooms or halls
+     */
+    public static <T> boolean digRoom(Grid<T> grid, TileRoles<T> roles, Regionlike region) {
         boolean intr = false;
+        T roomFloor = roles.get(TileRoles.ROOM_FLOOR);
         int[] coords = {0,0,0,0};
         RegionIterator itr = region.getInsideIterator();
         int patIdx = 0;
@@ -142,17 +237,15 @@ public class DungeonUtils {
                 }
                 for(int y1 = coords[0]; y1 <= coords[2]; y1++) {
                     for (int x1 = coords[1]; x1 <= coords[3]; x1++) {
-                        T cell = grid.get(y1, x1);
-                        if ((cell == config.get("diggable") || (cell != null && cell.equals(config.get("diggable")))) ||
-                                (cell == config.get("hall:wall") || (cell != null && cell.equals(config.get("hall:wall"))))) {
+                        int mask = roles.getMask(grid.get(y1, x1));
+                        if ((mask & TileRoles.MASK_CARVABLE) != 0) {
                             if (state) {
-                                grid.setCopy(y1, x1, config.get("room:floor"));
+                                grid.setCopy(y1, x1, roomFloor);
                             } else {
-                                grid.setCopy(y1, x1, config.get("room:wall"));
+                                grid.setCopy(y1, x1, roles.get(TileRoles.ROOM_WALL));
                             }
-                        } else if ((cell == config.get("room:wall") || (cell != null && cell.equals(config.get("room:wall")))) ||
-                                (cell == config.get("hall:floor") || (cell != null && cell.equals(config.get("hall:floor"))))) {
-                            grid.setCopy(y1, x1, config.get("room:floor"));
+                        } else if ((mask & TileRoles.MASK_ABSORBED) != 0) {
+                            grid.setCopy(y1, x1, roomFloor);
                             intr = true;
                         }
                     }
@@ -184,22 +277,22 @@ public class DungeonUtils {
             //LOGGER.debug("Coords: {}, isHoriz?: {}", coords, isHorizontal);
             if (coords[2] == coords[0] && coords[3] == coords[1]) {
                 side = -1;
-                roomWall = config.get("room:wall");
+                roomWall = roles.get(TileRoles.ROOM_WALL);
             } else if (coords[2] == coords[0]) {
                 if (coords[0] == region.getY()) {
                     side = 0;
-                    roomWall = config.get("room:wall:top");
+                    roomWall = roles.get(TileRoles.ROOM_WALL_TOP);
                 } else {
-                    roomWall = config.get("room:wall:bottom");
+                    roomWall = roles.get(TileRoles.ROOM_WALL_BOTTOM);
                     side = 2;
                 }
             } else {
                 if (coords[1] == region.getX()) {
                     side = 1;
-                    roomWall = config.get("room:wall:left");
+                    roomWall = roles.get(TileRoles.ROOM_WALL_LEFT);
                 } else {
                     side = 3;
-                    roomWall = config.get("room:wall:right");
+                    roomWall = roles.get(TileRoles.ROOM_WALL_RIGHT);
                 }
             }
             boolean firstOrLast = true;
@@ -210,62 +303,27 @@ public class DungeonUtils {
                 //if (!isHorizontal) {
                 //    LOGGER.debug("Position: {},{}", y0, x0);
                 //}
-                T cell = grid.get(y0, x0);
-                if ((cell == config.get("diggable") || (cell != null && cell.equals(config.get("diggable")))) ||
-                        (cell == config.get("hall:wall") || (cell != null && cell.equals(config.get("hall:wall"))))) {
-                    /*
-                    if (count == 0) {
-                        // cell = config.get("diggable"); // still set
-                    } else if (isHorizontal) {
-                        cell = grid.get(y0, x0 + direction);
-                    } else {
-                        cell = grid.get(y0 + direction, x0);
-                    }
-                    if ((cell == config.get("hall:floor") || (cell != null && cell.equals(config.get("hall:floor")))) ||
-                            (cell == config.get("room:floor") || (cell != null && cell.equals(config.get("room:floor")))) ||
-                            (cell == config.get("hall:door") || (cell != null && cell.equals(config.get("hall:door")))) ||
-                            (cell == config.get("room:door") || (cell != null && cell.equals(config.get("room:door"))))) {
-                        if (lastFloor || lastDoor) {
-                            grid.setCopy(y0, x0, config.get("room:floor"));
-                            if (lastDoor) {
-                                Positionable lastPos;
-                                if (isHorizontal) {
-                                    lastPos = new Point(y0, x0 + (direction*-1));
-                                } else {
-                                    lastPos = new Point(y0 + (direction*-1), x0);
-                                }
-                                grid.setCopy(lastPos, config.get("room:floor"));
-                                lastFloor = true;
-                                lastDoor = false;
-                            }
+                int mask = roles.getMask(grid.get(y0, x0));
+                if ((mask & TileRoles.MASK_CARVABLE) != 0) {
+                    // LOGGER.debug("Position: {},{}", y0, x0);
+                    if (side == 0 && firstOrLast) {
+                        if (count == 0) {
+                            grid.setCopy(y0, x0, roles.get(TileRoles.ROOM_WALL_TOP_RIGHT));
                         } else {
-                            grid.setCopy(y0, x0, config.get("room:door"));
-                            lastDoor = true;
+                            grid.setCopy(y0, x0, roles.get(TileRoles.ROOM_WALL_TOP_LEFT));
                         }
-                        grid.setCopy(y0, x0, config.get("room:floor"));
-                        intr = true;
-                    } else {*/
-                        // LOGGER.debug("Position: {},{}", y0, x0);
-                        if (side == 0 && firstOrLast) {
-                            if (count == 0) {
-                                grid.setCopy(y0, x0, config.get("room:wall:top-right"));
-                            } else {
-                                grid.setCopy(y0, x0, config.get("room:wall:top-left"));
-                            }
-                        } else if (side == 2 && firstOrLast) {
-                            if (count == 0) {
-                                grid.setCopy(y0, x0, config.get("room:wall:bottom-right"));
-                            } else {
-                                grid.setCopy(y0, x0, config.get("room:wall:bottom-left"));
-                            }
+                    } else if (side == 2 && firstOrLast) {
+                        if (count == 0) {
+                            grid.setCopy(y0, x0, roles.get(TileRoles.ROOM_WALL_BOTTOM_RIGHT));
                         } else {
-                            grid.setCopy(y0, x0, roomWall);
+                            grid.setCopy(y0, x0, roles.get(TileRoles.ROOM_WALL_BOTTOM_LEFT));
                         }
-                    //}
-                } else if ((cell == config.get("hall:floor") || (cell != null && cell.equals(config.get("hall:floor")))) ||
-                        (cell == config.get("room:floor") || (cell != null && cell.equals(config.get("room:floor"))))) {
+                    } else {
+                        grid.setCopy(y0, x0, roomWall);
+                    }
+                } else if ((mask & TileRoles.MASK_FLOORS) != 0) {
                     if (lastFloor || lastDoor) {
-                        grid.setCopy(y0, x0, config.get("room:floor"));
+                        grid.setCopy(y0, x0, roomFloor);
                         if (lastDoor) {
                             Positionable lastPos;
                             if (isHorizontal) {
@@ -273,12 +331,12 @@ public class DungeonUtils {
                             } else {
                                 lastPos = new Point(y0 + (direction*-1), x0);
                             }
-                            grid.setCopy(lastPos, config.get("room:floor"));
+                            grid.setCopy(lastPos, roomFloor);
                             lastFloor = true;
                             lastDoor = false;
                         }
                     } else {
-                        grid.setCopy(y0, x0, config.get("room:door"));
+                        grid.setCopy(y0, x0, roles.get(TileRoles.ROOM_DOOR));
                         lastDoor = true;
                     }
                     intr = true;
@@ -381,6 +439,23 @@ public class DungeonUtils {
         return placeIt(grid, empty, what, room);
     }
 
+    /**
+     * Place a thing using a free-cell index and throw an exception if there's
+     * not space for it.
+     *
+     * @param room room the thing belongs to
+     * @param free free-cell index for the room
+     * @param what new cell value
+     * @return location used
+     */
+    static public <T> Positionable placeThing(Room room, FreeCellIndex<T> free, T what) {
+        if (!room.isDug) {
+            throw new RuntimeException("room must be dug first");
+        }
+        room.assignToContainer(what);
+        return placeIt(free, what);
+    }
+
     public static Random getRandom() {
         return rng;
     }
@@ -397,8 +472,7 @@ public class DungeonUtils {
      * @return location used
      */
     static private <T> Positionable placeIt(Grid<T> grid, T empty, T what, Regionlike room) {
-        Set<T> empties = new HashSet<>(1);
-        empties.add(empty);
+        Set<T> empties = Collections.singleton(empty);
 
         Positionable placement = findLocation(grid, empties, room);
         if (placement == null) {
@@ -412,18 +486,31 @@ public class DungeonUtils {
         return placement;
     }
 
+    static private <T> Positionable placeIt(FreeCellIndex<T> free, T what) {
+        Positionable placement = free.place(rng, what);
+        if (placement == null) {
+            throw new RuntimeException(
+                    String.format("No free cell left to place %s", what));
+        }
+        return placement;
+    }
 
     public <T> boolean addDoor(Room room, Map<String, T> config,
             Positionable door, Grid<T> grid) {
+        return addDoor(room, compiled(config), door, grid);
+    }
+
+    public <T> boolean addDoor(Room room, TileRoles<T> roles,
+            Positionable door, Grid<T> grid) {
         if (!room.addDoor(door)) {
             return false;
         }
-        Set<T> walls = SimpleDungeonConfig.findRoomWalls(config);
         if (room.isDug()) {
             T spot = grid.get(door);
-            if (walls.contains(spot)) {
+            // a null spot fills every unset role; it is never a wall
+            if (spot != null && roles.is(spot, TileRoles.MASK_ROOM_WALLS)) {
                 grid.set(door, spot);
-            } else if (!spot.equals(config.get("room:door"))) {
+            } else if (spot == null || !spot.equals(roles.get(TileRoles.ROOM_DOOR))) {
                 room.removeDoor(door);
                 return false;
             }
@@ -0,0 +1,148 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.googlecode.blacken.dungeon;
+
+import java.util.Arrays;
+
+/**
+ * A frozen copy of the positions in an {@link EntityStore}.
+ *
+ * <p>Once taken, a snapshot does not change when the store does, so any
+ * number of threads can read it while the store is being updated. It can
+ * be refreshed to reuse its arrays on the next turn.</p>
+ *
+ * @param <E> entity type
+ * @author Steven Black
+ * @since Blacken 1.2
+ */
+public class EntitySnapshot<E> {
+    private final int top;
+    private final int left;
+    private final int height;
+    private final int width;
+    private final int[] occupant;
+    private Object[] entities = new Object[0];
+    private int[] handles = new int[0];
+    private int[] ys = new int[0];
+    private int[] xs = new int[0];
+    private int size = 0;
+
+    /**
+     * Take a snapshot of a store.
+     *
+     * @param store store to copy
+     */
+    public EntitySnapshot(EntityStore<? extends E> store) {
+        top = store.getStartY();
+        left = store.getStartX();
+        height = store.getHeight();
+        width = store.getWidth();
+        occupant = new int[height * width];
+        Arrays.fill(occupant, -1);
+        refresh(store);
+    }
+
+    /**
+     * Copy a store's current positions, replacing the old ones.
+     *
+     * @param store store of the same size as the original
+     */
+    public void refresh(EntityStore<? extends E> store) {
+        if (store.getHeight() != height || store.getWidth() != width
+                || store.getStartY() != top || store.getStartX() != left) {
+            throw new IllegalArgumentException("Store does not match the snapshot");
+        }
+        for (int i = 0; i < size; i++) {
+            occupant[(ys[i] - top) * width + xs[i] - left] = -1;
+        }
+        size = store.size();
+        if (entities.length < size) {
+            entities = new Object[size];
+            handles = new int[size];
+            ys = new int[size];
+            xs = new int[size];
+        } else {
+            Arrays.fill(entities, size, entities.length, null);
+        }
+        for (int i = 0; i < size; i++) {
+            entities[i] = store.entityAt(i);
+            handles[i] = store.handleAt(i);
+            int y = store.yAt(i);
+            int x = store.xAt(i);
+            ys[i] = y;
+            xs[i] = x;
+            occupant[(y - top) * width + x - left] = i;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E entityAt(int index) {
+        return (E)entities[index];
+    }
+
+    public int handleAt(int index) {
+        return handles[index];
+    }
+
+    public int yAt(int index) {
+        return ys[index];
+    }
+
+    public int xAt(int index) {
+        return xs[index];
+    }
+
+    /**
+     * Check whether a position is inside the snapshot.
+     *
+     * @param y y coordinate
+     * @param x x coordinate
+     * @return true if inside
+     */
+    public boolean contains(int y, int x) {
+        return y >= top && x >= left && y < top + height && x < left + width;
+    }
+
+    /**
+     * Find an entity in a cell.
+     *
+     * @param y y coordinate
+     * @param x x coordinate
+     * @return snapshot index, or -1 if the cell is empty or outside
+     */
+    public int indexAt(int y, int x) {
+        if (!contains(y, x)) {
+            return -1;
+        }
+        return occupant[(y - top) * width + x - left];
+    }
+
+    /**
+     * Find an entity in a cell.
+     *
+     * @param y y coordinate
+     * @param x x coordinate
+     * @return entity, or <code>null</code> if the cell is empty or outside
+     */
+    public E getAt(int y, int x) {
+        int i = indexAt(y, x);
+        return i == -1 ? null : entityAt(i);
+    }
+}
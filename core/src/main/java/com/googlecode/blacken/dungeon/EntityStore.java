@@ -0,0 +1,517 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.googlecode.blacken.dungeon;
+
+import com.googlecode.blacken.grid.Grid;
+import com.googlecode.blacken.grid.Positionable;
+import com.googlecode.blacken.grid.Regionlike;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Entities of one type (all monsters, or all items) kept as parallel
+ * component arrays, with an index from cell to entities.
+ *
+ * <p>Each entity gets a handle when added. The handle stays valid until the
+ * entity is removed and may then be reused. The components (position,
+ * flags and a timer) live in dense arrays, so walking every entity with
+ * {@link #size()} and the <code>...At(index)</code> methods touches no
+ * grid cells at all. Removing an entity moves the last entity in to its
+ * slot, so dense indexes are not stable across removals.</p>
+ *
+ * <p>Any number of entities can share a cell. Adding, removing and moving
+ * are constant time: each cell heads a linked list threaded through the
+ * handles.</p>
+ *
+ * <p>Entities that are {@link Positionable} have their position set when
+ * they are added or moved, so the entity and the store agree.</p>
+ *
+ * @param <E> entity type
+ * @author Steven Black
+ * @since Blacken 1.2
+ */
+public class EntityStore<E> {
+    private static final int NONE = -1;
+    private final int top;
+    private final int left;
+    private final int height;
+    private final int width;
+    // dense components, indexed by dense slot
+    private Object[] entities;
+    private int[] ys;
+    private int[] xs;
+    private long[] flags;
+    private int[] timers;
+    private int[] handleOf;
+    private int size = 0;
+    // per handle
+    private int[] slotOf;
+    private int[] nextInCell;
+    private int[] prevInCell;
+    private int freeHandle = NONE;
+    private int handleCount = 0;
+    // per cell
+    private final int[] cellHead;
+    private final boolean[] dirty;
+    private int[] dirtyCells = new int[16];
+    private int dirtyCount = 0;
+    private final Map<String, Integer> flagBits = new HashMap<>();
+
+    /**
+     * Create a store covering a region.
+     *
+     * @param bounds region entities may occupy
+     */
+    public EntityStore(Regionlike bounds) {
+        this(bounds.getHeight(), bounds.getWidth(), bounds.getY(), bounds.getX());
+    }
+
+    /**
+     * Create a store covering a rectangle.
+     *
+     * @param height height of the area
+     * @param width width of the area
+     * @param y top coordinate
+     * @param x left coordinate
+     */
+    public EntityStore(int height, int width, int y, int x) {
+        this.height = height;
+        this.width = width;
+        this.top = y;
+        this.left = x;
+        cellHead = new int[height * width];
+        Arrays.fill(cellHead, NONE);
+        dirty = new boolean[height * width];
+        int capacity = 16;
+        entities = new Object[capacity];
+        ys = new int[capacity];
+        xs = new int[capacity];
+        flags = new long[capacity];
+        timers = new int[capacity];
+        handleOf = new int[capacity];
+        slotOf = new int[capacity];
+        nextInCell = new int[capacity];
+        prevInCell = new int[capacity];
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getStartY() {
+        return top;
+    }
+
+    public int getStartX() {
+        return left;
+    }
+
+    /**
+     * Get the number of entities.
+     *
+     * @return entity count
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private int cell(int y, int x) {
+        int yy = y - top;
+        int xx = x - left;
+        if (yy < 0 || xx < 0 || yy >= height || xx >= width) {
+            throw new IndexOutOfBoundsException(
+                    String.format("Position %d,%d is outside the store", y, x));
+        }
+        return yy * width + xx;
+    }
+
+    private int slot(int handle) {
+        if (handle < 0 || handle >= handleCount || slotOf[handle] == NONE) {
+            throw new IllegalArgumentException("No such entity: " + handle);
+        }
+        return slotOf[handle];
+    }
+
+    private void grow() {
+        int capacity = entities.length * 2;
+        entities = Arrays.copyOf(entities, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        xs = Arrays.copyOf(xs, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        timers = Arrays.copyOf(timers, capacity);
+        handleOf = Arrays.copyOf(handleOf, capacity);
+        slotOf = Arrays.copyOf(slotOf, capacity);
+        nextInCell = Arrays.copyOf(nextInCell, capacity);
+        prevInCell = Arrays.copyOf(prevInCell, capacity);
+    }
+
+    private void markDirty(int cell) {
+        if (!dirty[cell]) {
+            dirty[cell] = true;
+            if (dirtyCount == dirtyCells.length) {
+                dirtyCells = Arrays.copyOf(dirtyCells, dirtyCount * 2);
+            }
+            dirtyCells[dirtyCount++] = cell;
+        }
+    }
+
+    private void link(int handle, int cell) {
+        int head = cellHead[cell];
+        prevInCell[handle] = NONE;
+        nextInCell[handle] = head;
+        if (head != NONE) {
+            prevInCell[head] = handle;
+        }
+        cellHead[cell] = handle;
+        markDirty(cell);
+    }
+
+    private void unlink(int handle, int cell) {
+        int prev = prevInCell[handle];
+        int next = nextInCell[handle];
+        if (prev == NONE) {
+            cellHead[cell] = next;
+        } else {
+            nextInCell[prev] = next;
+        }
+        if (next != NONE) {
+            prevInCell[next] = prev;
+        }
+        markDirty(cell);
+    }
+
+    /**
+     * Add an entity.
+     *
+     * @param entity entity to add
+     * @param y y coordinate
+     * @param x x coordinate
+     * @return handle for the entity
+     */
+    public int add(E entity, int y, int x) {
+        int cell = cell(y, x);
+        int handle;
+        if (freeHandle != NONE) {
+            handle = freeHandle;
+            freeHandle = nextInCell[handle];
+        } else {
+            if (handleCount == slotOf.length) {
+                grow();
+            }
+            handle = handleCount++;
+        }
+        if (size == entities.length) {
+            grow();
+        }
+        int s = size++;
+        entities[s] = entity;
+        ys[s] = y;
+        xs[s] = x;
+        flags[s] = 0L;
+        timers[s] = 0;
+        handleOf[s] = handle;
+        slotOf[handle] = s;
+        link(handle, cell);
+        if (entity instanceof Positionable) {
+            ((Positionable)entity).setPosition(y, x);
+        }
+        return handle;
+    }
+
+    /**
+     * Remove an entity. Its handle may be reused.
+     *
+     * @param handle entity handle
+     */
+    public void remove(int handle) {
+        int s = slot(handle);
+        unlink(handle, cell(ys[s], xs[s]));
+        int last = --size;
+        if (s != last) {
+            entities[s] = entities[last];
+            ys[s] = ys[last];
+            xs[s] = xs[last];
+            flags[s] = flags[last];
+            timers[s] = timers[last];
+            handleOf[s] = handleOf[last];
+            slotOf[handleOf[s]] = s;
+        }
+        entities[last] = null;
+        slotOf[handle] = NONE;
+        nextInCell[handle] = freeHandle;
+        freeHandle = handle;
+    }
+
+    /**
+     * Move an entity.
+     *
+     * @param handle entity handle
+     * @param y new y coordinate
+     * @param x new x coordinate
+     */
+    public void move(int handle, int y, int x) {
+        int s = slot(handle);
+        int to = cell(y, x);
+        unlink(handle, cell(ys[s], xs[s]));
+        ys[s] = y;
+        xs[s] = x;
+        link(handle, to);
+        Object entity = entities[s];
+        if (entity instanceof Positionable) {
+            ((Positionable)entity).setPosition(y, x);
+        }
+    }
+
+    public boolean contains(int handle) {
+        return handle >= 0 && handle < handleCount && slotOf[handle] != NONE;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(int handle) {
+        return (E)entities[slot(handle)];
+    }
+
+    public int getY(int handle) {
+        return ys[slot(handle)];
+    }
+
+    public int getX(int handle) {
+        return xs[slot(handle)];
+    }
+
+    /**
+     * Get the bit used for a named flag, assigning one if needed.
+     *
+     * @param name flag name
+     * @return bit number (0 to 63)
+     */
+    public int getFlagBit(String name) {
+        Integer bit = flagBits.get(name);
+        if (bit == null) {
+            if (flagBits.size() == 64) {
+                throw new IllegalStateException("Too many flags");
+            }
+            bit = flagBits.size();
+            flagBits.put(name, bit);
+        }
+        return bit;
+    }
+
+    public long getFlags(int handle) {
+        return flags[slot(handle)];
+    }
+
+    public boolean hasFlag(int handle, int bit) {
+        return (flags[slot(handle)] & (1L << bit)) != 0;
+    }
+
+    public void setFlag(int handle, int bit, boolean state) {
+        int s = slot(handle);
+        if (state) {
+            flags[s] |= 1L << bit;
+        } else {
+            flags[s] &= ~(1L << bit);
+        }
+    }
+
+    public int getTimer(int handle) {
+        return timers[slot(handle)];
+    }
+
+    public void setTimer(int handle, int value) {
+        timers[slot(handle)] = value;
+    }
+
+    /**
+     * Count every running timer down in one pass.
+     *
+     * <p>Timers above zero are reduced by <code>amount</code>, stopping at
+     * zero.
+     *
+     * @param amount amount to count down
+     * @return number of timers that reached zero
+     */
+    public int advanceTimers(int amount) {
+        int expired = 0;
+        for (int s = 0; s < size; s++) {
+            int t = timers[s];
+            if (t > 0) {
+                t = t > amount ? t - amount : 0;
+                timers[s] = t;
+                if (t == 0) {
+                    expired++;
+                }
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Get the handle in a dense slot.
+     *
+     * @param index slot, from 0 to <code>size() - 1</code>
+     * @return handle
+     */
+    public int handleAt(int index) {
+        return handleOf[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    public E entityAt(int index) {
+        return (E)entities[index];
+    }
+
+    public int yAt(int index) {
+        return ys[index];
+    }
+
+    public int xAt(int index) {
+        return xs[index];
+    }
+
+    public long flagsAt(int index) {
+        return flags[index];
+    }
+
+    public int timerAt(int index) {
+        return timers[index];
+    }
+
+    /**
+     * Get the most recently placed entity in a cell.
+     *
+     * @param y y coordinate
+     * @param x x coordinate
+     * @return handle, or -1 if the cell is empty
+     */
+    public int firstAt(int y, int x) {
+        return cellHead[cell(y, x)];
+    }
+
+    /**
+     * Get the next entity sharing a cell.
+     *
+     * @param handle entity handle
+     * @return handle, or -1 if there are no more
+     */
+    public int nextInCell(int handle) {
+        slot(handle);
+        return nextInCell[handle];
+    }
+
+    /**
+     * Get the most recently placed entity in a cell.
+     *
+     * @param y y coordinate
+     * @param x x coordinate
+     * @return entity, or <code>null</code> if the cell is empty
+     */
+    public E getFirstAt(int y, int x) {
+        int handle = cellHead[cell(y, x)];
+        return handle == NONE ? null : get(handle);
+    }
+
+    public int countAt(int y, int x) {
+        int ret = 0;
+        for (int h = cellHead[cell(y, x)]; h != NONE; h = nextInCell[h]) {
+            ret++;
+        }
+        return ret;
+    }
+
+    /**
+     * Receives each cell whose contents changed.
+     *
+     * @param <E> entity type
+     */
+    public interface CellVisitor<E> {
+        /**
+         * @param y y coordinate
+         * @param x x coordinate
+         * @param first most recently placed entity, or <code>null</code>
+         */
+        void changed(int y, int x, E first);
+    }
+
+    /**
+     * Visit every cell whose contents changed since the last call, then
+     * forget them.
+     *
+     * @param visitor what to do with each cell
+     */
+    public void drainChanges(CellVisitor<? super E> visitor) {
+        for (int i = 0; i < dirtyCount; i++) {
+            int cell = dirtyCells[i];
+            dirty[cell] = false;
+            int handle = cellHead[cell];
+            @SuppressWarnings("unchecked")
+            E first = handle == NONE ? null : (E)entities[slotOf[handle]];
+            visitor.changed(cell / width + top, cell % width + left, first);
+        }
+        dirtyCount = 0;
+    }
+
+    /**
+     * Write the changed cells' monsters in to a TIM grid.
+     *
+     * <p>This keeps grids of {@link TIMCell} (and so
+     * {@link com.googlecode.blacken.dungeon.TIMTypes.RenderableTimCell}
+     * rendering) in step with the store. Only cells that changed since the
+     * last sync are touched.
+     *
+     * @param <M> monster type
+     * @param store monsters
+     * @param grid grid to update
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public static <M> void syncMonsters(EntityStore<M> store,
+            final Grid<? extends TIMCell> grid) {
+        store.drainChanges(new CellVisitor<M>() {
+            @Override
+            public void changed(int y, int x, M first) {
+                grid.get(y, x).setMonster(first);
+            }
+        });
+    }
+
+    /**
+     * Write the changed cells' top items in to a TIM grid.
+     *
+     * @param <I> item type
+     * @param store items
+     * @param grid grid to update
+     * @see #syncMonsters(EntityStore, Grid)
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public static <I> void syncItems(EntityStore<I> store,
+            final Grid<? extends TIMCell> grid) {
+        store.drainChanges(new CellVisitor<I>() {
+            @Override
+            public void changed(int y, int x, I first) {
+                grid.get(y, x).setItem(first);
+            }
+        });
+    }
+}
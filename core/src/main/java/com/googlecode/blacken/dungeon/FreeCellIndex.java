@@ -0,0 +1,213 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.googlecode.blacken.dungeon;
+
+import com.googlecode.blacken.core.Random;
+import com.googlecode.blacken.grid.Grid;
+import com.googlecode.blacken.grid.Point;
+import com.googlecode.blacken.grid.Positionable;
+import com.googlecode.blacken.grid.Regionlike;
+import java.util.Objects;
+
+/**
+ * Index of the empty cells in one region of a grid.
+ *
+ * <p>The free cells are kept as packed coordinates in a dense array, with a
+ * second array mapping each position in the region back to its slot. A
+ * random free cell can be picked in constant time, and a cell is occupied or
+ * released in constant time by swapping it with the last free slot.
+ *
+ * <p>The index only knows about changes made through {@link #set(int, int,
+ * Object)}, {@link #place(Random, Object)}, {@link #occupy(int, int)} and
+ * {@link #release(int, int)}. If the grid is changed directly, call
+ * {@link #refresh(int, int)} for the changed cell.
+ *
+ * @author Steven Black
+ * @param <T> grid cell type
+ */
+public class FreeCellIndex<T> {
+    private final Grid<T> grid;
+    private final T empty;
+    private final int y;
+    private final int x;
+    private final int height;
+    private final int width;
+    private final int[] free;
+    private final int[] slots;
+    private int size = 0;
+
+    /**
+     * Index the cells of a region which are equal to <code>empty</code>.
+     *
+     * @param grid grid holding the cells
+     * @param region region to index (usually a {@link Room})
+     * @param empty value of a free cell
+     */
+    public FreeCellIndex(Grid<T> grid, Regionlike region, T empty) {
+        this.grid = grid;
+        this.empty = empty;
+        this.y = region.getY();
+        this.x = region.getX();
+        this.height = region.getHeight();
+        this.width = region.getWidth();
+        this.free = new int[height * width];
+        this.slots = new int[height * width];
+        for (int yi = 0; yi < height; yi++) {
+            for (int xi = 0; xi < width; xi++) {
+                int packed = yi * width + xi;
+                slots[packed] = -1;
+                if (grid.contains(y + yi, x + xi)
+                        && Objects.equals(grid.get(y + yi, x + xi), empty)) {
+                    slots[packed] = size;
+                    free[size++] = packed;
+                }
+            }
+        }
+    }
+
+    private int pack(int py, int px) {
+        if (py < y || px < x || py >= y + height || px >= x + width) {
+            return -1;
+        }
+        return (py - y) * width + (px - x);
+    }
+
+    /**
+     * Get the number of free cells.
+     *
+     * @return free cell count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check whether there are no free cells left.
+     *
+     * @return true if full
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Check whether a cell is free.
+     *
+     * @param py y coordinate
+     * @param px x coordinate
+     * @return false if occupied or outside the region
+     */
+    public boolean isFree(int py, int px) {
+        int packed = pack(py, px);
+        return packed != -1 && slots[packed] != -1;
+    }
+
+    /**
+     * Mark a cell as occupied without touching the grid.
+     *
+     * @param py y coordinate
+     * @param px x coordinate
+     * @return true if the cell was free
+     */
+    public boolean occupy(int py, int px) {
+        int packed = pack(py, px);
+        if (packed == -1 || slots[packed] == -1) {
+            return false;
+        }
+        int slot = slots[packed];
+        int last = free[--size];
+        free[slot] = last;
+        slots[last] = slot;
+        slots[packed] = -1;
+        return true;
+    }
+
+    /**
+     * Mark a cell as free without touching the grid.
+     *
+     * @param py y coordinate
+     * @param px x coordinate
+     * @return true if the cell was occupied
+     */
+    public boolean release(int py, int px) {
+        int packed = pack(py, px);
+        if (packed == -1 || slots[packed] != -1) {
+            return false;
+        }
+        slots[packed] = size;
+        free[size++] = packed;
+        return true;
+    }
+
+    /**
+     * Bring a single cell back in sync with the grid.
+     *
+     * @param py y coordinate
+     * @param px x coordinate
+     */
+    public void refresh(int py, int px) {
+        if (Objects.equals(grid.get(py, px), empty)) {
+            release(py, px);
+        } else {
+            occupy(py, px);
+        }
+    }
+
+    /**
+     * Set a cell in the grid (using {@link Grid#setCopy(int, int, Object)})
+     * and update the index to match.
+     *
+     * @param py y coordinate
+     * @param px x coordinate
+     * @param value new cell value
+     * @return the previous cell value
+     */
+    public T set(int py, int px, T value) {
+        T ret = grid.setCopy(py, px, value);
+        refresh(py, px);
+        return ret;
+    }
+
+    /**
+     * Pick a uniformly random free cell.
+     *
+     * @param rng random number generator
+     * @return free location, or null if there are none
+     */
+    public Positionable randomFree(Random rng) {
+        if (size == 0) {
+            return null;
+        }
+        int packed = free[rng.nextInt(size)];
+        return new Point(y + packed / width, x + packed % width);
+    }
+
+    /**
+     * Put something in a random free cell.
+     *
+     * @param rng random number generator
+     * @param what new cell value
+     * @return location used, or null if there are no free cells
+     */
+    public Positionable place(Random rng, T what) {
+        Positionable pos = randomFree(rng);
+        if (pos != null) {
+            set(pos.getY(), pos.getX(), what);
+        }
+        return pos;
+    }
+}
@@ -0,0 +1,108 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.googlecode.blacken.dungeon;
+
+/**
+ * What a monster wants to do this turn.
+ *
+ * <p>Intents are planned against an {@link EntitySnapshot} and applied
+ * afterwards by an {@link IntentPhase}, so planning never changes the
+ * world.</p>
+ *
+ * @author Steven Black
+ * @since Blacken 1.2
+ */
+public final class Intent {
+    /**
+     * The kind of action.
+     */
+    public enum Kind {
+        /**
+         * Do nothing.
+         */
+        WAIT,
+        /**
+         * Step in to a cell.
+         */
+        MOVE,
+        /**
+         * Attack whatever is in a cell.
+         */
+        ATTACK
+    }
+
+    private static final Intent WAIT = new Intent(Kind.WAIT, 0, 0);
+    private final Kind kind;
+    private final int y;
+    private final int x;
+
+    private Intent(Kind kind, int y, int x) {
+        this.kind = kind;
+        this.y = y;
+        this.x = x;
+    }
+
+    /**
+     * Do nothing this turn.
+     *
+     * @return intent
+     */
+    public static Intent waitTurn() {
+        return WAIT;
+    }
+
+    /**
+     * Move to a cell.
+     *
+     * @param y target y coordinate
+     * @param x target x coordinate
+     * @return intent
+     */
+    public static Intent move(int y, int x) {
+        return new Intent(Kind.MOVE, y, x);
+    }
+
+    /**
+     * Attack a cell.
+     *
+     * @param y target y coordinate
+     * @param x target x coordinate
+     * @return intent
+     */
+    public static Intent attack(int y, int x) {
+        return new Intent(Kind.ATTACK, y, x);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    @Override
+    public String toString() {
+        if (kind == Kind.WAIT) {
+            return "WAIT";
+        }
+        return String.format("%s %d,%d", kind, y, x);
+    }
+}
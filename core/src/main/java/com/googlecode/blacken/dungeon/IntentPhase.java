@@ -0,0 +1,195 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.googlecode.blacken.dungeon;
+
+import com.googlecode.blacken.core.Random;
+import com.googlecode.blacken.core.RowBands;
+import com.googlecode.blacken.core.SplitMix64;
+import com.googlecode.blacken.dungeon.TIMTypes.MotileDriver;
+import com.googlecode.blacken.dungeon.TIMTypes.PlanningDriver;
+import com.googlecode.blacken.dungeon.TIMTypes.TimedMonsterlike;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs every monster in a store for one turn, planning in parallel.
+ *
+ * <p>A turn has two halves. First every monster with a
+ * {@link PlanningDriver} plans an {@link Intent} against a snapshot of the
+ * positions at the start of the turn; these plans run on a fork-join pool.
+ * Then the intents are applied one at a time, in the store's order, so two
+ * monsters heading for the same cell always resolve the same way: the
+ * first one gets it and the second is blocked. Monsters with ordinary
+ * drivers are driven in their place in that order.</p>
+ *
+ * <p>Each monster's random numbers come from its own generator, seeded from
+ * the turn's seed and its handle, so a turn gives the same result whether
+ * it runs on one thread or many.</p>
+ *
+ * @param <M> monster type
+ * @author Steven Black
+ * @since Blacken 1.2
+ */
+public class IntentPhase<M extends TimedMonsterlike> {
+    /**
+     * How intents affect the world.
+     *
+     * @param <M> monster type
+     */
+    public interface Rules<M> {
+        /**
+         * Check the terrain. Cells holding another monster are already
+         * refused.
+         *
+         * @param who monster moving
+         * @param y target y coordinate
+         * @param x target x coordinate
+         * @return true if the move is allowed
+         */
+        public boolean canEnter(M who, int y, int x);
+
+        /**
+         * Carry out an attack.
+         *
+         * @param who attacker
+         * @param y target y coordinate
+         * @param x target x coordinate
+         * @param target monster in the cell now, or <code>null</code>
+         */
+        public void attack(M who, int y, int x, M target);
+    }
+
+    private final EntityStore<M> store;
+    private final Rules<? super M> rules;
+    private final ForkJoinPool pool;
+    private final EntitySnapshot<M> snapshot;
+    private Intent[] intents = new Intent[0];
+
+    /**
+     * Create a phase for a store.
+     *
+     * @param store monsters and their positions
+     * @param rules how moves and attacks work
+     * @param pool pool for planning; <code>null</code> to plan on the
+     *      calling thread
+     */
+    public IntentPhase(EntityStore<M> store, Rules<? super M> rules,
+            ForkJoinPool pool) {
+        this.store = store;
+        this.rules = rules;
+        this.pool = pool;
+        this.snapshot = new EntitySnapshot<>(store);
+    }
+
+    /**
+     * Get the snapshot used for the last turn.
+     *
+     * @return snapshot
+     */
+    public EntitySnapshot<M> getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Get an intent from the last turn.
+     *
+     * @param index snapshot index of the monster
+     * @return intent, or <code>null</code> if it has no planning driver
+     */
+    public Intent getIntent(int index) {
+        return intents[index];
+    }
+
+    /**
+     * Build the random generator a monster uses in a turn.
+     *
+     * @param seed turn seed
+     * @param handle monster's handle in the store
+     * @return generator
+     */
+    static Random random(long seed, int handle) {
+        return new Random(new SplitMix64(
+                SplitMix64.mix64(seed + handle * 0x9E3779B97F4A7C15L)));
+    }
+
+    /**
+     * Run one turn.
+     *
+     * @param seed seed for this turn's random numbers
+     * @return number of moves made
+     */
+    public int run(final long seed) {
+        snapshot.refresh(store);
+        final int n = snapshot.size();
+        if (intents.length < n) {
+            intents = new Intent[n];
+        } else {
+            Arrays.fill(intents, null);
+        }
+        RowBands.run(pool, 0, n, 1, new RowBands.Body() {
+            @Override
+            public void rows(int from, int to) {
+                for (int i = from; i < to; i++) {
+                    M who = snapshot.entityAt(i);
+                    MotileDriver driver = who.getDriver();
+                    if (driver instanceof PlanningDriver) {
+                        Intent intent = ((PlanningDriver)driver).plan(who,
+                                snapshot, random(seed, snapshot.handleAt(i)));
+                        if (intent == null) {
+                            throw new NullPointerException("plan returned null");
+                        }
+                        intents[i] = intent;
+                    }
+                }
+            }
+        });
+        int moves = 0;
+        for (int i = 0; i < n; i++) {
+            int handle = snapshot.handleAt(i);
+            M who = snapshot.entityAt(i);
+            if (!store.contains(handle) || store.get(handle) != who) {
+                // removed earlier this turn
+                continue;
+            }
+            Intent intent = intents[i];
+            if (intent == null) {
+                MotileDriver driver = who.getDriver();
+                if (driver != null) {
+                    driver.drive(who);
+                }
+                continue;
+            }
+            int y = intent.getY();
+            int x = intent.getX();
+            switch (intent.getKind()) {
+                case MOVE:
+                    if (snapshot.contains(y, x) && store.firstAt(y, x) == -1
+                            && rules.canEnter(who, y, x)) {
+                        store.move(handle, y, x);
+                        moves++;
+                    }
+                    break;
+                case ATTACK:
+                    rules.attack(who, y, x,
+                            snapshot.contains(y, x) ? store.getFirstAt(y, x) : null);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return moves;
+    }
+}
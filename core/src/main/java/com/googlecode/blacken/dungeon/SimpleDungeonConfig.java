@@ -218,6 +218,20 @@ public class SimpleDungeonConfig {
         }
     }
 
+    /**
+     * Compile a config map in to a role table for fast tile classification.
+     *
+     * <p>The config should already have been processed by
+     * {@link #cleanConfig(java.util.Map)}.
+     *
+     * @param <T> type of config entry
+     * @param config Mapping object
+     * @return immutable role table
+     */
+    public static <T> TileRoles<T> compile(Map<String, T> config) {
+        return new TileRoles<>(config);
+    }
+
     public static <T> Set<T> findRoomWalls(Map<String, T> config) {
         Set<T> ret = new HashSet<>();
         T roomWall;
@@ -0,0 +1,44 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.googlecode.blacken.dungeon.TIMTypes;
+
+import com.googlecode.blacken.core.Random;
+import com.googlecode.blacken.dungeon.EntitySnapshot;
+import com.googlecode.blacken.dungeon.Intent;
+
+/**
+ * A driver that decides what to do without changing anything.
+ *
+ * <p>{@link #plan} may run on any thread, at the same time as other
+ * monsters' plans. It must only read the snapshot, the monster and the map,
+ * and must draw all of its randomness from <code>rng</code>.</p>
+ *
+ * @author Steven Black
+ * @since Blacken 1.2
+ */
+public interface PlanningDriver extends MotileDriver {
+    /**
+     * Decide what a monster does this turn.
+     *
+     * @param whom monster to plan for
+     * @param world positions of every monster at the start of the turn
+     * @param rng random numbers for this monster and turn only
+     * @return intent; never <code>null</code>
+     */
+    public Intent plan(TimedMonsterlike whom,
+            EntitySnapshot<? extends Monsterlike> world, Random rng);
+}
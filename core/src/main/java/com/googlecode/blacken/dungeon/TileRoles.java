@@ -0,0 +1,193 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.googlecode.blacken.dungeon;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable, precompiled form of a dungeon config map.
+ *
+ * <p>Each of the standard config names (see
+ * {@link SimpleDungeonConfig#cleanConfig(Map)}) is interned to a small
+ * integer role. Every distinct tile value gets a bitmask of the roles it
+ * fills, so the carving loops ask one question per cell instead of doing a
+ * handful of string lookups and <code>equals</code> checks.
+ *
+ * <p>Create these with {@link SimpleDungeonConfig#compile(Map)}. Later changes
+ * to the source map are not seen.
+ *
+ * <p>A role with no tile holds <code>null</code>, so a <code>null</code> tile
+ * fills every unset role, just as comparing a cell to
+ * <code>config.get(name)</code> would. Callers treating <code>null</code> as
+ * "no tile" (as {@link SimpleDungeonConfig#findRoomWalls(Map)} does) must
+ * check for it first.
+ *
+ * @author Steven Black
+ * @param <T> tile type
+ */
+public class TileRoles<T> {
+    public static final int FLOOR = 0;
+    public static final int ROOM_FLOOR = 1;
+    public static final int HALL_FLOOR = 2;
+    public static final int ROOM_DOOR = 3;
+    public static final int HALL_DOOR = 4;
+    public static final int DIGGABLE = 5;
+    public static final int WALL = 6;
+    public static final int ROOM_WALL = 7;
+    public static final int HALL_WALL = 8;
+    public static final int ROOM_WALL_HORIZONTAL = 9;
+    public static final int ROOM_WALL_TOP = 10;
+    public static final int ROOM_WALL_BOTTOM = 11;
+    public static final int ROOM_WALL_VERTICAL = 12;
+    public static final int ROOM_WALL_RIGHT = 13;
+    public static final int ROOM_WALL_LEFT = 14;
+    public static final int ROOM_WALL_TOP_RIGHT = 15;
+    public static final int ROOM_WALL_TOP_LEFT = 16;
+    public static final int ROOM_WALL_BOTTOM_RIGHT = 17;
+    public static final int ROOM_WALL_BOTTOM_LEFT = 18;
+    public static final int ROOM_WALL_CORNER = 19;
+    public static final int THING_OTHER = 20;
+
+    private static final String[] NAMES = {
+        "floor", "room:floor", "hall:floor", "room:door", "hall:door",
+        "diggable", "wall", "room:wall", "hall:wall",
+        "room:wall:horizontal", "room:wall:top", "room:wall:bottom",
+        "room:wall:vertical", "room:wall:right", "room:wall:left",
+        "room:wall:top-right", "room:wall:top-left",
+        "room:wall:bottom-right", "room:wall:bottom-left",
+        "room:wall:corner", "thing:other",
+    };
+    private static final Map<String, Integer> IDS;
+    static {
+        Map<String, Integer> ids = new HashMap<>();
+        for (int i = 0; i < NAMES.length; i++) {
+            ids.put(NAMES[i], i);
+        }
+        IDS = Collections.unmodifiableMap(ids);
+    }
+
+    /**
+     * Mask of the roles that can be carved in to a room.
+     */
+    public static final int MASK_CARVABLE = mask(DIGGABLE, HALL_WALL);
+    /**
+     * Mask of the roles that are taken over by a room's floor.
+     */
+    public static final int MASK_ABSORBED = mask(ROOM_WALL, HALL_FLOOR);
+    /**
+     * Mask of the floors a door may be placed on.
+     */
+    public static final int MASK_FLOORS = mask(HALL_FLOOR, ROOM_FLOOR);
+    /**
+     * Mask of every room wall (the same set as
+     * {@link SimpleDungeonConfig#findRoomWalls(Map)}).
+     */
+    public static final int MASK_ROOM_WALLS = mask(ROOM_WALL, ROOM_WALL_TOP,
+            ROOM_WALL_BOTTOM, ROOM_WALL_LEFT, ROOM_WALL_RIGHT,
+            ROOM_WALL_TOP_RIGHT, ROOM_WALL_TOP_LEFT,
+            ROOM_WALL_BOTTOM_RIGHT, ROOM_WALL_BOTTOM_LEFT);
+
+    private final Object[] values = new Object[NAMES.length];
+    private final Map<T, Integer> masks = new HashMap<>();
+
+    TileRoles(Map<String, T> config) {
+        for (int i = 0; i < NAMES.length; i++) {
+            T value = config.get(NAMES[i]);
+            values[i] = value;
+            Integer m = masks.get(value);
+            masks.put(value, (m == null ? 0 : m) | (1 << i));
+        }
+    }
+
+    /**
+     * Build a role mask.
+     *
+     * @param roles role numbers
+     * @return bitmask with one bit per role
+     */
+    public static int mask(int... roles) {
+        int ret = 0;
+        for (int r : roles) {
+            ret |= 1 << r;
+        }
+        return ret;
+    }
+
+    /**
+     * Get the role number for a config name.
+     *
+     * @param name standard config name, such as "room:floor"
+     * @return role number, or -1 if the name is not a standard one
+     */
+    public static int getRole(String name) {
+        Integer ret = IDS.get(name);
+        return ret == null ? -1 : ret;
+    }
+
+    /**
+     * Get the tile assigned to a role.
+     *
+     * @param role role number
+     * @return tile (may be null)
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int role) {
+        return (T) values[role];
+    }
+
+    /**
+     * Get the bitmask of every role a tile fills.
+     *
+     * @param tile tile to check; <code>null</code> gives the unset roles
+     * @return role mask; 0 if the tile has no role
+     */
+    public int getMask(T tile) {
+        Integer m = masks.get(tile);
+        return m == null ? 0 : m;
+    }
+
+    /**
+     * Check whether this table was compiled from the same tiles as a config.
+     *
+     * <p>Tiles are compared by identity, so this is a quick check that an
+     * earlier compile can be reused.
+     *
+     * @param config config map
+     * @return true if every role still has the same tile
+     */
+    boolean matches(Map<String, ?> config) {
+        for (int i = 0; i < NAMES.length; i++) {
+            if (values[i] != config.get(NAMES[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check whether a tile fills any of the roles in a mask.
+     *
+     * @param tile tile to check
+     * @param mask role mask, as from {@link #mask(int...)}
+     * @return true if any role matches
+     */
+    public boolean is(T tile, int mask) {
+        return (getMask(tile) & mask) != 0;
+    }
+}
@@ -0,0 +1,463 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.googlecode.blacken.dungeon;
+
+import com.googlecode.blacken.dungeon.TIMTypes.MotileDriver;
+import com.googlecode.blacken.dungeon.TIMTypes.TimedAttribute;
+import com.googlecode.blacken.dungeon.TIMTypes.TimedFlag;
+import com.googlecode.blacken.dungeon.TIMTypes.TimedMonsterlike;
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Runs actors and timed events in turn order.
+ *
+ * <p>Everything waiting on the clock -- a monster's next action, a flag
+ * running out, an attribute bonus wearing off -- is an event at a time.
+ * Events in the near future sit in a timing wheel (one bucket per turn);
+ * events further out wait in a priority queue until the wheel reaches them.
+ * Advancing time only touches the events that fire, so a level with
+ * thousands of idle monsters costs nothing until they act.</p>
+ *
+ * <p>Each actor has a delay: the number of turns between its actions. A
+ * fast monster has a small delay. When an actor's turn comes its
+ * {@link MotileDriver} is run and the actor is scheduled again after its
+ * delay. A driver can call {@link #setNextDelay(int)} to make a single
+ * action cost more or less.</p>
+ *
+ * <p>Events at the same time fire in the order they were scheduled.</p>
+ *
+ * @author Steven Black
+ * @since Blacken 1.2
+ */
+public class TurnScheduler {
+    /**
+     * Default number of turns covered by the timing wheel.
+     */
+    public static final int DEFAULT_WHEEL_SIZE = 256;
+
+    /**
+     * Something that happens at a time.
+     */
+    public interface Event {
+        /**
+         * Called when the event's time comes.
+         *
+         * @param scheduler scheduler running the event
+         */
+        public void fire(TurnScheduler scheduler);
+    }
+
+    /**
+     * A scheduled event. Keep it to cancel the event later.
+     */
+    public static class Ticket implements Comparable<Ticket> {
+        private final Event event;
+        private final long time;
+        private final long order;
+        private boolean cancelled = false;
+
+        Ticket(Event event, long time, long order) {
+            this.event = event;
+            this.time = time;
+            this.order = order;
+        }
+
+        public Event getEvent() {
+            return event;
+        }
+
+        /**
+         * Get the time the event fires.
+         *
+         * @return time in turns
+         */
+        public long getTime() {
+            return time;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public int compareTo(Ticket o) {
+            if (time != o.time) {
+                return time < o.time ? -1 : 1;
+            }
+            return order < o.order ? -1 : (order == o.order ? 0 : 1);
+        }
+    }
+
+    private class Actor implements Event {
+        private final TimedMonsterlike who;
+        private int delay;
+        private Ticket ticket;
+
+        Actor(TimedMonsterlike who, int delay) {
+            this.who = who;
+            this.delay = delay;
+        }
+
+        @Override
+        public void fire(TurnScheduler scheduler) {
+            MotileDriver driver = who.getDriver();
+            current = this;
+            nextDelay = delay;
+            try {
+                if (driver != null) {
+                    driver.drive(who);
+                }
+            } finally {
+                current = null;
+            }
+            if (actors.get(who) == this) {
+                ticket = schedule(nextDelay, this);
+            }
+        }
+    }
+
+    private final ArrayDeque<Ticket>[] wheel;
+    private final int mask;
+    private final PriorityQueue<Ticket> later = new PriorityQueue<>();
+    private int wheelCount = 0;
+    private long now = 0;
+    private long order = 0;
+    private final Map<TimedMonsterlike, Actor> actors = new IdentityHashMap<>();
+    private final Map<Object, Ticket> expiries = new IdentityHashMap<>();
+    private Actor current = null;
+    private int nextDelay;
+
+    /**
+     * Create a scheduler with the default wheel size.
+     */
+    public TurnScheduler() {
+        this(DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * Create a scheduler.
+     *
+     * @param wheelSize turns covered by the timing wheel; rounded up to a
+     *      power of two
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TurnScheduler(int wheelSize) {
+        if (wheelSize < 1) {
+            throw new IllegalArgumentException("wheelSize must be positive");
+        }
+        int size = Integer.highestOneBit(wheelSize);
+        if (size < wheelSize) {
+            size <<= 1;
+        }
+        wheel = new ArrayDeque[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new ArrayDeque<>();
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Get the current time.
+     *
+     * @return time in turns
+     */
+    public long getTime() {
+        return now;
+    }
+
+    /**
+     * Get the number of events waiting, including cancelled ones not yet
+     * reached.
+     *
+     * @return pending event count
+     */
+    public int getPendingCount() {
+        return wheelCount + later.size();
+    }
+
+    /**
+     * Schedule an event.
+     *
+     * @param delay turns from now; 0 fires during the current turn
+     * @param event event to run
+     * @return ticket for the event
+     */
+    public Ticket schedule(int delay, Event event) {
+        if (delay < 0) {
+            throw new IllegalArgumentException("delay must not be negative");
+        }
+        Ticket ticket = new Ticket(event, now + delay, order++);
+        if (delay <= mask) {
+            wheel[(int)(ticket.time & mask)].addLast(ticket);
+            wheelCount++;
+        } else {
+            later.add(ticket);
+        }
+        return ticket;
+    }
+
+    /**
+     * Cancel an event. Cancelled events are dropped when their time comes.
+     *
+     * @param ticket event to cancel
+     */
+    public void cancel(Ticket ticket) {
+        if (ticket != null) {
+            ticket.cancelled = true;
+        }
+    }
+
+    /**
+     * Add an actor.
+     *
+     * @param who actor
+     * @param delay turns between its actions; it first acts after this
+     */
+    public void addActor(TimedMonsterlike who, int delay) {
+        if (delay < 1) {
+            throw new IllegalArgumentException("delay must be positive");
+        }
+        removeActor(who);
+        Actor actor = new Actor(who, delay);
+        actors.put(who, actor);
+        actor.ticket = schedule(delay, actor);
+    }
+
+    /**
+     * Remove an actor. Safe to call from its own driver.
+     *
+     * @param who actor
+     * @return true if it was scheduled
+     */
+    public boolean removeActor(TimedMonsterlike who) {
+        Actor actor = actors.remove(who);
+        if (actor == null) {
+            return false;
+        }
+        cancel(actor.ticket);
+        return true;
+    }
+
+    public boolean hasActor(TimedMonsterlike who) {
+        return actors.containsKey(who);
+    }
+
+    public int getActorCount() {
+        return actors.size();
+    }
+
+    /**
+     * Change the turns between an actor's actions, starting after its next
+     * action.
+     *
+     * @param who actor
+     * @param delay new delay
+     */
+    public void setDelay(TimedMonsterlike who, int delay) {
+        if (delay < 1) {
+            throw new IllegalArgumentException("delay must be positive");
+        }
+        Actor actor = actors.get(who);
+        if (actor == null) {
+            throw new IllegalArgumentException("Not scheduled: " + who);
+        }
+        actor.delay = delay;
+    }
+
+    /**
+     * Get the actor whose driver is running.
+     *
+     * @return actor, or <code>null</code> outside a driver
+     */
+    public TimedMonsterlike getCurrentActor() {
+        return current == null ? null : current.who;
+    }
+
+    /**
+     * Set how long until the current actor acts again. Only meaningful
+     * from inside a driver.
+     *
+     * @param delay turns until the next action
+     */
+    public void setNextDelay(int delay) {
+        if (current == null) {
+            throw new IllegalStateException("No actor is running");
+        }
+        if (delay < 1) {
+            throw new IllegalArgumentException("delay must be positive");
+        }
+        nextDelay = delay;
+    }
+
+    /**
+     * Expire a flag after its duration.
+     *
+     * <p>When the time comes the flag's duration is set to 0 and it is
+     * removed from <code>who</code>'s flags. Calling this again for the
+     * same flag replaces the earlier expiry, so renewing a flag is just a
+     * matter of setting its duration and calling this again.</p>
+     *
+     * @param who monster holding the flag
+     * @param flag flag to expire
+     * @return ticket for the expiry
+     */
+    public Ticket expireFlag(final TimedMonsterlike who, final TimedFlag flag) {
+        return expire(flag, flag.getDuration(), new Event() {
+            @Override
+            public void fire(TurnScheduler scheduler) {
+                flag.setDuration(0);
+                who.getFlags().remove(flag);
+            }
+        });
+    }
+
+    /**
+     * Expire an attribute's timed bonus after its duration.
+     *
+     * <p>When the time comes the bonus and duration are set to 0. Calling
+     * this again for the same attribute replaces the earlier expiry.</p>
+     *
+     * @param attribute attribute with a timed bonus
+     * @return ticket for the expiry
+     * @see TimedAttribute#setTimedBonus(int, int)
+     */
+    public Ticket expireBonus(final TimedAttribute attribute) {
+        return expire(attribute, attribute.getDuration(), new Event() {
+            @Override
+            public void fire(TurnScheduler scheduler) {
+                attribute.setTimedBonus(0, 0);
+            }
+        });
+    }
+
+    private Ticket expire(final Object what, int delay, final Event event) {
+        cancel(expiries.get(what));
+        final Ticket[] self = new Ticket[1];
+        self[0] = schedule(Math.max(0, delay), new Event() {
+            @Override
+            public void fire(TurnScheduler scheduler) {
+                if (expiries.get(what) == self[0]) {
+                    expiries.remove(what);
+                }
+                event.fire(scheduler);
+            }
+        });
+        expiries.put(what, self[0]);
+        return self[0];
+    }
+
+    /**
+     * Get how long until something's scheduled expiry.
+     *
+     * @param what flag or attribute passed to {@link #expireFlag} or
+     *      {@link #expireBonus}
+     * @return turns left, or -1 if no expiry is scheduled
+     */
+    public long getRemaining(Object what) {
+        Ticket ticket = expiries.get(what);
+        if (ticket == null || ticket.cancelled) {
+            return -1;
+        }
+        return ticket.time - now;
+    }
+
+    private void pullLater() {
+        Ticket t = later.peek();
+        while (t != null && t.time - now <= mask) {
+            later.poll();
+            if (!t.cancelled) {
+                wheel[(int)(t.time & mask)].addLast(t);
+                wheelCount++;
+            }
+            t = later.peek();
+        }
+    }
+
+    private int fireNow() {
+        ArrayDeque<Ticket> bucket = wheel[(int)(now & mask)];
+        int fired = 0;
+        Ticket t;
+        // events scheduled with no delay join the end of this bucket
+        while ((t = bucket.pollFirst()) != null) {
+            wheelCount--;
+            if (!t.cancelled) {
+                t.cancelled = true;
+                t.event.fire(this);
+                fired++;
+            }
+        }
+        return fired;
+    }
+
+    /**
+     * Move to the next turn with a live event and fire everything then.
+     *
+     * @return number of events fired; 0 if nothing is scheduled
+     */
+    public int runTurn() {
+        int fired = fireNow();
+        while (fired == 0) {
+            if (wheelCount == 0) {
+                Ticket t = later.peek();
+                while (t != null && t.cancelled) {
+                    later.poll();
+                    t = later.peek();
+                }
+                if (t == null) {
+                    return 0;
+                }
+                now = t.time;
+            } else {
+                now++;
+            }
+            pullLater();
+            fired = fireNow();
+        }
+        return fired;
+    }
+
+    /**
+     * Advance time, firing every event due on the way.
+     *
+     * @param turns number of turns to move forward
+     * @return number of events fired
+     */
+    public int advance(int turns) {
+        if (turns < 0) {
+            throw new IllegalArgumentException("turns must not be negative");
+        }
+        long end = now + turns;
+        int fired = fireNow();
+        while (now < end) {
+            if (wheelCount == 0) {
+                Ticket t = later.peek();
+                while (t != null && t.cancelled) {
+                    later.poll();
+                    t = later.peek();
+                }
+                now = t == null ? end : Math.min(end, t.time);
+            } else {
+                now++;
+            }
+            pullLater();
+            fired += fireNow();
+        }
+        return fired;
+    }
+}
@@ -0,0 +1,116 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.googlecode.blacken.extras;
+
+import java.util.Random;
+
+/**
+ * Cellular (Worley) noise built from a seed.
+ *
+ * <p>Every unit cell holds one feature point, placed by hashing the cell
+ * through the permutation table in to a table of offsets. The noise is the
+ * distance to the nearest feature point (often called F1), so it runs from
+ * 0 to a little over 1 rather than from -1 to 1. It is good for cave
+ * blobs, cracked ground and cell-like regions.
+ *
+ * @author Steven Black
+ * @since Blacken 1.2
+ */
+public class CellularNoise extends NoiseGenerator {
+    private static final long OFFSET_SALT = 0x9E3779B97F4A7C15L;
+    private static final SeedCache<CellularNoise> CACHE = new SeedCache<CellularNoise>() {
+        @Override
+        protected CellularNoise create(long seed) {
+            return new CellularNoise(seed);
+        }
+    };
+    private final int perm[];
+    private final double offsetX[] = new double[256];
+    private final double offsetY[] = new double[256];
+    private final double offsetZ[] = new double[256];
+
+    /**
+     * Build a generator from a seed.
+     *
+     * @param seed seed for the permutation and offset tables
+     */
+    public CellularNoise(long seed) {
+        super(seed);
+        perm = permutation(seed);
+        Random rng = new Random(seed ^ OFFSET_SALT);
+        for (int i = 0; i < 256; i++) {
+            offsetX[i] = rng.nextDouble();
+            offsetY[i] = rng.nextDouble();
+            offsetZ[i] = rng.nextDouble();
+        }
+    }
+
+    /**
+     * Get a shared generator for a seed.
+     *
+     * @param seed seed
+     * @return generator for the seed
+     * @see SimplexNoise#forSeed(long)
+     */
+    public static CellularNoise forSeed(long seed) {
+        return CACHE.get(seed);
+    }
+
+    @Override
+    public double noise(double x, double y) {
+        int i = fastfloor(x);
+        int j = fastfloor(y);
+        double best = Double.MAX_VALUE;
+        for (int dj = -1; dj <= 1; dj++) {
+            int jj = (j + dj) & 255;
+            for (int di = -1; di <= 1; di++) {
+                int h = perm[((i + di) & 255) + perm[jj]];
+                double fx = i + di + offsetX[h] - x;
+                double fy = j + dj + offsetY[h] - y;
+                double d = fx * fx + fy * fy;
+                if (d < best) {
+                    best = d;
+                }
+            }
+        }
+        return Math.sqrt(best);
+    }
+
+    @Override
+    public double noise(double x, double y, double z) {
+        int i = fastfloor(x);
+        int j = fastfloor(y);
+        int k = fastfloor(z);
+        double best = Double.MAX_VALUE;
+        for (int dk = -1; dk <= 1; dk++) {
+            int kk = (k + dk) & 255;
+            for (int dj = -1; dj <= 1; dj++) {
+                int jj = (j + dj) & 255;
+                for (int di = -1; di <= 1; di++) {
+                    int h = perm[((i + di) & 255) + perm[jj + perm[kk]]];
+                    double fx = i + di + offsetX[h] - x;
+                    double fy = j + dj + offsetY[h] - y;
+                    double fz = k + dk + offsetZ[h] - z;
+                    double d = fx * fx + fy * fy + fz * fz;
+                    if (d < best) {
+                        best = d;
+                    }
+                }
+            }
+        }
+        return Math.sqrt(best);
+    }
+}
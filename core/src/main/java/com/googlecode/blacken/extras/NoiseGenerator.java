@@ -0,0 +1,298 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.googlecode.blacken.extras;
+
+import com.googlecode.blacken.core.RowBands;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A noise function built from a seed.
+ *
+ * <p>Implementations build all of their tables when constructed and never
+ * change them afterwards, so one instance can be read from any number of
+ * threads at once. Two instances with different seeds are completely
+ * independent, so two worlds can be generated side by side.
+ *
+ * @author Steven Black
+ * @since Blacken 1.2
+ */
+public abstract class NoiseGenerator {
+    private final long seed;
+
+    protected NoiseGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Get the seed this generator was built from.
+     *
+     * @return seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * 2D noise
+     *
+     * @param x X position
+     * @param y Y position
+     * @return noise for position
+     */
+    public abstract double noise(double x, double y);
+
+    /**
+     * 3D noise
+     *
+     * @param x X position
+     * @param y Y position
+     * @param z Z position
+     * @return noise for position
+     */
+    public abstract double noise(double x, double y, double z);
+
+    /**
+     * 2D fractal Brownian motion.
+     *
+     * @param octaves number of octaves
+     * @param damp divisor used to scale each octave
+     * @param jump multiplier used for coords in each octave
+     * @param x X position
+     * @param y Y position
+     * @return noise for position
+     */
+    public double fbm(int octaves, double damp, double jump, double x, double y) {
+        double ret = 0;
+        double scale = 1;
+        for (int i = 0; i < octaves; i++) {
+            ret += noise(x, y) / scale;
+            scale *= damp;
+            x *= jump;
+            y *= jump;
+        }
+        return ret;
+    }
+
+    /**
+     * 3D fractal Brownian motion.
+     *
+     * @param octaves number of octaves
+     * @param damp divisor used to scale each octave
+     * @param jump multiplier used for coords in each octave
+     * @param x X position
+     * @param y Y position
+     * @param z Z position
+     * @return noise for position
+     */
+    public double fbm(int octaves, double damp, double jump, double x, double y, double z) {
+        double ret = 0;
+        double scale = 1;
+        for (int i = 0; i < octaves; i++) {
+            ret += noise(x, y, z) / scale;
+            scale *= damp;
+            x *= jump;
+            y *= jump;
+            z *= jump;
+        }
+        return ret;
+    }
+
+    /**
+     * Fill a rectangle of a <code>float</code> array with 2D fbm.
+     *
+     * <p>The cell at <code>offset + row * stride + col</code> gets
+     * <code>(float)fbm(octaves, damp, jump, x + col * step, y + row * step)</code>.
+     * One octave gives plain noise.
+     *
+     * @param out array to fill
+     * @param offset index of the top-left cell
+     * @param stride distance between rows
+     * @param rows number of rows
+     * @param cols number of columns
+     * @param octaves number of octaves
+     * @param damp divisor used to scale each octave
+     * @param jump multiplier used for coords in each octave
+     * @param x X position of the top-left cell
+     * @param y Y position of the top-left cell
+     * @param step distance between neighbouring cells
+     * @param pool pool to split rows across; <code>null</code> to stay on
+     *      the calling thread
+     */
+    public void fillFbm(float[] out, int offset, int stride, int rows,
+            int cols, int octaves, double damp, double jump, double x,
+            double y, double step, ForkJoinPool pool) {
+        fill(out, offset, stride, rows, cols, 2, octaves, damp, jump, x, y,
+                0, 0, step, pool);
+    }
+
+    /**
+     * Fill a rectangle of a <code>float</code> array with 3D fbm.
+     *
+     * @param out array to fill
+     * @param offset index of the top-left cell
+     * @param stride distance between rows
+     * @param rows number of rows
+     * @param cols number of columns
+     * @param octaves number of octaves
+     * @param damp divisor used to scale each octave
+     * @param jump multiplier used for coords in each octave
+     * @param x X position of the top-left cell
+     * @param y Y position of the top-left cell
+     * @param z Z position of the whole rectangle
+     * @param step distance between neighbouring cells
+     * @param pool pool to split rows across; <code>null</code> to stay on
+     *      the calling thread
+     * @see #fillFbm(float[], int, int, int, int, int, double, double, double, double, double, ForkJoinPool)
+     */
+    public void fillFbm(float[] out, int offset, int stride, int rows,
+            int cols, int octaves, double damp, double jump, double x,
+            double y, double z, double step, ForkJoinPool pool) {
+        fill(out, offset, stride, rows, cols, 3, octaves, damp, jump, x, y,
+                z, 0, step, pool);
+    }
+
+    /**
+     * Fill a rectangle of a <code>float</code> array with fbm.
+     *
+     * <p>This checks the region and splits the rows across the pool; each
+     * row is filled by {@link #fillRow}. The third and fourth positions are
+     * the same for the whole rectangle and are ignored when
+     * <code>dims</code> is too small to use them.
+     */
+    void fill(final float[] out, final int offset, final int stride,
+            int rows, final int cols, final int dims, final int octaves,
+            final double damp, final double jump, final double x,
+            final double y, final double z, final double w, final double step,
+            ForkJoinPool pool) {
+        if (rows <= 0 || cols <= 0) {
+            return;
+        }
+        if (offset < 0 || stride < cols
+                || offset + (long)(rows - 1) * stride + cols > out.length) {
+            throw new IndexOutOfBoundsException("Region does not fit the array");
+        }
+        RowBands.run(pool, 0, rows, new RowBands.Body() {
+            @Override
+            public void rows(int from, int to) {
+                double[] xs = new double[cols];
+                double[] sum = new double[cols];
+                for (int r = from; r < to; r++) {
+                    fillRow(out, offset + r * stride, cols, dims, octaves,
+                            damp, jump, x, y + r * step, z, w, step, xs, sum);
+                }
+            }
+        });
+    }
+
+    /**
+     * Fill one row of fbm samples.
+     *
+     * <p>The cell at <code>base + col</code> gets the <code>float</code>
+     * cast of the matching scalar <code>fbm</code> at
+     * <code>x + col * step</code>. The row is summed an octave at a time,
+     * so everything but the X position is worked out once per octave
+     * instead of once per cell. Each cell sees the same operations in the
+     * same order as <code>fbm</code>, so the results match exactly.
+     *
+     * @param xs scratch space for the X positions, at least
+     *      <code>cols</code> long
+     * @param sum scratch space for the running sums, at least
+     *      <code>cols</code> long
+     */
+    void fillRow(float[] out, int base, int cols, int dims, int octaves,
+            double damp, double jump, double x, double y, double z, double w,
+            double step, double[] xs, double[] sum) {
+        for (int c = 0; c < cols; c++) {
+            xs[c] = x + c * step;
+            sum[c] = 0;
+        }
+        double scale = 1;
+        for (int i = 0; i < octaves; i++) {
+            addRow(sum, xs, cols, dims, y, z, w, scale);
+            scale *= damp;
+            y *= jump;
+            z *= jump;
+            w *= jump;
+            for (int c = 0; c < cols; c++) {
+                xs[c] *= jump;
+            }
+        }
+        for (int c = 0; c < cols; c++) {
+            out[base + c] = (float)sum[c];
+        }
+    }
+
+    /**
+     * Add one octave of noise along a row.
+     *
+     * <p>Each <code>sum[col]</code> has the noise at <code>xs[col]</code>
+     * divided by <code>scale</code> added to it. Generators with higher
+     * dimensions or a faster row loop override this.
+     */
+    void addRow(double[] sum, double[] xs, int cols, int dims, double y,
+            double z, double w, double scale) {
+        switch (dims) {
+        case 2:
+            for (int c = 0; c < cols; c++) {
+                sum[c] += noise(xs[c], y) / scale;
+            }
+            break;
+        case 3:
+            for (int c = 0; c < cols; c++) {
+                sum[c] += noise(xs[c], y, z) / scale;
+            }
+            break;
+        default:
+            throw new IllegalArgumentException("Unsupported dimensions: " + dims);
+        }
+    }
+
+    /**
+     * Build a shuffled permutation of 0 to 255, doubled to 512 entries so
+     * lookups never need to wrap.
+     *
+     * @param seed seed for the shuffle
+     * @return permutation table
+     */
+    static int[] permutation(long seed) {
+        Random rng = new Random(seed);
+        int[] base = new int[256];
+        for (int i = 0; i < 256; i++) {
+            base[i] = i;
+        }
+        for (int i = 255; i > 0; i--) {
+            int j = rng.nextInt(i + 1);
+            int t = base[i];
+            base[i] = base[j];
+            base[j] = t;
+        }
+        return doubled(base);
+    }
+
+    static int[] doubled(int[] base) {
+        int[] ret = new int[512];
+        for (int i = 0; i < 512; i++) {
+            ret[i] = base[i & 255];
+        }
+        return ret;
+    }
+
+    // This method is a *lot* faster than using (int)Math.floor(x)
+    static int fastfloor(double x) {
+        return x > 0 ? (int) x : (int) x - 1;
+    }
+}
@@ -0,0 +1,73 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.googlecode.blacken.extras;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A small least-recently-used cache of generators by seed.
+ *
+ * @param <T> generator type
+ * @author Steven Black
+ * @since Blacken 1.2
+ */
+abstract class SeedCache<T> {
+    static final int DEFAULT_CAPACITY = 16;
+    private final Map<Long, T> cache;
+
+    SeedCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    SeedCache(final int capacity) {
+        cache = new LinkedHashMap<Long, T>(capacity * 2, 0.75F, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, T> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Build a generator for a seed that is not cached.
+     *
+     * @param seed seed
+     * @return new generator
+     */
+    protected abstract T create(long seed);
+
+    /**
+     * Get the generator for a seed, building it if needed.
+     *
+     * @param seed seed
+     * @return generator
+     */
+    synchronized T get(long seed) {
+        T ret = cache.get(seed);
+        if (ret == null) {
+            ret = create(seed);
+            cache.put(seed, ret);
+        }
+        return ret;
+    }
+
+    synchronized void clear() {
+        cache.clear();
+    }
+}
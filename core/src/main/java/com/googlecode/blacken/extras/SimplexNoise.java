@@ -0,0 +1,661 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2010, 2011 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.googlecode.blacken.extras;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Simplex noise built from a seed.
+ *
+ * <p>This is the same algorithm as {@link PerlinNoise} (Ken Perlin's simplex
+ * noise as written by Stefan Gustavson), but each instance shuffles its own
+ * permutation table from its seed. Instances never change after they are
+ * built and are safe to share between threads.
+ *
+ * @author Steven Black
+ * @since Blacken 1.2
+ */
+public class SimplexNoise extends NoiseGenerator {
+    private static final int grad3[][] = { { 1, 1, 0 }, { -1, 1, 0 }, { 1, -1, 0 },
+                                    { -1, -1, 0 }, { 1, 0, 1 }, { -1, 0, 1 },
+                                    { 1, 0, -1 }, { -1, 0, -1 }, { 0, 1, 1 },
+                                    { 0, -1, 1 }, { 0, 1, -1 }, { 0, -1, -1 } };
+    private static final int grad4[][] = { { 0, 1, 1, 1 }, { 0, 1, 1, -1 },
+                                    { 0, 1, -1, 1 }, { 0, 1, -1, -1 },
+                                    { 0, -1, 1, 1 }, { 0, -1, 1, -1 },
+                                    { 0, -1, -1, 1 }, { 0, -1, -1, -1 },
+                                    { 1, 0, 1, 1 }, { 1, 0, 1, -1 },
+                                    { 1, 0, -1, 1 }, { 1, 0, -1, -1 },
+                                    { -1, 0, 1, 1 }, { -1, 0, 1, -1 },
+                                    { -1, 0, -1, 1 }, { -1, 0, -1, -1 },
+                                    { 1, 1, 0, 1 }, { 1, 1, 0, -1 },
+                                    { 1, -1, 0, 1 }, { 1, -1, 0, -1 },
+                                    { -1, 1, 0, 1 }, { -1, 1, 0, -1 },
+                                    { -1, -1, 0, 1 }, { -1, -1, 0, -1 },
+                                    { 1, 1, 1, 0 }, { 1, 1, -1, 0 },
+                                    { 1, -1, 1, 0 }, { 1, -1, -1, 0 },
+                                    { -1, 1, 1, 0 }, { -1, 1, -1, 0 },
+                                    { -1, -1, 1, 0 }, { -1, -1, -1, 0 } };
+    private static final double F2 = 0.5 * (Math.sqrt(3.0) - 1.0);
+    private static final double G2 = (3.0 - Math.sqrt(3.0)) / 6.0;
+    private static final double F3 = 1.0 / 3.0;
+    private static final double G3 = 1.0 / 6.0;
+    private static final double F4 = (Math.sqrt(5.0) - 1.0) / 4.0;
+    private static final double G4 = (5.0 - Math.sqrt(5.0)) / 20.0;
+    // A lookup table to traverse the simplex around a given point in 4D.
+    // Details can be found where this table is used, in the 4D noise method.
+    private static final int simplex[][] = 
+    { {0, 1, 2, 3}, {0, 1, 3, 2}, {0, 0, 0, 0}, {0, 2, 3, 1},
+      {0, 0, 0, 0}, {0, 0, 0, 0}, {0, 0, 0, 0}, {1, 2, 3, 0},
+      {0, 2, 1, 3}, {0, 0, 0, 0}, {0, 3, 1, 2}, {0, 3, 2, 1},
+      {0, 0, 0, 0}, {0, 0, 0, 0}, {0, 0, 0, 0}, {1, 3, 2, 0},
+      {0, 0, 0, 0}, {0, 0, 0, 0}, {0, 0, 0, 0}, {0, 0, 0, 0},
+      {0, 0, 0, 0}, {0, 0, 0, 0}, {0, 0, 0, 0}, {0, 0, 0, 0},
+      {1, 2, 0, 3}, {0, 0, 0, 0}, {1, 3, 0, 2}, {0, 0, 0, 0},
+      {0, 0, 0, 0}, {0, 0, 0, 0}, {2, 3, 0, 1}, {2, 3, 1, 0},
+      {1, 0, 2, 3}, {1, 0, 3, 2}, {0, 0, 0, 0}, {0, 0, 0, 0},
+      {0, 0, 0, 0}, {2, 0, 3, 1}, {0, 0, 0, 0}, {2, 1, 3, 0},
+      {0, 0, 0, 0}, {0, 0, 0, 0}, {0, 0, 0, 0}, {0, 0, 0, 0},
+      {0, 0, 0, 0}, {0, 0, 0, 0}, {0, 0, 0, 0}, {0, 0, 0, 0},
+      {2, 0, 1, 3}, {0, 0, 0, 0}, {0, 0, 0, 0}, {0, 0, 0, 0},
+      {3, 0, 1, 2}, {3, 0, 2, 1}, {0, 0, 0, 0}, {3, 1, 2, 0},
+      {2, 1, 0, 3}, {0, 0, 0, 0}, {0, 0, 0, 0}, {0, 0, 0, 0},
+      {3, 1, 0, 2}, {0, 0, 0, 0}, {3, 2, 0, 1}, {3, 2, 1, 0} };
+
+    private static final SeedCache<SimplexNoise> CACHE = new SeedCache<SimplexNoise>() {
+        @Override
+        protected SimplexNoise create(long seed) {
+            return new SimplexNoise(seed);
+        }
+    };
+    // To remove the need for index wrapping, the permutation table is
+    // doubled in length
+    private final int perm[];
+    // perm[i] % 12, so the 2D and 3D gradient lookups skip the division
+    private final int permMod12[];
+
+    /**
+     * Build a generator from a seed.
+     *
+     * @param seed seed for the permutation table
+     */
+    public SimplexNoise(long seed) {
+        this(seed, permutation(seed));
+    }
+
+    /**
+     * Build a generator from a doubled permutation table.
+     *
+     * @param seed seed reported by {@link #getSeed()}
+     * @param perm 512 entry permutation table
+     */
+    SimplexNoise(long seed, int[] perm) {
+        super(seed);
+        this.perm = perm;
+        this.permMod12 = new int[perm.length];
+        for (int i = 0; i < perm.length; i++) {
+            permMod12[i] = perm[i] % 12;
+        }
+    }
+
+    /**
+     * Get a shared generator for a seed.
+     *
+     * <p>Recently used seeds are cached, so asking again for the same seed
+     * does not rebuild the tables.
+     *
+     * @param seed seed
+     * @return generator for the seed
+     */
+    public static SimplexNoise forSeed(long seed) {
+        return CACHE.get(seed);
+    }
+
+    private static double dot(int g[], double x, double y) {
+        return g[0] * x + g[1] * y;
+    }
+
+    private static double dot(int g[], double x, double y, double z) {
+        return g[0] * x + g[1] * y + g[2] * z;
+    }
+
+    private static double dot(int g[], double x, double y, double z, double w) {
+        return g[0] * x + g[1] * y + g[2] * z + g[3] * w;
+    }
+
+    /**
+     * 2D simplex noise
+     * @param xin x input
+     * @param yin y input 
+     * @return noise for position
+     */
+    @Override
+    public double noise(double xin, double yin) {
+        double noise0, noise1, noise2; // from the three corners
+        // Skew the input space to determine which simplex cell we're in
+        double skew = (xin + yin) * F2; // Hairy factor for 2D
+        int i = fastfloor(xin + skew);
+        int j = fastfloor(yin + skew);
+        double t = (i + j) * G2;
+        double X0 = i - t; // Unskew the cell origin back to (x,y) space
+        double Y0 = j - t;
+        double x0 = xin - X0; // The x,y distances from the cell origin
+        double y0 = yin - Y0;
+        // For the 2D case, the simplex shape is an equilateral triangle.
+        // Determine which simplex we are in.
+        int i1, j1; // Offsets for second (middle) corner of simplex in (i,j)
+                    // coords
+        if (x0 > y0) {
+            i1 = 1;
+            j1 = 0;
+        } // lower triangle, XY order: (0,0)->(1,0)->(1,1)
+        else {
+            i1 = 0;
+            j1 = 1;
+        } // upper triangle, YX order: (0,0)->(0,1)->(1,1)
+          // A step of (1,0) in (i,j) means a step of (1-c,-c) in (x,y), and
+          // a step of (0,1) in (i,j) means a step of (-c,1-c) in (x,y),
+          // where
+          // c = (3-sqrt(3))/6
+        double x1 = x0 - i1 + G2; // Offsets for middle corner in (x,y)
+                                  // unskewed coords
+        double y1 = y0 - j1 + G2;
+        double x2 = x0 - 1.0 + 2.0 * G2; // Offsets for last corner in (x,y)
+                                         // unskewed coords
+        double y2 = y0 - 1.0 + 2.0 * G2;
+        // Work out the hashed gradient indices of the three simplex corners
+        int ii = i & 255;
+        int jj = j & 255;
+        int gi0 = permMod12[ii + perm[jj]];
+        int gi1 = permMod12[ii + i1 + perm[jj + j1]];
+        int gi2 = permMod12[ii + 1 + perm[jj + 1]];
+        // Calculate the contribution from the three corners
+        double t0 = 0.5 - x0 * x0 - y0 * y0;
+        if (t0 < 0) {
+            noise0 = 0.0;
+        } else {
+            t0 *= t0;
+            noise0 = t0 * t0 * dot(grad3[gi0], x0, y0); // (x,y) of grad3 used
+                                                    // for 2D gradient
+        }
+        double t1 = 0.5 - x1 * x1 - y1 * y1;
+        if (t1 < 0) {
+            noise1 = 0.0;
+        } else {
+            t1 *= t1;
+            noise1 = t1 * t1 * dot(grad3[gi1], x1, y1);
+        }
+        double t2 = 0.5 - x2 * x2 - y2 * y2;
+        if (t2 < 0) {
+            noise2 = 0.0;
+        } else {
+            t2 *= t2;
+            noise2 = t2 * t2 * dot(grad3[gi2], x2, y2);
+        }
+        // Add contributions from each corner to get the final noise value.
+        // The result is scaled to return values in the interval [-1,1].
+        return 70.0 * (noise0 + noise1 + noise2);
+    }
+
+    /**
+     * 3D simplex noise
+     * @param xin X input
+     * @param yin Y input
+     * @param zin Z input
+     * @return noise
+     */
+    @Override
+    public double noise(double xin, double yin, double zin) {
+        double n0, n1, n2, n3; // Noise contributions from the four corners
+        // Skew the input space to determine which simplex cell we're in
+        double s = (xin + yin + zin) * F3; // Very nice and simple skew
+                                           // factor for 3D
+        int i = fastfloor(xin + s);
+        int j = fastfloor(yin + s);
+        int k = fastfloor(zin + s);
+        double t = (i + j + k) * G3;
+        double X0 = i - t; // Unskew the cell origin back to (x,y,z) space
+        double Y0 = j - t;
+        double Z0 = k - t;
+        double x0 = xin - X0; // The x,y,z distances from the cell origin
+        double y0 = yin - Y0;
+        double z0 = zin - Z0;
+        // For the 3D case, the simplex shape is a slightly irregular
+        // tetrahedron.
+        // Determine which simplex we are in.
+        int i1, j1, k1; // Offsets for second corner of simplex in (i,j,k)
+                        // coords
+        int i2, j2, k2; // Offsets for third corner of simplex in (i,j,k)
+                        // coords
+        if (x0 >= y0) {
+            if (y0 >= z0) {
+                i1 = 1;
+                j1 = 0;
+                k1 = 0;
+                i2 = 1;
+                j2 = 1;
+                k2 = 0;
+            } // X Y Z order
+            else if (x0 >= z0) {
+                i1 = 1;
+                j1 = 0;
+                k1 = 0;
+                i2 = 1;
+                j2 = 0;
+                k2 = 1;
+            } // X Z Y order
+            else {
+                i1 = 0;
+                j1 = 0;
+                k1 = 1;
+                i2 = 1;
+                j2 = 0;
+                k2 = 1;
+            } // Z X Y order
+        } else { // x0<y0
+            if (y0 < z0) {
+                i1 = 0;
+                j1 = 0;
+                k1 = 1;
+                i2 = 0;
+                j2 = 1;
+                k2 = 1;
+            } // Z Y X order
+            else if (x0 < z0) {
+                i1 = 0;
+                j1 = 1;
+                k1 = 0;
+                i2 = 0;
+                j2 = 1;
+                k2 = 1;
+            } // Y Z X order
+            else {
+                i1 = 0;
+                j1 = 1;
+                k1 = 0;
+                i2 = 1;
+                j2 = 1;
+                k2 = 0;
+            } // Y X Z order
+        }
+        // A step of (1,0,0) in (i,j,k) means a step of (1-c,-c,-c) in
+        // (x,y,z),
+        // a step of (0,1,0) in (i,j,k) means a step of (-c,1-c,-c) in
+        // (x,y,z), and
+        // a step of (0,0,1) in (i,j,k) means a step of (-c,-c,1-c) in
+        // (x,y,z), where
+        // c = 1/6.
+        double x1 = x0 - i1 + G3; // Offsets for second corner in (x,y,z)
+                                  // coords
+        double y1 = y0 - j1 + G3;
+        double z1 = z0 - k1 + G3;
+        double x2 = x0 - i2 + 2.0 * G3; // Offsets for third corner in
+                                        // (x,y,z) coords
+        double y2 = y0 - j2 + 2.0 * G3;
+        double z2 = z0 - k2 + 2.0 * G3;
+        double x3 = x0 - 1.0 + 3.0 * G3; // Offsets for last corner in
+                                         // (x,y,z) coords
+        double y3 = y0 - 1.0 + 3.0 * G3;
+        double z3 = z0 - 1.0 + 3.0 * G3;
+        // Work out the hashed gradient indices of the four simplex corners
+        int ii = i & 255;
+        int jj = j & 255;
+        int kk = k & 255;
+        int gi0 = permMod12[ii + perm[jj + perm[kk]]];
+        int gi1 = permMod12[ii + i1 + perm[jj + j1 + perm[kk + k1]]];
+        int gi2 = permMod12[ii + i2 + perm[jj + j2 + perm[kk + k2]]];
+        int gi3 = permMod12[ii + 1 + perm[jj + 1 + perm[kk + 1]]];
+        // Calculate the contribution from the four corners
+        double t0 = 0.6 - x0 * x0 - y0 * y0 - z0 * z0;
+        if (t0 < 0) {
+            n0 = 0.0;
+        } else {
+            t0 *= t0;
+            n0 = t0 * t0 * dot(grad3[gi0], x0, y0, z0);
+        }
+        double t1 = 0.6 - x1 * x1 - y1 * y1 - z1 * z1;
+        if (t1 < 0) {
+            n1 = 0.0;
+        } else {
+            t1 *= t1;
+            n1 = t1 * t1 * dot(grad3[gi1], x1, y1, z1);
+        }
+        double t2 = 0.6 - x2 * x2 - y2 * y2 - z2 * z2;
+        if (t2 < 0) {
+            n2 = 0.0;
+        } else {
+            t2 *= t2;
+            n2 = t2 * t2 * dot(grad3[gi2], x2, y2, z2);
+        }
+        double t3 = 0.6 - x3 * x3 - y3 * y3 - z3 * z3;
+        if (t3 < 0) {
+            n3 = 0.0;
+        } else {
+            t3 *= t3;
+            n3 = t3 * t3 * dot(grad3[gi3], x3, y3, z3);
+        }
+        // Add contributions from each corner to get the final noise value.
+        // The result is scaled to stay just inside [-1,1]
+        return 32.0 * (n0 + n1 + n2 + n3);
+    }
+
+    /**
+     * 4D simplex noise
+     * @param x X position
+     * @param y Y position 
+     * @param z Z position
+     * @param w 4th position
+     * @return noise
+     */
+    public double noise(double x, double y, double z, double w) {
+        // The skewing and unskewing factors are hairy again for the 4D case
+        double n0, n1, n2, n3, n4; // Noise contributions from the five
+                                   // corners
+        // Skew the (x,y,z,w) space to determine which cell of 24 simplices
+        // we're in
+        double s = (x + y + z + w) * F4; // Factor for 4D skewing
+        int i = fastfloor(x + s);
+        int j = fastfloor(y + s);
+        int k = fastfloor(z + s);
+        int l = fastfloor(w + s);
+        double t = (i + j + k + l) * G4; // Factor for 4D unskewing
+        double X0 = i - t; // Unskew the cell origin back to (x,y,z,w) space
+        double Y0 = j - t;
+        double Z0 = k - t;
+        double W0 = l - t;
+        double x0 = x - X0; // The x,y,z,w distances from the cell origin
+        double y0 = y - Y0;
+        double z0 = z - Z0;
+        double w0 = w - W0;
+        // For the 4D case, the simplex is a 4D shape I won't even try to
+        // describe.
+        // To find out which of the 24 possible simplices we're in, we need
+        // to
+        // determine the magnitude ordering of x0, y0, z0 and w0.
+        // The method below is a good way of finding the ordering of x,y,z,w
+        // and
+        // then find the correct traversal order for the simplex we’re in.
+        // First, six pair-wise comparisons are performed between each
+        // possible pair
+        // of the four coordinates, and the results are used to add up binary
+        // bits
+        // for an integer index.
+        int c1 = (x0 > y0) ? 32 : 0;
+        int c2 = (x0 > z0) ? 16 : 0;
+        int c3 = (y0 > z0) ? 8 : 0;
+        int c4 = (x0 > w0) ? 4 : 0;
+        int c5 = (y0 > w0) ? 2 : 0;
+        int c6 = (z0 > w0) ? 1 : 0;
+        int c = c1 + c2 + c3 + c4 + c5 + c6;
+        int i1, j1, k1, l1; // The integer offsets for the second simplex
+                            // corner
+        int i2, j2, k2, l2; // The integer offsets for the third simplex
+                            // corner
+        int i3, j3, k3, l3; // The integer offsets for the fourth simplex
+                            // corner
+        // simplex[c] is a 4-vector with the numbers 0, 1, 2 and 3 in some
+        // order.
+        // Many values of c will never occur, since e.g. x>y>z>w makes x<z,
+        // y<w and x<w
+        // impossible. Only the 24 indices which have non-zero entries make
+        // any sense.
+        // We use a thresholding to set the coordinates in turn from the
+        // largest magnitude.
+        // The number 3 in the "simplex" array is at the position of the
+        // largest coordinate.
+        i1 = simplex[c][0] >= 3 ? 1 : 0;
+        j1 = simplex[c][1] >= 3 ? 1 : 0;
+        k1 = simplex[c][2] >= 3 ? 1 : 0;
+        l1 = simplex[c][3] >= 3 ? 1 : 0;
+        // The number 2 in the "simplex" array is at the second largest
+        // coordinate.
+        i2 = simplex[c][0] >= 2 ? 1 : 0;
+        j2 = simplex[c][1] >= 2 ? 1 : 0;
+        k2 = simplex[c][2] >= 2 ? 1 : 0;
+        l2 = simplex[c][3] >= 2 ? 1 : 0;
+        // The number 1 in the "simplex" array is at the second smallest
+        // coordinate.
+        i3 = simplex[c][0] >= 1 ? 1 : 0;
+        j3 = simplex[c][1] >= 1 ? 1 : 0;
+        k3 = simplex[c][2] >= 1 ? 1 : 0;
+        l3 = simplex[c][3] >= 1 ? 1 : 0;
+        // The fifth corner has all coordinate offsets = 1, so no need to
+        // look that up.
+        double x1 = x0 - i1 + G4; // Offsets for second corner in (x,y,z,w)
+                                  // coords
+        double y1 = y0 - j1 + G4;
+        double z1 = z0 - k1 + G4;
+        double w1 = w0 - l1 + G4;
+        double x2 = x0 - i2 + 2.0 * G4; // Offsets for third corner in
+                                        // (x,y,z,w) coords
+        double y2 = y0 - j2 + 2.0 * G4;
+        double z2 = z0 - k2 + 2.0 * G4;
+        double w2 = w0 - l2 + 2.0 * G4;
+        double x3 = x0 - i3 + 3.0 * G4; // Offsets for fourth corner in
+                                        // (x,y,z,w) coords
+        double y3 = y0 - j3 + 3.0 * G4;
+        double z3 = z0 - k3 + 3.0 * G4;
+        double w3 = w0 - l3 + 3.0 * G4;
+        double x4 = x0 - 1.0 + 4.0 * G4; // Offsets for last corner in
+                                         // (x,y,z,w) coords
+        double y4 = y0 - 1.0 + 4.0 * G4;
+        double z4 = z0 - 1.0 + 4.0 * G4;
+        double w4 = w0 - 1.0 + 4.0 * G4;
+        // Work out the hashed gradient indices of the five simplex corners
+        int ii = i & 255;
+        int jj = j & 255;
+        int kk = k & 255;
+        int ll = l & 255;
+        int gi0 = perm[ii + perm[jj + perm[kk + perm[ll]]]] % 32;
+        int gi1 =
+                perm[ii + i1 + perm[jj + j1 + perm[kk + k1 + perm[ll + l1]]]] % 32;
+        int gi2 =
+                perm[ii + i2 + perm[jj + j2 + perm[kk + k2 + perm[ll + l2]]]] % 32;
+        int gi3 =
+                perm[ii + i3 + perm[jj + j3 + perm[kk + k3 + perm[ll + l3]]]] % 32;
+        int gi4 =
+                perm[ii + 1 + perm[jj + 1 + perm[kk + 1 + perm[ll + 1]]]] % 32;
+        // Calculate the contribution from the five corners
+        double t0 = 0.6 - x0 * x0 - y0 * y0 - z0 * z0 - w0 * w0;
+        if (t0 < 0) {
+            n0 = 0.0;
+        } else {
+            t0 *= t0;
+            n0 = t0 * t0 * dot(grad4[gi0], x0, y0, z0, w0);
+        }
+        double t1 = 0.6 - x1 * x1 - y1 * y1 - z1 * z1 - w1 * w1;
+        if (t1 < 0) {
+            n1 = 0.0;
+        } else {
+            t1 *= t1;
+            n1 = t1 * t1 * dot(grad4[gi1], x1, y1, z1, w1);
+        }
+        double t2 = 0.6 - x2 * x2 - y2 * y2 - z2 * z2 - w2 * w2;
+        if (t2 < 0) {
+            n2 = 0.0;
+        } else {
+            t2 *= t2;
+            n2 = t2 * t2 * dot(grad4[gi2], x2, y2, z2, w2);
+        }
+        double t3 = 0.6 - x3 * x3 - y3 * y3 - z3 * z3 - w3 * w3;
+        if (t3 < 0) {
+            n3 = 0.0;
+        } else {
+            t3 *= t3;
+            n3 = t3 * t3 * dot(grad4[gi3], x3, y3, z3, w3);
+        }
+        double t4 = 0.6 - x4 * x4 - y4 * y4 - z4 * z4 - w4 * w4;
+        if (t4 < 0) {
+            n4 = 0.0;
+        } else {
+            t4 *= t4;
+            n4 = t4 * t4 * dot(grad4[gi4], x4, y4, z4, w4);
+        }
+        // Sum up and scale the result to cover the range [-1,1]
+        return 27.0 * (n0 + n1 + n2 + n3 + n4);
+    }
+
+    /**
+     * 4D fractal Brownian motion.
+     *
+     * @param octaves number of octaves
+     * @param damp divisor used to scale each octave
+     * @param jump multiplier used for coords in each octave
+     * @param x X position
+     * @param y Y position
+     * @param z Z position
+     * @param w 4th position
+     * @return noise for position
+     */
+    public double fbm(int octaves, double damp, double jump, double x, double y, double z, double w) {
+        double ret = 0;
+        double scale = 1;
+        for (int i = 0; i < octaves; i++) {
+            ret += noise(x, y, z, w) / scale;
+            scale *= damp;
+            x *= jump;
+            y *= jump;
+            z *= jump;
+            w *= jump;
+        }
+        return ret;
+    }
+
+    /**
+     * Fill a rectangle of a <code>float</code> array with 4D fbm.
+     *
+     * @param out array to fill
+     * @param offset index of the top-left cell
+     * @param stride distance between rows
+     * @param rows number of rows
+     * @param cols number of columns
+     * @param octaves number of octaves
+     * @param damp divisor used to scale each octave
+     * @param jump multiplier used for coords in each octave
+     * @param x X position of the top-left cell
+     * @param y Y position of the top-left cell
+     * @param z Z position of the whole rectangle
+     * @param w 4th position of the whole rectangle
+     * @param step distance between neighbouring cells
+     * @param pool pool to split rows across; <code>null</code> to stay on
+     *      the calling thread
+     * @see #fillFbm(float[], int, int, int, int, int, double, double, double, double, double, ForkJoinPool)
+     */
+    public void fillFbm(float[] out, int offset, int stride, int rows,
+            int cols, int octaves, double damp, double jump, double x,
+            double y, double z, double w, double step, ForkJoinPool pool) {
+        fill(out, offset, stride, rows, cols, 4, octaves, damp, jump, x, y,
+                z, w, step, pool);
+    }
+
+    @Override
+    void addRow(double[] sum, double[] xs, int cols, int dims, double y,
+            double z, double w, double scale) {
+        switch (dims) {
+        case 2:
+            addRow2(sum, xs, cols, y, scale);
+            break;
+        case 4:
+            for (int c = 0; c < cols; c++) {
+                sum[c] += noise(xs[c], y, z, w) / scale;
+            }
+            break;
+        default:
+            super.addRow(sum, xs, cols, dims, y, z, w, scale);
+            break;
+        }
+    }
+
+    /**
+     * Add one octave of 2D noise along a row.
+     *
+     * <p>This is {@link #noise(double, double)} with the cell setup pulled
+     * out of the loop: neighbouring samples usually share a simplex cell,
+     * so the unskewed origin and the gradients of its corners are only
+     * looked up again when the cell changes.
+     */
+    private void addRow2(double[] sum, double[] xs, int cols, double yin,
+            double scale) {
+        int ci = 0;
+        int cj = 0;
+        boolean cached = false;
+        double X0 = 0;
+        double Y0 = 0;
+        int gi0 = 0;
+        int giLower = 0;
+        int giUpper = 0;
+        int gi2 = 0;
+        for (int c = 0; c < cols; c++) {
+            double xin = xs[c];
+            double skew = (xin + yin) * F2;
+            int i = fastfloor(xin + skew);
+            int j = fastfloor(yin + skew);
+            if (!cached || i != ci || j != cj) {
+                double t = (i + j) * G2;
+                X0 = i - t;
+                Y0 = j - t;
+                int ii = i & 255;
+                int jj = j & 255;
+                gi0 = permMod12[ii + perm[jj]];
+                giLower = permMod12[ii + 1 + perm[jj]];
+                giUpper = permMod12[ii + perm[jj + 1]];
+                gi2 = permMod12[ii + 1 + perm[jj + 1]];
+                ci = i;
+                cj = j;
+                cached = true;
+            }
+            double x0 = xin - X0;
+            double y0 = yin - Y0;
+            int i1, j1, gi1;
+            if (x0 > y0) {
+                i1 = 1;
+                j1 = 0;
+                gi1 = giLower;
+            } else {
+                i1 = 0;
+                j1 = 1;
+                gi1 = giUpper;
+            }
+            double x1 = x0 - i1 + G2;
+            double y1 = y0 - j1 + G2;
+            double x2 = x0 - 1.0 + 2.0 * G2;
+            double y2 = y0 - 1.0 + 2.0 * G2;
+            double noise0, noise1, noise2;
+            double t0 = 0.5 - x0 * x0 - y0 * y0;
+            if (t0 < 0) {
+                noise0 = 0.0;
+            } else {
+                t0 *= t0;
+                noise0 = t0 * t0 * dot(grad3[gi0], x0, y0);
+            }
+            double t1 = 0.5 - x1 * x1 - y1 * y1;
+            if (t1 < 0) {
+                noise1 = 0.0;
+            } else {
+                t1 *= t1;
+                noise1 = t1 * t1 * dot(grad3[gi1], x1, y1);
+            }
+            double t2 = 0.5 - x2 * x2 - y2 * y2;
+            if (t2 < 0) {
+                noise2 = 0.0;
+            } else {
+                t2 *= t2;
+                noise2 = t2 * t2 * dot(grad3[gi2], x2, y2);
+            }
+            sum[c] += 70.0 * (noise0 + noise1 + noise2) / scale;
+        }
+    }
+}
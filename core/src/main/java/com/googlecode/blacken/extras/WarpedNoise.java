@@ -0,0 +1,114 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.googlecode.blacken.extras;
+
+/**
+ * Domain-warped fbm.
+ *
+ * <p>The position is pushed around by fbm from a second generator before
+ * the fbm of the base generator is taken, which gives the swirled, folded
+ * look of marble, rivers and coastlines.
+ *
+ * @author Steven Black
+ * @since Blacken 1.2
+ */
+public class WarpedNoise extends NoiseGenerator {
+    public static final int DEFAULT_OCTAVES = 4;
+    public static final double DEFAULT_STRENGTH = 1.0;
+    private static final long WARP_SALT = 0x632BE59BD9B4E019L;
+    private static final SeedCache<WarpedNoise> CACHE = new SeedCache<WarpedNoise>() {
+        @Override
+        protected WarpedNoise create(long seed) {
+            return new WarpedNoise(seed);
+        }
+    };
+    private final NoiseGenerator base;
+    private final NoiseGenerator warp;
+    private final int octaves;
+    private final double strength;
+
+    /**
+     * Build warped simplex noise from a seed, with the default octaves and
+     * strength.
+     *
+     * @param seed seed
+     */
+    public WarpedNoise(long seed) {
+        this(SimplexNoise.forSeed(seed), SimplexNoise.forSeed(seed ^ WARP_SALT),
+                DEFAULT_OCTAVES, DEFAULT_STRENGTH);
+    }
+
+    /**
+     * Warp one generator with another.
+     *
+     * @param base generator sampled at the warped position
+     * @param warp generator giving the displacement
+     * @param octaves fbm octaves used for both
+     * @param strength how far the position may be pushed
+     */
+    public WarpedNoise(NoiseGenerator base, NoiseGenerator warp, int octaves,
+            double strength) {
+        super(base.getSeed());
+        this.base = base;
+        this.warp = warp;
+        this.octaves = octaves;
+        this.strength = strength;
+    }
+
+    /**
+     * Get a shared generator for a seed.
+     *
+     * @param seed seed
+     * @return generator for the seed
+     * @see SimplexNoise#forSeed(long)
+     */
+    public static WarpedNoise forSeed(long seed) {
+        return CACHE.get(seed);
+    }
+
+    public NoiseGenerator getBase() {
+        return base;
+    }
+
+    public NoiseGenerator getWarp() {
+        return warp;
+    }
+
+    public int getOctaves() {
+        return octaves;
+    }
+
+    public double getStrength() {
+        return strength;
+    }
+
+    @Override
+    public double noise(double x, double y) {
+        // offset the second sample so the two axes are not correlated
+        double qx = warp.fbm(octaves, 2.0, 2.0, x, y);
+        double qy = warp.fbm(octaves, 2.0, 2.0, x + 5.2, y + 1.3);
+        return base.fbm(octaves, 2.0, 2.0, x + strength * qx, y + strength * qy);
+    }
+
+    @Override
+    public double noise(double x, double y, double z) {
+        double qx = warp.fbm(octaves, 2.0, 2.0, x, y, z);
+        double qy = warp.fbm(octaves, 2.0, 2.0, x + 5.2, y + 1.3, z + 2.8);
+        double qz = warp.fbm(octaves, 2.0, 2.0, x + 1.7, y + 9.2, z + 4.1);
+        return base.fbm(octaves, 2.0, 2.0, x + strength * qx,
+                y + strength * qy, z + strength * qz);
+    }
+}
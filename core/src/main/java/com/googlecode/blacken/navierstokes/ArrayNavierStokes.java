@@ -0,0 +1,1020 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.googlecode.blacken.navierstokes;
+
+import com.googlecode.blacken.core.RowBands;
+import com.googlecode.blacken.grid.Grid;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A Navier-Stokes fluid solver working on flat <code>float</code> arrays.
+ *
+ * <p>This is the same stable-fluids scheme as {@link NavierStokes} (Jos Stam,
+ * "Real-Time Fluid Dynamics for Games"), but the velocity and density fields
+ * and their previous buffers live in arrays owned by the solver, and swapping
+ * a field with its previous buffer is a reference swap. The grid is only
+ * touched by {@link #load(Grid, int)} and {@link #store(Grid, int)}.
+ *
+ * <p>The Gauss-Seidel relaxation uses red-black ordering: every cell of one
+ * colour only reads cells of the other colour, so each half-sweep can be
+ * split in to row bands and run on a fork-join pool. Advection and the
+ * projection kernels are split the same way. Use a <code>null</code> pool to
+ * stay on the calling thread.
+ *
+ * <p>For large grids the fixed number of sweeps either wastes time or falls
+ * short. {@link #setSolver(LinearSolver)} switches the diffuse and project
+ * solves to multigrid or conjugate gradient, which run until the residual
+ * drops below {@link #getTolerance()}. Either way, {@link #getReport()}
+ * says how many iterations each solve of the last step took and what
+ * residual it left. The Gauss-Seidel sweeps only work out the residual when
+ * {@link #setMeasuring(boolean)} asks for it.
+ *
+ * <p>A gas cloud usually covers a small part of the map. With
+ * {@link #setActiveTracking(boolean)} the grid is split in to square tiles
+ * and only tiles holding something, plus a one-tile halo, are simulated.
+ * After each step a tile whose values have all decayed below
+ * {@link #getSleepThreshold()} is cleared and goes to sleep; adding a source
+ * wakes it. The cost of a step then follows the size of the cloud rather
+ * than the size of the map. The tile size should be larger than the
+ * distance anything travels in one step, as nothing is carried past the
+ * halo. The multigrid and conjugate-gradient solvers still solve the whole
+ * grid; their result is clipped to the simulated tiles.
+ *
+ * <p>While tracking, {@link #simulate(Grid, int, float, float, float)} only
+ * copies the whole grid the first time it sees it. After that it loads the
+ * simulated tiles and stores them (and the boundary ring) back, as nothing
+ * else can have changed. A source written straight in to a sleeping part of
+ * the grid is not seen; use {@link #addDensitySource(int, int, float)},
+ * {@link #addVelocitySource(int, int, float, float)} or
+ * {@link #wake(int, int)} for those, or {@link #load(Grid, int)} the whole
+ * grid again.
+ *
+ * <p>As with {@link NavierStokes}, the outermost ring of cells is the
+ * boundary. The {@link SupportsNavierStokes} indexes are:
+ * <ul>
+ * <li>0, 1, 2: horizontal velocity, vertical velocity and density</li>
+ * <li>3, 4, 5: sources for each of those, added once per step</li>
+ * </ul>
+ * The sources are consumed by a step; {@link #store(Grid, int)} writes them
+ * back as zero.
+ *
+ * @author Steven Black
+ * @since Blacken 1.2
+ */
+public class ArrayNavierStokes {
+    static final int U_IDX = 0;
+    static final int V_IDX = 1;
+    static final int DENSITY_IDX = 2;
+    static final int SOURCE_OFFSET = 3;
+    /**
+     * Default edge length of an activity tile.
+     */
+    public static final int DEFAULT_TILE_SIZE = 16;
+
+    private final int width;
+    private final int height;
+    private final int scale;
+    private float[] u;
+    private float[] v;
+    private float[] dens;
+    private float[] uPrev;
+    private float[] vPrev;
+    private float[] densPrev;
+    private float dt = 10F;
+    private float diff = 0.5F;
+    private float visc = 0.5F;
+    private int iterations = 20;
+    private LinearSolver solver = LinearSolver.GAUSS_SEIDEL;
+    private float tolerance = 1e-4F;
+    private int maxIterations = 500;
+    private boolean measuring = false;
+    private final SolverReport report = new SolverReport();
+    private PoissonSolver poisson = null;
+    private ForkJoinPool pool;
+    private boolean tracking = false;
+    private float sleepThreshold = 1e-4F;
+    private int tileSize = DEFAULT_TILE_SIZE;
+    private int tilesX;
+    private int tilesY;
+    private boolean[] active;
+    private boolean[] work;
+    // per tile row, [from, to) pairs of interior columns to simulate; only
+    // the first rowSpanCount[ty] entries of each row are in use
+    private int[][] rowSpans;
+    private int[] rowSpanCount;
+    // the grid and layer simulate() last copied in full, while tracking
+    private Grid<? extends SupportsNavierStokes> synced = null;
+    private int syncedLayer;
+
+    /**
+     * Create a solver using the shared fork-join pool.
+     *
+     * @param height grid height, including the boundary
+     * @param width grid width, including the boundary
+     */
+    public ArrayNavierStokes(int height, int width) {
+        this(height, width, RowBands.getSharedPool());
+    }
+
+    /**
+     * Create a solver.
+     *
+     * @param height grid height, including the boundary
+     * @param width grid width, including the boundary
+     * @param pool pool for the parallel kernels; <code>null</code> to stay on
+     *      the calling thread
+     */
+    public ArrayNavierStokes(int height, int width, ForkJoinPool pool) {
+        if (height < 3 || width < 3) {
+            throw new IllegalArgumentException("Grid must be at least 3x3");
+        }
+        this.width = width;
+        this.height = height;
+        this.scale = Math.max(width - 2, height - 2);
+        this.pool = pool;
+        int size = width * height;
+        u = new float[size];
+        v = new float[size];
+        dens = new float[size];
+        uPrev = new float[size];
+        vPrev = new float[size];
+        densPrev = new float[size];
+        setupTiles();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Get the number of relaxation sweeps per linear solve.
+     *
+     * @return sweep count (default 20)
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    public LinearSolver getSolver() {
+        return solver;
+    }
+
+    /**
+     * Select the solver for the diffuse and project steps.
+     *
+     * @param solver linear solver to use
+     */
+    public void setSolver(LinearSolver solver) {
+        if (solver == null) {
+            throw new NullPointerException("solver cannot be null");
+        }
+        this.solver = solver;
+    }
+
+    /**
+     * Get the relative residual the multigrid and conjugate-gradient solvers
+     * stop at.
+     *
+     * @return tolerance (default 1e-4)
+     */
+    public float getTolerance() {
+        return tolerance;
+    }
+
+    public void setTolerance(float tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Get the most V-cycles or conjugate-gradient iterations a solve may
+     * use before giving up on the tolerance.
+     *
+     * @return iteration limit (default 500)
+     */
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    public boolean isMeasuring() {
+        return measuring;
+    }
+
+    /**
+     * Measure the residual left by each Gauss-Seidel solve.
+     *
+     * <p>This costs about as much as a sweep per solve, so it is off by
+     * default and the report holds <code>NaN</code> for those residuals.
+     * The multigrid and conjugate-gradient solvers always measure it, as
+     * they stop on it.
+     *
+     * @param measuring true to fill in the Gauss-Seidel residuals
+     */
+    public void setMeasuring(boolean measuring) {
+        this.measuring = measuring;
+    }
+
+    /**
+     * Get the iterations and residuals of the solves done by the last step.
+     *
+     * <p>The same object is reused by every step.
+     *
+     * @return report of the last step
+     */
+    public SolverReport getReport() {
+        return report;
+    }
+
+    public boolean isActiveTracking() {
+        return tracking;
+    }
+
+    /**
+     * Turn tracking of active tiles on or off.
+     *
+     * <p>When turned on, every tile holding a non-zero value starts awake.
+     *
+     * @param tracking true to only simulate active tiles
+     */
+    public void setActiveTracking(boolean tracking) {
+        this.tracking = tracking;
+        setupTiles();
+    }
+
+    /**
+     * Get the value below which a tile goes to sleep.
+     *
+     * @return largest absolute velocity or density of a sleeping tile
+     *      (default 1e-4)
+     */
+    public float getSleepThreshold() {
+        return sleepThreshold;
+    }
+
+    public void setSleepThreshold(float sleepThreshold) {
+        this.sleepThreshold = sleepThreshold;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Set the edge length of the activity tiles.
+     *
+     * @param tileSize tile size in cells
+     */
+    public void setTileSize(int tileSize) {
+        if (tileSize < 1) {
+            throw new IllegalArgumentException("Tile size must be positive");
+        }
+        this.tileSize = tileSize;
+        setupTiles();
+    }
+
+    /**
+     * Check whether the tile holding a cell is awake.
+     *
+     * @param y local y coordinate
+     * @param x local x coordinate
+     * @return true if the tile will be simulated (always true when not
+     *      tracking)
+     */
+    public boolean isActive(int y, int x) {
+        return !tracking || active[tileIndex(y, x)];
+    }
+
+    /**
+     * Get the number of awake tiles.
+     *
+     * @return awake tile count
+     */
+    public int getActiveTileCount() {
+        if (!tracking) {
+            return tilesX * tilesY;
+        }
+        int ret = 0;
+        for (boolean a : active) {
+            if (a) {
+                ret++;
+            }
+        }
+        return ret;
+    }
+
+    private int tileIndex(int y, int x) {
+        return (y / tileSize) * tilesX + x / tileSize;
+    }
+
+    private void setupTiles() {
+        tilesX = (width + tileSize - 1) / tileSize;
+        tilesY = (height + tileSize - 1) / tileSize;
+        active = new boolean[tilesX * tilesY];
+        work = new boolean[tilesX * tilesY];
+        rowSpans = new int[tilesY][];
+        rowSpanCount = new int[tilesY];
+        if (!tracking) {
+            Arrays.fill(active, true);
+            Arrays.fill(work, true);
+            int[] all = new int[] {1, width - 1};
+            Arrays.fill(rowSpans, all);
+            Arrays.fill(rowSpanCount, 2);
+            return;
+        }
+        for (int ty = 0; ty < tilesY; ty++) {
+            rowSpans[ty] = new int[tilesX * 2];
+        }
+        wakeNonZero();
+    }
+
+    /**
+     * Wake every tile holding a non-zero value, so that sleeping tiles are
+     * always all zero.
+     */
+    private void wakeNonZero() {
+        wakeNonZero(null);
+    }
+
+    /**
+     * Wake the tiles holding a non-zero value.
+     *
+     * @param only tiles to look at, or <code>null</code> for all of them
+     */
+    private void wakeNonZero(boolean[] only) {
+        float[][] fields = {u, v, dens, uPrev, vPrev, densPrev};
+        for (int ty = 0; ty < tilesY; ty++) {
+            int y0 = ty * tileSize;
+            int y1 = Math.min(height, y0 + tileSize);
+            for (int tx = 0; tx < tilesX; tx++) {
+                int t = ty * tilesX + tx;
+                if (active[t] || only != null && !only[t]) {
+                    continue;
+                }
+                int x0 = tx * tileSize;
+                int x1 = Math.min(width, x0 + tileSize);
+                search:
+                for (int y = y0; y < y1; y++) {
+                    for (int k = index(y, x0); k < index(y, x1); k++) {
+                        for (float[] f : fields) {
+                            if (f[k] != 0F) {
+                                active[t] = true;
+                                break search;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Spread the awake tiles by the halo and turn the result in to column
+     * spans for each tile row.
+     */
+    private void planWork() {
+        Arrays.fill(work, false);
+        for (int ty = 0; ty < tilesY; ty++) {
+            for (int tx = 0; tx < tilesX; tx++) {
+                if (!active[ty * tilesX + tx]) {
+                    continue;
+                }
+                for (int hy = Math.max(0, ty - 1); hy <= Math.min(tilesY - 1, ty + 1); hy++) {
+                    for (int hx = Math.max(0, tx - 1); hx <= Math.min(tilesX - 1, tx + 1); hx++) {
+                        work[hy * tilesX + hx] = true;
+                    }
+                }
+            }
+        }
+        for (int ty = 0; ty < tilesY; ty++) {
+            int[] buf = rowSpans[ty];
+            int n = 0;
+            for (int tx = 0; tx < tilesX; tx++) {
+                if (!work[ty * tilesX + tx]) {
+                    continue;
+                }
+                int from = Math.max(1, tx * tileSize);
+                int to = Math.min(width - 1, (tx + 1) * tileSize);
+                if (from >= to) {
+                    continue;
+                }
+                if (n > 0 && buf[n - 1] == from) {
+                    buf[n - 1] = to;
+                } else {
+                    buf[n++] = from;
+                    buf[n++] = to;
+                }
+            }
+            rowSpanCount[ty] = n;
+        }
+    }
+
+    /**
+     * Put simulated tiles that have decayed below the threshold to sleep.
+     */
+    private void settle() {
+        for (int ty = 0; ty < tilesY; ty++) {
+            int y0 = ty * tileSize;
+            int y1 = Math.min(height, y0 + tileSize);
+            for (int tx = 0; tx < tilesX; tx++) {
+                int t = ty * tilesX + tx;
+                if (!work[t]) {
+                    continue;
+                }
+                int x0 = tx * tileSize;
+                int x1 = Math.min(width, x0 + tileSize);
+                float most = 0F;
+                for (int y = y0; y < y1; y++) {
+                    for (int k = index(y, x0); k < index(y, x1); k++) {
+                        most = Math.max(most, Math.abs(u[k]));
+                        most = Math.max(most, Math.abs(v[k]));
+                        most = Math.max(most, Math.abs(dens[k]));
+                    }
+                }
+                active[t] = most > sleepThreshold;
+                if (!active[t]) {
+                    for (int y = y0; y < y1; y++) {
+                        int from = index(y, x0);
+                        int to = index(y, x1);
+                        Arrays.fill(u, from, to, 0F);
+                        Arrays.fill(v, from, to, 0F);
+                        Arrays.fill(dens, from, to, 0F);
+                        Arrays.fill(uPrev, from, to, 0F);
+                        Arrays.fill(vPrev, from, to, 0F);
+                        Arrays.fill(densPrev, from, to, 0F);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Zero the simulated tiles and the boundary ring, which is everything
+     * a step can leave non-zero.
+     */
+    private void clearWork(float[] x) {
+        for (int ty = 0; ty < tilesY; ty++) {
+            int y0 = ty * tileSize;
+            int y1 = Math.min(height, y0 + tileSize);
+            for (int tx = 0; tx < tilesX; tx++) {
+                if (!work[ty * tilesX + tx]) {
+                    continue;
+                }
+                int x0 = tx * tileSize;
+                int x1 = Math.min(width, x0 + tileSize);
+                for (int y = y0; y < y1; y++) {
+                    Arrays.fill(x, index(y, x0), index(y, x1), 0F);
+                }
+            }
+        }
+        Arrays.fill(x, 0, width, 0F);
+        Arrays.fill(x, index(height - 1, 0), height * width, 0F);
+        for (int y = 1; y < height - 1; y++) {
+            x[index(y, 0)] = 0F;
+            x[index(y, width - 1)] = 0F;
+        }
+    }
+
+    /**
+     * Zero everything outside the simulated tiles.
+     */
+    private void clipToWork(float[] x) {
+        for (int ty = 0; ty < tilesY; ty++) {
+            int y0 = ty * tileSize;
+            int y1 = Math.min(height, y0 + tileSize);
+            for (int tx = 0; tx < tilesX; tx++) {
+                if (work[ty * tilesX + tx]) {
+                    continue;
+                }
+                int x0 = tx * tileSize;
+                int x1 = Math.min(width, x0 + tileSize);
+                for (int y = y0; y < y1; y++) {
+                    Arrays.fill(x, index(y, x0), index(y, x1), 0F);
+                }
+            }
+        }
+    }
+
+    private int index(int y, int x) {
+        return y * width + x;
+    }
+
+    public float getDensity(int y, int x) {
+        return dens[index(y, x)];
+    }
+
+    public float getVelocityX(int y, int x) {
+        return u[index(y, x)];
+    }
+
+    public float getVelocityY(int y, int x) {
+        return v[index(y, x)];
+    }
+
+    /**
+     * Wake the tile holding a cell.
+     *
+     * <p>When tracking, call this after changing a cell of the grid given
+     * to {@link #simulate(Grid, int, float, float, float)} directly, so the
+     * next step loads it.
+     *
+     * @param y local y coordinate
+     * @param x local x coordinate
+     */
+    public void wake(int y, int x) {
+        if (tracking) {
+            active[tileIndex(y, x)] = true;
+        }
+    }
+
+    /**
+     * Add density to be injected by the next step.
+     *
+     * @param y local y coordinate (0 is the top boundary row)
+     * @param x local x coordinate (0 is the left boundary column)
+     * @param amount density per unit time
+     */
+    public void addDensitySource(int y, int x, float amount) {
+        densPrev[index(y, x)] += amount;
+        if (tracking) {
+            active[tileIndex(y, x)] = true;
+        }
+    }
+
+    /**
+     * Add force to be injected by the next step.
+     *
+     * @param y local y coordinate
+     * @param x local x coordinate
+     * @param du horizontal force
+     * @param dv vertical force
+     */
+    public void addVelocitySource(int y, int x, float du, float dv) {
+        uPrev[index(y, x)] += du;
+        vPrev[index(y, x)] += dv;
+        if (tracking) {
+            active[tileIndex(y, x)] = true;
+        }
+    }
+
+    private void checkSize(Grid<? extends SupportsNavierStokes> grid) {
+        if (grid.getHeight() != height || grid.getWidth() != width) {
+            throw new IllegalArgumentException("Grid size does not match solver");
+        }
+    }
+
+    /**
+     * Copy the fields and sources out of a grid.
+     *
+     * @param grid grid of the solver's size
+     * @param layer layer within the grid
+     */
+    public void load(Grid<? extends SupportsNavierStokes> grid, int layer) {
+        checkSize(grid);
+        for (int y = 0; y < height; y++) {
+            loadRow(grid, layer, y, 0, width);
+        }
+        if (tracking) {
+            Arrays.fill(active, false);
+            wakeNonZero();
+        }
+        synced = grid;
+        syncedLayer = layer;
+    }
+
+    private void loadRow(Grid<? extends SupportsNavierStokes> grid, int layer,
+            int y, int from, int to) {
+        int gy = grid.getY() + y;
+        int gx = grid.getX();
+        for (int x = from; x < to; x++) {
+            SupportsNavierStokes cell = grid.get(gy, gx + x);
+            int k = index(y, x);
+            u[k] = cell.getNavierStokes(U_IDX, layer);
+            v[k] = cell.getNavierStokes(V_IDX, layer);
+            dens[k] = cell.getNavierStokes(DENSITY_IDX, layer);
+            uPrev[k] = cell.getNavierStokes(U_IDX + SOURCE_OFFSET, layer);
+            vPrev[k] = cell.getNavierStokes(V_IDX + SOURCE_OFFSET, layer);
+            densPrev[k] = cell.getNavierStokes(DENSITY_IDX + SOURCE_OFFSET, layer);
+        }
+    }
+
+    /**
+     * Copy the fields (and the now-empty sources) back in to a grid.
+     *
+     * @param grid grid of the solver's size
+     * @param layer layer within the grid
+     */
+    public void store(Grid<? extends SupportsNavierStokes> grid, int layer) {
+        checkSize(grid);
+        for (int y = 0; y < height; y++) {
+            storeRow(grid, layer, y, 0, width);
+        }
+        synced = grid;
+        syncedLayer = layer;
+    }
+
+    private void storeRow(Grid<? extends SupportsNavierStokes> grid,
+            int layer, int y, int from, int to) {
+        int gy = grid.getY() + y;
+        int gx = grid.getX();
+        for (int x = from; x < to; x++) {
+            SupportsNavierStokes cell = grid.get(gy, gx + x);
+            int k = index(y, x);
+            cell.setNavierStokes(U_IDX, layer, u[k]);
+            cell.setNavierStokes(V_IDX, layer, v[k]);
+            cell.setNavierStokes(DENSITY_IDX, layer, dens[k]);
+            cell.setNavierStokes(U_IDX + SOURCE_OFFSET, layer, uPrev[k]);
+            cell.setNavierStokes(V_IDX + SOURCE_OFFSET, layer, vPrev[k]);
+            cell.setNavierStokes(DENSITY_IDX + SOURCE_OFFSET, layer, densPrev[k]);
+        }
+    }
+
+    /**
+     * Copy the tiles marked in {@link #work} between the grid and the
+     * fields. Storing also covers the boundary ring, which every step
+     * rewrites.
+     */
+    private void copyWork(Grid<? extends SupportsNavierStokes> grid,
+            int layer, boolean load) {
+        for (int ty = 0; ty < tilesY; ty++) {
+            int y0 = ty * tileSize;
+            int y1 = Math.min(height, y0 + tileSize);
+            for (int tx = 0; tx < tilesX; tx++) {
+                if (!work[ty * tilesX + tx]) {
+                    continue;
+                }
+                int x0 = tx * tileSize;
+                int x1 = Math.min(width, x0 + tileSize);
+                for (int y = y0; y < y1; y++) {
+                    if (load) {
+                        loadRow(grid, layer, y, x0, x1);
+                    } else {
+                        storeRow(grid, layer, y, x0, x1);
+                    }
+                }
+            }
+        }
+        if (load) {
+            return;
+        }
+        for (int x = 0; x < width; x++) {
+            if (!work[tileIndex(0, x)]) {
+                storeRow(grid, layer, 0, x, x + 1);
+            }
+            if (!work[tileIndex(height - 1, x)]) {
+                storeRow(grid, layer, height - 1, x, x + 1);
+            }
+        }
+        for (int y = 1; y < height - 1; y++) {
+            if (!work[tileIndex(y, 0)]) {
+                storeRow(grid, layer, y, 0, 1);
+            }
+            if (!work[tileIndex(y, width - 1)]) {
+                storeRow(grid, layer, y, width - 1, width);
+            }
+        }
+    }
+
+    /**
+     * Load a grid, run one step and store the result.
+     *
+     * <p>When tracking and the grid was the last one loaded or stored, only
+     * the simulated tiles are copied.
+     *
+     * @param grid the grid to run on
+     * @param layer layer within the grid
+     * @param visc the viscosity
+     * @param diff the diffusion
+     * @param dt the time-step
+     */
+    public void simulate(Grid<? extends SupportsNavierStokes> grid,
+                    int layer, float visc, float diff, float dt) {
+        if (!tracking || grid != synced || layer != syncedLayer) {
+            load(grid, layer);
+            step(visc, diff, dt);
+            store(grid, layer);
+            return;
+        }
+        checkSize(grid);
+        planWork();
+        copyWork(grid, layer, true);
+        // the loaded halo may hold new sources
+        wakeNonZero(work);
+        step(visc, diff, dt);
+        copyWork(grid, layer, false);
+    }
+
+    /**
+     * Advance the fields held by the solver.
+     *
+     * @param visc the viscosity
+     * @param diff the diffusion
+     * @param dt the time-step
+     */
+    public void step(float visc, float diff, float dt) {
+        this.visc = visc;
+        this.diff = diff;
+        this.dt = dt;
+        report.reset();
+        if (tracking) {
+            planWork();
+        }
+        velocityStep();
+        densityStep();
+        if (tracking) {
+            clearWork(uPrev);
+            clearWork(vPrev);
+            clearWork(densPrev);
+            settle();
+        } else {
+            Arrays.fill(uPrev, 0F);
+            Arrays.fill(vPrev, 0F);
+            Arrays.fill(densPrev, 0F);
+        }
+    }
+
+    private void velocityStep() {
+        addSource(u, uPrev);
+        addSource(v, vPrev);
+        float[] tmp = uPrev; uPrev = u; u = tmp;
+        diffuse(1, u, uPrev, visc);
+        tmp = vPrev; vPrev = v; v = tmp;
+        diffuse(2, v, vPrev, visc);
+        project(u, v, uPrev, vPrev);
+        tmp = uPrev; uPrev = u; u = tmp;
+        tmp = vPrev; vPrev = v; v = tmp;
+        advect(1, u, uPrev, uPrev, vPrev);
+        advect(2, v, vPrev, uPrev, vPrev);
+        project(u, v, uPrev, vPrev);
+    }
+
+    private void densityStep() {
+        addSource(dens, densPrev);
+        float[] tmp = densPrev; densPrev = dens; dens = tmp;
+        diffuse(0, dens, densPrev, diff);
+        tmp = densPrev; densPrev = dens; dens = tmp;
+        advect(0, dens, densPrev, u, v);
+    }
+
+    private void addSource(float[] x, float[] s) {
+        if (!tracking) {
+            for (int i = 0; i < x.length; i++) {
+                x[i] += dt * s[i];
+            }
+            return;
+        }
+        for (int j = 1; j < height - 1; j++) {
+            int[] spans = rowSpans[j / tileSize];
+            int count = rowSpanCount[j / tileSize];
+            for (int n = 0; n < count; n += 2) {
+                for (int k = j * width + spans[n]; k < j * width + spans[n + 1]; k++) {
+                    x[k] += dt * s[k];
+                }
+            }
+        }
+    }
+
+    private void diffuse(int b, float[] x, float[] x0, float rate) {
+        float a = dt * rate * scale * scale;
+        linearSolve(b, x, x0, a, 1 + 4 * a);
+    }
+
+    /**
+     * Solve <code>c*x - a*(sum of neighbours) = x0</code> with the selected
+     * solver and record the result in the report.
+     */
+    private void linearSolve(int b, float[] x, float[] x0, float a, float c) {
+        if (solver == LinearSolver.GAUSS_SEIDEL) {
+            int iters;
+            for (iters = 0; iters < iterations; iters++) {
+                relax(0, x, x0, a, c);
+                relax(1, x, x0, a, c);
+                setBoundary(b, x);
+            }
+            float residual = Float.NaN;
+            if (measuring) {
+                residual = measure(x, x0, a, c);
+            }
+            report.add(iters, residual);
+            return;
+        }
+        PoissonSolver poisson = getPoisson();
+        int iters;
+        switch (solver) {
+        case MULTIGRID:
+            iters = poisson.multigrid(b, x, x0, a, c, tolerance, maxIterations);
+            if (tracking) {
+                clipToWork(x);
+            }
+            setBoundary(b, x);
+            break;
+        default:
+            iters = poisson.conjugateGradient(b, x, x0, a, c, tolerance,
+                    maxIterations);
+            if (tracking) {
+                clipToWork(x);
+            }
+            setBoundary(b, x);
+            break;
+        }
+        report.add(iters, poisson.getResidual());
+    }
+
+    /**
+     * Work out the relative residual of a Gauss-Seidel solve over the
+     * simulated cells. The boundary has just been set, so it stands in for
+     * the boundary terms of the operator.
+     */
+    private float measure(float[] x, float[] x0, float a, float c) {
+        int w = width;
+        double rhsNorm = 0;
+        double resNorm = 0;
+        for (int j = 1; j < height - 1; j++) {
+            int[] span = rowSpans[j / tileSize];
+            int count = rowSpanCount[j / tileSize];
+            for (int n = 0; n < count; n += 2) {
+                for (int k = j * w + span[n]; k < j * w + span[n + 1]; k++) {
+                    float r = x0[k] - (c * x[k] - a * (x[k - 1] + x[k + 1]
+                            + x[k - w] + x[k + w]));
+                    rhsNorm += x0[k] * x0[k];
+                    resNorm += r * r;
+                }
+            }
+        }
+        if (rhsNorm == 0) {
+            return (float)Math.sqrt(resNorm);
+        }
+        return (float)Math.sqrt(resNorm / rhsNorm);
+    }
+
+    private PoissonSolver getPoisson() {
+        if (poisson == null) {
+            poisson = new PoissonSolver(height, width);
+        }
+        poisson.setPool(pool);
+        return poisson;
+    }
+
+    private void relax(final int color, final float[] x, final float[] x0,
+            final float a, final float c) {
+        final int w = width;
+        final int[][] spans = rowSpans;
+        final int[] counts = rowSpanCount;
+        final int tile = tileSize;
+        RowBands.run(pool, 1, height - 1, new RowBands.Body() {
+            @Override
+            public void rows(int from, int to) {
+                for (int j = from; j < to; j++) {
+                    int row = j * w;
+                    int[] span = spans[j / tile];
+                    for (int n = 0; n < counts[j / tile]; n += 2) {
+                        int start = span[n] + ((span[n] - 1 + j + color) & 1);
+                        for (int i = start; i < span[n + 1]; i += 2) {
+                            int k = row + i;
+                            x[k] = (x0[k] + a * (x[k - 1] + x[k + 1]
+                                    + x[k - w] + x[k + w])) / c;
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    private void advect(int b, final float[] d, final float[] d0,
+            final float[] uu, final float[] vv) {
+        final int[][] spans = rowSpans;
+        final int[] counts = rowSpanCount;
+        final int tile = tileSize;
+        RowBands.run(pool, 1, height - 1, new RowBands.Body() {
+            @Override
+            public void rows(int from, int to) {
+                for (int j = from; j < to; j++) {
+                    int[] span = spans[j / tile];
+                    for (int n = 0; n < counts[j / tile]; n += 2) {
+                        advectSpan(j, span[n], span[n + 1], d, d0, uu, vv);
+                    }
+                }
+            }
+        });
+        setBoundary(b, d);
+    }
+
+    private void advectSpan(int j, int from, int to, float[] d, float[] d0,
+            float[] uu, float[] vv) {
+        int w = width;
+        float dt0 = dt * scale;
+        float maxX = width - 2 + 0.5F;
+        float maxY = height - 2 + 0.5F;
+        for (int i = from; i < to; i++) {
+            int k = j * w + i;
+            float x = i - dt0 * uu[k];
+            float y = j - dt0 * vv[k];
+            if (x < 0.5F) x = 0.5F;
+            if (x > maxX) x = maxX;
+            if (y < 0.5F) y = 0.5F;
+            if (y > maxY) y = maxY;
+            int i0 = (int)x;
+            int j0 = (int)y;
+            float s1 = x - i0;
+            float s0 = 1 - s1;
+            float t1 = y - j0;
+            float t0 = 1 - t1;
+            int k0 = j0 * w + i0;
+            d[k] = s0 * (t0 * d0[k0] + t1 * d0[k0 + w])
+                 + s1 * (t0 * d0[k0 + 1] + t1 * d0[k0 + w + 1]);
+        }
+    }
+
+    private void project(final float[] uu, final float[] vv,
+            final float[] p, final float[] div) {
+        final int w = width;
+        final float h = 1.0F / scale;
+        final int[][] spans = rowSpans;
+        final int[] counts = rowSpanCount;
+        final int tile = tileSize;
+        RowBands.run(pool, 1, height - 1, new RowBands.Body() {
+            @Override
+            public void rows(int from, int to) {
+                for (int j = from; j < to; j++) {
+                    int[] span = spans[j / tile];
+                    for (int n = 0; n < counts[j / tile]; n += 2) {
+                        for (int k = j * w + span[n]; k < j * w + span[n + 1]; k++) {
+                            div[k] = -0.5F * h * (uu[k + 1] - uu[k - 1]
+                                    + vv[k + w] - vv[k - w]);
+                            p[k] = 0;
+                        }
+                    }
+                }
+            }
+        });
+        setBoundary(0, div);
+        setBoundary(0, p);
+        linearSolve(0, p, div, 1, 4);
+        RowBands.run(pool, 1, height - 1, new RowBands.Body() {
+            @Override
+            public void rows(int from, int to) {
+                for (int j = from; j < to; j++) {
+                    int[] span = spans[j / tile];
+                    for (int n = 0; n < counts[j / tile]; n += 2) {
+                        for (int k = j * w + span[n]; k < j * w + span[n + 1]; k++) {
+                            uu[k] -= 0.5F * (p[k + 1] - p[k - 1]) / h;
+                            vv[k] -= 0.5F * (p[k + w] - p[k - w]) / h;
+                        }
+                    }
+                }
+            }
+        });
+        setBoundary(1, uu);
+        setBoundary(2, vv);
+    }
+
+    private void setBoundary(int b, float[] x) {
+        int w = width;
+        int bottom = (height - 1) * w;
+        for (int i = 1; i < w - 1; i++) {
+            x[i] = b == 2 ? -x[i + w] : x[i + w];
+            x[bottom + i] = b == 2 ? -x[bottom - w + i] : x[bottom - w + i];
+        }
+        for (int j = 1; j < height - 1; j++) {
+            int row = j * w;
+            x[row] = b == 1 ? -x[row + 1] : x[row + 1];
+            x[row + w - 1] = b == 1 ? -x[row + w - 2] : x[row + w - 2];
+        }
+        x[0] = 0.5F * (x[1] + x[w]);
+        x[w - 1] = 0.5F * (x[w - 2] + x[2 * w - 1]);
+        x[bottom] = 0.5F * (x[bottom + 1] + x[bottom - w]);
+        x[bottom + w - 1] = 0.5F * (x[bottom + w - 2] + x[bottom - 1]);
+    }
+}
@@ -0,0 +1,41 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.googlecode.blacken.navierstokes;
+
+/**
+ * Linear solvers available for the diffuse and project steps of
+ * {@link ArrayNavierStokes}.
+ *
+ * @author Steven Black
+ * @since Blacken 1.2
+ */
+public enum LinearSolver {
+    /**
+     * A fixed number of red-black Gauss-Seidel sweeps. This is the classic
+     * behavior; the tolerance is ignored.
+     */
+    GAUSS_SEIDEL,
+    /**
+     * Geometric multigrid V-cycles until the residual drops below the
+     * tolerance. Best for large grids.
+     */
+    MULTIGRID,
+    /**
+     * Jacobi-preconditioned conjugate gradient until the residual drops
+     * below the tolerance.
+     */
+    CONJUGATE_GRADIENT,
+}
@@ -0,0 +1,467 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.googlecode.blacken.navierstokes;
+
+import com.googlecode.blacken.core.RowBands;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tolerance-driven solvers for the system used by {@link ArrayNavierStokes}:
+ * <code>c*x - a*(sum of neighbours) = x0</code> over the interior cells.
+ *
+ * <p>The boundary ring is folded in to the operator: a boundary cell is
+ * always a copy (or negated copy) of its interior neighbour, so a neighbour
+ * that falls on the boundary becomes a multiple of the cell itself. What is
+ * left is a symmetric system on the interior cells alone, which is what the
+ * multigrid and conjugate-gradient solvers work on. The result is the same
+ * fixed point the Gauss-Seidel sweeps converge to.
+ *
+ * <p>Scratch arrays are allocated on first use and reused, so an instance
+ * is not thread-safe. Only the multigrid solver allocates the coarse
+ * levels.
+ *
+ * @author Steven Black
+ * @since Blacken 1.2
+ */
+class PoissonSolver {
+    private static final int PRE_SMOOTH = 2;
+    private static final int POST_SMOOTH = 2;
+    private static final int COARSE_SWEEPS = 30;
+    private static final int COARSEST_SIZE = 4;
+
+    private final int width;
+    private final int height;
+    // built by getLevel(); the coarse levels only by multigrid()
+    private final Level[] levels;
+    private ForkJoinPool pool;
+    private float residual;
+    // conjugate gradient scratch, on the finest level's layout
+    private float[] cgR = null;
+    private float[] cgZ;
+    private float[] cgP;
+    private float[] cgQ;
+
+    /**
+     * One level of the multigrid hierarchy, interior cells only.
+     */
+    private static class Level {
+        final int nx;
+        final int ny;
+        final float[] x;
+        final float[] rhs;
+        final float[] res;
+        float a;
+        float c;
+
+        Level(int ny, int nx) {
+            this.nx = nx;
+            this.ny = ny;
+            x = new float[nx * ny];
+            rhs = new float[nx * ny];
+            res = new float[nx * ny];
+        }
+    }
+
+    /**
+     * Create the solver for a grid.
+     *
+     * @param height grid height, including the boundary
+     * @param width grid width, including the boundary
+     */
+    PoissonSolver(int height, int width) {
+        this.width = width;
+        this.height = height;
+        int nx = width - 2;
+        int ny = height - 2;
+        int count = 1;
+        for (int x = nx, y = ny; x > COARSEST_SIZE && y > COARSEST_SIZE;
+                x = (x + 1) / 2, y = (y + 1) / 2) {
+            count++;
+        }
+        levels = new Level[count];
+    }
+
+    private Level getLevel(int l) {
+        if (levels[l] == null) {
+            int nx = width - 2;
+            int ny = height - 2;
+            for (int i = 0; i < l; i++) {
+                nx = (nx + 1) / 2;
+                ny = (ny + 1) / 2;
+            }
+            levels[l] = new Level(ny, nx);
+        }
+        return levels[l];
+    }
+
+    void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Get the relative residual left by the last solve.
+     *
+     * @return residual norm divided by the right-hand side norm
+     */
+    float getResidual() {
+        return residual;
+    }
+
+    /**
+     * Solve with multigrid V-cycles.
+     *
+     * @param b boundary mode
+     * @param x initial guess in, solution out (interior only; the caller
+     *      sets the boundary)
+     * @param x0 right-hand side
+     * @param a neighbour weight
+     * @param c diagonal weight
+     * @param tolerance relative residual to stop at
+     * @param maxCycles most V-cycles to run
+     * @return V-cycles used
+     */
+    int multigrid(int b, float[] x, float[] x0, float a, float c,
+            float tolerance, int maxCycles) {
+        Level top = getLevel(0);
+        top.a = a;
+        top.c = c;
+        for (int l = 1; l < levels.length; l++) {
+            // rediscretize: the neighbour term scales with 1/h^2, the
+            // identity part (c - 4a) does not
+            Level fine = levels[l - 1];
+            Level coarse = getLevel(l);
+            coarse.a = fine.a / 4;
+            coarse.c = fine.c - 3 * fine.a;
+        }
+        gather(x, top.x);
+        gather(x0, top.rhs);
+        if (isSingular(b, a, c)) {
+            removeMean(top.rhs);
+        }
+        residual = relativeResidual(b, top);
+        int cycles = 0;
+        while (cycles < maxCycles && residual > tolerance) {
+            vcycle(b, 0);
+            cycles++;
+            residual = relativeResidual(b, top);
+        }
+        scatter(top.x, x);
+        return cycles;
+    }
+
+    /**
+     * Solve with Jacobi-preconditioned conjugate gradient.
+     *
+     * @param b boundary mode
+     * @param x initial guess in, solution out (interior only)
+     * @param x0 right-hand side
+     * @param a neighbour weight
+     * @param c diagonal weight
+     * @param tolerance relative residual to stop at
+     * @param maxIterations most iterations to run
+     * @return iterations used
+     */
+    int conjugateGradient(int b, float[] x, float[] x0, float a, float c,
+            float tolerance, int maxIterations) {
+        Level top = getLevel(0);
+        int n = top.nx * top.ny;
+        if (cgR == null) {
+            cgR = new float[n];
+            cgZ = new float[n];
+            cgP = new float[n];
+            cgQ = new float[n];
+        }
+        top.a = a;
+        top.c = c;
+        gather(x, top.x);
+        gather(x0, top.rhs);
+        boolean singular = isSingular(b, a, c);
+        if (singular) {
+            removeMean(top.rhs);
+        }
+        double rhsNorm = Math.sqrt(dot(top.rhs, top.rhs));
+        if (rhsNorm == 0) {
+            rhsNorm = 1;
+        }
+        residual(b, top, top.x, top.rhs, cgR);
+        double rNorm = Math.sqrt(dot(cgR, cgR));
+        precondition(b, top, cgR, cgZ);
+        System.arraycopy(cgZ, 0, cgP, 0, n);
+        double rz = dot(cgR, cgZ);
+        int iters = 0;
+        while (iters < maxIterations && rNorm / rhsNorm > tolerance) {
+            apply(b, top, cgP, cgQ);
+            double pq = dot(cgP, cgQ);
+            if (pq <= 0) {
+                break;
+            }
+            float alpha = (float)(rz / pq);
+            float[] xx = top.x;
+            for (int k = 0; k < n; k++) {
+                xx[k] += alpha * cgP[k];
+                cgR[k] -= alpha * cgQ[k];
+            }
+            iters++;
+            if (singular) {
+                // rounding leaks the constant null-space back in
+                removeMean(cgR);
+            }
+            rNorm = Math.sqrt(dot(cgR, cgR));
+            precondition(b, top, cgR, cgZ);
+            double rzNext = dot(cgR, cgZ);
+            float beta = (float)(rzNext / rz);
+            rz = rzNext;
+            for (int k = 0; k < n; k++) {
+                cgP[k] = cgZ[k] + beta * cgP[k];
+            }
+        }
+        residual = relativeResidual(b, top);
+        scatter(top.x, x);
+        return iters;
+    }
+
+    /**
+     * The pure-Neumann pressure system only has a solution when the
+     * right-hand side sums to zero.
+     */
+    private static boolean isSingular(int b, float a, float c) {
+        return b == 0 && Math.abs(c - 4 * a) <= 1e-6F * c;
+    }
+
+    private static void removeMean(float[] rhs) {
+        double sum = 0;
+        for (float f : rhs) {
+            sum += f;
+        }
+        float mean = (float)(sum / rhs.length);
+        for (int k = 0; k < rhs.length; k++) {
+            rhs[k] -= mean;
+        }
+    }
+
+    private static double dot(float[] p, float[] q) {
+        double ret = 0;
+        for (int k = 0; k < p.length; k++) {
+            ret += p[k] * q[k];
+        }
+        return ret;
+    }
+
+    private void gather(float[] full, float[] compact) {
+        int nx = width - 2;
+        for (int j = 0; j < height - 2; j++) {
+            System.arraycopy(full, (j + 1) * width + 1, compact, j * nx, nx);
+        }
+    }
+
+    private void scatter(float[] compact, float[] full) {
+        int nx = width - 2;
+        for (int j = 0; j < height - 2; j++) {
+            System.arraycopy(compact, j * nx, full, (j + 1) * width + 1, nx);
+        }
+    }
+
+    private float relativeResidual(int b, Level lev) {
+        residual(b, lev, lev.x, lev.rhs, lev.res);
+        double rhsNorm = dot(lev.rhs, lev.rhs);
+        double resNorm = dot(lev.res, lev.res);
+        if (rhsNorm == 0) {
+            return (float)Math.sqrt(resNorm);
+        }
+        return (float)Math.sqrt(resNorm / rhsNorm);
+    }
+
+    private void vcycle(int b, int l) {
+        Level lev = levels[l];
+        if (l == levels.length - 1) {
+            for (int s = 0; s < COARSE_SWEEPS; s++) {
+                smooth(b, lev);
+            }
+            return;
+        }
+        for (int s = 0; s < PRE_SMOOTH; s++) {
+            smooth(b, lev);
+        }
+        residual(b, lev, lev.x, lev.rhs, lev.res);
+        Level coarse = levels[l + 1];
+        restrict(lev, coarse);
+        Arrays.fill(coarse.x, 0F);
+        vcycle(b, l + 1);
+        prolongAdd(coarse, lev);
+        for (int s = 0; s < POST_SMOOTH; s++) {
+            smooth(b, lev);
+        }
+    }
+
+    /**
+     * Average each 2x2 block of fine residuals in to the coarse right-hand
+     * side. Odd edges have blocks with fewer cells.
+     */
+    private static void restrict(Level fine, Level coarse) {
+        for (int cj = 0; cj < coarse.ny; cj++) {
+            int j0 = cj * 2;
+            int j1 = Math.min(j0 + 1, fine.ny - 1);
+            for (int ci = 0; ci < coarse.nx; ci++) {
+                int i0 = ci * 2;
+                int i1 = Math.min(i0 + 1, fine.nx - 1);
+                float sum = fine.res[j0 * fine.nx + i0];
+                int count = 1;
+                if (i1 != i0) {
+                    sum += fine.res[j0 * fine.nx + i1];
+                    count++;
+                }
+                if (j1 != j0) {
+                    sum += fine.res[j1 * fine.nx + i0];
+                    count++;
+                    if (i1 != i0) {
+                        sum += fine.res[j1 * fine.nx + i1];
+                        count++;
+                    }
+                }
+                coarse.rhs[cj * coarse.nx + ci] = sum / count;
+            }
+        }
+    }
+
+    /**
+     * Bilinear (cell-centred) interpolation of the coarse correction, added
+     * to the fine solution.
+     */
+    private void prolongAdd(final Level coarse, final Level fine) {
+        RowBands.run(pool, 0, fine.ny, new RowBands.Body() {
+            @Override
+            public void rows(int from, int to) {
+                for (int j = from; j < to; j++) {
+                    int cj = j >> 1;
+                    int cj2 = (j & 1) == 0 ? cj - 1 : cj + 1;
+                    if (cj2 < 0 || cj2 >= coarse.ny) {
+                        cj2 = cj;
+                    }
+                    int row = cj * coarse.nx;
+                    int row2 = cj2 * coarse.nx;
+                    for (int i = 0; i < fine.nx; i++) {
+                        int ci = i >> 1;
+                        int ci2 = (i & 1) == 0 ? ci - 1 : ci + 1;
+                        if (ci2 < 0 || ci2 >= coarse.nx) {
+                            ci2 = ci;
+                        }
+                        fine.x[j * fine.nx + i] +=
+                                0.5625F * coarse.x[row + ci]
+                                + 0.1875F * (coarse.x[row + ci2] + coarse.x[row2 + ci])
+                                + 0.0625F * coarse.x[row2 + ci2];
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * One red-black Gauss-Seidel sweep with the boundary folded in.
+     */
+    private void smooth(int b, Level lev) {
+        relax(b, lev, 0);
+        relax(b, lev, 1);
+    }
+
+    private void relax(int b, final Level lev, final int color) {
+        final float sx = b == 1 ? -1F : 1F;
+        final float sy = b == 2 ? -1F : 1F;
+        final int nx = lev.nx;
+        final int ny = lev.ny;
+        final float a = lev.a;
+        final float c = lev.c;
+        final float[] x = lev.x;
+        final float[] rhs = lev.rhs;
+        RowBands.run(pool, 0, ny, new RowBands.Body() {
+            @Override
+            public void rows(int from, int to) {
+                for (int j = from; j < to; j++) {
+                    int row = j * nx;
+                    for (int i = (j + color) & 1; i < nx; i += 2) {
+                        int k = row + i;
+                        float sum = 0F;
+                        float diag = c;
+                        if (i > 0) sum += x[k - 1]; else diag -= a * sx;
+                        if (i < nx - 1) sum += x[k + 1]; else diag -= a * sx;
+                        if (j > 0) sum += x[k - nx]; else diag -= a * sy;
+                        if (j < ny - 1) sum += x[k + nx]; else diag -= a * sy;
+                        x[k] = (rhs[k] + a * sum) / diag;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * <code>out = A*x</code>.
+     */
+    private void apply(int b, final Level lev, final float[] x,
+            final float[] out) {
+        final float sx = b == 1 ? -1F : 1F;
+        final float sy = b == 2 ? -1F : 1F;
+        final int nx = lev.nx;
+        final int ny = lev.ny;
+        final float a = lev.a;
+        final float c = lev.c;
+        RowBands.run(pool, 0, ny, new RowBands.Body() {
+            @Override
+            public void rows(int from, int to) {
+                for (int j = from; j < to; j++) {
+                    int row = j * nx;
+                    for (int i = 0; i < nx; i++) {
+                        int k = row + i;
+                        float self = x[k];
+                        float sum = (i > 0 ? x[k - 1] : sx * self)
+                                + (i < nx - 1 ? x[k + 1] : sx * self)
+                                + (j > 0 ? x[k - nx] : sy * self)
+                                + (j < ny - 1 ? x[k + nx] : sy * self);
+                        out[k] = c * self - a * sum;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * <code>out = rhs - A*x</code>.
+     */
+    private void residual(int b, Level lev, float[] x, float[] rhs,
+            float[] out) {
+        apply(b, lev, x, out);
+        for (int k = 0; k < out.length; k++) {
+            out[k] = rhs[k] - out[k];
+        }
+    }
+
+    /**
+     * <code>z = r / diag(A)</code>.
+     */
+    private static void precondition(int b, Level lev, float[] r, float[] z) {
+        float sx = b == 1 ? -1F : 1F;
+        float sy = b == 2 ? -1F : 1F;
+        int nx = lev.nx;
+        int ny = lev.ny;
+        for (int j = 0; j < ny; j++) {
+            float dj = (j == 0 ? sy : 0F) + (j == ny - 1 ? sy : 0F);
+            for (int i = 0; i < nx; i++) {
+                float di = (i == 0 ? sx : 0F) + (i == nx - 1 ? sx : 0F);
+                int k = j * nx + i;
+                z[k] = r[k] / (lev.c - lev.a * (di + dj));
+            }
+        }
+    }
+}
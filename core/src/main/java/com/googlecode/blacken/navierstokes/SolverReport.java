@@ -0,0 +1,140 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.googlecode.blacken.navierstokes;
+
+import java.util.Arrays;
+
+/**
+ * Iteration counts and residuals of the linear solves done in one step.
+ *
+ * <p>A full step does five solves, in order: diffuse u, diffuse v, project,
+ * project again after advection, and diffuse density. Residuals are relative
+ * to the size of the right-hand side.
+ *
+ * @author Steven Black
+ * @since Blacken 1.2
+ */
+public class SolverReport {
+    private int count = 0;
+    private int[] iterations = new int[8];
+    private float[] residuals = new float[8];
+
+    void reset() {
+        count = 0;
+    }
+
+    void add(int iters, float residual) {
+        if (count == iterations.length) {
+            iterations = Arrays.copyOf(iterations, count * 2);
+            residuals = Arrays.copyOf(residuals, count * 2);
+        }
+        iterations[count] = iters;
+        residuals[count] = residual;
+        count++;
+    }
+
+    /**
+     * Get the number of solves recorded.
+     *
+     * @return solve count
+     */
+    public int getSolveCount() {
+        return count;
+    }
+
+    /**
+     * Get the iterations (sweeps, V-cycles or CG steps) used by a solve.
+     *
+     * @param solve solve number
+     * @return iteration count
+     */
+    public int getIterations(int solve) {
+        if (solve < 0 || solve >= count) {
+            throw new IndexOutOfBoundsException("No such solve: " + solve);
+        }
+        return iterations[solve];
+    }
+
+    /**
+     * Get the final relative residual of a solve.
+     *
+     * @param solve solve number
+     * @return relative residual, or <code>NaN</code> if it wasn't measured
+     * @see ArrayNavierStokes#setMeasuring(boolean)
+     */
+    public float getResidual(int solve) {
+        if (solve < 0 || solve >= count) {
+            throw new IndexOutOfBoundsException("No such solve: " + solve);
+        }
+        return residuals[solve];
+    }
+
+    public int getTotalIterations() {
+        int ret = 0;
+        for (int i = 0; i < count; i++) {
+            ret += iterations[i];
+        }
+        return ret;
+    }
+
+    /**
+     * Check whether every solve recorded a residual.
+     *
+     * @return false if a Gauss-Seidel solve ran without measuring
+     */
+    public boolean hasResiduals() {
+        for (int i = 0; i < count; i++) {
+            if (Float.isNaN(residuals[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the largest final residual of the solves.
+     *
+     * @return largest relative residual; 0 when there were no solves
+     * @throws IllegalStateException if a residual wasn't measured (see
+     *      {@link #hasResiduals()})
+     */
+    public float getMaxResidual() {
+        float ret = 0F;
+        for (int i = 0; i < count; i++) {
+            if (Float.isNaN(residuals[i])) {
+                throw new IllegalStateException(
+                        "Residual of solve " + i + " was not measured");
+            }
+            ret = Math.max(ret, residuals[i]);
+        }
+        return ret;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder("SolverReport[");
+        for (int i = 0; i < count; i++) {
+            if (i != 0) {
+                buf.append(", ");
+            }
+            buf.append(iterations[i]);
+            buf.append(':');
+            buf.append(residuals[i]);
+        }
+        buf.append(']');
+        return buf.toString();
+    }
+}
@@ -0,0 +1,70 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.googlecode.blacken.resources;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A named piece of game state stored in a {@link SaveFile}.
+ *
+ * <p>Maps, entity tables and palettes each get their own chunk. The chunk is
+ * expected to bump its revision every time it is modified. The save file only
+ * rewrites chunks whose revision differs from the one recorded at the last
+ * save.
+ *
+ * @author Steven Black
+ */
+public interface SaveChunk {
+    /**
+     * Get the name used in the save file's chunk directory.
+     *
+     * <p>This must be stable between runs and no longer than
+     * {@link SaveFile#MAX_NAME_BYTES} bytes when UTF-8 encoded.
+     *
+     * @return chunk name
+     */
+    String getChunkName();
+
+    /**
+     * Get the current modification counter.
+     *
+     * @return revision; any change means the chunk needs to be saved
+     */
+    long getRevision();
+
+    /**
+     * Get the number of bytes {@link #writeChunk(ByteBuffer)} will write.
+     *
+     * @return serialized size in bytes
+     */
+    int getSaveSize();
+
+    /**
+     * Serialize the chunk.
+     *
+     * @param out buffer with exactly {@link #getSaveSize()} bytes remaining
+     */
+    void writeChunk(ByteBuffer out);
+
+    /**
+     * Restore the chunk.
+     *
+     * @param in buffer holding the previously written bytes
+     * @param revision revision the chunk had when it was saved
+     */
+    void readChunk(ByteBuffer in, long revision);
+}
@@ -0,0 +1,465 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.googlecode.blacken.resources;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A memory-mapped save file made up of independently written chunks.
+ *
+ * <p>The file starts with a small header and a fixed-size chunk directory.
+ * Each directory entry records the chunk name, where its data lives, and the
+ * revision of the chunk when it was last written. {@link #save(Collection)}
+ * only rewrites chunks whose {@link SaveChunk#getRevision()} changed, so the
+ * cost of an autosave is proportional to what changed since the last one.
+ *
+ * <p>Saves are crash-consistent: every byte about to be changed in the save
+ * file is first written to a journal next to it and forced to disk. Only then
+ * is the save file itself updated. If the game dies part-way through, the
+ * next {@link #SaveFile(Path)} replays a complete journal or discards an
+ * incomplete one.
+ *
+ * <p>A chunk which grows beyond the space it was given is moved to the end of
+ * the file. The old space is not reclaimed.
+ *
+ * @author Steven Black
+ */
+public class SaveFile implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SaveFile.class);
+    /**
+     * Longest allowed chunk name, in UTF-8 bytes.
+     */
+    public static final int MAX_NAME_BYTES = 62;
+    /**
+     * Number of directory entries in a newly created save file.
+     */
+    public static final int DEFAULT_DIRECTORY_SIZE = 64;
+    /**
+     * Suffix added to the save file name for the write-ahead journal.
+     */
+    public static final String JOURNAL_SUFFIX = ".journal";
+
+    private static final int MAGIC = 0x424c4b53;
+    private static final int JOURNAL_MAGIC = 0x424c4b4a;
+    private static final int JOURNAL_COMMIT = 0x434f4d54;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int ENTRY_SIZE = 96;
+    private static final int MIN_CAPACITY = 256;
+
+    private static class Entry {
+        int index;
+        String name;
+        long offset;
+        int capacity;
+        int length;
+        long revision;
+    }
+
+    private final Path path;
+    private final Path journalPath;
+    private final FileChannel channel;
+    private final MappedByteBuffer directory;
+    private final int directorySize;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private long dataEnd;
+
+    /**
+     * Open (or create) a save file with the default directory size.
+     *
+     * @param path save file location
+     * @throws IOException
+     */
+    public SaveFile(Path path) throws IOException {
+        this(path, DEFAULT_DIRECTORY_SIZE);
+    }
+
+    /**
+     * Open (or create) a save file.
+     *
+     * @param path save file location
+     * @param directorySize number of directory entries when creating a new
+     *      file; ignored when opening an existing one
+     * @throws IOException
+     */
+    public SaveFile(Path path, int directorySize) throws IOException {
+        if (directorySize <= 0) {
+            throw new IllegalArgumentException("directorySize must be positive");
+        }
+        this.path = path;
+        this.journalPath = Paths.get(path.toString() + JOURNAL_SUFFIX);
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean fresh = channel.size() == 0;
+        try {
+            if (!fresh) {
+                replayJournal();
+                directorySize = readHeader();
+            }
+            this.directorySize = directorySize;
+            this.directory = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_SIZE + (long)directorySize * ENTRY_SIZE);
+            if (fresh) {
+                Files.deleteIfExists(journalPath);
+                dataEnd = HEADER_SIZE + (long)directorySize * ENTRY_SIZE;
+                directory.put(makeHeader(0, dataEnd));
+                directory.force();
+            } else {
+                readDirectory();
+            }
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Open (or create) a save file in the per-user save-game folder.
+     *
+     * @param config configuration supplying the folder
+     * @param gameName game-specific folder; system folder if null
+     * @param saveName file name of the save
+     * @return open save file
+     * @throws IOException the folder could not be prepared or opened
+     * @throws PlannedSecurityException
+     * @see BlackenConfig#getUserConfigFolder(String)
+     */
+    public static SaveFile openUserSave(BlackenConfig config, String gameName,
+            String saveName) throws IOException, PlannedSecurityException {
+        String folder = config.prepareDirectory(config.getUserConfigFolder(gameName));
+        if (folder == null) {
+            throw new IOException("No usable save-game folder for " + gameName);
+        }
+        return new SaveFile(Paths.get(folder, saveName));
+    }
+
+    private ByteBuffer makeHeader(int count, long end) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(directorySize);
+        header.putInt(count);
+        header.putLong(end);
+        header.flip();
+        return header;
+    }
+
+    private ByteBuffer makeEntry(Entry e) {
+        ByteBuffer buf = ByteBuffer.allocate(ENTRY_SIZE);
+        byte[] name = e.name.getBytes(StandardCharsets.UTF_8);
+        buf.putShort((short)name.length);
+        buf.put(name);
+        buf.position(MAX_NAME_BYTES + 2);
+        buf.putLong(e.offset);
+        buf.putInt(e.capacity);
+        buf.putInt(e.length);
+        buf.putLong(e.revision);
+        buf.rewind();
+        return buf;
+    }
+
+    /**
+     * Check the header of an existing file.
+     *
+     * @return directory size recorded in the header
+     */
+    private int readHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        header.flip();
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+            throw new IOException("Not a save file: " + path);
+        }
+        if (header.getInt() != VERSION) {
+            throw new IOException("Unsupported save file version: " + path);
+        }
+        int size = header.getInt();
+        if (size <= 0 || HEADER_SIZE + (long)size * ENTRY_SIZE > channel.size()) {
+            throw new IOException("Corrupt chunk directory: " + path);
+        }
+        return size;
+    }
+
+    private void readDirectory() throws IOException {
+        directory.position(3 * 4);
+        int count = directory.getInt();
+        dataEnd = directory.getLong();
+        long dataStart = HEADER_SIZE + (long)directorySize * ENTRY_SIZE;
+        // dataEnd may be past the end of the file: spare capacity isn't
+        // written until a chunk grows in to it
+        if (count < 0 || count > directorySize || dataEnd < dataStart) {
+            throw new IOException("Corrupt chunk directory: " + path);
+        }
+        for (int i = 0; i < count; i++) {
+            directory.position(HEADER_SIZE + i * ENTRY_SIZE);
+            Entry e = new Entry();
+            e.index = i;
+            int nameLength = directory.getShort();
+            if (nameLength < 0 || nameLength > MAX_NAME_BYTES) {
+                throw new IOException("Corrupt chunk directory entry " + i
+                        + ": " + path);
+            }
+            byte[] name = new byte[nameLength];
+            directory.get(name);
+            e.name = new String(name, StandardCharsets.UTF_8);
+            directory.position(HEADER_SIZE + i * ENTRY_SIZE + MAX_NAME_BYTES + 2);
+            e.offset = directory.getLong();
+            e.capacity = directory.getInt();
+            e.length = directory.getInt();
+            e.revision = directory.getLong();
+            if (e.offset < dataStart || e.length < 0 || e.length > e.capacity
+                    || e.offset + e.capacity > dataEnd
+                    || entries.containsKey(e.name)) {
+                throw new IOException("Corrupt chunk directory entry " + i
+                        + ": " + path);
+            }
+            entries.put(e.name, e);
+        }
+    }
+
+    private void replayJournal() throws IOException {
+        if (!Files.exists(journalPath)) {
+            return;
+        }
+        ByteBuffer journal = ByteBuffer.wrap(Files.readAllBytes(journalPath));
+        List<Long> offsets = new ArrayList<>();
+        List<byte[]> records = new ArrayList<>();
+        boolean complete = false;
+        try {
+            if (journal.getInt() == JOURNAL_MAGIC) {
+                int count = journal.getInt();
+                for (int i = 0; i < count && !complete; i++) {
+                    long offset = journal.getLong();
+                    int length = journal.getInt();
+                    if (offset < 0 || length < 0 || length > journal.remaining()) {
+                        break;
+                    }
+                    offsets.add(offset);
+                    byte[] data = new byte[length];
+                    journal.get(data);
+                    records.add(data);
+                }
+                complete = records.size() == count
+                        && journal.getInt() == JOURNAL_COMMIT;
+            }
+        } catch (RuntimeException ex) {
+            // BufferUnderflowException or a bogus length: a torn journal.
+            complete = false;
+        }
+        if (complete) {
+            LOGGER.info("Replaying save journal {}", journalPath);
+            applyRecords(offsets, records);
+        } else {
+            LOGGER.warn("Discarding incomplete save journal {}", journalPath);
+        }
+        Files.delete(journalPath);
+    }
+
+    private void applyRecords(List<Long> offsets, List<byte[]> records) throws IOException {
+        for (int i = 0; i < records.size(); i++) {
+            byte[] data = records.get(i);
+            if (data.length == 0) {
+                continue;
+            }
+            MappedByteBuffer target = channel.map(FileChannel.MapMode.READ_WRITE,
+                    offsets.get(i), data.length);
+            target.put(data);
+            target.force();
+        }
+    }
+
+    private void writeJournal(List<Long> offsets, List<byte[]> records) throws IOException {
+        int size = 4 + 4 + 4;
+        for (byte[] data : records) {
+            size += 8 + 4 + data.length;
+        }
+        ByteBuffer journal = ByteBuffer.allocate(size);
+        journal.putInt(JOURNAL_MAGIC);
+        journal.putInt(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            journal.putLong(offsets.get(i));
+            journal.putInt(records.get(i).length);
+            journal.put(records.get(i));
+        }
+        journal.putInt(JOURNAL_COMMIT);
+        journal.flip();
+        try (FileChannel out = FileChannel.open(journalPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (journal.hasRemaining()) {
+                out.write(journal);
+            }
+            out.force(true);
+        }
+    }
+
+    /**
+     * Get the save file location.
+     *
+     * @return path of the save file
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Get the names of all stored chunks.
+     *
+     * @return unmodifiable set, in directory order
+     */
+    public Set<String> getChunkNames() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    /**
+     * Check whether a chunk is present in the save file.
+     *
+     * @param name chunk name
+     * @return true if stored
+     */
+    public boolean hasChunk(String name) {
+        return entries.containsKey(name);
+    }
+
+    /**
+     * Check whether a chunk would be written by the next save.
+     *
+     * @param chunk chunk to check
+     * @return true if the chunk is new or its revision changed
+     */
+    public boolean isDirty(SaveChunk chunk) {
+        Entry e = entries.get(chunk.getChunkName());
+        return e == null || e.revision != chunk.getRevision();
+    }
+
+    /**
+     * Write every dirty chunk.
+     *
+     * <p>Clean chunks are skipped without being serialized.
+     *
+     * @param chunks chunks making up the saved game
+     * @return number of chunks written
+     * @throws IOException
+     * @throws IllegalArgumentException two chunks have the same name, or a
+     *      name is too long; nothing is written
+     */
+    public int save(Collection<? extends SaveChunk> chunks) throws IOException {
+        Set<String> names = new HashSet<>();
+        for (SaveChunk chunk : chunks) {
+            if (!names.add(chunk.getChunkName())) {
+                throw new IllegalArgumentException("Duplicate chunk name: "
+                        + chunk.getChunkName());
+            }
+        }
+        List<Long> offsets = new ArrayList<>();
+        List<byte[]> records = new ArrayList<>();
+        List<Entry> updated = new ArrayList<>();
+        int count = entries.size();
+        long end = dataEnd;
+        for (SaveChunk chunk : chunks) {
+            if (!isDirty(chunk)) {
+                continue;
+            }
+            String name = chunk.getChunkName();
+            if (name.getBytes(StandardCharsets.UTF_8).length > MAX_NAME_BYTES) {
+                throw new IllegalArgumentException("Chunk name too long: " + name);
+            }
+            byte[] data = new byte[chunk.getSaveSize()];
+            chunk.writeChunk(ByteBuffer.wrap(data));
+            Entry old = entries.get(name);
+            Entry e = new Entry();
+            e.name = name;
+            e.length = data.length;
+            e.revision = chunk.getRevision();
+            if (old == null) {
+                if (count >= directorySize) {
+                    throw new IOException("Chunk directory is full: " + path);
+                }
+                e.index = count++;
+            } else {
+                e.index = old.index;
+            }
+            if (old != null && old.capacity >= data.length) {
+                e.offset = old.offset;
+                e.capacity = old.capacity;
+            } else {
+                e.offset = end;
+                e.capacity = Math.max(MIN_CAPACITY, data.length + data.length / 4);
+                end += e.capacity;
+            }
+            offsets.add(e.offset);
+            records.add(data);
+            offsets.add((long)HEADER_SIZE + (long)e.index * ENTRY_SIZE);
+            records.add(makeEntry(e).array());
+            updated.add(e);
+        }
+        if (updated.isEmpty()) {
+            return 0;
+        }
+        offsets.add(0L);
+        records.add(makeHeader(count, end).array());
+        writeJournal(offsets, records);
+        applyRecords(offsets, records);
+        Files.delete(journalPath);
+        for (Entry e : updated) {
+            entries.put(e.name, e);
+        }
+        dataEnd = end;
+        return updated.size();
+    }
+
+    /**
+     * Restore a chunk from the save file.
+     *
+     * @param chunk chunk to fill
+     * @return false if the chunk is not in the save file
+     * @throws IOException
+     */
+    public boolean load(SaveChunk chunk) throws IOException {
+        Entry e = entries.get(chunk.getChunkName());
+        if (e == null) {
+            return false;
+        }
+        ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, e.offset, e.length);
+        chunk.readChunk(data, e.revision);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -17,6 +17,7 @@
 package com.googlecode.blacken.swing;
 
 import com.googlecode.blacken.colors.ColorHelper;
+import com.googlecode.blacken.colors.ColorPalette;
 import com.googlecode.blacken.exceptions.InvalidStringFormatException;
 import com.googlecode.blacken.grid.Grid;
 import com.googlecode.blacken.resources.ResourceMissingException;
@@ -34,10 +35,36 @@ import java.util.Set;
 import javax.imageio.ImageIO;
 
 /**
+ * Load images through AWT.
+ *
+ * <p>By default the grid holds the 0xAARRGGBB color of each pixel. Given a
+ * palette, each pixel is instead mapped to the index of the nearest palette
+ * color (see {@link ColorPalette#quantize(int[], int, int[], int, int)}),
+ * so the image follows later changes to the palette.</p>
  *
  * @author Steven Black
  */
 public class AwtImageLoader implements BlackenImageLoader {
+    private final ColorPalette palette;
+
+    /**
+     * Create a loader which keeps the pixel colors.
+     */
+    public AwtImageLoader() {
+        this(null);
+    }
+
+    /**
+     * Create a loader which maps pixels on to a palette.
+     *
+     * @param palette palette to map to; <code>null</code> or empty to keep
+     *      the pixel colors
+     * @since 1.2
+     */
+    public AwtImageLoader(ColorPalette palette) {
+        this.palette = palette;
+    }
+
     private BufferedImage loadBufferedImage(Class resourceLoader,
             String resourceName) throws ResourceMissingException {
         BufferedImage img;
@@ -72,13 +99,25 @@ public class AwtImageLoader implements BlackenImageLoader {
                 alpha = Integer.parseInt(t);
             }
         }
+        int[] row = new int[img.getWidth()];
+        int[] indexes = null;
+        if (palette != null && palette.size() > 0) {
+            indexes = new int[row.length];
+        }
         for (int y = 0; y < img.getHeight(); y++) {
+            // one bulk read per row instead of one call per pixel
+            img.getRGB(0, y, row.length, 1, row, 0, row.length);
+            if (indexes != null) {
+                palette.quantize(row, indexes);
+            }
             for (int x = 0; x < img.getWidth(); x++) {
-                Integer clr = img.getRGB(x, y);
+                Integer clr = row[x];
                 if (transparent.contains(clr)) {
                     clr = null;
                 } else if (alpha != null && ColorHelper.getAlpha(clr) < alpha) {
                     clr = null;
+                } else if (indexes != null) {
+                    clr = indexes[x];
                 }
                 grid.set(y, x, clr);
             }
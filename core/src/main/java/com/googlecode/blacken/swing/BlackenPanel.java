@@ -56,9 +56,15 @@ public class BlackenPanel extends JPanel {
         }
         this.maxFontSize = maxFontSize;
     }
+    /**
+     * Wide characters measured when sizing the cells: an ideograph, a
+     * full-width letter, and a couple of emoji.
+     */
+    private static final int[] WIDE_SAMPLES = {0x4E00, 0xFF37, 0x1F600, 0x1F680};
     public class FontBits {
         public Font font;
         public FontMetrics metrics;
+        public GlyphWidths glyphs;
         public int fontAscent;
         public int fontDblAdvance;
         public int fontSglAdvance;
@@ -422,8 +428,9 @@ public class BlackenPanel extends JPanel {
                     // For double-wide characters, we can safely put a NUL
                     // byte in the second slot and it will never be displayed.
                     if (cs != null && !cs.isEmpty()) {
-                        int w = bits.metrics.stringWidth(cs);
-                        w = bits.fontSglAdvance - w;
+                        int w = bits.glyphs.stringWidth(cs);
+                        // wide glyphs are centered over both of their cells
+                        w = bits.fontSglAdvance * bits.glyphs.cells(cs) - w;
                         if (w < 0) {
                             w = 0;
                         } else {
@@ -526,12 +533,21 @@ public class BlackenPanel extends JPanel {
         }
         bits.font = check;
         bits.metrics = this.getGraphics().getFontMetrics(check);
+        bits.glyphs = new GlyphWidths(bits.metrics);
         bits.fontAscent = bits.metrics.getMaxAscent();
         bits.fontDblAdvance = bits.metrics.getMaxAdvance();
         bits.fontSglAdvance = bits.metrics.charWidth('W');
         if (bits.fontDblAdvance == -1) {
             bits.fontDblAdvance = bits.fontSglAdvance;
         }
+        // the max advance needn't cover glyphs the font falls back for,
+        // such as emoji, so measure some wide characters too
+        for (int cp : WIDE_SAMPLES) {
+            if (check.canDisplay(cp)) {
+                bits.fontDblAdvance = Math.max(bits.fontDblAdvance,
+                                               bits.glyphs.advance(cp));
+            }
+        }
         bits.fontHasDouble = false;
         if (bits.fontDblAdvance >= bits.fontSglAdvance + bits.fontSglAdvance) {
             bits.fontHasDouble = true;
@@ -0,0 +1,128 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.googlecode.blacken.swing;
+
+import com.googlecode.blacken.terminal.utils.CodePointWidth;
+import java.awt.FontMetrics;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The measured advance of each glyph of a font.
+ *
+ * <p>Single code points are measured a 256 code point page at a time, the
+ * first time a code point in the page is drawn. Longer sequences (a
+ * character with combining marks) are measured once and remembered. After
+ * the first frame, drawing a screen measures nothing.</p>
+ *
+ * @author Steven Black
+ * @since Blacken 1.2
+ */
+public class GlyphWidths {
+    private static final int PAGE_BITS = 8;
+    private static final int SEQUENCE_CACHE = 1024;
+
+    private final FontMetrics metrics;
+    private final short[][] pages =
+            new short[(Character.MAX_CODE_POINT + 1) >>> PAGE_BITS][];
+    private final Map<String, Integer> sequences =
+            new LinkedHashMap<String, Integer>(64, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+            return size() > SEQUENCE_CACHE;
+        }
+    };
+
+    /**
+     * Create an empty table for a font.
+     *
+     * @param metrics metrics of the font
+     */
+    public GlyphWidths(FontMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Get the metrics measured.
+     *
+     * @return font metrics
+     */
+    public FontMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Get the advance of a single code point.
+     *
+     * @param cp code point
+     * @return advance in pixels
+     */
+    public int advance(int cp) {
+        if (cp < 0 || cp > Character.MAX_CODE_POINT) {
+            return metrics.charWidth(cp);
+        }
+        int p = cp >>> PAGE_BITS;
+        short[] page = pages[p];
+        if (page == null) {
+            page = new short[1 << PAGE_BITS];
+            int base = p << PAGE_BITS;
+            for (int i = 0; i < page.length; i++) {
+                page[i] = (short)metrics.charWidth(base + i);
+            }
+            pages[p] = page;
+        }
+        return page[cp & ((1 << PAGE_BITS) - 1)];
+    }
+
+    /**
+     * Get the advance of a cell's sequence.
+     *
+     * <p>This stands in for {@link FontMetrics#stringWidth(String)}.</p>
+     *
+     * @param sequence cell sequence
+     * @return advance in pixels
+     */
+    public int stringWidth(String sequence) {
+        if (sequence.isEmpty()) {
+            return 0;
+        }
+        int cp = sequence.codePointAt(0);
+        if (Character.charCount(cp) == sequence.length()) {
+            return advance(cp);
+        }
+        Integer ret = sequences.get(sequence);
+        if (ret == null) {
+            ret = metrics.stringWidth(sequence);
+            sequences.put(sequence, ret);
+        }
+        return ret;
+    }
+
+    /**
+     * Get the number of cells a sequence is drawn across.
+     *
+     * @param sequence cell sequence
+     * @return 2 if it starts with a wide character, otherwise 1
+     */
+    public int cells(String sequence) {
+        if (sequence.isEmpty()) {
+            return 1;
+        }
+        return CodePointWidth.isWide(sequence.codePointAt(0)) ? 2 : 1;
+    }
+}
@@ -143,6 +143,7 @@ public class SwingTerminal extends AbstractTerminal
         } else {
             getGrid().copyFrom(oterm.getGrid(), numRows, numCols, startY, startX, 
                            destY, destX, new TerminalCell.ResetCell());
+            rebuildColorUsage();
             forceRefresh(numRows, numCols, destY, destX);
         }
     }
@@ -501,6 +502,7 @@ public class SwingTerminal extends AbstractTerminal
                           int newY, int newX) {
         getGrid().moveBlock(numRows, numCols, origY, origX, newY, newX, 
                        new TerminalCell.ResetCell());
+        rebuildColorUsage();
         gui.moveBlock(numRows, numCols, origY, origX, newY, newX);
     }
 
@@ -539,6 +541,7 @@ public class SwingTerminal extends AbstractTerminal
             setCursorLocation(-1,-1);
         }
         getGrid().setSize(rows, cols);
+        rebuildColorUsage();
         gui.resizeGrid(rows, cols);
         gui.windowResized();
     }
@@ -565,6 +568,9 @@ public class SwingTerminal extends AbstractTerminal
         AwtCell acell = AwtCell.makeAwtFromTerminal(tcell);
         gui.assign(y, x, acell);
         tcell.setDirty(false);
+        if (foreground != null || background != null) {
+            noteColors(y, x);
+        }
     }
 
     @Override
@@ -574,6 +580,7 @@ public class SwingTerminal extends AbstractTerminal
         Grid<TerminalCellLike> grid = getGrid();
         grid.get(y, x).set(tcell);
         grid.get(y, x).setDirty(false);
+        noteColors(y, x);
     }
 
     @Override
@@ -582,7 +589,9 @@ public class SwingTerminal extends AbstractTerminal
         gui.assign(y, x, acell);
         Grid<TerminalCellLike> grid = getGrid();
         tcell.setDirty(false);
-        return grid.set(y, x, tcell);
+        TerminalCellLike ret = grid.set(y, x, tcell);
+        noteColors(y, x);
+        return ret;
     }
 
     @Override
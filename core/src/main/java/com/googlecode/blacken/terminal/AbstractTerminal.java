@@ -18,6 +18,7 @@ package com.googlecode.blacken.terminal;
 import com.googlecode.blacken.colors.ColorHelper;
 import com.googlecode.blacken.colors.ColorPalette;
 import com.googlecode.blacken.colors.PaletteTransformer;
+import com.googlecode.blacken.colors.TransformTable;
 import com.googlecode.blacken.colors.transformers.ForcedPaletteTransformer;
 import com.googlecode.blacken.colors.transformers.GentlePaletteTransformer;
 import com.googlecode.blacken.grid.BoxRegion;
@@ -47,6 +48,13 @@ public abstract class AbstractTerminal implements TerminalInterface {
     private int cursorX = -1;
     private int cursorY = -1;
     private boolean is_running = false;
+    private ColorUsageIndex colorUsage = null;
+    /**
+     * The palette colors as of the last time the screen was brought up to
+     * date with a palette. Palettes can be changed in place, so we compare
+     * against this rather than against the old palette.
+     */
+    private int[] appliedColors = null;
 
     /**
      * Create a new abstract terminal
@@ -61,6 +69,70 @@ public abstract class AbstractTerminal implements TerminalInterface {
         empty.setDirty(false);
         grid.clear(empty);
         empty.setDirty(true);
+        rebuildColorUsage();
+    }
+
+    /**
+     * Turn the color usage index on or off.
+     *
+     * <p>While it is on, the terminal keeps a {@link ColorUsageIndex} up to
+     * date so palette changes can find the cells using a color without
+     * scanning the screen. Cells changed through the <code>set</code>
+     * family, {@link #assign(int, int, TerminalCellLike)}, the block
+     * operations and {@link #refresh()} are tracked. A cell changed
+     * directly (through {@link #get(int, int)}) is picked up when
+     * {@link #refresh()} finds it dirty, or by
+     * {@link #noteColors(int, int)}.</p>
+     *
+     * @param track true to keep an index
+     * @since 1.2
+     */
+    public void setColorUsageTracking(boolean track) {
+        if (!track) {
+            colorUsage = null;
+        } else if (colorUsage == null) {
+            colorUsage = new ColorUsageIndex(0, 0, 0, 0);
+            rebuildColorUsage();
+        }
+    }
+
+    /**
+     * Get the color usage index.
+     *
+     * @return index, or <code>null</code> when it isn't being kept
+     * @since 1.2
+     */
+    public ColorUsageIndex getColorUsage() {
+        return colorUsage;
+    }
+
+    /**
+     * Tell the color usage index about the current colors of a cell.
+     *
+     * <p>Subclasses overriding the <code>set</code> family need to call
+     * this; others only need it after changing a cell directly.</p>
+     *
+     * @param y row
+     * @param x column
+     * @since 1.2
+     */
+    public void noteColors(int y, int x) {
+        if (colorUsage != null) {
+            TerminalCellLike cell = grid.get(y, x);
+            if (cell != null) {
+                colorUsage.update(y, x, cell.getForeground(),
+                                  cell.getBackground());
+            }
+        }
+    }
+
+    /**
+     * Index the whole grid again after a block change.
+     */
+    protected void rebuildColorUsage() {
+        if (colorUsage != null && grid != null) {
+            colorUsage.rebuild(grid);
+        }
     }
 
     @Override
@@ -74,6 +146,7 @@ public abstract class AbstractTerminal implements TerminalInterface {
             int startX, int destY, int destX) {
         grid.copyFrom(oterm.getGrid(), numRows, numCols, startY, startX, destY, destX,
                 new TerminalCell.ResetCell());
+        rebuildColorUsage();
     }
 
     @Override
@@ -190,6 +263,7 @@ public abstract class AbstractTerminal implements TerminalInterface {
             setCursorLocation(-1,-1);
         }
         getGrid().setSize(rows, cols);
+        rebuildColorUsage();
     }
 
     @Override
@@ -214,6 +288,7 @@ public abstract class AbstractTerminal implements TerminalInterface {
         } else {
             grid.reset(rows, cols, this.empty);
         }
+        rebuildColorUsage();
         setCursorLocation(-1,-1);
         is_running = true;
     }
@@ -228,6 +303,7 @@ public abstract class AbstractTerminal implements TerminalInterface {
                           int newY, int newX) {
         grid.moveBlock(numRows, numCols, origY, origX, newY, newX, 
                        new TerminalCell.ResetCell());
+        rebuildColorUsage();
     }
 
     @Override
@@ -245,6 +321,7 @@ public abstract class AbstractTerminal implements TerminalInterface {
                     continue;
                 }
                 if (cell.isDirty()) {
+                    noteColors(y, x);
                     refresh(y, x);
                 }
             }
@@ -275,6 +352,9 @@ public abstract class AbstractTerminal implements TerminalInterface {
             tcell.setSequence(sequence);
         }
         tcell.setDirty(true);
+        if (foreground != null || background != null) {
+            noteColors(y, x);
+        }
     }
 
     @Override
@@ -328,6 +408,7 @@ public abstract class AbstractTerminal implements TerminalInterface {
         if (transform == null) {
             if (newPalette != null) {
                 this.palette = newPalette;
+                this.appliedColors = newPalette.getArgbSnapshot();
                 this.refresh();
             }
             return oldPalette;
@@ -340,17 +421,26 @@ public abstract class AbstractTerminal implements TerminalInterface {
             transform.setPalettes(newPalette, oldPalette);
         }
         oldPalette = transform.getOldPalette();
-        for (int y = grid.getY(); y < grid.getHeight(); y++) {
-            for (int x = grid.getX(); x < grid.getWidth(); x++) {
+        ColorPalette target = transform.getNewPalette();
+        // run the transformer once per color, not once per cell
+        TransformTable table = new TransformTable(transform);
+        int[] oldColors = appliedColors;
+        if (oldColors == null) {
+            oldColors = oldPalette == null ? new int[0] : oldPalette.getArgbSnapshot();
+        }
+        int[] newColors = target == null ? new int[0] : target.getArgbSnapshot();
+        int bottom = grid.getY() + grid.getHeight();
+        int right = grid.getX() + grid.getWidth();
+        for (int y = grid.getY(); y < bottom; y++) {
+            for (int x = grid.getX(); x < right; x++) {
                 TerminalCellLike cell = grid.get(y, x);
-                int b = cell.getBackground();
-                int f = cell.getForeground();
+                int oldB = cell.getBackground();
+                int oldF = cell.getForeground();
                 // take an oldPalette color and transform it in to a newPalette color
-                b = transform.transform(b);
-                f = transform.transform(f);
-                // Always make sure we redraw it.
+                int b = table.transform(oldB);
+                int f = table.transform(oldF);
                 if (b == f) {
-                    int clr = newPalette.getColor(f);
+                    int clr = resolve(newColors, f);
                     switch(method) {
                         case COERCE_NOTHING:
                             break;
@@ -366,12 +456,29 @@ public abstract class AbstractTerminal implements TerminalInterface {
                             break;
                     }
                 }
-                this.set(y, x, null, f, b);
+                // only touch cells which will look different
+                if (f != oldF || b != oldB
+                        || resolve(newColors, f) != resolve(oldColors, oldF)
+                        || resolve(newColors, b) != resolve(oldColors, oldB)) {
+                    this.set(y, x, null, f, b);
+                }
             }
         }
+        appliedColors = newColors;
         return oldPalette;
     }
 
+    /**
+     * Turn a palette index or color in to a color, as
+     * {@link ColorPalette#getColor(int)} does.
+     */
+    private static int resolve(int[] colors, int indexOrColor) {
+        if (indexOrColor >= 0 && indexOrColor < colors.length) {
+            return colors[indexOrColor];
+        }
+        return indexOrColor;
+    }
+
     @Override
     @Deprecated
     public ColorPalette setPalette(ColorPalette palette) {
@@ -396,7 +503,9 @@ public abstract class AbstractTerminal implements TerminalInterface {
 
     @Override
     public TerminalCellLike assign(int y, int x, TerminalCellLike tcell) {
-        return this.getGrid().set(y, x, tcell);
+        TerminalCellLike ret = this.getGrid().set(y, x, tcell);
+        noteColors(y, x);
+        return ret;
     }
 
     @Override
@@ -0,0 +1,344 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.googlecode.blacken.terminal;
+
+import com.googlecode.blacken.grid.Grid;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Which cells of a terminal use which colors.
+ *
+ * <p>For each color (palette index or 0xAARRGGBB value) this keeps a bitmap
+ * of the cells using it as the foreground or background. The terminal
+ * updates it as cells are set; updating a cell whose colors didn't change
+ * costs two comparisons. This lets
+ * {@link com.googlecode.blacken.terminal.editing.Images#refreshForColors}
+ * and friends visit just the cells using a color instead of the whole
+ * screen.</p>
+ *
+ * <p>A color's bitmap is dropped as soon as no cell uses it, so colors
+ * which come and go (fades, blended colors) don't pile up.</p>
+ *
+ * @author Steven Black
+ * @since Blacken 1.2
+ * @see AbstractTerminal#setColorUsageTracking(boolean)
+ */
+public class ColorUsageIndex {
+    /**
+     * Called for each cell found.
+     */
+    public interface CellVisitor {
+        /**
+         * Visit a cell.
+         *
+         * @param y row
+         * @param x column
+         */
+        public void visit(int y, int x);
+    }
+
+    private static final int SPARES = 8;
+
+    private int startY;
+    private int startX;
+    private int height;
+    private int width;
+    private int words;
+    private int[] foregrounds;
+    private int[] backgrounds;
+    private long[] known;
+    // open addressing (linear probing) from color to bitmap
+    private int[] keys;
+    private long[][] bitmaps;
+    private int[] counts;
+    private int colorCount;
+    // emptied bitmaps, all zero, kept for the next new color
+    private long[][] spares = new long[SPARES][];
+    private int spareCount;
+    private long[] scratch;
+
+    /**
+     * Create an empty index.
+     *
+     * @param height rows
+     * @param width columns
+     * @param startY first row
+     * @param startX first column
+     */
+    public ColorUsageIndex(int height, int width, int startY, int startX) {
+        reset(height, width, startY, startX);
+    }
+
+    /**
+     * Forget everything and take a new size.
+     *
+     * @param height rows
+     * @param width columns
+     * @param startY first row
+     * @param startX first column
+     */
+    public final void reset(int height, int width, int startY, int startX) {
+        this.height = Math.max(0, height);
+        this.width = Math.max(0, width);
+        this.startY = startY;
+        this.startX = startX;
+        int cells = this.height * this.width;
+        words = (cells + 63) >>> 6;
+        foregrounds = new int[cells];
+        backgrounds = new int[cells];
+        known = new long[words];
+        keys = new int[16];
+        bitmaps = new long[16][];
+        counts = new int[16];
+        colorCount = 0;
+        Arrays.fill(spares, null);
+        spareCount = 0;
+        scratch = new long[words];
+    }
+
+    /**
+     * Forget everything and index every cell in a grid.
+     *
+     * @param grid grid to index
+     */
+    public void rebuild(Grid<TerminalCellLike> grid) {
+        reset(grid.getHeight(), grid.getWidth(), grid.getY(), grid.getX());
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                TerminalCellLike cell = grid.get(y + startY, x + startX);
+                if (cell != null) {
+                    update(y + startY, x + startX,
+                           cell.getForeground(), cell.getBackground());
+                }
+            }
+        }
+    }
+
+    private int cellIndex(int y, int x) {
+        int r = y - startY;
+        int c = x - startX;
+        if (r < 0 || c < 0 || r >= height || c >= width) {
+            return -1;
+        }
+        return r * width + c;
+    }
+
+    private static int hash(int color) {
+        int h = color * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int slot(int color) {
+        int mask = keys.length - 1;
+        for (int i = hash(color) & mask; bitmaps[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == color) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private long[] find(int color) {
+        int i = slot(color);
+        return i == -1 ? null : bitmaps[i];
+    }
+
+    private int add(int color) {
+        if ((colorCount + 1) * 2 > keys.length) {
+            int[] oldKeys = keys;
+            long[][] oldMaps = bitmaps;
+            int[] oldCounts = counts;
+            keys = new int[oldKeys.length * 2];
+            bitmaps = new long[oldKeys.length * 2][];
+            counts = new int[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldMaps[j] != null) {
+                    int i = hash(oldKeys[j]) & mask;
+                    while (bitmaps[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    bitmaps[i] = oldMaps[j];
+                    counts[i] = oldCounts[j];
+                }
+            }
+        }
+        int mask = keys.length - 1;
+        int i = hash(color) & mask;
+        while (bitmaps[i] != null) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = color;
+        if (spareCount > 0) {
+            bitmaps[i] = spares[--spareCount];
+            spares[spareCount] = null;
+        } else {
+            bitmaps[i] = new long[words];
+        }
+        counts[i] = 0;
+        colorCount++;
+        return i;
+    }
+
+    private void remove(int slot) {
+        if (spareCount < SPARES) {
+            // only emptied bitmaps get here, so it is already all zero
+            spares[spareCount++] = bitmaps[slot];
+        }
+        int mask = keys.length - 1;
+        int hole = slot;
+        bitmaps[hole] = null;
+        // shift later entries back so no probe sequence is broken
+        for (int i = (hole + 1) & mask; bitmaps[i] != null; i = (i + 1) & mask) {
+            int home = hash(keys[i]) & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                bitmaps[hole] = bitmaps[i];
+                counts[hole] = counts[i];
+                bitmaps[i] = null;
+                hole = i;
+            }
+        }
+        colorCount--;
+    }
+
+    private void setBit(int color, int word, long bit) {
+        int i = slot(color);
+        if (i == -1) {
+            i = add(color);
+        }
+        if ((bitmaps[i][word] & bit) == 0) {
+            bitmaps[i][word] |= bit;
+            counts[i]++;
+        }
+    }
+
+    private void clearBit(int color, int word, long bit) {
+        int i = slot(color);
+        if (i == -1 || (bitmaps[i][word] & bit) == 0) {
+            return;
+        }
+        bitmaps[i][word] &= ~bit;
+        if (--counts[i] == 0) {
+            remove(i);
+        }
+    }
+
+    /**
+     * Record the colors a cell uses now.
+     *
+     * <p>Positions outside of the index are ignored.</p>
+     *
+     * @param y row
+     * @param x column
+     * @param foreground foreground palette index or color
+     * @param background background palette index or color
+     */
+    public void update(int y, int x, int foreground, int background) {
+        int i = cellIndex(y, x);
+        if (i == -1) {
+            return;
+        }
+        int word = i >>> 6;
+        long bit = 1L << i;
+        if ((known[word] & bit) != 0) {
+            int oldF = foregrounds[i];
+            int oldB = backgrounds[i];
+            if (oldF == foreground && oldB == background) {
+                return;
+            }
+            // colors kept by the cell keep their bit (and their bitmap)
+            if (oldF != foreground && oldF != background) {
+                clearBit(oldF, word, bit);
+            }
+            if (oldB != foreground && oldB != background) {
+                clearBit(oldB, word, bit);
+            }
+        }
+        known[word] |= bit;
+        foregrounds[i] = foreground;
+        backgrounds[i] = background;
+        setBit(foreground, word, bit);
+        setBit(background, word, bit);
+    }
+
+    /**
+     * Get the number of colors in use.
+     *
+     * @return colors used by at least one cell
+     */
+    public int getColorCount() {
+        return colorCount;
+    }
+
+    /**
+     * Count the cells using a color.
+     *
+     * @param color palette index or color
+     * @return number of cells using it as foreground or background
+     */
+    public int countUsing(int color) {
+        int i = slot(color);
+        return i == -1 ? 0 : counts[i];
+    }
+
+    /**
+     * Visit every cell using any of a set of colors, once each, in row
+     * order.
+     *
+     * <p>The cells are found before the first visit, so the visitor may
+     * change cells (and this index).</p>
+     *
+     * @param colors palette indexes or colors
+     * @param visitor called for each cell
+     * @return number of cells visited
+     */
+    public int forEachCell(Collection<Integer> colors, CellVisitor visitor) {
+        long[] found = scratch;
+        if (found == null || found.length != words) {
+            // in use by an outer call
+            found = new long[words];
+        } else {
+            Arrays.fill(found, 0L);
+        }
+        scratch = null;
+        for (Integer color : colors) {
+            long[] bits = color == null ? null : find(color);
+            if (bits == null) {
+                continue;
+            }
+            for (int w = 0; w < words; w++) {
+                found[w] |= bits[w];
+            }
+        }
+        int ret = 0;
+        for (int w = 0; w < found.length; w++) {
+            long bits = found[w];
+            while (bits != 0) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                visitor.visit(i / width + startY, i % width + startX);
+                ret++;
+            }
+        }
+        if (scratch == null) {
+            scratch = found;
+        }
+        return ret;
+    }
+}
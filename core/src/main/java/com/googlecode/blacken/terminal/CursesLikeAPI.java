@@ -24,6 +24,7 @@ import com.googlecode.blacken.grid.Positionable;
 import com.googlecode.blacken.grid.Regionlike;
 import com.googlecode.blacken.resources.BlackenConfig;
 import com.googlecode.blacken.terminal.editing.SingleLine;
+import com.googlecode.blacken.terminal.utils.CodePointWidth;
 import java.util.EnumSet;
 
 /**
@@ -252,11 +253,40 @@ public class CursesLikeAPI implements TerminalInterface {
      * @param str string to write
      */
     public void mvputs(int y, int x, String str) {
+        if (fitsRow(x, str)) {
+            // the common case: plain text, no wrapping
+            TerminalCellTemplate template = new TerminalCellTemplate();
+            template.setForeground(this.curForeground);
+            template.setBackground(this.curBackground);
+            move(y, SingleLine.putRow(terminal, y, x, str, template));
+            return;
+        }
         int[] pos = SingleLine.putString(terminal, y, x, str, this.curForeground,
                 this.curBackground);
         move(pos[0], pos[1]);
     }
 
+    private boolean fitsRow(int x, String str) {
+        if (x < 0 || x >= terminal.getWidth()) {
+            return false;
+        }
+        int room = terminal.getWidth() - x;
+        for (int i = 0; i < str.length(); i++) {
+            int cp = str.codePointAt(i);
+            if (cp > 0xffff) {
+                i++;
+            }
+            if (cp < 0x20 || cp == 0x7f || BlackenKeys.isSpecial(cp)) {
+                return false;
+            }
+            room -= CodePointWidth.columns(cp);
+            if (room < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Overlay a character on to the last character position.
      * 
@@ -17,6 +17,8 @@
 package com.googlecode.blacken.terminal;
 
 import com.googlecode.blacken.colors.ColorHelper;
+import com.googlecode.blacken.colors.ColorPalette;
+import com.googlecode.blacken.exceptions.InvalidStringFormatException;
 import com.googlecode.blacken.grid.Regionlike;
 import com.googlecode.blacken.terminal.utils.CodePointUtils;
 import java.util.EnumSet;
@@ -85,6 +87,46 @@ public class TerminalCellTemplate implements TerminalCellLike {
                 template.style, template.cellWalls);
     }
 
+    /**
+     * Create a template from color names, looking them up once.
+     *
+     * <p>Use this for templates that are built when a screen is set up and
+     * then applied every frame, so the names aren't looked up again each
+     * time. The colors are resolved the same way as
+     * {@link ColorPalette#getColorOrIndex(String)}; with no palette they
+     * must be color definitions.</p>
+     *
+     * @param palette palette to look names up in; may be <code>null</code>
+     * @param sequence sequence or <code>null</code> to leave it unset
+     * @param foreground name or definition, or <code>null</code> to leave it
+     *      unset
+     * @param background name or definition, or <code>null</code> to leave it
+     *      unset
+     * @return new template
+     * @throws IllegalArgumentException a color couldn't be resolved
+     */
+    public static TerminalCellTemplate withColors(ColorPalette palette,
+            String sequence, String foreground, String background) {
+        return new TerminalCellTemplate(sequence,
+                resolveColor(palette, foreground),
+                resolveColor(palette, background));
+    }
+
+    private static Integer resolveColor(ColorPalette palette, String color) {
+        if (color == null) {
+            return null;
+        }
+        if (palette != null) {
+            return palette.getColorOrIndex(color);
+        }
+        try {
+            return ColorHelper.makeColor(color);
+        } catch (InvalidStringFormatException ex) {
+            throw new IllegalArgumentException("Illegal color definition: "
+                    + color, ex);
+        }
+    }
+
     private void internalSetAll(TerminalCellTransformer transformer,
             String sequence, Integer fore, Integer back,
             EnumSet<TerminalStyle> style, EnumSet<CellWalls> walls) {
@@ -280,6 +322,38 @@ public class TerminalCellTemplate implements TerminalCellLike {
         }
     }
 
+    /**
+     * Would {@link #applyOn(TerminalCellLike, Regionlike, int, int)} change
+     * a cell?
+     *
+     * <p>A template with a transformer always might.</p>
+     *
+     * @param tcell cell to check
+     * @return false if applying the template would leave the cell as it is
+     * @since 1.2
+     */
+    public boolean wouldChange(TerminalCellLike tcell) {
+        if (transformer != null) {
+            return true;
+        }
+        if (background != null && tcell.getBackground() != background) {
+            return true;
+        }
+        if (foreground != null && tcell.getForeground() != foreground) {
+            return true;
+        }
+        if (sequence != null && !sequence.equals(tcell.getSequence())) {
+            return true;
+        }
+        if (cellWalls != null && !cellWalls.equals(tcell.getCellWalls())) {
+            return true;
+        }
+        if (style != null && !style.equals(tcell.getStyle())) {
+            return true;
+        }
+        return false;
+    }
+
     @Override
     public void set(TerminalCellLike tcell) {
         this.setBackground(tcell.getBackground());
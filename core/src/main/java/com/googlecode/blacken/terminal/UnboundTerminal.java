@@ -113,7 +113,7 @@ import com.googlecode.blacken.grid.Grid;
         Grid<TerminalCellLike> grid = getGrid();
         grid.get(y, x).set(tcell);
         grid.get(y, x).setDirty(false);
-        
+        noteColors(y, x);
     }
 
     @Override
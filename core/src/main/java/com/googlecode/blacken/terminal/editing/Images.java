@@ -17,6 +17,8 @@
 package com.googlecode.blacken.terminal.editing;
 
 import com.googlecode.blacken.grid.Grid;
+import com.googlecode.blacken.terminal.AbstractTerminal;
+import com.googlecode.blacken.terminal.ColorUsageIndex;
 import com.googlecode.blacken.terminal.TerminalCellLike;
 import com.googlecode.blacken.terminal.TerminalInterface;
 import com.googlecode.blacken.terminal.TerminalViewInterface;
@@ -112,15 +114,66 @@ public class Images {
         }
     }
 
+    /**
+     * Find the terminal keeping the color usage index, if there is one.
+     */
+    private static AbstractTerminal findTracked(TerminalViewInterface term) {
+        TerminalInterface backing = term.getBackingTerminal();
+        if (backing instanceof AbstractTerminal) {
+            return (AbstractTerminal)backing;
+        }
+        return null;
+    }
+
+    /**
+     * Find the color usage index behind a terminal, if it keeps one.
+     */
+    private static ColorUsageIndex findColorUsage(TerminalViewInterface term) {
+        AbstractTerminal tracked = findTracked(term);
+        if (tracked != null) {
+            return tracked.getColorUsage();
+        }
+        return null;
+    }
+
+    private static boolean inside(TerminalViewInterface term, int y, int x) {
+        return y >= term.getY() && x >= term.getX()
+                && y < term.getY() + term.getHeight()
+                && x < term.getX() + term.getWidth();
+    }
+
     /**
      * This takes a collection of colors, and refreshes every cell with those
      * colors in either the foreground or background.
+     *
+     * <p>When the terminal keeps a {@link ColorUsageIndex} only the cells
+     * using the colors are looked at.</p>
+     *
      * @param palette
      * @param term
      * @since 1.2
      */
-    public static void refreshForColors(Collection<Integer> palette, TerminalViewInterface term) {
-        Set<Integer> pal = new HashSet<>(palette);
+    public static void refreshForColors(Collection<Integer> palette, final TerminalViewInterface term) {
+        final Set<Integer> pal = new HashSet<>(palette);
+        ColorUsageIndex usage = findColorUsage(term);
+        if (usage != null) {
+            usage.forEachCell(pal, new ColorUsageIndex.CellVisitor() {
+                @Override
+                public void visit(int y, int x) {
+                    if (!inside(term, y, x)) {
+                        return;
+                    }
+                    TerminalCellLike cell = term.get(y, x);
+                    if (cell == null) {
+                        return;
+                    }
+                    if (pal.contains(cell.getBackground()) || pal.contains(cell.getForeground())) {
+                        term.refresh(y, x);
+                    }
+                }
+            });
+            return;
+        }
         for (int y = 0; y < term.getHeight(); y++) {
             for (int x = 0; x < term.getWidth(); x++) {
                 TerminalCellLike cell = term.get(y + term.getY(), x + term.getX());
@@ -134,27 +187,60 @@ public class Images {
         }
     }
 
-    public static void removeColors(List<Integer> palette, TerminalInterface term, int background) {
-        Set<Integer> pal = new HashSet<>(palette);
+    /**
+     * Replace a set of colors with a background color and refresh the
+     * cells changed.
+     *
+     * <p>When the terminal keeps a {@link ColorUsageIndex} only the cells
+     * using the colors are looked at.</p>
+     *
+     * @param palette colors to remove
+     * @param term terminal
+     * @param background color to use instead
+     */
+    public static void removeColors(List<Integer> palette, final TerminalInterface term, final int background) {
+        final Set<Integer> pal = new HashSet<>(palette);
+        final AbstractTerminal tracked = findTracked(term);
+        ColorUsageIndex usage = findColorUsage(term);
+        if (usage != null) {
+            usage.forEachCell(pal, new ColorUsageIndex.CellVisitor() {
+                @Override
+                public void visit(int y, int x) {
+                    if (inside(term, y, x)) {
+                        removeColors(pal, term, tracked, background, y, x);
+                    }
+                }
+            });
+            return;
+        }
         for (int y = 0; y < term.getHeight(); y++) {
             for (int x = 0; x < term.getWidth(); x++) {
-                TerminalCellLike cell = term.get(y + term.getY(), x + term.getX());
-                if (cell == null) {
-                    continue;
-                }
-                boolean changed = false;
-                if (pal.contains(cell.getBackground())) {
-                    cell.setBackground(background);
-                    changed = true;
-                }
-                if (pal.contains(cell.getForeground())) {
-                    cell.setForeground(background);
-                    changed = true;
-                }
-                if (changed) {
-                    term.refresh(y + term.getY(), x + term.getX());
-                }
+                removeColors(pal, term, tracked, background,
+                             y + term.getY(), x + term.getX());
+            }
+        }
+    }
+
+    private static void removeColors(Set<Integer> pal, TerminalInterface term,
+            AbstractTerminal tracked, int background, int y, int x) {
+        TerminalCellLike cell = term.get(y, x);
+        if (cell == null) {
+            return;
+        }
+        boolean changed = false;
+        if (pal.contains(cell.getBackground())) {
+            cell.setBackground(background);
+            changed = true;
+        }
+        if (pal.contains(cell.getForeground())) {
+            cell.setForeground(background);
+            changed = true;
+        }
+        if (changed) {
+            if (tracked != null) {
+                tracked.noteColors(y, x);
             }
+            term.refresh(y, x);
         }
     }
 }
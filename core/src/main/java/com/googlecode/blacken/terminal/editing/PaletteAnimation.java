@@ -0,0 +1,368 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.googlecode.blacken.terminal.editing;
+
+import com.googlecode.blacken.colors.ColorHelper;
+import com.googlecode.blacken.colors.ColorPalette;
+import com.googlecode.blacken.terminal.TerminalCellLike;
+import com.googlecode.blacken.terminal.TerminalViewInterface;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Palette cycling for water, lava, fire and the like.
+ *
+ * <p>Each {@link Channel} owns a run of palette indexes and a table of
+ * colors (usually from {@link ColorHelper#createCyclicGradient(int, int...)}).
+ * Every few frames the channel rotates the table through its indexes. Only
+ * the cells drawn with those indexes are refreshed, so this does what
+ * {@link Images#refreshForColors} does without scanning the screen each
+ * frame.</p>
+ *
+ * <p>The cells using each channel are found by {@link #rescan()}. Call it
+ * after drawing the map, and {@link #addCell(int, int)} when a single cell
+ * starts using an animated color. Adding a cell a channel already has does
+ * nothing. Cells that stop using one are dropped the next time their
+ * channel refreshes.</p>
+ *
+ * @author Steven Black
+ * @since Blacken 1.2
+ */
+public class PaletteAnimation {
+
+    /**
+     * A run of palette indexes stepping through a color table.
+     */
+    public static class Channel {
+        private final int start;
+        private final int length;
+        private final int[] table;
+        private final int framesPerStep;
+        private int phase = 0;
+        private int frames = 0;
+        private int[] cells = new int[16];
+        private int cellCount = 0;
+        // positions in cells, keyed on y * width + x inside the view
+        private final BitSet present = new BitSet();
+
+        Channel(int start, int length, int[] table, int framesPerStep) {
+            this.start = start;
+            this.length = length;
+            this.table = table;
+            this.framesPerStep = framesPerStep;
+        }
+
+        /**
+         * Get the first palette index.
+         *
+         * @return palette index
+         */
+        public int getStart() {
+            return start;
+        }
+
+        /**
+         * Get the number of palette indexes.
+         *
+         * @return number of indexes
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * Get the current position in the table.
+         *
+         * @return table index shown at the first palette index
+         */
+        public int getPhase() {
+            return phase;
+        }
+
+        /**
+         * Get the number of cells waiting to be refreshed by this channel.
+         *
+         * @return number of cells
+         */
+        public int getCellCount() {
+            return cellCount;
+        }
+
+        /**
+         * Get the color a palette index has at the current phase.
+         *
+         * @param index palette index inside this channel
+         * @return color value
+         */
+        public int getColor(int index) {
+            return table[(index - start + phase) % table.length];
+        }
+
+        boolean covers(int color) {
+            return color >= start && color < start + length;
+        }
+
+        boolean uses(TerminalCellLike cell) {
+            return covers(cell.getForeground()) || covers(cell.getBackground());
+        }
+
+        void addCell(int y, int x, int key) {
+            if (present.get(key)) {
+                return;
+            }
+            present.set(key);
+            if (cellCount * 2 == cells.length) {
+                cells = Arrays.copyOf(cells, cells.length * 2);
+            }
+            cells[cellCount * 2] = y;
+            cells[cellCount * 2 + 1] = x;
+            cellCount++;
+        }
+
+        void clearCells() {
+            cellCount = 0;
+            present.clear();
+        }
+
+        boolean step(int frameCount) {
+            frames += frameCount;
+            int steps = frames / framesPerStep;
+            frames -= steps * framesPerStep;
+            if (steps == 0) {
+                return false;
+            }
+            int old = phase;
+            phase = (int)((phase + (long)steps) % table.length);
+            return phase != old;
+        }
+    }
+
+    private final TerminalViewInterface term;
+    private final List<Channel> channels = new ArrayList<>();
+    // the view shape the channel keys were made for
+    private int keyX = 0;
+    private int keyY = 0;
+    private int keyWidth = -1;
+    private int keyHeight = -1;
+
+    /**
+     * Create an animation for a terminal.
+     *
+     * <p>The palette animated is the backing terminal's palette at the time
+     * of each frame.</p>
+     *
+     * @param term terminal (or view) whose cells get refreshed
+     */
+    public PaletteAnimation(TerminalViewInterface term) {
+        this.term = term;
+    }
+
+    /**
+     * Add a channel.
+     *
+     * <p>On each step the palette index <code>start + i</code> gets
+     * <code>table[(i + phase) % table.length]</code>. The palette is set
+     * to the first phase right away.</p>
+     *
+     * @param start first palette index
+     * @param length number of palette indexes
+     * @param table colors to cycle through; it is not copied
+     * @param framesPerStep frames between steps
+     * @return the new channel
+     */
+    public Channel addChannel(int start, int length, int[] table,
+                              int framesPerStep) {
+        if (start < 0 || length < 1) {
+            throw new IllegalArgumentException("bad palette range");
+        }
+        if (table.length == 0) {
+            throw new IllegalArgumentException("empty color table");
+        }
+        if (framesPerStep < 1) {
+            throw new IllegalArgumentException("framesPerStep must be positive");
+        }
+        for (Channel c : channels) {
+            if (start < c.start + c.length && c.start < start + length) {
+                throw new IllegalArgumentException("channels overlap");
+            }
+        }
+        Channel channel = new Channel(start, length, table, framesPerStep);
+        channels.add(channel);
+        apply(channel, getPalette());
+        return channel;
+    }
+
+    /**
+     * Remove a channel. The palette keeps its current colors.
+     *
+     * @param channel channel to remove
+     * @return true if it was here
+     */
+    public boolean removeChannel(Channel channel) {
+        return channels.remove(channel);
+    }
+
+    /**
+     * Get the channels.
+     *
+     * @return channels in the order they were added
+     */
+    public List<Channel> getChannels() {
+        return channels;
+    }
+
+    private ColorPalette getPalette() {
+        return term.getBackingTerminal().getPalette();
+    }
+
+    /**
+     * Find every cell using an animated color.
+     *
+     * <p>This is a full scan. It is meant to be run after drawing, not every
+     * frame.</p>
+     */
+    public void rescan() {
+        for (Channel c : channels) {
+            c.clearCells();
+        }
+        if (channels.isEmpty()) {
+            return;
+        }
+        for (int y = 0; y < term.getHeight(); y++) {
+            for (int x = 0; x < term.getWidth(); x++) {
+                addCell(y + term.getY(), x + term.getX());
+            }
+        }
+    }
+
+    /**
+     * Check one cell and remember it if it uses an animated color.
+     *
+     * @param y row
+     * @param x column
+     */
+    public void addCell(int y, int x) {
+        TerminalCellLike cell = term.get(y, x);
+        if (cell == null) {
+            return;
+        }
+        checkKeys();
+        int key = key(y, x);
+        for (Channel c : channels) {
+            if (c.uses(cell)) {
+                c.addCell(y, x, key);
+            }
+        }
+    }
+
+    /**
+     * Re-key the cells if the view moved or changed shape, dropping any
+     * which are no longer inside it.
+     */
+    private void checkKeys() {
+        if (keyWidth == term.getWidth() && keyHeight == term.getHeight()
+                && keyX == term.getX() && keyY == term.getY()) {
+            return;
+        }
+        keyWidth = term.getWidth();
+        keyHeight = term.getHeight();
+        keyX = term.getX();
+        keyY = term.getY();
+        for (Channel c : channels) {
+            c.present.clear();
+            int[] cells = c.cells;
+            int kept = 0;
+            for (int i = 0; i < c.cellCount; i++) {
+                int y = cells[i * 2];
+                int x = cells[i * 2 + 1];
+                if (y < keyY || y >= keyY + keyHeight
+                        || x < keyX || x >= keyX + keyWidth) {
+                    continue;
+                }
+                c.present.set(key(y, x));
+                cells[kept * 2] = y;
+                cells[kept * 2 + 1] = x;
+                kept++;
+            }
+            c.cellCount = kept;
+        }
+    }
+
+    private int key(int y, int x) {
+        return (y - keyY) * keyWidth + x - keyX;
+    }
+
+    /**
+     * Move the animation along.
+     *
+     * <p>Channels due to step update the palette and refresh their cells.
+     * Call {@link TerminalViewInterface#doUpdate()} afterwards to show the
+     * change.</p>
+     *
+     * @param frameCount frames since the last call
+     * @return number of cells refreshed
+     */
+    public int advance(int frameCount) {
+        ColorPalette palette = getPalette();
+        int refreshed = 0;
+        for (Channel c : channels) {
+            if (c.step(frameCount) && apply(c, palette)) {
+                refreshed += refresh(c);
+            }
+        }
+        return refreshed;
+    }
+
+    private boolean apply(Channel c, ColorPalette palette) {
+        if (palette == null) {
+            return false;
+        }
+        boolean changed = false;
+        int end = Math.min(c.start + c.length, palette.size());
+        for (int i = c.start; i < end; i++) {
+            int clr = c.getColor(i);
+            if (palette.get(i) != clr) {
+                palette.set(i, clr);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private int refresh(Channel c) {
+        checkKeys();
+        int[] cells = c.cells;
+        int kept = 0;
+        for (int i = 0; i < c.cellCount; i++) {
+            int y = cells[i * 2];
+            int x = cells[i * 2 + 1];
+            TerminalCellLike cell = term.get(y, x);
+            if (cell == null || !c.uses(cell)) {
+                c.present.clear(key(y, x));
+                continue;
+            }
+            term.refresh(y, x);
+            cells[kept * 2] = y;
+            cells[kept * 2 + 1] = x;
+            kept++;
+        }
+        c.cellCount = kept;
+        return kept;
+    }
+}
@@ -18,11 +18,14 @@ package com.googlecode.blacken.terminal.editing;
 import com.googlecode.blacken.grid.Grid;
 import com.googlecode.blacken.grid.Point;
 import com.googlecode.blacken.grid.Positionable;
+import com.googlecode.blacken.terminal.AbstractTerminal;
 import com.googlecode.blacken.terminal.BlackenKeys;
 import com.googlecode.blacken.terminal.TerminalCellLike;
 import com.googlecode.blacken.terminal.TerminalCellTemplate;
+import com.googlecode.blacken.terminal.TerminalInterface;
 import com.googlecode.blacken.terminal.TerminalViewInterface;
 import com.googlecode.blacken.terminal.utils.CodePointUtils;
+import com.googlecode.blacken.terminal.utils.CodePointWidth;
 
 /**
  *
@@ -168,6 +171,9 @@ public class SingleLine {
     /**
      * Write a string.
      *
+     * <p>Wide characters take two cells; the second is left empty for the
+     * glyph to spill in to.</p>
+     *
      * @param terminal
      * @param start
      * @param end
@@ -197,10 +203,10 @@ public class SingleLine {
         int y = start.getY();
         int x = start.getX();
         if (align.equals(Alignment.CENTER)) {
-            int[] a = CodePointUtils.findAdvancingCodepoints(string, 0);
+            int[] a = CodePointUtils.findAdvancingColumns(string, 0);
             x -= a[0] / 2;
         } else if (align.equals(Alignment.RIGHT)) {
-            int[] a = CodePointUtils.findAdvancingCodepoints(string, 0);
+            int[] a = CodePointUtils.findAdvancingColumns(string, 0);
             x -= a[0];
         } else if (align.equals(Alignment.FIRST)) {
             // nothing here.
@@ -217,11 +223,10 @@ public class SingleLine {
         for (int i = 0; i < string.length(); i++) {
             cp = string.codePointAt(i);
             if (cp > 0xffff) {
-                if (Character.isLowSurrogate(string.charAt(i))) {
-                    continue;
-                }
+                i++;
             }
-            if (x >= grid.getWidth()) {
+            int w = CodePointWidth.columns(cp);
+            if (x + (w == 2 && x > 0 ? 2 : 1) > grid.getWidth()) {
                 x = 0;
                 y++;
             }
@@ -230,10 +235,8 @@ public class SingleLine {
                 y = grid.getHeight() - 1;
             }
             TerminalCellLike c;
-            switch (Character.getType(cp)) {
-                case Character.COMBINING_SPACING_MARK:
-                case Character.ENCLOSING_MARK:
-                case Character.NON_SPACING_MARK:
+            switch (w) {
+                case 0:
                     if (lastUpX >= 0 && lastUpY >= 0) {
                         c = terminal.get(lastUpY, lastUpX);
                         c.addSequence(cp);
@@ -249,10 +252,10 @@ public class SingleLine {
                         y++;
                         x = start.getX();
                         if (align.equals(Alignment.CENTER)) {
-                            int[] a = CodePointUtils.findAdvancingCodepoints(string, i+1);
+                            int[] a = CodePointUtils.findAdvancingColumns(string, i+1);
                             x -= a[0] / 2;
                         } else if (align.equals(Alignment.RIGHT)) {
-                            int[] a = CodePointUtils.findAdvancingCodepoints(string, i+1);
+                            int[] a = CodePointUtils.findAdvancingColumns(string, i+1);
                             x -= a[0];
                         } else if (align.equals(Alignment.FIRST)) {
                             x = 0;
@@ -281,8 +284,18 @@ public class SingleLine {
                         }
                         terminal.refresh(y, x);
                         x++;
+                        if (w == 2 && x < grid.getWidth()) {
+                            // the glyph spills over this cell
+                            cell = terminal.get(y, x);
+                            cell.setSequence("");
+                            if (template != null) {
+                                template.applyOn(cell, terminal.getBounds(), y, x);
+                            }
+                            terminal.refresh(y, x);
+                            x++;
+                        }
                     } else {
-                        x++;
+                        x += w;
                     }
             }
         }
@@ -315,5 +328,192 @@ public class SingleLine {
         return new int[] {out.getY(), out.getX()};
     }
 
+    /**
+     * Write text across part of a row as a single update.
+     *
+     * <p>This is meant for writing a lot of text, such as a message log.
+     * Each cell gets a code point (with any combining marks after it) and
+     * the template. Wide characters take two cells. Cells already showing
+     * what would be written are left alone, so writing the same text again
+     * marks nothing dirty. The changed cells are refreshed together after
+     * everything is written.</p>
+     *
+     * <p>Control codes aren't processed, and the text stops at the right
+     * edge instead of wrapping. Use
+     * {@link #putString(TerminalViewInterface, Positionable, Positionable, String, TerminalCellTemplate)}
+     * for that.</p>
+     *
+     * @param terminal terminal to write to
+     * @param y row
+     * @param x first column
+     * @param text text to write
+     * @param template template applied to each cell written; may be null
+     * @return the column after the last cell written
+     * @since 1.2
+     */
+    static public int putRow(TerminalViewInterface terminal, int y, int x,
+            CharSequence text, TerminalCellTemplate template) {
+        return putRow(terminal, y, x, text, null, 0, text.length(), template);
+    }
+
+    /**
+     * Write code points across part of a row as a single update.
+     *
+     * @param terminal terminal to write to
+     * @param y row
+     * @param x first column
+     * @param codepoints code points to write
+     * @param offset first code point to write
+     * @param length number of code points to write
+     * @param template template applied to each cell written; may be null
+     * @return the column after the last cell written
+     * @since 1.2
+     * @see #putRow(TerminalViewInterface, int, int, CharSequence, TerminalCellTemplate)
+     */
+    static public int putRow(TerminalViewInterface terminal, int y, int x,
+            int[] codepoints, int offset, int length,
+            TerminalCellTemplate template) {
+        return putRow(terminal, y, x, null, codepoints, offset,
+                      offset + length, template);
+    }
+
+    private static int codePointAt(CharSequence text, int[] cps, int i) {
+        return text == null ? cps[i] : Character.codePointAt(text, i);
+    }
+
+    private static int nextCodePoint(CharSequence text, int[] cps, int i) {
+        if (text == null) {
+            return i + 1;
+        }
+        return i + Character.charCount(Character.codePointAt(text, i));
+    }
+
+    private static int skipCombining(CharSequence text, int[] cps, int i, int end) {
+        while (i < end && CodePointWidth.isCombining(codePointAt(text, cps, i))) {
+            i = nextCodePoint(text, cps, i);
+        }
+        return i;
+    }
+
+    private static String sequence(CharSequence text, int[] cps, int start, int end) {
+        if (text == null) {
+            return new String(cps, start, end - start);
+        }
+        return text.subSequence(start, end).toString();
+    }
+
+    private static boolean sameSequence(String seq, CharSequence text,
+            int[] cps, int start, int end) {
+        if (text != null) {
+            if (seq.length() != end - start) {
+                return false;
+            }
+            for (int i = 0; i < seq.length(); i++) {
+                if (seq.charAt(i) != text.charAt(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        int s = 0;
+        for (int i = start; i < end; i++) {
+            if (s >= seq.length() || seq.codePointAt(s) != cps[i]) {
+                return false;
+            }
+            s += Character.charCount(cps[i]);
+        }
+        return s == seq.length();
+    }
+
+    private static boolean putCell(TerminalViewInterface terminal, int y, int x,
+            CharSequence text, int[] cps, int start, int end,
+            TerminalCellTemplate template) {
+        TerminalCellLike cell = terminal.get(y, x);
+        boolean sameTemplate = template == null || !template.wouldChange(cell);
+        if (sameTemplate) {
+            boolean sameText;
+            if (template != null && !template.isSequenceUnset()) {
+                // the template's sequence wins anyway
+                sameText = true;
+            } else if (cps == null && text == null) {
+                sameText = cell.getSequence().isEmpty();
+            } else {
+                sameText = sameSequence(cell.getSequence(), text, cps, start, end);
+            }
+            if (sameText) {
+                return false;
+            }
+        }
+        if (cps == null && text == null) {
+            cell.setSequence("");
+        } else {
+            cell.setSequence(sequence(text, cps, start, end));
+        }
+        if (template != null) {
+            template.applyOn(cell, terminal.getBounds(), y, x);
+        }
+        return true;
+    }
+
+    private static int putRow(TerminalViewInterface terminal, int y, int x,
+            CharSequence text, int[] cps, int start, int end,
+            TerminalCellTemplate template) {
+        int limit = text == null ? cps.length : text.length();
+        if (start < 0 || start > end || end > limit) {
+            throw new IndexOutOfBoundsException(String.format(
+                    "%s to %s not within %s", start, end, limit));
+        }
+        int left = terminal.getX();
+        int right = left + terminal.getWidth();
+        int first = right;
+        int last = left - 1;
+        int i = skipCombining(text, cps, start, end);
+        if (i > start && x > left && x <= right) {
+            // nothing here to join them to; they go on the cell before
+            terminal.get(y, x - 1).addSequence(sequence(text, cps, start, i));
+            first = last = x - 1;
+        }
+        while (i < end) {
+            int w = CodePointWidth.columns(codePointAt(text, cps, i));
+            if (x + w > right) {
+                break;
+            }
+            int clusterStart = i;
+            i = skipCombining(text, cps, nextCodePoint(text, cps, i), end);
+            for (int c = 0; c < w; c++, x++) {
+                if (x < left) {
+                    continue;
+                }
+                boolean changed;
+                if (c == 0) {
+                    changed = putCell(terminal, y, x, text, cps,
+                                      clusterStart, i, template);
+                } else {
+                    // the glyph spills over this cell
+                    changed = putCell(terminal, y, x, null, null, 0, 0,
+                                      template);
+                }
+                if (changed) {
+                    first = Math.min(first, x);
+                    last = x;
+                }
+            }
+        }
+        TerminalInterface backing = terminal.getBackingTerminal();
+        AbstractTerminal tracked = null;
+        if (backing instanceof AbstractTerminal) {
+            tracked = (AbstractTerminal)backing;
+        }
+        for (int c = first; c <= last; c++) {
+            if (terminal.get(y, c).isDirty()) {
+                if (tracked != null) {
+                    tracked.noteColors(y, c);
+                }
+                terminal.refresh(y, c);
+            }
+        }
+        return x;
+    }
+
 
 }
@@ -18,7 +18,6 @@ package com.googlecode.blacken.terminal.editing;
 
 import com.googlecode.blacken.colors.ColorHelper;
 import com.googlecode.blacken.colors.ColorPalette;
-import com.googlecode.blacken.grid.Point;
 import com.googlecode.blacken.grid.Regionlike;
 import com.googlecode.blacken.terminal.BlackenEventType;
 import com.googlecode.blacken.terminal.BlackenKeys;
@@ -27,11 +26,16 @@ import com.googlecode.blacken.terminal.BlackenMouseEvent;
 import com.googlecode.blacken.terminal.BlackenWindowEvent;
 import com.googlecode.blacken.terminal.TerminalCellTemplate;
 import com.googlecode.blacken.terminal.TerminalViewInterface;
-import com.googlecode.blacken.terminal.utils.TerminalUtils;
+import java.util.Arrays;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Show a long message (or a live log) a screen at a time.
+ *
+ * <p>The text is kept in a {@link TextBuffer}, so only the rows on screen
+ * are looked at when drawing, however long the text is. Rows which haven't
+ * changed since the last step aren't redrawn.</p>
  *
  * @author Steven Black
  */
@@ -40,10 +44,16 @@ public class StringViewer implements Steppable, CodepointCallbackInterface {
     private TerminalViewInterface term;
     private CodepointCallbackInterface secondaryCallback = null;
     private int startLine = 0;
-    private String[] lines;
-    private Integer maxCol = null;
+    private TextBuffer text;
     private TerminalCellTemplate template;
     private int modifier;
+    private boolean wrap = false;
+    private boolean follow = false;
+    private int followFrom = 0;
+    private String blanks = "";
+    // the template without its sequence, for writing rows
+    private TerminalCellTemplate rowTemplate = null;
+    private TerminalCellTemplate rowTemplateFor = null;
     public StringViewer(TerminalViewInterface term, String[] message) {
         this.term = term;
         internalSetMessage(message);
@@ -66,9 +76,24 @@ public class StringViewer implements Steppable, CodepointCallbackInterface {
         template.clearCellWalls();
         template.clearStyle();
     }
+    /**
+     * Create a viewer for a buffer, such as a log still being written.
+     *
+     * @param term terminal to show it on
+     * @param text text to show; it is not copied
+     * @since 1.2
+     */
+    public StringViewer(TerminalViewInterface term, TextBuffer text) {
+        this(term, new String[0]);
+        internalSetMessage(text);
+    }
     private void internalSetMessage(String[] message) {
-        this.lines = message;
+        internalSetMessage(new TextBuffer(message));
+    }
+    private void internalSetMessage(TextBuffer message) {
+        this.text = message;
         this.startLine = 0;
+        this.followFrom = 0;
     }
     public StringViewer(TerminalViewInterface term, String message, CodepointCallbackInterface callback) {
         this.term = term;
@@ -95,7 +120,7 @@ public class StringViewer implements Steppable, CodepointCallbackInterface {
         template.clearStyle();
     }
     public int getLines() {
-        return lines.length;
+        return text.getLineCount();
     }
     /**
      * This gets the approximate maximum column.
@@ -114,15 +139,87 @@ public class StringViewer implements Steppable, CodepointCallbackInterface {
      * @return size of the largest line in UTF-16 units
      */
     public int getMaxColumn() {
-        if (maxCol == null) {
-            maxCol = 0;
-            for (String line : lines) {
-                if (maxCol < line.length()) {
-                    maxCol = line.length();
-                }
-            }
+        return text.getMaxLineLength();
+    }
+
+    /**
+     * Get the text being shown.
+     *
+     * @return text buffer
+     * @since 1.2
+     */
+    public TextBuffer getText() {
+        return text;
+    }
+
+    /**
+     * Add text to the end.
+     *
+     * @param more text; <code>'\n'</code> ends a line
+     * @since 1.2
+     */
+    public void append(CharSequence more) {
+        text.append(more);
+    }
+
+    /**
+     * Add a line to the end.
+     *
+     * @param line text of the line
+     * @since 1.2
+     */
+    public void appendLine(CharSequence line) {
+        text.appendLine(line);
+    }
+
+    /**
+     * Should long lines wrap?
+     *
+     * @return true if long lines wrap; false if they're cut off
+     * @since 1.2
+     */
+    public boolean isWrap() {
+        return wrap;
+    }
+
+    /**
+     * Set whether long lines wrap.
+     *
+     * @param wrap true to wrap long lines; false to cut them off
+     * @since 1.2
+     */
+    public void setWrap(boolean wrap) {
+        this.wrap = wrap;
+    }
+
+    /**
+     * Does the view follow the end of the text?
+     *
+     * @return true if following
+     * @since 1.2
+     */
+    public boolean isFollow() {
+        return follow;
+    }
+
+    /**
+     * Set whether the view follows the end of the text, for live logs.
+     *
+     * <p>While the view is at the end, appended text scrolls in to view.
+     * Scrolling back stops this until the view is back at the end.</p>
+     *
+     * @param follow true to follow
+     * @since 1.2
+     */
+    public void setFollow(boolean follow) {
+        this.follow = follow;
+    }
+
+    private int getRowCount() {
+        if (wrap) {
+            return text.getRowCount(term.getWidth());
         }
-        return maxCol;
+        return text.getLineCount();
     }
     public void setColor(int foreground, int background) {
         template = new TerminalCellTemplate();
@@ -183,25 +280,46 @@ public class StringViewer implements Steppable, CodepointCallbackInterface {
 
     @Override
     public void step() {
-        TerminalUtils.applyTemplate(term, template);
         Regionlike bounds = term.getBounds();
+        int width = term.getWidth();
+        int rows = getRowCount();
+        int lastStart = Math.max(0, rows - term.getHeight());
+        if (follow && startLine >= followFrom) {
+            startLine = lastStart;
+        }
+        if (startLine >= rows) {
+            startLine = rows -1;
+        }
         if (startLine < 0) {
             startLine = 0;
-        } else if (startLine >= lines.length) {
-            startLine = lines.length -1;
         }
-        Point p = new Point(bounds);
+        followFrom = lastStart;
+        if (blanks.length() != width) {
+            char[] b = new char[width];
+            Arrays.fill(b, ' ');
+            blanks = new String(b);
+        }
+        if (rowTemplateFor != template) {
+            rowTemplate = new TerminalCellTemplate(template);
+            rowTemplate.setSequence((String)null);
+            rowTemplateFor = template;
+        }
         for (int y = 0; y < term.getHeight(); y++) {
-            String msg = "";
-            if (lines.length > startLine + y) {
-                msg = lines[startLine + y];
-            }
-            if (msg.length() > term.getWidth()) {
+            CharSequence msg = "";
+            int row = startLine + y;
+            if (row < rows) {
                 // XXX Perhaps add column offset, too?
-                msg = msg.substring(0, term.getWidth());
+                if (wrap) {
+                    msg = text.getRow(width, row);
+                } else {
+                    msg = text.getLineSequence(row);
+                }
+            }
+            int ty = y + bounds.getY();
+            int x = SingleLine.putRow(term, ty, bounds.getX(), msg, rowTemplate);
+            if (x < bounds.getX() + width) {
+                SingleLine.putRow(term, ty, x, blanks, rowTemplate);
             }
-            p.setY(y + bounds.getY());
-            SingleLine.putString(term, p, null, msg, null);
         }
     }
 
@@ -251,7 +369,7 @@ public class StringViewer implements Steppable, CodepointCallbackInterface {
             case BlackenKeys.KEY_KP_END:
             case BlackenKeys.KEY_END:
             case BlackenKeys.KEY_NP_1:
-                startLine = lines.length - term.getHeight();
+                startLine = getRowCount() - term.getHeight();
                 codepoint = BlackenKeys.NO_KEY;
                 break;
             case 'q':
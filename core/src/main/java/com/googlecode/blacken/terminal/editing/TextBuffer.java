@@ -0,0 +1,464 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.googlecode.blacken.terminal.editing;
+
+import com.googlecode.blacken.terminal.utils.CodePointWidth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Append-only text, indexed by line, for large documents and live logs.
+ *
+ * <p>The text is kept in fixed-size chunks, so appending never copies what
+ * is already there. Each line's start, length and width (in terminal
+ * columns) are recorded as it is appended, so finding a line, the longest
+ * line or the number of lines doesn't depend on the size of the document.</p>
+ *
+ * <p>Lines are separated by <code>'\n'</code> or <code>"\r\n"</code>.
+ * Text appended without a final newline is left open, and the next append
+ * continues it. Tabs are expanded to spaces as they are appended, with a
+ * stop every {@link #TAB_SIZE} columns, so they count in the widths and the
+ * wrapped layout like any other text. Other control characters (including
+ * a <code>'\r'</code> on its own) are dropped, as they have no place in a
+ * cell.</p>
+ *
+ * <p>The layout of the lines wrapped to a width is worked out the first
+ * time it is asked for and kept up to date as text is appended. Only the
+ * most recent width is kept.</p>
+ *
+ * @author Steven Black
+ * @since Blacken 1.2
+ */
+public class TextBuffer {
+    /**
+     * Columns between tab stops.
+     */
+    public static final int TAB_SIZE = 8;
+    private static final int CHUNK_BITS = 13;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final List<char[]> chunks = new ArrayList<>();
+    private long length = 0;
+    private long[] starts = new long[64];
+    private int[] lengths = new int[64];
+    private int[] columns = new int[64];
+    private int lineCount = 0;
+    private boolean open = false;
+    private int maxLength = 0;
+    private int pendingHigh = -1;
+
+    private int wrapWidth = -1;
+    // wrapRows[n] is the first wrapped row of line n; one extra at the end
+    private int[] wrapRows = null;
+    private int wrapLines = 0;
+
+    /**
+     * Create an empty buffer.
+     */
+    public TextBuffer() {
+        // do nothing
+    }
+
+    /**
+     * Create a buffer holding lines.
+     *
+     * @param lines lines of text
+     */
+    public TextBuffer(String[] lines) {
+        for (String line : lines) {
+            appendLine(line);
+        }
+    }
+
+    /**
+     * Get a character.
+     *
+     * @param index offset from the start of the buffer
+     * @return character
+     */
+    char charAt(long index) {
+        return chunks.get((int)(index >>> CHUNK_BITS))[(int)(index & CHUNK_MASK)];
+    }
+
+    private void put(char c) {
+        int offset = (int)(length & CHUNK_MASK);
+        if (offset == 0) {
+            chunks.add(new char[CHUNK_SIZE]);
+        }
+        chunks.get(chunks.size() - 1)[offset] = c;
+        length++;
+    }
+
+    private void startLine() {
+        if (lineCount == starts.length) {
+            int size = lineCount * 2;
+            starts = Arrays.copyOf(starts, size);
+            lengths = Arrays.copyOf(lengths, size);
+            columns = Arrays.copyOf(columns, size);
+        }
+        starts[lineCount] = length;
+        lengths[lineCount] = 0;
+        columns[lineCount] = 0;
+        lineCount++;
+        open = true;
+        pendingHigh = -1;
+    }
+
+    /**
+     * Append text.
+     *
+     * @param text text; <code>'\n'</code> ends a line, tabs become spaces
+     *      and other control characters are dropped
+     */
+    public void append(CharSequence text) {
+        int dirtyFrom = open ? lineCount - 1 : lineCount;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < ' ' && c != '\n' && c != '\t' || c == '\u007f') {
+                // this also turns "\r\n" in to '\n'
+                continue;
+            }
+            if (!open) {
+                startLine();
+            }
+            int n = lineCount - 1;
+            if (c == '\n') {
+                open = false;
+                continue;
+            }
+            if (c == '\t') {
+                pendingHigh = -1;
+                int spaces = TAB_SIZE - columns[n] % TAB_SIZE;
+                for (int s = 0; s < spaces; s++) {
+                    put(' ');
+                }
+                lengths[n] += spaces;
+                columns[n] += spaces;
+                if (lengths[n] > maxLength) {
+                    maxLength = lengths[n];
+                }
+                continue;
+            }
+            put(c);
+            lengths[n]++;
+            if (lengths[n] > maxLength) {
+                maxLength = lengths[n];
+            }
+            if (Character.isHighSurrogate(c)) {
+                pendingHigh = c;
+                continue;
+            }
+            int cp = c;
+            if (pendingHigh != -1 && Character.isLowSurrogate(c)) {
+                cp = Character.toCodePoint((char)pendingHigh, c);
+            }
+            pendingHigh = -1;
+            columns[n] += CodePointWidth.columns(cp);
+        }
+        if (wrapRows != null && wrapLines > dirtyFrom) {
+            // the open line may have grown
+            wrapLines = dirtyFrom;
+        }
+    }
+
+    /**
+     * Append text and end the line.
+     *
+     * @param line text of the line
+     */
+    public void appendLine(CharSequence line) {
+        append(line);
+        if (!open) {
+            startLine();
+        }
+        open = false;
+    }
+
+    /**
+     * Get the number of lines.
+     *
+     * @return number of lines, counting an open last line
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Get the number of characters.
+     *
+     * @return number of <code>char</code> units, not counting newlines
+     */
+    public long length() {
+        return length;
+    }
+
+    private void checkLine(int line) {
+        if (line < 0 || line >= lineCount) {
+            throw new IndexOutOfBoundsException(String.format(
+                    "line %s not within 0 to %s", line, lineCount));
+        }
+    }
+
+    /**
+     * Get a line without copying it.
+     *
+     * <p>The sequence reads from the buffer, so keep it only as long as
+     * the line is needed.</p>
+     *
+     * @param line line number, from 0
+     * @return the text of the line
+     */
+    public CharSequence getLineSequence(int line) {
+        checkLine(line);
+        return new Span(starts[line], lengths[line]);
+    }
+
+    /**
+     * Get a line.
+     *
+     * @param line line number, from 0
+     * @return the text of the line
+     */
+    public String getLine(int line) {
+        return getLineSequence(line).toString();
+    }
+
+    /**
+     * Get the length of a line.
+     *
+     * @param line line number, from 0
+     * @return number of <code>char</code> units
+     */
+    public int getLineLength(int line) {
+        checkLine(line);
+        return lengths[line];
+    }
+
+    /**
+     * Get the number of terminal columns a line takes up.
+     *
+     * @param line line number, from 0
+     * @return columns, counting wide characters as two
+     * @see CodePointWidth
+     */
+    public int getLineColumns(int line) {
+        checkLine(line);
+        return columns[line];
+    }
+
+    /**
+     * Get the length of the longest line.
+     *
+     * @return number of <code>char</code> units
+     */
+    public int getMaxLineLength() {
+        return maxLength;
+    }
+
+    private int countRows(int line, int width) {
+        if (columns[line] <= width) {
+            return 1;
+        }
+        int rows = 1;
+        int used = 0;
+        long start = starts[line];
+        long end = start + lengths[line];
+        for (long i = start; i < end; i++) {
+            int cp = codePointAt(i, end);
+            if (cp > 0xffff) {
+                i++;
+            }
+            int w = CodePointWidth.columns(cp);
+            if (used + w > width && used > 0) {
+                rows++;
+                used = 0;
+            }
+            used += w;
+        }
+        return rows;
+    }
+
+    private int codePointAt(long i, long end) {
+        char c = charAt(i);
+        if (Character.isHighSurrogate(c) && i + 1 < end) {
+            char d = charAt(i + 1);
+            if (Character.isLowSurrogate(d)) {
+                return Character.toCodePoint(c, d);
+            }
+        }
+        return c;
+    }
+
+    private void layout(int width) {
+        if (width < 1) {
+            throw new IllegalArgumentException("width must be positive");
+        }
+        if (width != wrapWidth || wrapRows == null) {
+            wrapWidth = width;
+            wrapRows = new int[Math.max(starts.length, lineCount) + 1];
+            wrapLines = 0;
+        }
+        if (wrapLines == lineCount) {
+            return;
+        }
+        if (wrapRows.length < lineCount + 1) {
+            wrapRows = Arrays.copyOf(wrapRows, starts.length + 1);
+        }
+        for (int n = wrapLines; n < lineCount; n++) {
+            wrapRows[n + 1] = wrapRows[n] + countRows(n, width);
+        }
+        wrapLines = lineCount;
+    }
+
+    /**
+     * Get the number of rows the text takes when wrapped.
+     *
+     * @param width columns per row
+     * @return number of rows
+     */
+    public int getRowCount(int width) {
+        layout(width);
+        return wrapRows[lineCount];
+    }
+
+    /**
+     * Get the first row of a line when wrapped.
+     *
+     * @param width columns per row
+     * @param line line number, from 0
+     * @return row number, from 0
+     */
+    public int getFirstRow(int width, int line) {
+        checkLine(line);
+        layout(width);
+        return wrapRows[line];
+    }
+
+    /**
+     * Find the line a wrapped row belongs to.
+     *
+     * @param width columns per row
+     * @param row row number, from 0
+     * @return line number, from 0
+     */
+    public int getLineForRow(int width, int row) {
+        layout(width);
+        if (row < 0 || row >= wrapRows[lineCount]) {
+            throw new IndexOutOfBoundsException(String.format(
+                    "row %s not within 0 to %s", row, wrapRows[lineCount]));
+        }
+        int lo = 0;
+        int hi = lineCount - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (wrapRows[mid] <= row) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Get the text of a wrapped row without copying it.
+     *
+     * @param width columns per row
+     * @param row row number, from 0
+     * @return the part of a line shown on the row
+     */
+    public CharSequence getRow(int width, int row) {
+        int line = getLineForRow(width, row);
+        int skip = row - wrapRows[line];
+        long start = starts[line];
+        long end = start + lengths[line];
+        if (skip == 0 && columns[line] <= width) {
+            return new Span(start, lengths[line]);
+        }
+        int used = 0;
+        long rowStart = start;
+        for (long i = start; i < end; i++) {
+            int cp = codePointAt(i, end);
+            int w = CodePointWidth.columns(cp);
+            if (used + w > width && used > 0) {
+                if (skip == 0) {
+                    return new Span(rowStart, (int)(i - rowStart));
+                }
+                skip--;
+                used = 0;
+                rowStart = i;
+            }
+            used += w;
+            if (cp > 0xffff) {
+                i++;
+            }
+        }
+        return new Span(rowStart, (int)(end - rowStart));
+    }
+
+    /**
+     * A run of the buffer read in place.
+     */
+    private class Span implements CharSequence {
+        private final long start;
+        private final int length;
+
+        Span(long start, int length) {
+            this.start = start;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException();
+            }
+            return TextBuffer.this.charAt(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            if (from < 0 || from > to || to > length) {
+                throw new IndexOutOfBoundsException();
+            }
+            return new Span(start + from, to - from);
+        }
+
+        @Override
+        public String toString() {
+            char[] out = new char[length];
+            long i = start;
+            int o = 0;
+            while (o < length) {
+                char[] chunk = chunks.get((int)(i >>> CHUNK_BITS));
+                int offset = (int)(i & CHUNK_MASK);
+                int n = Math.min(length - o, CHUNK_SIZE - offset);
+                System.arraycopy(chunk, offset, out, o, n);
+                o += n;
+                i += n;
+            }
+            return new String(out);
+        }
+    }
+}
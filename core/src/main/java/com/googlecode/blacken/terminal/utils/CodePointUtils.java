@@ -33,34 +33,50 @@ public class CodePointUtils {
      * @return {advancingCodepoints, lengthToTerminator}
      */
     public static int[] findAdvancingCodepoints(String str, int start) {
+        return findAdvancing(str, start, false);
+    }
+
+    /**
+     * Find the number of terminal columns used, and the line terminator.
+     *
+     * <p>This is {@link #findAdvancingCodepoints(String, int)} counting wide
+     * characters as two columns.</p>
+     *
+     * @param str string to check
+     * @param start starting point in string
+     * @return {columns, lengthToTerminator}
+     * @since 1.2
+     * @see CodePointWidth
+     */
+    public static int[] findAdvancingColumns(String str, int start) {
+        return findAdvancing(str, start, true);
+    }
+
+    private static int[] findAdvancing(String str, int start, boolean columns) {
         int[] ret = {0, 0};
-        out:
         for (int i = start; i < str.length(); i++) {
             int cp = str.codePointAt(i);
-            if (cp > 65535) {
-                if (Character.isLowSurrogate(str.charAt(i))) {
-                    continue;
-                }
+            // the terminator's index is where it starts, so check before
+            // stepping over a surrogate pair
+            if (cp == '\n' || cp == BlackenKeys.KEY_ENTER || cp == BlackenKeys.KEY_NP_ENTER || cp == '\r') {
+                ret[1] = i;
+                break;
+            } else if (cp == '\t' || cp == BlackenKeys.KEY_TAB) {
+                ret[1] = i;
+                break;
+            }
+            if (cp > 0xffff) {
+                i++;
+            }
+            int w = CodePointWidth.columns(cp);
+            if (w == 0) {
+                // combining; does not advance
+                continue;
             }
-            switch (Character.getType(cp)) {
-                case Character.COMBINING_SPACING_MARK:
-                case Character.ENCLOSING_MARK:
-                case Character.NON_SPACING_MARK:
-                    // do nothing
-                    break;
-                default:
-                    if (cp == '\n' || cp == BlackenKeys.KEY_ENTER || cp == BlackenKeys.KEY_NP_ENTER || cp == '\r') {
-                        ret[1] = i;
-                        break out;
-                    } else if (cp == '\b' || cp == BlackenKeys.KEY_BACKSPACE) {
-                        ret[0]--;
-                    } else if (cp == '\t' || cp == BlackenKeys.KEY_TAB) {
-                        ret[1] = i;
-                        break out;
-                    } else {
-                        ret[0]++;
-                    }
-                    break;
+            if (cp == '\b' || cp == BlackenKeys.KEY_BACKSPACE) {
+                ret[0]--;
+            } else {
+                ret[0] += columns ? w : 1;
             }
         }
         return ret;
@@ -0,0 +1,159 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.googlecode.blacken.terminal.utils;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The number of terminal columns a code point takes up.
+ *
+ * <p>Combining marks take no columns, East Asian wide and full-width
+ * characters take two and everything else takes one. Control characters
+ * are left to the caller.</p>
+ *
+ * <p>Widths are kept in a table of 256 code point pages. A page is filled
+ * the first time a code point in it is asked about, so text from a single
+ * script only ever fills a page or two.</p>
+ *
+ * @author Steven Black
+ * @since Blacken 1.2
+ */
+public class CodePointWidth {
+    /**
+     * East Asian Wide (W) and Full-width (F) ranges, as pairs of
+     * inclusive bounds.
+     */
+    private static final int[] WIDE = {
+        0x1100, 0x115F,   // Hangul Jamo initial consonants
+        0x2329, 0x232A,   // angle brackets
+        0x2E80, 0x303E,   // CJK radicals through CJK symbols
+        0x3041, 0x33FF,   // Hiragana through CJK compatibility
+        0x3400, 0x4DBF,   // CJK unified ideographs extension A
+        0x4E00, 0x9FFF,   // CJK unified ideographs
+        0xA000, 0xA4CF,   // Yi
+        0xA960, 0xA97F,   // Hangul Jamo extended A
+        0xAC00, 0xD7A3,   // Hangul syllables
+        0xF900, 0xFAFF,   // CJK compatibility ideographs
+        0xFE10, 0xFE19,   // vertical forms
+        0xFE30, 0xFE6F,   // CJK compatibility forms, small forms
+        0xFF00, 0xFF60,   // full-width forms
+        0xFFE0, 0xFFE6,   // full-width signs
+        0x1B000, 0x1B0FF, // Kana supplement
+        0x1F200, 0x1F2FF, // enclosed ideographic supplement
+        0x1F300, 0x1F64F, // pictographs and emoticons (emoji)
+        0x1F680, 0x1F6FF, // transport and map symbols
+        0x1F900, 0x1F9FF, // supplemental symbols and pictographs
+        0x20000, 0x2FFFD, // CJK extension B and later
+        0x30000, 0x3FFFD,
+    };
+    private static final int PAGE_BITS = 8;
+    private static final AtomicReferenceArray<byte[]> PAGES =
+            new AtomicReferenceArray<>((Character.MAX_CODE_POINT + 1) >>> PAGE_BITS);
+
+    private CodePointWidth() {
+        // static only
+    }
+
+    private static byte[] page(int index) {
+        byte[] ret = PAGES.get(index);
+        if (ret == null) {
+            // racing threads build identical pages, so no lock is needed
+            ret = new byte[1 << PAGE_BITS];
+            int base = index << PAGE_BITS;
+            for (int i = 0; i < ret.length; i++) {
+                ret[i] = (byte)calculate(base + i);
+            }
+            PAGES.set(index, ret);
+        }
+        return ret;
+    }
+
+    private static int calculate(int cp) {
+        switch (Character.getType(cp)) {
+            case Character.COMBINING_SPACING_MARK:
+            case Character.ENCLOSING_MARK:
+            case Character.NON_SPACING_MARK:
+                return 0;
+            default:
+                break;
+        }
+        for (int i = 0; i < WIDE.length; i += 2) {
+            if (cp < WIDE[i]) {
+                break;
+            }
+            if (cp <= WIDE[i + 1]) {
+                return 2;
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Get the number of columns a code point takes up.
+     *
+     * @param cp code point
+     * @return 0 for combining marks, 2 for wide characters, otherwise 1
+     */
+    public static int columns(int cp) {
+        if (cp < 0x300) {
+            // nothing below the combining diacriticals is wide or combining
+            return 1;
+        }
+        if (cp > Character.MAX_CODE_POINT) {
+            return 1;
+        }
+        return page(cp >>> PAGE_BITS)[cp & ((1 << PAGE_BITS) - 1)];
+    }
+
+    /**
+     * Is this a combining mark (which joins the previous cell)?
+     *
+     * @param cp code point
+     * @return true if it takes no columns of its own
+     */
+    public static boolean isCombining(int cp) {
+        return columns(cp) == 0;
+    }
+
+    /**
+     * Is this a wide character (taking two cells)?
+     *
+     * @param cp code point
+     * @return true if it takes two columns
+     */
+    public static boolean isWide(int cp) {
+        return columns(cp) == 2;
+    }
+
+    /**
+     * Get the number of columns a sequence takes up.
+     *
+     * @param sequence code points
+     * @return total columns
+     */
+    public static int columns(CharSequence sequence) {
+        int ret = 0;
+        for (int i = 0; i < sequence.length(); i++) {
+            int cp = Character.codePointAt(sequence, i);
+            if (cp > 0xffff) {
+                i++;
+            }
+            ret += columns(cp);
+        }
+        return ret;
+    }
+}
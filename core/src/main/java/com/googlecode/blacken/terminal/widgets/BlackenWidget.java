@@ -45,7 +45,30 @@ public interface BlackenWidget extends Regionlike {
      */
     public CodepointCallbackInterface acceptsFocus();
     public WidgetCodepointHandler acceptsKeys();
+    /**
+     * Draw the widget.
+     *
+     * <p>The view is limited to the widget's bounds. Widgets may skip
+     * drawing when they aren't {@link #isInvalid() invalid}.</p>
+     *
+     * @param view view to draw on
+     */
     public void redraw(TerminalViewInterface view);
+    /**
+     * Mark the whole widget as needing to be drawn.
+     *
+     * <p>This tells the parent, so the damage reaches the top container.</p>
+     *
+     * @since 1.2
+     */
+    public void invalidate();
+    /**
+     * Does the widget need drawing?
+     *
+     * @return true if something changed since the last redraw
+     * @since 1.2
+     */
+    public boolean isInvalid();
     public void setColor(TerminalCellTemplate template);
     public void setColor(int foreground, int background);
     public WidgetContainer getWidgetParent();
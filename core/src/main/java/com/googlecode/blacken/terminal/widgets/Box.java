@@ -237,6 +237,7 @@ public class Box extends SimpleWidgetContainer implements BlackenWidgetResizer {
 
     public void setMethod(BoxMethod method) {
         this.method = method;
+        invalidate();
     }
 
     public static void box(TerminalViewInterface view, BoxMethod method, Regionlike bounds) {
@@ -248,7 +249,12 @@ public class Box extends SimpleWidgetContainer implements BlackenWidgetResizer {
 
     @Override
     public void redraw(TerminalViewInterface view) {
+        boolean damaged = isInvalid();
         super.redraw(view);
+        if (!damaged) {
+            return;
+        }
+        // damage may have reached the border, so it always gets redrawn
         List<TerminalCellTemplate> sides = methodMap.get(method);
         Box.box(view, this, sides.get(0), sides.get(1), sides.get(2),
                 sides.get(3), sides.get(4), sides.get(5), sides.get(6),
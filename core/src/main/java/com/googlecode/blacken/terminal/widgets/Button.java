@@ -40,8 +40,9 @@ public class Button extends BoxRegion implements BlackenWidget, WidgetCodepointH
     private boolean hovered = true;
     private boolean focused = false;
     private TerminalCellTemplate template;
-    private String name = String.format("%s:%u", Button.class.getCanonicalName(), nextId++);
+    private String name = String.format("%s:%d", Button.class.getCanonicalName(), nextId++);
     private WidgetContainer parent;
+    private boolean invalid = true;
 
     public Button(Regionlike region, String text) {
         super(region);
@@ -100,17 +101,26 @@ public class Button extends BoxRegion implements BlackenWidget, WidgetCodepointH
 
     @Override
     public void setEnabled(boolean state) {
-        this.enabled = state;
+        if (this.enabled != state) {
+            this.enabled = state;
+            invalidate();
+        }
     }
 
     @Override
     public void setHovered(boolean state) {
-        this.hovered = state;
+        if (this.hovered != state) {
+            this.hovered = state;
+            invalidate();
+        }
     }
 
     @Override
     public void setFocused(boolean state) {
-        this.focused = state;
+        if (this.focused != state) {
+            this.focused = state;
+            invalidate();
+        }
     }
 
     @Override
@@ -137,19 +147,43 @@ public class Button extends BoxRegion implements BlackenWidget, WidgetCodepointH
         }
         TerminalUtils.applyTemplate(view, t);
         for (int y0 = 0; y0 < this.getHeight(); y0++) {
-            view.get(y0 + this.getY(), this.getX()).setSequence(buttonborder[0]);
-            view.get(y0 + this.getY(), this.getX() + this.getWidth() - 1).setSequence(buttonborder[1]);
+            setSequence(view, y0 + this.getY(), this.getX(), buttonborder[0]);
+            setSequence(view, y0 + this.getY(), this.getX() + this.getWidth() - 1, buttonborder[1]);
         }
         String displayText = this.text;
         int textX = this.getX() + 1;
         int idealWidth = this.getWidth() - 2;
         if (idealWidth < this.text.length()) {
             displayText = this.text.substring(0, idealWidth-1);
-            view.get(this.getY(), this.getX() + this.getWidth() - 2).setSequence(BlackenCodePoints.CODEPOINT_HORIZONTAL_ELLIPSIS);
+            setSequence(view, this.getY(), this.getX() + this.getWidth() - 2, BlackenCodePoints.CODEPOINT_HORIZONTAL_ELLIPSIS);
         } else {
             textX += (idealWidth - displayText.length()) / 2;
         }
         SingleLine.putString(view, new Point(this.getY(), textX), null, displayText, t);
+        invalid = false;
+    }
+
+    /**
+     * Set a cell, if the view shows it; our container may clip us.
+     */
+    private static void setSequence(TerminalViewInterface view, int y, int x,
+                                    int codepoint) {
+        if (view.getBounds().contains(y, x)) {
+            view.get(y, x).setSequence(codepoint);
+        }
+    }
+
+    @Override
+    public void invalidate() {
+        invalid = true;
+        if (parent != null) {
+            parent.invalidate(this);
+        }
+    }
+
+    @Override
+    public boolean isInvalid() {
+        return invalid;
     }
 
     @Override
@@ -165,6 +199,7 @@ public class Button extends BoxRegion implements BlackenWidget, WidgetCodepointH
         if (template.isStyleUnset()) {
             template.clearStyle();
         }
+        invalidate();
     }
     @Override
     public void setColor(int foreground, int background) {
@@ -173,6 +208,7 @@ public class Button extends BoxRegion implements BlackenWidget, WidgetCodepointH
         template.setForeground(foreground);
         template.clearCellWalls();
         template.clearStyle();
+        invalidate();
     }
 
     @Override
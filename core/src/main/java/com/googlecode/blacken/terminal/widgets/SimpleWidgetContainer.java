@@ -32,15 +32,28 @@ import com.googlecode.blacken.terminal.editing.SingleLine;
 import com.googlecode.blacken.terminal.utils.TerminalUtils;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
+ * A container laying out and drawing a set of widgets.
+ *
+ * <p>Drawing is retained: changed widgets report damage (through
+ * {@link #invalidate(Regionlike)}) and {@link #redraw(TerminalViewInterface)}
+ * only repaints the damaged regions and the widgets touching them. A view
+ * for each child, limited to its bounds within the container's own view, is
+ * kept while the container is drawn on the same view. The resizer is only
+ * run by {@link #handleResizeEvent()}.</p>
  *
  * @author yam655
  */
 public class SimpleWidgetContainer implements WidgetContainer {
+    /**
+     * More damaged regions than this and the whole container is redrawn.
+     */
+    private static final int MAX_DAMAGE = 8;
     static private int nextId = 0;
     private Regionlike bounds;
     private Map<String, BlackenWidget> widgets = new LinkedHashMap<>();
@@ -55,6 +68,13 @@ public class SimpleWidgetContainer implements WidgetContainer {
     private boolean focused = false;
     private boolean hovered = false;
     private boolean enabled = true;
+    private boolean invalid = true;
+    private boolean redrawing = false;
+    private List<BoxRegion> damage = new ArrayList<>();
+    private TerminalViewInterface viewsFor = null;
+    private BoxRegion viewBounds = null;
+    private Map<BlackenWidget, TerminalView> childViews = new HashMap<>();
+    private Map<BlackenWidget, BoxRegion> drawnAt = new HashMap<>();
 
     public SimpleWidgetContainer(String name, Regionlike bounds) {
         this.bounds = new BoxRegion(bounds);
@@ -82,6 +102,10 @@ public class SimpleWidgetContainer implements WidgetContainer {
         if (widget.acceptsFocus() != null) {
             this.focusList.add(widget);
         }
+        if (widget.getWidgetParent() == null) {
+            widget.setWidgetParent(this);
+        }
+        invalidate(widget);
     }
 
     @Override
@@ -89,6 +113,12 @@ public class SimpleWidgetContainer implements WidgetContainer {
         this.focusList.remove(widget);
         this.widgets.remove(widget.getName());
         containerCache.remove(widget);
+        childViews.remove(widget);
+        drawnAt.remove(widget);
+        if (widget.getWidgetParent() == this) {
+            widget.setWidgetParent(null);
+        }
+        invalidate(widget);
     }
 
     @Override
@@ -121,6 +151,7 @@ public class SimpleWidgetContainer implements WidgetContainer {
         if (template.isStyleUnset()) {
             template.clearStyle();
         }
+        invalidate();
     }
     @Override
     public void setColor(int foreground, int background) {
@@ -129,20 +160,211 @@ public class SimpleWidgetContainer implements WidgetContainer {
         template.setForeground(foreground);
         template.clearCellWalls();
         template.clearStyle();
+        invalidate();
+    }
+
+    private static boolean overlaps(Regionlike a, Regionlike b) {
+        return a.getY() < b.getY() + b.getHeight()
+                && b.getY() < a.getY() + a.getHeight()
+                && a.getX() < b.getX() + b.getWidth()
+                && b.getX() < a.getX() + a.getWidth();
+    }
+
+    private static boolean sameBounds(Regionlike a, Regionlike b) {
+        return a.getY() == b.getY() && a.getX() == b.getX()
+                && a.getHeight() == b.getHeight()
+                && a.getWidth() == b.getWidth();
+    }
+
+    private static BoxRegion intersect(Regionlike a, Regionlike b) {
+        int y1 = Math.max(a.getY(), b.getY());
+        int x1 = Math.max(a.getX(), b.getX());
+        int y2 = Math.min(a.getY() + a.getHeight(), b.getY() + b.getHeight());
+        int x2 = Math.min(a.getX() + a.getWidth(), b.getX() + b.getWidth());
+        if (y1 >= y2 || x1 >= x2) {
+            return null;
+        }
+        return new BoxRegion(y2 - y1, x2 - x1, y1, x1);
+    }
+
+    /**
+     * Get the view a child draws on: our own view, limited to the child.
+     *
+     * @return view, or <code>null</code> when none of the child is visible
+     */
+    private TerminalView getChildView(TerminalViewInterface view,
+                                      BlackenWidget widget) {
+        if (!drawnAt.containsKey(widget)) {
+            drawnAt.put(widget, new BoxRegion(widget));
+        }
+        TerminalView ret = childViews.get(widget);
+        if (ret == null) {
+            BoxRegion clip = intersect(view.getBounds(), widget);
+            if (clip == null) {
+                return null;
+            }
+            ret = new TerminalView(view, clip);
+            childViews.put(widget, ret);
+        }
+        return ret;
+    }
+
+    /**
+     * Damage both the old and new areas of widgets moved by hand since they
+     * were last drawn.
+     */
+    private void damageMoved() {
+        for (Map.Entry<BlackenWidget, BoxRegion> entry : drawnAt.entrySet()) {
+            BlackenWidget widget = entry.getKey();
+            BoxRegion was = entry.getValue();
+            if (sameBounds(was, widget)) {
+                continue;
+            }
+            entry.setValue(new BoxRegion(widget));
+            childViews.remove(widget);
+            invalidate(was);
+            invalidate(widget);
+            widget.invalidate();
+        }
     }
 
+    /**
+     * Tell a child about the damage painted over it.
+     *
+     * @return whether any damage touched it
+     */
+    private boolean passDamage(BlackenWidget widget) {
+        boolean ret = false;
+        for (BoxRegion d : damage) {
+            if (!overlaps(d, widget)) {
+                continue;
+            }
+            ret = true;
+            if (widget instanceof WidgetContainer) {
+                // it only repaints what it is told about
+                ((WidgetContainer)widget).invalidate(d);
+            } else {
+                widget.invalidate();
+                break;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Redraw whatever has changed.
+     *
+     * <p>The first redraw (and the first after {@link #invalidate()} or
+     * {@link #handleResizeEvent()}) draws everything. After that only the
+     * damaged regions get the container's template, and only the widgets
+     * which are invalid or touch the damage are drawn.</p>
+     *
+     * @param view view to draw on
+     */
     @Override
     public void redraw(TerminalViewInterface view) {
-        if (template != null) {
-            TerminalUtils.applyTemplate(view, template);
+        if (viewsFor != view || !sameBounds(viewBounds, view.getBounds())) {
+            // the child views are built on the view and clipped to it
+            childViews.clear();
+            viewsFor = view;
+            viewBounds = new BoxRegion(view.getBounds());
+            invalid = true;
+        }
+        damageMoved();
+        if (!invalid && damage.isEmpty()) {
+            return;
+        }
+        redrawing = true;
+        try {
+            if (invalid) {
+                if (template != null) {
+                    TerminalUtils.applyTemplate(view, template);
+                }
+                for (BlackenWidget widget : widgets.values()) {
+                    // painted over; even unchanged widgets draw again
+                    widget.invalidate();
+                    TerminalView child = getChildView(view, widget);
+                    if (child != null) {
+                        widget.redraw(child);
+                    }
+                }
+            } else {
+                if (template != null) {
+                    for (BoxRegion d : damage) {
+                        TerminalUtils.applyTemplate(view, d.getHeight(),
+                                d.getWidth(), d.getY(), d.getX(), template);
+                    }
+                }
+                for (BlackenWidget widget : widgets.values()) {
+                    // painted over; it has to draw itself again, even
+                    // where it already had damage of its own
+                    if (!passDamage(widget) && !widget.isInvalid()) {
+                        continue;
+                    }
+                    TerminalView child = getChildView(view, widget);
+                    if (child != null) {
+                        widget.redraw(child);
+                    }
+                }
+            }
+        } finally {
+            redrawing = false;
+        }
+        invalid = false;
+        damage.clear();
+    }
+
+    @Override
+    public void invalidate() {
+        if (redrawing) {
+            return;
         }
-        TerminalView aView = new TerminalView(view.getBackingTerminal());
-        for (BlackenWidget widget : widgets.values()) {
-            aView.setBounds(widget);
-            widget.redraw(view);
+        invalid = true;
+        damage.clear();
+        if (parent != null) {
+            parent.invalidate(this);
         }
     }
 
+    @Override
+    public void invalidate(Regionlike region) {
+        if (redrawing) {
+            return;
+        }
+        if (!invalid) {
+            int y1 = Math.max(region.getY(), getY());
+            int x1 = Math.max(region.getX(), getX());
+            int y2 = Math.min(region.getY() + region.getHeight(), getY() + getHeight());
+            int x2 = Math.min(region.getX() + region.getWidth(), getX() + getWidth());
+            if (y1 >= y2 || x1 >= x2) {
+                return;
+            }
+            BoxRegion d = new BoxRegion(y2 - y1, x2 - x1, y1, x1);
+            for (BoxRegion old : damage) {
+                if (old.contains(d)) {
+                    d = null;
+                    break;
+                }
+            }
+            if (d != null) {
+                if (damage.size() == MAX_DAMAGE) {
+                    invalid = true;
+                    damage.clear();
+                } else {
+                    damage.add(d);
+                }
+            }
+        }
+        if (parent != null) {
+            parent.invalidate(region);
+        }
+    }
+
+    @Override
+    public boolean isInvalid() {
+        return invalid || !damage.isEmpty();
+    }
+
     @Override
     public int handleCodepoint(int codepoint) {
         if (this.activeWidget != null) {
@@ -176,6 +398,8 @@ public class SimpleWidgetContainer implements WidgetContainer {
         if (widgets.size() != size) {
             throw new UnsupportedOperationException("widgets modified during resize operation");
         }
+        childViews.clear();
+        invalidate();
     }
 
     @Override
@@ -16,6 +16,7 @@
 
 package com.googlecode.blacken.terminal.widgets;
 
+import com.googlecode.blacken.grid.Regionlike;
 import com.googlecode.blacken.terminal.editing.CodepointCallbackInterface;
 import java.util.List;
 import java.util.Map;
@@ -32,4 +33,14 @@ public interface WidgetContainer extends CodepointCallbackInterface, BlackenWidg
     public List<String> getFocusOrder();
     public void setFocusOrder(List<String> order);
     public boolean isEmpty();
+    /**
+     * Mark part of the container as needing to be drawn.
+     *
+     * <p>Children call this when they change. The container passes it on
+     * to its own parent.</p>
+     *
+     * @param damage region needing to be drawn
+     * @since 1.2
+     */
+    public void invalidate(Regionlike damage);
 }
@@ -0,0 +1,130 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.googlecode.blacken.bsp;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.*;
+
+import com.googlecode.blacken.grid.BoxRegion;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for FlatBSPTree.
+ *
+ * @author Steven Black
+ */
+public class TestFlatBSP {
+    private static final int NUM_ROWS = 200;
+    private static final int NUM_COLS = 300;
+    private FlatBSPTree<String> t;
+    private ForkJoinPool pool;
+
+    @Before
+    public void setUp() {
+        t = FlatBSPTree.split(new BoxRegion(NUM_ROWS, NUM_COLS, 0, 0), 42L,
+                12, 4, 4, 1.5, 1.5, null);
+    }
+
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testDeterministicInParallel() {
+        pool = new ForkJoinPool(4);
+        FlatBSPTree<String> p = FlatBSPTree.split(
+                new BoxRegion(NUM_ROWS, NUM_COLS, 0, 0), 42L,
+                12, 4, 4, 1.5, 1.5, pool);
+        assertEquals(t.size(), p.size());
+        for (int n = 0; n < t.size(); n++) {
+            assertEquals(t.getSplitPosition(n), p.getSplitPosition(n));
+            assertEquals(t.getY(n), p.getY(n));
+            assertEquals(t.getX(n), p.getX(n));
+        }
+    }
+
+    @Test
+    public void testLevelOrder() {
+        assertTrue(t.size() > 100);
+        for (int n = 1; n < t.size(); n++) {
+            assertTrue(t.getLevel(n - 1) <= t.getLevel(n));
+            int parent = t.getParent(n);
+            assertTrue(t.getLeftChild(parent) == n || t.getRightChild(parent) == n);
+        }
+    }
+
+    @Test
+    public void testFindNode() {
+        assertEquals(-1, t.findNode(-1, 0));
+        assertEquals(-1, t.findNode(0, NUM_COLS));
+        for (int y = 0; y < NUM_ROWS; y += 7) {
+            for (int x = 0; x < NUM_COLS; x += 5) {
+                int leaf = t.findNode(y, x);
+                assertTrue(t.isLeaf(leaf));
+                assertTrue(t.contains(leaf, y, x));
+            }
+        }
+    }
+
+    @Test
+    public void testFindOverlapping() {
+        int[] out = new int[t.getLeafCount()];
+        int found = t.findOverlapping(30, 40, 50, 60, out);
+        int expected = 0;
+        for (int i = 0; i < t.getLeafCount(); i++) {
+            int leaf = t.getLeaf(i);
+            if (t.getY(leaf) < 50 + 30 && 50 < t.getY(leaf) + t.getHeight(leaf)
+                    && t.getX(leaf) < 60 + 40 && 60 < t.getX(leaf) + t.getWidth(leaf)) {
+                expected++;
+            }
+        }
+        assertEquals(expected, found);
+        for (int i = 0; i < found; i++) {
+            assertTrue(t.isLeaf(out[i]));
+        }
+        assertEquals(t.getLeafCount(), t.findOverlapping(NUM_ROWS, NUM_COLS, 0, 0, out));
+        assertEquals(0, t.findOverlapping(5, 5, NUM_ROWS, 0, out));
+    }
+
+    @Test
+    public void testRoundTrip() {
+        t.setContained(t.getLeaf(0), "first");
+        BSPTree<String> tree = t.toTree();
+        Collection<BSPTree> leaves = tree.findLeaves(null);
+        assertEquals(t.getLeafCount(), leaves.size());
+        List<String> contained = new ArrayList<>();
+        tree.findContained(contained);
+        assertEquals(1, contained.size());
+        FlatBSPTree<String> back = FlatBSPTree.fromTree(tree);
+        assertEquals(t.size(), back.size());
+        for (int n = 0; n < t.size(); n++) {
+            assertEquals(t.getSplitPosition(n), back.getSplitPosition(n));
+            assertEquals(t.isHorizontal(n), back.isHorizontal(n));
+            assertEquals(t.getHeight(n), back.getHeight(n));
+            assertEquals(t.getWidth(n), back.getWidth(n));
+        }
+        assertEquals("first", back.getContained(t.getLeaf(0)));
+    }
+}
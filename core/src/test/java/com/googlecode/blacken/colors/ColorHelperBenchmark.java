@@ -0,0 +1,128 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.googlecode.blacken.colors;
+
+import java.util.Random;
+
+/**
+ * Throughput of the single-color {@link ColorHelper} functions against the
+ * array kernels. This is not a unit test; run it by hand.
+ *
+ * @author Steven Black
+ */
+public class ColorHelperBenchmark {
+    private static final int SIZE = 80 * 25;
+    private static final int ROUNDS = 2000;
+
+    private static int[] a = new int[SIZE];
+    private static int[] b = new int[SIZE];
+    private static float[] w = new float[SIZE];
+    private static int[] out = new int[SIZE];
+    private static int sink = 0;
+
+    private static double rate(long start) {
+        return (double)SIZE * ROUNDS / ((System.nanoTime() - start) / 1e9) / 1e6;
+    }
+
+    private static void lerp() {
+        long start = System.nanoTime();
+        for (int r = 0; r < ROUNDS; r++) {
+            for (int i = 0; i < SIZE; i++) {
+                out[i] = ColorHelper.lerp(a[i], b[i], w[i]);
+            }
+        }
+        double scalar = rate(start);
+        sink += out[r(SIZE)];
+        start = System.nanoTime();
+        for (int r = 0; r < ROUNDS; r++) {
+            ColorHelper.lerp(a, b, w, out, 0, SIZE);
+        }
+        sink += out[r(SIZE)];
+        System.out.printf("lerp (M/s): scalar %.1f, array %.1f%n", scalar, rate(start));
+    }
+
+    private static void blend() {
+        long start = System.nanoTime();
+        for (int r = 0; r < ROUNDS; r++) {
+            for (int i = 0; i < SIZE; i++) {
+                out[i] = ColorHelper.lerp(a[i], b[i]);
+            }
+        }
+        double scalar = rate(start);
+        sink += out[r(SIZE)];
+        start = System.nanoTime();
+        for (int r = 0; r < ROUNDS; r++) {
+            ColorHelper.blend(a, b, out, 0, SIZE);
+        }
+        sink += out[r(SIZE)];
+        System.out.printf("blend (M/s): scalar %.1f, array %.1f%n", scalar, rate(start));
+    }
+
+    private static void multiply() {
+        long start = System.nanoTime();
+        for (int r = 0; r < ROUNDS; r++) {
+            for (int i = 0; i < SIZE; i++) {
+                out[i] = ColorHelper.multiply(a[i], b[i]);
+            }
+        }
+        double scalar = rate(start);
+        sink += out[r(SIZE)];
+        start = System.nanoTime();
+        for (int r = 0; r < ROUNDS; r++) {
+            ColorHelper.multiply(a, b, out, 0, SIZE);
+        }
+        sink += out[r(SIZE)];
+        System.out.printf("multiply (M/s): scalar %.1f, array %.1f%n", scalar, rate(start));
+    }
+
+    private static void shiftHue() {
+        long start = System.nanoTime();
+        for (int r = 0; r < ROUNDS / 4; r++) {
+            for (int i = 0; i < SIZE; i++) {
+                out[i] = ColorHelper.shiftHue(a[i], 30F);
+            }
+        }
+        double scalar = rate(start) / 4;
+        sink += out[r(SIZE)];
+        start = System.nanoTime();
+        for (int r = 0; r < ROUNDS / 4; r++) {
+            ColorHelper.shiftHue(a, 30F, out, 0, SIZE);
+        }
+        sink += out[r(SIZE)];
+        System.out.printf("shiftHue (M/s): scalar %.1f, array %.1f%n", scalar, rate(start) / 4);
+    }
+
+    private static final Random RNG = new Random(1);
+
+    private static int r(int n) {
+        return RNG.nextInt(n);
+    }
+
+    public static void main(String[] args) {
+        for (int i = 0; i < SIZE; i++) {
+            a[i] = RNG.nextInt();
+            b[i] = RNG.nextInt();
+            w[i] = RNG.nextFloat();
+        }
+        for (int round = 0; round < 3; round++) {
+            lerp();
+            blend();
+            multiply();
+            shiftHue();
+        }
+        System.out.println(sink == 42 ? "" : " ");
+    }
+}
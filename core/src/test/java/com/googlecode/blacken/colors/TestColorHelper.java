@@ -1037,4 +1037,189 @@ public class TestColorHelper {
         assertEquals(2, ColorHelper.guessBlack(palette));
         assertEquals(1, ColorHelper.guessWhite(palette));
     }
+
+    private static int[] randomColors(java.util.Random rng, int count) {
+        int[] ret = new int[count];
+        for (int i = 0; i < count; i++) {
+            ret[i] = rng.nextInt();
+        }
+        // the corners are where rounding goes wrong
+        ret[0] = WHITE_ALL;
+        ret[1] = 0;
+        ret[2] = 0xFF7f7f7f;
+        return ret;
+    }
+    private static final int WHITE_ALL = 0xFFFFFFFF;
+
+    @Test
+    @Covers({"public static void lerp(int[],int[],float[],int[])",
+             "public static void lerp(int[],int[],float[],int[],int,int)",
+             "public static void lerp(int[],int[],float,int[],int,int)",
+    })
+    public void lerp_arrays() {
+        java.util.Random rng = new java.util.Random(7);
+        int n = 2000;
+        int[] a = randomColors(rng, n);
+        int[] b = randomColors(rng, n);
+        float[] w = new float[n];
+        for (int i = 0; i < n; i++) {
+            // include weights outside 0-1; the kernels must wrap the same way
+            w[i] = rng.nextFloat() * 1.4F - 0.2F;
+        }
+        w[3] = 0F;
+        w[4] = 1F;
+        w[5] = 127.0F / 255.0F;
+        int[] out = new int[n];
+        ColorHelper.lerp(a, b, w, out);
+        for (int i = 0; i < n; i++) {
+            assertEquals(ColorHelper.lerp(a[i], b[i], w[i]), out[i]);
+        }
+        Arrays.fill(out, 42);
+        ColorHelper.lerp(a, b, 0.3F, out, 10, 20);
+        assertEquals(42, out[9]);
+        assertEquals(42, out[30]);
+        for (int i = 10; i < 30; i++) {
+            assertEquals(ColorHelper.lerp(a[i], b[i], 0.3F), out[i]);
+        }
+        try {
+            ColorHelper.lerp(a, b, w, out, n - 5, 10);
+            fail("range past the end");
+        } catch (IndexOutOfBoundsException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    @Covers({"public static void blend(int[],int[],int[],int,int)",
+             "public static void multiply(int[],int[],int[],int,int)",
+             "public static void add(int[],int[],int[],int,int)",
+    })
+    public void blendMultiplyAdd_arrays() {
+        java.util.Random rng = new java.util.Random(11);
+        int n = 2000;
+        int[] a = randomColors(rng, n);
+        int[] b = randomColors(rng, n);
+        int[] out = new int[n];
+        ColorHelper.blend(a, b, out, 0, n);
+        for (int i = 0; i < n; i++) {
+            assertEquals(ColorHelper.lerp(a[i], b[i]), out[i]);
+        }
+        ColorHelper.multiply(a, b, out, 0, n);
+        for (int i = 0; i < n; i++) {
+            assertEquals(ColorHelper.multiply(a[i], b[i]), out[i]);
+        }
+        ColorHelper.add(a, b, out, 0, n);
+        for (int i = 0; i < n; i++) {
+            assertEquals(ColorHelper.add(a[i], b[i]), out[i]);
+        }
+        // in place
+        int[] copy = Arrays.copyOf(a, n);
+        ColorHelper.add(copy, b, copy, 0, n);
+        assertArrayEquals(out, copy);
+    }
+
+    @Test
+    @Covers({"public static void shiftHue(int[],float,int[],int,int)",
+             "public static void scaleSV(int[],float,float,int[],int,int)",
+    })
+    public void shiftHueScaleSV_arrays() {
+        java.util.Random rng = new java.util.Random(13);
+        int n = 5000;
+        int[] in = randomColors(rng, n);
+        int[] out = new int[n];
+        for (float shift : new float[] {0F, 30F, -75.5F, 180F, 359.9F, -359.9F}) {
+            ColorHelper.shiftHue(in, shift, out, 0, n);
+            for (int i = 0; i < n; i++) {
+                assertEquals(ColorHelper.shiftHue(in[i], shift), out[i]);
+            }
+        }
+        for (float[] sv : new float[][] {{1F, 1F}, {0.5F, 1.2F}, {2F, 0.25F}, {0F, 0.9F}}) {
+            ColorHelper.scaleSV(in, sv[0], sv[1], out, 0, n);
+            for (int i = 0; i < n; i++) {
+                assertEquals(ColorHelper.scaleSV(in[i], sv[0], sv[1]), out[i]);
+            }
+        }
+        try {
+            ColorHelper.shiftHue(in, 360F, out, 0, n);
+            fail("shift too large");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    @Covers({"public static float toLinear(int)",
+             "public static int fromLinear(float)",
+             "public static void lerpLinear(int[],int[],float[],int[],int,int)",
+    })
+    public void linearLight() {
+        assertEquals(0F, ColorHelper.toLinear(0), 0F);
+        assertEquals(1F, ColorHelper.toLinear(255), 1e-6F);
+        assertEquals(0.2159F, ColorHelper.toLinear(128), 1e-4F);
+        for (int c = 0; c < 256; c++) {
+            assertEquals(c, ColorHelper.fromLinear(ColorHelper.toLinear(c)));
+        }
+        assertEquals(0, ColorHelper.fromLinear(-1F));
+        assertEquals(0, ColorHelper.fromLinear(Float.NaN));
+        assertEquals(255, ColorHelper.fromLinear(2F));
+
+        int[] a = {BLACK, RED, 0x80000000};
+        int[] b = {WHITE, GREEN, 0x00ffffff};
+        float[] w = {0.5F, 0F, 1F};
+        int[] out = new int[3];
+        ColorHelper.lerpLinear(a, b, w, out, 0, 3);
+        // half-way in linear light is brighter than the plain average
+        assertEquals(0xFFbcbcbc, out[0]);
+        assertEquals(RED, out[1]);
+        assertEquals(0x00ffffff, out[2]);
+    }
+
+    @Test
+    @Covers({"public static int[] createGradientTable(int,int...)",
+             "public static int[] createCyclicGradient(int,int...)",
+    })
+    public void gradientTables() {
+        int[][] stops = {{BLACK, WHITE}, {RED, GREEN, BLUE},
+                         {0x80102030, 0xFFfedcba, BLACK, 0x00ffffff}};
+        for (int[] s : stops) {
+            List<Integer> list = new ArrayList<>();
+            for (int c : s) {
+                list.add(c);
+            }
+            for (int n = 1; n < 40; n++) {
+                int[] table = ColorHelper.createGradientTable(n, s);
+                List<Integer> expected = ColorHelper.createGradient(null, n, list);
+                assertEquals(expected.size(), table.length);
+                for (int i = 0; i < n; i++) {
+                    assertEquals((int)expected.get(i), table[i]);
+                }
+            }
+        }
+        int[] cycle = ColorHelper.createCyclicGradient(6, RED, BLUE);
+        assertEquals(6, cycle.length);
+        assertEquals(RED, cycle[0]);
+        assertEquals(ColorHelper.createGradientTable(7, RED, BLUE, RED)[3], cycle[3]);
+        assertArrayEquals(new int[] {RED, RED, RED},
+                          ColorHelper.createGradientTable(3, RED));
+    }
+
+    @Test
+    public void makeColor_cached() throws InvalidStringFormatException {
+        // repeated definitions come from the cache and must not change
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0xFF336699, ColorHelper.makeColor("#369"));
+            assertEquals(0xFF010203, ColorHelper.makeColor("1,2,3"));
+            assertEquals(0x80ff0000, ColorHelper.makeColor("0x80ff0000"));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(0xFF000000 | i, ColorHelper.makeColor(String.format("#%06x", i)));
+        }
+        assertEquals(0xFF336699, ColorHelper.makeColor("#369"));
+        try {
+            ColorHelper.makeColor("#xyz");
+            fail("bad definition");
+        } catch (InvalidStringFormatException ex) {
+            // expected
+        }
+    }
 }
@@ -144,4 +144,69 @@ public class TestColorNames {
         assertEquals(1, palette.indexOfKey("dark blue"));
     }
 
+    /**
+     * The name tables agree with palettes loaded from the same mappings.
+     */
+    @Test
+    public void nameTables() {
+        String[][] sets = {ColorNames.HTML_COLORS, ColorNames.SVG_COLORS,
+                           ColorNames.STANDARD_16_COLORS,
+                           ColorNames.CGA_16_COLORS, ColorNames.LIBTCOD_COLORS};
+        for (String[] set : sets) {
+            ColorPalette p = new ColorPalette();
+            p.putMapping(set);
+            ColorNameTable table = ColorNameTable.forMapping(set);
+            assertSame(table, ColorNameTable.forMapping(set));
+            for (String key : p.keySet()) {
+                assertTrue(key, table.contains(key));
+                int idx = table.indexOf(key);
+                // a name repeated in another case maps to the first one
+                assertEquals(key, p.getColor(idx), (int)table.getColor(key));
+                assertEquals(key, (int)p.get(key), (int)table.getColor(key));
+            }
+        }
+        ColorNameTable svg = ColorNameTable.forMapping(ColorNames.SVG_COLORS);
+        assertEquals(0xFFf0f8ff, (int)svg.getColor("aliceblue"));
+        assertEquals(0xFFf0f8ff, (int)svg.getColor("ALICEBLUE"));
+        assertEquals(17, svg.indexOf("AliceBlue"));
+        assertEquals(8, svg.indexOf("grey"));
+        assertNull(svg.getColor("AliceBlu"));
+        assertNull(svg.getColor(""));
+        assertEquals(-1, svg.indexOf("not a color"));
+
+        ColorNameTable empty = new ColorNameTable(new String[0]);
+        assertEquals(0, empty.size());
+        assertFalse(empty.contains("black"));
+        assertEquals("aliceblue", svg.getKey("AliceBlue"));
+        assertNull(svg.getKey("AliceBlu"));
+    }
+
+    /**
+     * Case-insensitive palettes find names through the tables and still
+     * find names the tables don't have.
+     */
+    @Test
+    public void caseInsensitiveLookup() {
+        ColorPalette p = new ColorPalette();
+        p.setCaseInsensitive(true);
+        p.putMapping(ColorNames.SVG_COLORS);
+        p.add("My Color", 0xFF123456);
+        int idx = p.indexOfKey("aliceblue");
+        assertEquals(idx, p.getColorOrIndex("AliceBlue"));
+        assertEquals(idx, p.getColorOrIndex("ALICEBLUE"));
+        assertEquals(0xFFf0f8ff, (int)p.get("AliceBlue"));
+        assertEquals(0xFF123456, (int)p.get("MY COLOR"));
+        assertEquals(p.indexOfKey("my color"), p.getColorOrIndex("My Color"));
+        assertNull(p.get("AliceBlu"));
+        assertEquals(0xFF336699, p.getColorOrIndex("#369"));
+
+        p.removeKey("aliceblue");
+        assertNull(p.get("AliceBlue"));
+
+        ColorPalette exact = new ColorPalette();
+        exact.putMapping(ColorNames.SVG_COLORS);
+        assertNull(exact.get("ALICEBLUE"));
+        assertNull(exact.get("aliceblue"));
+        assertEquals(0xFFf0f8ff, (int)exact.get("AliceBlue"));
+    }
 }
@@ -437,4 +437,65 @@ public class TestColorPalette {
         assertEquals((Integer)0xff3399ff, cp1.get("WEB SHORTHAND"));
     }
 
+    /**
+     * The ARGB snapshot follows changes to the palette.
+     */
+    @Test
+    public void getArgbSnapshot() {
+        ColorPalette cp1 = new ColorPalette();
+        cp1.add("black", 0xff000000);
+        cp1.add("white", 0xffffffff);
+        int[] snap = cp1.getArgbSnapshot();
+        assertArrayEquals(new int[] {0xff000000, 0xffffffff}, snap);
+        assertSame(snap, cp1.getArgbSnapshot());
+        cp1.put("white", 0xffeeeeee);
+        assertEquals(0xffeeeeee, cp1.getColor(1));
+        assertEquals(0xffffffff, snap[1]);
+        cp1.remove(0);
+        assertEquals(1, cp1.getArgbSnapshot().length);
+        assertEquals(0xff123456, cp1.getColor(0xff123456));
+    }
+
+    private static int slowNearest(int[] colors, int argb) {
+        int best = -1;
+        long bestDistance = Long.MAX_VALUE;
+        for (int i = 0; i < colors.length; i++) {
+            int dr = ((colors[i] >> 16) & 0xff) - ((argb >> 16) & 0xff);
+            int dg = ((colors[i] >> 8) & 0xff) - ((argb >> 8) & 0xff);
+            int db = (colors[i] & 0xff) - (argb & 0xff);
+            long d = 2 * dr * dr + 4 * dg * dg + 3 * db * db;
+            if (d < bestDistance) {
+                bestDistance = d;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Nearest-color lookups match a full search.
+     */
+    @Test
+    public void quantize() {
+        ColorPalette cp1 = new ColorPalette();
+        assertEquals(-1, cp1.findNearest(0xff102030));
+        cp1.addAll(ColorNames.XTERM_256_COLORS, false);
+        int[] colors = cp1.getArgbSnapshot();
+        for (int i = 0; i < colors.length; i++) {
+            assertEquals(slowNearest(colors, colors[i]), cp1.findNearest(colors[i]));
+        }
+        java.util.Random rng = new java.util.Random(1);
+        int[] in = new int[5000];
+        for (int i = 0; i < in.length; i++) {
+            in[i] = rng.nextInt();
+        }
+        int[] out = new int[in.length];
+        cp1.quantize(in, out);
+        for (int i = 0; i < in.length; i++) {
+            assertEquals(slowNearest(colors, in[i]), out[i]);
+        }
+        cp1.set(0, 0xff7f7f7f);
+        assertEquals(0, cp1.findNearest(0xff7f7f7f));
+    }
+
 }
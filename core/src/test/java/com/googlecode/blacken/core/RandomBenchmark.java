@@ -0,0 +1,76 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.googlecode.blacken.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Throughput of the classic generator against the {@link RandomSource}
+ * ones. This is not a unit test; run it by hand.
+ *
+ * @author Steven Black
+ */
+public class RandomBenchmark {
+    private static final int COUNT = 20000000;
+
+    private static double single(Random r) {
+        int[] buf = new int[1000];
+        long start = System.nanoTime();
+        for (int i = 0; i < COUNT; i += buf.length) {
+            r.nextInts(buf, 100);
+        }
+        return COUNT / ((System.nanoTime() - start) / 1e9) / 1e6;
+    }
+
+    private static double threaded(final Random shared, final boolean split,
+            int threads) throws InterruptedException {
+        final int each = COUNT / threads;
+        List<Thread> all = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final Random r = split ? shared.split() : shared;
+            all.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < each; i++) {
+                        r.dice(1, 6);
+                    }
+                }
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread t : all) {
+            t.start();
+        }
+        for (Thread t : all) {
+            t.join();
+        }
+        return COUNT / ((System.nanoTime() - start) / 1e9) / 1e6;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        for (int round = 0; round < 3; round++) {
+            System.out.printf("nextInts (M/s): classic %.1f, splitmix %.1f, xoroshiro %.1f%n",
+                    single(new Random(1L)),
+                    single(new Random(new SplitMix64(1L))),
+                    single(new Random(new Xoroshiro128(1L))));
+            System.out.printf("%d threads dice (M/s): shared classic %.1f, split xoroshiro %.1f%n",
+                    threads, threaded(new Random(1L), false, threads),
+                    threaded(new Random(new Xoroshiro128(1L)), true, threads));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.googlecode.blacken.core;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for DiceExpression.
+ *
+ * @author Steven Black
+ */
+public class TestDiceExpression {
+
+    @Test
+    public void testCompileIsCached() {
+        DiceExpression e = DiceExpression.compile("3d6+2");
+        assertSame(e, DiceExpression.compile("3d6+2"));
+        assertNotSame(e, DiceExpression.parse("3d6+2"));
+        assertEquals("3d6+2", e.toString());
+    }
+
+    @Test
+    public void testConstant() {
+        assertTrue(DiceExpression.compile("42").isConstant());
+        assertTrue(DiceExpression.compile("not dice").isConstant());
+        assertFalse(DiceExpression.compile("d6").isConstant());
+        assertEquals(42, DiceExpression.compile("42").roll(null));
+        assertEquals(2, DiceExpression.compile("8/4").roll(null));
+    }
+
+    @Test
+    public void testMatchesGuess() {
+        String[] all = {"3d6+2", "1:4d6", "10:20", ":20", "d8*3", "3:4d6-1"};
+        for (String str : all) {
+            Random a = new Random(9L);
+            Random b = new Random(9L);
+            DiceExpression e = DiceExpression.compile(str);
+            for (int i = 0; i < 100; i++) {
+                assertEquals(str, a.guess(str), e.roll(b));
+            }
+        }
+    }
+
+    @Test
+    public void testRollArray() {
+        Random a = new Random(new SplitMix64(4L));
+        Random b = new Random(new SplitMix64(4L));
+        int[] out = new int[500];
+        a.guess("2d6+1", out);
+        for (int v : out) {
+            assertTrue(v >= 3 && v <= 13);
+            assertEquals(b.guess("2d6+1"), v);
+        }
+    }
+
+    @Test
+    public void testDiceArray() {
+        Random a = new Random(12L);
+        Random b = new Random(12L);
+        int[] got = a.diceArray(20, 8);
+        assertEquals(20, got.length);
+        assertEquals(b.diceList(20, 8).get(19).intValue(), got[19]);
+    }
+}
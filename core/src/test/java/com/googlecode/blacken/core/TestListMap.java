@@ -765,6 +765,8 @@ public class TestListMap {
         assertEquals(2, lm.lastIndexOf(true));
         assertEquals(1, lm.indexOf(false));
         assertEquals(3, lm.lastIndexOf(false));
+        lm.remove(2);
+        assertEquals(0, lm.lastIndexOf(true));
     }
     /**
      * @see java.util.List#listIterator()
@@ -1050,6 +1052,39 @@ public class TestListMap {
         assertEquals(1, lm.size());
         assertTrue(lm.get(0));
     }
+    /**
+     * Removing and inserting keeps keys, aliases and value lookups in step
+     */
+    @Test
+    public void remove_Index_keepsIndexes() {
+        ListMap<String, Integer> lm = new ListMap<String, Integer>();
+        for (int i = 0; i < 100; i++) {
+            lm.add("k" + i, i);
+        }
+        lm.putKey("alias", "k50");
+        for (int i = 0; i < 50; i += 2) {
+            lm.remove(0);
+        }
+        assertEquals(75, lm.size());
+        assertEquals(25, lm.indexOfKey("alias"));
+        assertEquals(25, lm.indexOf(50));
+        assertFalse(lm.containsKey("k0"));
+        assertFalse(lm.contains(0));
+        lm.add(0, 50);
+        assertEquals(0, lm.indexOf(50));
+        assertEquals(26, lm.lastIndexOf(50));
+        assertEquals(26, lm.indexOfKey("k50"));
+        lm.remove(26);
+        assertNull(lm.get("alias"));
+        assertNull(lm.get("k50"));
+        assertFalse(lm.containsValue(50));
+        assertTrue(lm.contains(50));
+        lm.set(0, 7);
+        assertFalse(lm.contains(50));
+        assertEquals(0, lm.indexOf(7));
+        assertFalse(lm.containsValue(7));
+        assertEquals("k60", lm.getKey(60));
+    }
     /**
      * Remove a value
      */
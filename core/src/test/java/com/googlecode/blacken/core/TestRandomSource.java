@@ -0,0 +1,107 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.googlecode.blacken.core;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for Random running on a RandomSource.
+ *
+ * @author Steven Black
+ */
+public class TestRandomSource {
+
+    @Test
+    public void testSplitMix64KnownValues() {
+        // first outputs of SplitMix64 seeded with 0
+        SplitMix64 m = new SplitMix64(0L);
+        assertEquals(0xe220a8397b1dcdafL, m.nextLong());
+        assertEquals(0x6e789e6aa1b965f4L, m.nextLong());
+        assertEquals(0x06c45d188009454fL, m.nextLong());
+    }
+
+    @Test
+    public void testSplitIsReproducible() {
+        Random a = new Random(new Xoroshiro128(77L));
+        Random b = new Random(new Xoroshiro128(77L));
+        Random a1 = a.split();
+        Random b1 = b.split();
+        for (int i = 0; i < 100; i++) {
+            assertEquals(a.nextLong(), b.nextLong());
+            assertEquals(a1.nextLong(), b1.nextLong());
+        }
+        Random c = new Random(new Xoroshiro128(77L));
+        Random c1 = c.split();
+        assertFalse(c.nextLong() == c1.nextLong());
+    }
+
+    @Test
+    public void testClassicSplit() {
+        Random a = new Random(5L);
+        Random b = new Random(5L);
+        Random a1 = a.split();
+        assertTrue(a1.getSource() instanceof SplitMix64);
+        assertEquals(a1.nextLong(), b.split().nextLong());
+        assertEquals(a.nextInt(), b.nextInt());
+    }
+
+    @Test
+    public void testSetSeed() {
+        Random r = new Random(new SplitMix64(1L));
+        long first = r.nextLong();
+        r.nextLong();
+        r.setSeed(1L);
+        assertEquals(first, r.nextLong());
+    }
+
+    @Test
+    public void testNextInts() {
+        Random r = new Random(new Xoroshiro128(3L));
+        int[] out = new int[6000];
+        r.nextInts(out, 6);
+        int[] counts = new int[6];
+        for (int v : out) {
+            counts[v]++;
+        }
+        for (int c : counts) {
+            assertTrue(c > 800 && c < 1200);
+        }
+        Random again = new Random(new Xoroshiro128(3L));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(again.nextInt(6), out[i]);
+        }
+    }
+
+    @Test
+    public void testExistingApi() {
+        Random r = new Random(new SplitMix64(11L));
+        for (int i = 0; i < 200; i++) {
+            int d = r.dice(3, 6);
+            assertTrue(d >= 3 && d <= 18);
+            int g = r.guess("2:4d6+1");
+            assertTrue(g >= 3 && g <= 13);
+            int best = r.bestOf(3, 4, 6);
+            assertTrue(best >= 3 && best <= 18);
+            double f = r.nextDouble();
+            assertTrue(f >= 0.0 && f < 1.0);
+            int n = r.nextInt(-5, 5);
+            assertTrue(n >= -5 && n < 5);
+        }
+        assertSame(Random.getThreadInstance(), Random.getThreadInstance());
+    }
+}
@@ -0,0 +1,316 @@
+package com.googlecode.blacken.dungeon;
+
+import com.googlecode.blacken.grid.BoxRegion;
+import com.googlecode.blacken.grid.Grid;
+import com.googlecode.blacken.grid.Point;
+import com.googlecode.blacken.grid.Positionable;
+import com.googlecode.blacken.grid.RegionIterator;
+import com.googlecode.blacken.grid.Regionlike;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the role-table versions of digRoom and addDoor against the
+ * original map-lookup versions, which are kept here as a reference.
+ *
+ * @author Steven Black
+ */
+public class DungeonUtilsTest {
+    private static final int ROWS = 20;
+    private static final int COLS = 30;
+    private Map<String, Character> config;
+    private Regionlike[] rooms;
+
+    @Before
+    public void setUp() {
+        config = makeConfig('.');
+        rooms = new Regionlike[] {
+            new BoxRegion(6, 8, 2, 2),
+            new BoxRegion(5, 9, 5, 7),
+            new BoxRegion(7, 6, 9, 18),
+            new BoxRegion(3, 3, 15, 1),
+        };
+    }
+
+    private static Map<String, Character> makeConfig(char floor) {
+        Map<String, Character> ret = new HashMap<>();
+        ret.put("diggable", '#');
+        ret.put("room:floor", floor);
+        ret.put("hall:floor", ',');
+        ret.put("room:wall", 'W');
+        ret.put("hall:wall", 'H');
+        ret.put("room:wall:top", '-');
+        ret.put("room:wall:bottom", '_');
+        ret.put("room:wall:left", '[');
+        ret.put("room:wall:right", ']');
+        ret.put("room:wall:corner", '+');
+        SimpleDungeonConfig.cleanConfig(ret);
+        return ret;
+    }
+
+    /**
+     * A level with a hall running through it, walled on both sides.
+     */
+    private static Grid<Character> makeGrid() {
+        Grid<Character> grid = new Grid<>('#', ROWS, COLS);
+        for (int x = 0; x < COLS; x++) {
+            grid.set(7, x, 'H');
+            grid.set(8, x, ',');
+            grid.set(9, x, 'H');
+        }
+        return grid;
+    }
+
+    private static Room makeRoom(Regionlike region) {
+        Room ret = new Room(region);
+        ret.doors = new HashSet<>();
+        ret.setDug(true);
+        return ret;
+    }
+
+    private static void assertSameGrid(Grid<Character> expected,
+            Grid<Character> actual) {
+        for (int y = 0; y < ROWS; y++) {
+            for (int x = 0; x < COLS; x++) {
+                assertEquals(String.format("%d,%d", y, x), expected.get(y, x),
+                        actual.get(y, x));
+            }
+        }
+    }
+
+    @Test
+    public void testDigRoomMatchesMapLookups() {
+        Grid<Character> expected = makeGrid();
+        Grid<Character> viaMap = makeGrid();
+        Grid<Character> viaRoles = makeGrid();
+        TileRoles<Character> roles = SimpleDungeonConfig.compile(config);
+        boolean anyIntersect = false;
+        for (Regionlike room : rooms) {
+            boolean intr = legacyDigRoom(expected, config, room);
+            anyIntersect |= intr;
+            assertEquals(intr, DungeonUtils.digRoom(viaMap, config, room));
+            assertEquals(intr, DungeonUtils.digRoom(viaRoles, roles, room));
+        }
+        assertTrue(anyIntersect);
+        assertSameGrid(expected, viaMap);
+        assertSameGrid(expected, viaRoles);
+    }
+
+    @Test
+    public void testDigRoomSeesConfigChanges() {
+        Map<String, Character> other = makeConfig(':');
+        Grid<Character> expected = makeGrid();
+        Grid<Character> actual = makeGrid();
+        legacyDigRoom(expected, config, rooms[0]);
+        DungeonUtils.digRoom(actual, config, rooms[0]);
+        legacyDigRoom(expected, other, rooms[2]);
+        DungeonUtils.digRoom(actual, other, rooms[2]);
+        config.put("room:floor", '*');
+        legacyDigRoom(expected, config, rooms[1]);
+        DungeonUtils.digRoom(actual, config, rooms[1]);
+        assertSameGrid(expected, actual);
+        assertEquals(Character.valueOf(':'), actual.get(12, 20));
+        assertEquals(Character.valueOf('*'), actual.get(6, 12));
+    }
+
+    @Test
+    public void testAddDoorMatchesMapLookups() {
+        DungeonUtils utils = new DungeonUtils();
+        Grid<Character> grid = makeGrid();
+        TileRoles<Character> roles = SimpleDungeonConfig.compile(config);
+        DungeonUtils.digRoom(grid, roles, rooms[3]);
+        Point[] doors = {
+            new Point(15, 2), new Point(16, 1), new Point(17, 3),
+            new Point(16, 2), new Point(15, 1),
+        };
+        // an existing door is kept, anything but a wall or door is refused
+        grid.set(16, 1, '.');
+        grid.set(17, 3, 'x');
+        for (Point door : doors) {
+            Room expected = makeRoom(rooms[3]);
+            Room viaMap = makeRoom(rooms[3]);
+            Room viaRoles = makeRoom(rooms[3]);
+            boolean added = legacyAddDoor(expected, config, door, grid);
+            assertEquals(door.toString(), added,
+                    utils.addDoor(viaMap, config, door, grid));
+            assertEquals(door.toString(), added,
+                    utils.addDoor(viaRoles, roles, door, grid));
+            assertEquals(expected.hasDoor(door), viaMap.hasDoor(door));
+            assertEquals(expected.hasDoor(door), viaRoles.hasDoor(door));
+        }
+        Room room = makeRoom(rooms[3]);
+        assertTrue(utils.addDoor(room, roles, doors[0], grid));
+        assertTrue(utils.addDoor(room, roles, doors[1], grid));
+        assertFalse(utils.addDoor(room, roles, doors[2], grid));
+        assertFalse(utils.addDoor(room, roles, doors[3], grid));
+        assertFalse(room.hasDoor(doors[3]));
+
+        // a missing cell is never a wall, even when wall roles are unset
+        Map<String, Character> sparse = new HashMap<>();
+        sparse.put("room:door", '/');
+        grid.unset(15, 2);
+        room = makeRoom(rooms[3]);
+        assertFalse(utils.addDoor(room, new TileRoles<>(sparse), doors[0], grid));
+        assertFalse(room.hasDoor(doors[0]));
+    }
+
+    /*
+     * The map-lookup versions from before the role table, kept as a
+     * reference for what digRoom and addDoor should do.
+     */
+
+    private static <T> boolean same(T cell, Map<String, T> config, String name) {
+        return cell == config.get(name) || (cell != null && cell.equals(config.get(name)));
+    }
+
+    private static <T> boolean legacyDigRoom(Grid<T> grid, Map<String, T> config, Regionlike region) {
+        boolean intr = false;
+        int[] coords = {0,0,0,0};
+        RegionIterator itr = region.getInsideIterator();
+        int patIdx = 0;
+        while(!itr.isDone()) {
+            int segment = itr.currentSegment(coords);
+            boolean[] ptrn = itr.currentPattern();
+            if (segment == RegionIterator.SEG_INSIDE_SOLID || segment == RegionIterator.SEG_INSIDE_PATTERNED) {
+                boolean state = true;
+                if (segment == RegionIterator.SEG_INSIDE_PATTERNED) {
+                    state = ptrn[patIdx++];
+                    if (patIdx >= ptrn.length) {
+                        patIdx = 0;
+                    }
+                }
+                for(int y1 = coords[0]; y1 <= coords[2]; y1++) {
+                    for (int x1 = coords[1]; x1 <= coords[3]; x1++) {
+                        T cell = grid.get(y1, x1);
+                        if (same(cell, config, "diggable") || same(cell, config, "hall:wall")) {
+                            if (state) {
+                                grid.setCopy(y1, x1, config.get("room:floor"));
+                            } else {
+                                grid.setCopy(y1, x1, config.get("room:wall"));
+                            }
+                        } else if (same(cell, config, "room:wall") || same(cell, config, "hall:floor")) {
+                            grid.setCopy(y1, x1, config.get("room:floor"));
+                            intr = true;
+                        }
+                    }
+                }
+            } else if (segment == RegionIterator.SEG_COMPLETE) {
+                break;
+            } else {
+                throw new UnsupportedOperationException("Please implement");
+            }
+        }
+        itr = region.getEdgeIterator();
+        int side;
+        while(!itr.isDone()) {
+            itr.currentSegment(coords);
+            itr.next();
+            boolean isHorizontal = coords[2] == coords[0];
+            int direction = isHorizontal ? (coords[3] > coords[1] ? +1 : -1) : (coords[2] > coords[0] ? +1 : -1);
+            int count = isHorizontal ? coords[3] - coords[1] : coords[2] - coords[0];
+            if (count < 0) {
+                count *= -1;
+            }
+            count++;
+            int x0 = coords[1];
+            int y0 = coords[0];
+            boolean lastDoor = false;
+            boolean lastFloor = false;
+            T roomWall;
+            if (coords[2] == coords[0] && coords[3] == coords[1]) {
+                side = -1;
+                roomWall = config.get("room:wall");
+            } else if (coords[2] == coords[0]) {
+                if (coords[0] == region.getY()) {
+                    side = 0;
+                    roomWall = config.get("room:wall:top");
+                } else {
+                    roomWall = config.get("room:wall:bottom");
+                    side = 2;
+                }
+            } else {
+                if (coords[1] == region.getX()) {
+                    side = 1;
+                    roomWall = config.get("room:wall:left");
+                } else {
+                    side = 3;
+                    roomWall = config.get("room:wall:right");
+                }
+            }
+            boolean firstOrLast = true;
+            while(count-- > 0) {
+                if (count == 0) {
+                    firstOrLast = true;
+                }
+                T cell = grid.get(y0, x0);
+                if (same(cell, config, "diggable") || same(cell, config, "hall:wall")) {
+                    if (side == 0 && firstOrLast) {
+                        if (count == 0) {
+                            grid.setCopy(y0, x0, config.get("room:wall:top-right"));
+                        } else {
+                            grid.setCopy(y0, x0, config.get("room:wall:top-left"));
+                        }
+                    } else if (side == 2 && firstOrLast) {
+                        if (count == 0) {
+                            grid.setCopy(y0, x0, config.get("room:wall:bottom-right"));
+                        } else {
+                            grid.setCopy(y0, x0, config.get("room:wall:bottom-left"));
+                        }
+                    } else {
+                        grid.setCopy(y0, x0, roomWall);
+                    }
+                } else if (same(cell, config, "hall:floor") || same(cell, config, "room:floor")) {
+                    if (lastFloor || lastDoor) {
+                        grid.setCopy(y0, x0, config.get("room:floor"));
+                        if (lastDoor) {
+                            Positionable lastPos;
+                            if (isHorizontal) {
+                                lastPos = new Point(y0, x0 + (direction*-1));
+                            } else {
+                                lastPos = new Point(y0 + (direction*-1), x0);
+                            }
+                            grid.setCopy(lastPos, config.get("room:floor"));
+                            lastFloor = true;
+                            lastDoor = false;
+                        }
+                    } else {
+                        grid.setCopy(y0, x0, config.get("room:door"));
+                        lastDoor = true;
+                    }
+                    intr = true;
+                }
+                if (isHorizontal) {
+                    x0+=direction;
+                } else {
+                    y0+=direction;
+                }
+                firstOrLast = false;
+            }
+        }
+        return intr;
+    }
+
+    private static <T> boolean legacyAddDoor(Room room, Map<String, T> config,
+            Positionable door, Grid<T> grid) {
+        if (!room.addDoor(door)) {
+            return false;
+        }
+        Set<T> walls = SimpleDungeonConfig.findRoomWalls(config);
+        if (room.isDug()) {
+            T spot = grid.get(door);
+            if (walls.contains(spot)) {
+                grid.set(door, spot);
+            } else if (!spot.equals(config.get("room:door"))) {
+                room.removeDoor(door);
+                return false;
+            }
+        }
+        return true;
+    }
+}
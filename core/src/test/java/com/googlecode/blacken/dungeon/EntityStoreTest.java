@@ -0,0 +1,113 @@
+package com.googlecode.blacken.dungeon;
+
+import com.googlecode.blacken.grid.Grid;
+import com.googlecode.blacken.grid.Point;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Steven Black
+ */
+public class EntityStoreTest {
+    private EntityStore<String> instance;
+
+    @Before
+    public void setUp() {
+        instance = new EntityStore<>(10, 10, 5, 5);
+    }
+
+    @Test
+    public void testAddRemove() {
+        int a = instance.add("a", 5, 5);
+        int b = instance.add("b", 5, 5);
+        int c = instance.add("c", 14, 14);
+        assertEquals(3, instance.size());
+        assertEquals(2, instance.countAt(5, 5));
+        assertEquals("b", instance.getFirstAt(5, 5));
+        assertEquals(a, instance.nextInCell(b));
+        assertEquals(-1, instance.nextInCell(a));
+        instance.remove(b);
+        assertFalse(instance.contains(b));
+        assertEquals(2, instance.size());
+        assertEquals("a", instance.getFirstAt(5, 5));
+        assertEquals("c", instance.get(c));
+        assertEquals(14, instance.getY(c));
+        int d = instance.add("d", 6, 6);
+        assertEquals(b, d);
+        assertEquals("d", instance.get(d));
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testOutside() {
+        instance.add("a", 4, 5);
+    }
+
+    @Test
+    public void testMove() {
+        Point p = new Point(0, 0);
+        EntityStore<Point> points = new EntityStore<>(10, 10, 0, 0);
+        int h = points.add(p, 2, 3);
+        assertEquals(2, p.getY());
+        assertEquals(3, p.getX());
+        points.move(h, 7, 8);
+        assertEquals(7, p.getY());
+        assertEquals(8, p.getX());
+        assertNull(points.getFirstAt(2, 3));
+        assertSame(p, points.getFirstAt(7, 8));
+    }
+
+    @Test
+    public void testDenseIteration() {
+        for (int i = 0; i < 100; i++) {
+            instance.add("e" + i, 5 + i % 10, 5 + i / 10);
+        }
+        for (int i = 0; i < 100; i += 2) {
+            instance.remove(i);
+        }
+        List<String> seen = new ArrayList<>();
+        for (int i = 0; i < instance.size(); i++) {
+            seen.add(instance.entityAt(i));
+            assertEquals(instance.entityAt(i), instance.get(instance.handleAt(i)));
+        }
+        assertEquals(50, seen.size());
+        assertTrue(seen.contains("e1"));
+        assertFalse(seen.contains("e0"));
+    }
+
+    @Test
+    public void testFlagsAndTimers() {
+        int a = instance.add("a", 5, 5);
+        int b = instance.add("b", 6, 5);
+        int asleep = instance.getFlagBit("asleep");
+        assertEquals(asleep, instance.getFlagBit("asleep"));
+        instance.setFlag(a, asleep, true);
+        assertTrue(instance.hasFlag(a, asleep));
+        assertFalse(instance.hasFlag(b, asleep));
+        instance.setTimer(a, 3);
+        instance.setTimer(b, 10);
+        assertEquals(1, instance.advanceTimers(5));
+        assertEquals(0, instance.getTimer(a));
+        assertEquals(5, instance.getTimer(b));
+        instance.remove(a);
+        assertEquals(0, instance.getFlags(b));
+    }
+
+    @Test
+    public void testSync() {
+        Grid<TIMCell> grid = new Grid<TIMCell>(new TIMCell(), 10, 10, 5, 5);
+        EntityStore<Object> monsters = new EntityStore<>(grid);
+        int m = monsters.add("orc", 6, 7);
+        EntityStore.syncMonsters(monsters, grid);
+        assertEquals("orc", grid.get(6, 7).getMonster());
+        monsters.move(m, 8, 8);
+        EntityStore.syncMonsters(monsters, grid);
+        assertNull(grid.get(6, 7).getMonster());
+        assertEquals("orc", grid.get(8, 8).getMonster());
+    }
+}
@@ -0,0 +1,73 @@
+package com.googlecode.blacken.dungeon;
+
+import com.googlecode.blacken.core.Random;
+import com.googlecode.blacken.grid.BoxRegion;
+import com.googlecode.blacken.grid.Grid;
+import com.googlecode.blacken.grid.Positionable;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Steven Black
+ */
+public class FreeCellIndexTest {
+    private Grid<Integer> grid;
+    private FreeCellIndex<Integer> instance;
+
+    @Before
+    public void setUp() {
+        grid = new Grid<>(0, 10, 10);
+        grid.set(3, 3, 1);
+        grid.set(4, 4, 1);
+        instance = new FreeCellIndex<>(grid, new BoxRegion(4, 4, 2, 2), 0);
+    }
+
+    @Test
+    public void testConstructor() {
+        assertEquals(14, instance.size());
+        assertFalse(instance.isFree(3, 3));
+        assertFalse(instance.isFree(4, 4));
+        assertTrue(instance.isFree(2, 2));
+        assertFalse(instance.isFree(1, 1));
+        assertFalse(instance.isFree(6, 6));
+    }
+
+    @Test
+    public void testOccupyRelease() {
+        assertTrue(instance.occupy(2, 2));
+        assertFalse(instance.occupy(2, 2));
+        assertEquals(13, instance.size());
+        assertTrue(instance.release(2, 2));
+        assertFalse(instance.release(2, 2));
+        assertEquals(14, instance.size());
+        assertFalse(instance.occupy(0, 0));
+    }
+
+    @Test
+    public void testSet() {
+        instance.set(3, 3, 0);
+        assertTrue(instance.isFree(3, 3));
+        instance.set(5, 5, 2);
+        assertFalse(instance.isFree(5, 5));
+        assertEquals(Integer.valueOf(2), grid.get(5, 5));
+        assertEquals(14, instance.size());
+    }
+
+    @Test
+    public void testPlaceFillsRegion() {
+        Random rng = new Random(0);
+        for (int i = 0; i < 14; i++) {
+            Positionable pos = instance.place(rng, 9);
+            assertNotNull(pos);
+            assertEquals(Integer.valueOf(9), grid.get(pos));
+        }
+        assertTrue(instance.isEmpty());
+        assertNull(instance.place(rng, 9));
+        assertEquals(Integer.valueOf(1), grid.get(3, 3));
+        assertEquals(Integer.valueOf(0), grid.get(1, 1));
+    }
+}
@@ -0,0 +1,177 @@
+package com.googlecode.blacken.dungeon;
+
+import com.googlecode.blacken.core.ListMap;
+import com.googlecode.blacken.core.Random;
+import com.googlecode.blacken.dungeon.TIMTypes.Monsterlike;
+import com.googlecode.blacken.dungeon.TIMTypes.MotileDriver;
+import com.googlecode.blacken.dungeon.TIMTypes.PlanningDriver;
+import com.googlecode.blacken.dungeon.TIMTypes.TimedFlag;
+import com.googlecode.blacken.dungeon.TIMTypes.TimedMonsterlike;
+import com.googlecode.blacken.grid.Point;
+
+import java.util.concurrent.ForkJoinPool;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Steven Black
+ */
+public class IntentPhaseTest {
+    private static final int SIZE = 20;
+    private ForkJoinPool pool;
+
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private static class Mob extends Point implements TimedMonsterlike {
+        private final String name;
+        private MotileDriver driver;
+
+        Mob(String name, MotileDriver driver) {
+            this.name = name;
+            this.driver = driver;
+        }
+
+        @Override
+        public void decreaseTime(int duration) {
+        }
+
+        @Override
+        public TimedFlag getFlag(String name) {
+            return null;
+        }
+
+        @Override
+        public ListMap<String, TimedFlag> getFlags() {
+            return new ListMap<>();
+        }
+
+        @Override
+        public MotileDriver getDriver() {
+            return driver;
+        }
+
+        @Override
+        public void setDriver(MotileDriver driver) {
+            this.driver = driver;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+
+    private static class Wander implements PlanningDriver {
+        @Override
+        public MotileDriver getInstance() {
+            return this;
+        }
+
+        @Override
+        public void drive(TimedMonsterlike whom) {
+            throw new UnsupportedOperationException("planned only");
+        }
+
+        @Override
+        public Intent plan(TimedMonsterlike whom,
+                EntitySnapshot<? extends Monsterlike> world, Random rng) {
+            int y = whom.getY() + rng.nextInt(3) - 1;
+            int x = whom.getX() + rng.nextInt(3) - 1;
+            if (y == whom.getY() && x == whom.getX()) {
+                return Intent.waitTurn();
+            }
+            if (world.getAt(y, x) != null && rng.nextBoolean()) {
+                return Intent.attack(y, x);
+            }
+            return Intent.move(y, x);
+        }
+    }
+
+    private static class Rules implements IntentPhase.Rules<Mob> {
+        private final EntityStore<Mob> store;
+        int attacks = 0;
+
+        Rules(EntityStore<Mob> store) {
+            this.store = store;
+        }
+
+        @Override
+        public boolean canEnter(Mob who, int y, int x) {
+            // a wall down the middle with a gap
+            return x != SIZE / 2 || y == 3;
+        }
+
+        @Override
+        public void attack(Mob who, int y, int x, Mob target) {
+            if (target != null) {
+                attacks++;
+                store.remove(store.firstAt(y, x));
+            }
+        }
+    }
+
+    private String play(ForkJoinPool pool) {
+        EntityStore<Mob> store = new EntityStore<>(SIZE, SIZE, 0, 0);
+        Wander wander = new Wander();
+        Random rng = new Random(42);
+        for (int i = 0; i < 150; i++) {
+            int y = rng.nextInt(SIZE);
+            int x = rng.nextInt(SIZE);
+            if (store.firstAt(y, x) == -1 && x != SIZE / 2) {
+                store.add(new Mob("m" + i, wander), y, x);
+            }
+        }
+        Rules rules = new Rules(store);
+        IntentPhase<Mob> phase = new IntentPhase<>(store, rules, pool);
+        int moves = 0;
+        for (int turn = 0; turn < 30; turn++) {
+            moves += phase.run(turn);
+        }
+        StringBuilder buf = new StringBuilder();
+        buf.append(moves).append('/').append(rules.attacks);
+        for (int i = 0; i < store.size(); i++) {
+            Mob m = store.entityAt(i);
+            buf.append(' ').append(m.getName()).append('@')
+                    .append(m.getY()).append(',').append(m.getX());
+            assertEquals(1, store.countAt(m.getY(), m.getX()));
+        }
+        return buf.toString();
+    }
+
+    @Test
+    public void testParallelMatchesSequential() {
+        String seq = play(null);
+        pool = new ForkJoinPool(4);
+        assertEquals(seq, play(pool));
+        assertEquals(seq, play(null));
+    }
+
+    @Test
+    public void testConflictGoesToFirst() {
+        EntityStore<Mob> store = new EntityStore<>(3, 3, 0, 0);
+        PlanningDriver center = new Wander() {
+            @Override
+            public Intent plan(TimedMonsterlike whom,
+                    EntitySnapshot<? extends Monsterlike> world, Random rng) {
+                return Intent.move(1, 1);
+            }
+        };
+        Mob a = new Mob("a", center);
+        Mob b = new Mob("b", center);
+        store.add(a, 0, 0);
+        store.add(b, 2, 2);
+        IntentPhase<Mob> phase = new IntentPhase<>(store, new Rules(store), null);
+        assertEquals(1, phase.run(0L));
+        assertSame(a, store.getFirstAt(1, 1));
+        assertEquals(2, b.getY());
+        assertEquals("MOVE 1,1", phase.getIntent(1).toString());
+    }
+}
@@ -0,0 +1,91 @@
+package com.googlecode.blacken.dungeon;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Steven Black
+ */
+public class TileRolesTest {
+    private Map<String, Character> config;
+    private TileRoles<Character> roles;
+
+    @Before
+    public void setUp() {
+        config = new HashMap<>();
+        config.put("diggable", '#');
+        config.put("room:floor", '.');
+        config.put("hall:floor", ',');
+        config.put("room:wall", 'W');
+        config.put("hall:wall", 'H');
+        config.put("room:wall:top", '-');
+        config.put("room:wall:corner", '+');
+        SimpleDungeonConfig.cleanConfig(config);
+        roles = SimpleDungeonConfig.compile(config);
+    }
+
+    @Test
+    public void testRoles() {
+        assertEquals(TileRoles.ROOM_FLOOR, TileRoles.getRole("room:floor"));
+        assertEquals(TileRoles.THING_OTHER, TileRoles.getRole("thing:other"));
+        assertEquals(-1, TileRoles.getRole("room:ceiling"));
+        for (String name : config.keySet()) {
+            int role = TileRoles.getRole(name);
+            if (role != -1) {
+                assertEquals(config.get(name), roles.get(role));
+            }
+        }
+    }
+
+    @Test
+    public void testMasks() {
+        assertTrue(roles.is('#', TileRoles.MASK_CARVABLE));
+        assertTrue(roles.is('H', TileRoles.MASK_CARVABLE));
+        assertFalse(roles.is('.', TileRoles.MASK_CARVABLE));
+        assertTrue(roles.is('W', TileRoles.MASK_ABSORBED));
+        assertTrue(roles.is(',', TileRoles.MASK_ABSORBED));
+        assertTrue(roles.is('.', TileRoles.MASK_FLOORS));
+        assertEquals(0, roles.getMask('?'));
+        // "floor" falls back to "room:floor", so '.' fills both
+        assertEquals(TileRoles.mask(TileRoles.FLOOR, TileRoles.ROOM_FLOOR,
+                TileRoles.ROOM_DOOR), roles.getMask('.'));
+    }
+
+    @Test
+    public void testRoomWallsMatchConfig() {
+        Set<Character> walls = SimpleDungeonConfig.findRoomWalls(config);
+        for (Character tile : config.values()) {
+            assertEquals(String.valueOf(tile), walls.contains(tile),
+                    roles.is(tile, TileRoles.MASK_ROOM_WALLS));
+        }
+    }
+
+    @Test
+    public void testNullTile() {
+        Map<String, Character> sparse = new HashMap<>();
+        sparse.put("room:floor", '.');
+        TileRoles<Character> partial = new TileRoles<>(sparse);
+        // unset roles hold null, as config.get() does
+        assertTrue(partial.is(null, TileRoles.MASK_ROOM_WALLS));
+        assertFalse(partial.is(null, TileRoles.mask(TileRoles.ROOM_FLOOR)));
+        assertFalse(SimpleDungeonConfig.findRoomWalls(sparse).contains(null));
+        assertEquals(0, roles.getMask(null) & TileRoles.mask(TileRoles.ROOM_FLOOR));
+    }
+
+    @Test
+    public void testMatches() {
+        assertTrue(roles.matches(config));
+        config.put("unrelated", 'x');
+        assertTrue(roles.matches(config));
+        config.put("room:floor", '_');
+        assertFalse(roles.matches(config));
+        // the table doesn't follow later changes to the map
+        assertEquals(Character.valueOf('.'), roles.get(TileRoles.ROOM_FLOOR));
+    }
+}
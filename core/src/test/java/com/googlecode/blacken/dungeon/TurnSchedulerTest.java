@@ -0,0 +1,204 @@
+package com.googlecode.blacken.dungeon;
+
+import com.googlecode.blacken.core.ListMap;
+import com.googlecode.blacken.dungeon.TIMTypes.MotileDriver;
+import com.googlecode.blacken.dungeon.TIMTypes.TimedFlag;
+import com.googlecode.blacken.dungeon.TIMTypes.TimedMonsterlike;
+import com.googlecode.blacken.grid.Point;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Steven Black
+ */
+public class TurnSchedulerTest {
+    private TurnScheduler instance;
+    private List<String> log;
+
+    private static class Mob extends Point implements TimedMonsterlike {
+        private final String name;
+        private final ListMap<String, Flag> flags = new ListMap<>();
+        private MotileDriver driver;
+
+        Mob(String name, MotileDriver driver) {
+            this.name = name;
+            this.driver = driver;
+        }
+
+        @Override
+        public void decreaseTime(int duration) {
+            throw new UnsupportedOperationException("polling");
+        }
+
+        @Override
+        public TimedFlag getFlag(String name) {
+            return flags.get(name);
+        }
+
+        @Override
+        public ListMap<String, Flag> getFlags() {
+            return flags;
+        }
+
+        @Override
+        public MotileDriver getDriver() {
+            return driver;
+        }
+
+        @Override
+        public void setDriver(MotileDriver driver) {
+            this.driver = driver;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+
+    private static class Flag implements TimedFlag {
+        private int duration;
+
+        Flag(int duration) {
+            this.duration = duration;
+        }
+
+        @Override
+        public void setDuration(int turns) {
+            duration = turns;
+        }
+
+        @Override
+        public int getDuration() {
+            return duration;
+        }
+
+        @Override
+        public String getTitle() {
+            return "flag";
+        }
+
+        @Override
+        public String getGroupName() {
+            return null;
+        }
+
+        @Override
+        public String getRelatedAttribute() {
+            return null;
+        }
+
+        @Override
+        public String getRelatedSkill() {
+            return null;
+        }
+
+        @Override
+        public int compareTo(Object o) {
+            return 0;
+        }
+    }
+
+    private MotileDriver logger() {
+        return new MotileDriver() {
+            @Override
+            public MotileDriver getInstance() {
+                return this;
+            }
+
+            @Override
+            public void drive(TimedMonsterlike whom) {
+                log.add(instance.getTime() + ":" + whom.getName());
+            }
+        };
+    }
+
+    @Before
+    public void setUp() {
+        instance = new TurnScheduler(8);
+        log = new ArrayList<>();
+    }
+
+    @Test
+    public void testActorOrder() {
+        instance.addActor(new Mob("slow", logger()), 3);
+        instance.addActor(new Mob("fast", logger()), 2);
+        instance.advance(6);
+        assertEquals("[2:fast, 3:slow, 4:fast, 6:slow, 6:fast]", log.toString());
+    }
+
+    @Test
+    public void testRunTurnSkipsIdleTime() {
+        instance.addActor(new Mob("far", logger()), 100);
+        assertEquals(1, instance.runTurn());
+        assertEquals(100, instance.getTime());
+        assertEquals("[100:far]", log.toString());
+        assertNull(instance.getCurrentActor());
+        assertEquals(1, instance.getActorCount());
+    }
+
+    @Test
+    public void testNextDelayAndRemove() {
+        final Mob mob = new Mob("m", null);
+        mob.setDriver(new MotileDriver() {
+            @Override
+            public MotileDriver getInstance() {
+                return this;
+            }
+
+            @Override
+            public void drive(TimedMonsterlike whom) {
+                log.add(Long.toString(instance.getTime()));
+                if (instance.getTime() == 1) {
+                    instance.setNextDelay(10);
+                } else if (instance.getTime() == 12) {
+                    instance.removeActor(whom);
+                }
+            }
+        });
+        instance.addActor(mob, 1);
+        instance.advance(50);
+        assertEquals("[1, 11, 12]", log.toString());
+        assertFalse(instance.hasActor(mob));
+        assertEquals(0, instance.getPendingCount());
+    }
+
+    @Test
+    public void testExpireFlag() {
+        Mob mob = new Mob("m", null);
+        Flag flag = new Flag(5);
+        mob.getFlags().add("haste", flag);
+        instance.expireFlag(mob, flag);
+        assertEquals(5, instance.getRemaining(flag));
+        instance.advance(4);
+        assertTrue(mob.getFlags().containsKey("haste"));
+        // renewing replaces the earlier expiry
+        flag.setDuration(20);
+        instance.expireFlag(mob, flag);
+        instance.advance(10);
+        assertTrue(mob.getFlags().containsKey("haste"));
+        instance.advance(10);
+        assertFalse(mob.getFlags().containsKey("haste"));
+        assertEquals(0, flag.getDuration());
+        assertEquals(-1, instance.getRemaining(flag));
+    }
+
+    @Test
+    public void testCancel() {
+        TurnScheduler.Ticket t = instance.schedule(3, new TurnScheduler.Event() {
+            @Override
+            public void fire(TurnScheduler scheduler) {
+                log.add("fired");
+            }
+        });
+        instance.cancel(t);
+        assertEquals(0, instance.advance(10));
+        assertTrue(log.isEmpty());
+    }
+}
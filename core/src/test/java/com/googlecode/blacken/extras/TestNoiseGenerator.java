@@ -0,0 +1,106 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.googlecode.blacken.extras;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the seeded noise generators.
+ *
+ * @author Steven Black
+ */
+public class TestNoiseGenerator {
+    private ForkJoinPool pool;
+
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private NoiseGenerator[] build(long seed) {
+        return new NoiseGenerator[] {new SimplexNoise(seed),
+            new ValueNoise(seed), new CellularNoise(seed), new WarpedNoise(seed)};
+    }
+
+    @Test
+    public void testSameSeedSameNoise() {
+        NoiseGenerator[] one = build(1234L);
+        NoiseGenerator[] two = build(1234L);
+        NoiseGenerator[] other = build(4321L);
+        for (int g = 0; g < one.length; g++) {
+            boolean differs = false;
+            for (int i = 0; i < 50; i++) {
+                double x = i * 0.37 - 4;
+                double y = i * 0.21 + 3;
+                assertEquals(one[g].noise(x, y), two[g].noise(x, y), 0.0);
+                assertEquals(one[g].noise(x, y, 0.5), two[g].noise(x, y, 0.5), 0.0);
+                if (one[g].noise(x, y) != other[g].noise(x, y)) {
+                    differs = true;
+                }
+            }
+            assertTrue(one[g].getClass().getSimpleName(), differs);
+        }
+    }
+
+    @Test
+    public void testForSeedIsCached() {
+        assertSame(SimplexNoise.forSeed(99L), SimplexNoise.forSeed(99L));
+        assertSame(ValueNoise.forSeed(99L), ValueNoise.forSeed(99L));
+        assertSame(CellularNoise.forSeed(99L), CellularNoise.forSeed(99L));
+        assertSame(WarpedNoise.forSeed(99L), WarpedNoise.forSeed(99L));
+        assertNotSame(SimplexNoise.forSeed(99L), SimplexNoise.forSeed(100L));
+        assertEquals(99L, SimplexNoise.forSeed(99L).getSeed());
+    }
+
+    @Test
+    public void testRanges() {
+        ValueNoise value = new ValueNoise(7L);
+        CellularNoise cell = new CellularNoise(7L);
+        SimplexNoise simplex = new SimplexNoise(7L);
+        for (int i = 0; i < 2000; i++) {
+            double x = i * 0.173 - 100;
+            double y = i * 0.091 - 40;
+            double v = value.noise(x, y, y - x);
+            assertTrue(v >= -1.0 && v <= 1.0);
+            double c = cell.noise(x, y);
+            assertTrue(c >= 0.0 && c < 1.5);
+            double s = simplex.noise(x, y, x * y, 0.25);
+            assertTrue(s >= -1.0 && s <= 1.0);
+        }
+        // value noise hits the lattice values exactly at integer points
+        assertEquals(value.noise(3.0, 4.0), value.noise(3.0 + 1e-12, 4.0), 1e-9);
+    }
+
+    @Test
+    public void testFillFbmParallel() {
+        NoiseGenerator warped = WarpedNoise.forSeed(5L);
+        float[] seq = new float[32 * 32];
+        float[] par = new float[32 * 32];
+        warped.fillFbm(seq, 0, 32, 32, 32, 3, 2.0, 2.0, 0.5, 0.5, 0.1, null);
+        pool = new ForkJoinPool(4);
+        warped.fillFbm(par, 0, 32, 32, 32, 3, 2.0, 2.0, 0.5, 0.5, 0.1, pool);
+        assertArrayEquals(seq, par, 0F);
+        assertEquals((float)warped.fbm(3, 2.0, 2.0, 0.5 + 31 * 0.1, 0.5 + 2 * 0.1),
+                seq[2 * 32 + 31], 0F);
+    }
+}
@@ -0,0 +1,104 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.googlecode.blacken.extras;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for PerlinNoise.
+ *
+ * @author Steven Black
+ */
+public class TestPerlinNoise {
+    private static final int ROWS = 40;
+    private static final int COLS = 50;
+    private static final int STRIDE = 60;
+    private static final int OFFSET = 5;
+    private static final double STEP = 0.07;
+    private ForkJoinPool pool;
+
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private float[] region() {
+        return new float[OFFSET + ROWS * STRIDE];
+    }
+
+    @Test
+    public void testFillNoiseMatchesScalar() {
+        pool = new ForkJoinPool(4);
+        float[] two = region();
+        float[] three = region();
+        float[] four = region();
+        PerlinNoise.fillNoise(two, OFFSET, STRIDE, ROWS, COLS, -3.1, 2.2, STEP, null);
+        PerlinNoise.fillNoise(three, OFFSET, STRIDE, ROWS, COLS, -3.1, 2.2, 0.4, STEP, pool);
+        PerlinNoise.fillNoise(four, OFFSET, STRIDE, ROWS, COLS, -3.1, 2.2, 0.4, 7.5, STEP, pool);
+        for (int r = 0; r < ROWS; r++) {
+            for (int c = 0; c < COLS; c++) {
+                int k = OFFSET + r * STRIDE + c;
+                double x = -3.1 + c * STEP;
+                double y = 2.2 + r * STEP;
+                assertEquals((float)PerlinNoise.noise(x, y), two[k], 0F);
+                assertEquals((float)PerlinNoise.noise(x, y, 0.4), three[k], 0F);
+                assertEquals((float)PerlinNoise.noise(x, y, 0.4, 7.5), four[k], 0F);
+            }
+            for (int c = COLS; c < STRIDE && OFFSET + r * STRIDE + c < two.length; c++) {
+                assertEquals(0F, two[OFFSET + r * STRIDE + c], 0F);
+            }
+        }
+        for (int k = 0; k < OFFSET; k++) {
+            assertEquals(0F, two[k], 0F);
+        }
+    }
+
+    @Test
+    public void testFillFbmMatchesScalar() {
+        pool = new ForkJoinPool(4);
+        float[] seq = region();
+        float[] par = region();
+        float[] three = region();
+        float[] four = region();
+        PerlinNoise.fillFbm(seq, OFFSET, STRIDE, ROWS, COLS, 5, 2.0, 2.0, 1.5, -0.5, STEP, null);
+        PerlinNoise.fillFbm(par, OFFSET, STRIDE, ROWS, COLS, 5, 2.0, 2.0, 1.5, -0.5, STEP, pool);
+        PerlinNoise.fillFbm(three, OFFSET, STRIDE, ROWS, COLS, 4, 2.0, 2.0, 1.5, -0.5, 0.3, STEP, pool);
+        PerlinNoise.fillFbm(four, OFFSET, STRIDE, ROWS, COLS, 3, 1.7, 2.1, 1.5, -0.5, 9.0, 2.0, STEP, pool);
+        assertArrayEquals(seq, par, 0F);
+        for (int r = 0; r < ROWS; r++) {
+            for (int c = 0; c < COLS; c++) {
+                int k = OFFSET + r * STRIDE + c;
+                double x = 1.5 + c * STEP;
+                double y = -0.5 + r * STEP;
+                assertEquals((float)PerlinNoise.fbmNoise(5, x, y), seq[k], 0F);
+                assertEquals((float)PerlinNoise.fbmNoise(4, x, y, 0.3), three[k], 0F);
+                assertEquals((float)PerlinNoise.fbmNoise(3, 1.7, 2.1, x, y, 9.0, 2.0), four[k], 0F);
+            }
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testFillOutOfBounds() {
+        PerlinNoise.fillNoise(new float[100], 0, 10, 11, 10, 0, 0, STEP, null);
+    }
+}
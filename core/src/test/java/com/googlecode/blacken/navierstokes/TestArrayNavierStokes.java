@@ -0,0 +1,269 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.googlecode.blacken.navierstokes;
+
+import com.googlecode.blacken.grid.Grid;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for ArrayNavierStokes.
+ *
+ * @author Steven Black
+ */
+public class TestArrayNavierStokes {
+    private static final int SIZE = 34;
+    private static final int DENSITY = ArrayNavierStokes.DENSITY_IDX;
+    private static final int SOURCE = DENSITY + ArrayNavierStokes.SOURCE_OFFSET;
+    private ForkJoinPool pool;
+
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * A grid cell counting how often it is read or written.
+     */
+    public static class Cell implements SupportsNavierStokes, Cloneable {
+        private float[] values = new float[6];
+        // shared by the copies
+        private int[] touched;
+
+        public Cell(int[] touched) {
+            this.touched = touched;
+        }
+
+        @Override
+        public float getNavierStokes(int idx, int layer) {
+            touched[0]++;
+            return values[idx];
+        }
+
+        @Override
+        public void setNavierStokes(int idx, int layer, float value) {
+            touched[0]++;
+            values[idx] = value;
+        }
+
+        @Override
+        public Cell clone() {
+            Cell ret = new Cell(touched);
+            ret.values = values.clone();
+            return ret;
+        }
+    }
+
+    private ArrayNavierStokes run(LinearSolver solver, int sweeps,
+            ForkJoinPool pool) {
+        ArrayNavierStokes ns = new ArrayNavierStokes(SIZE, SIZE, pool);
+        ns.setSolver(solver);
+        ns.setIterations(sweeps);
+        ns.setTolerance(1e-5F);
+        for (int t = 0; t < 3; t++) {
+            ns.addDensitySource(SIZE / 2, SIZE / 2, 100F);
+            ns.addVelocitySource(SIZE / 2, SIZE / 2, 3F, 1F);
+            ns.addVelocitySource(SIZE / 3, SIZE / 4, -1F, 2F);
+            ns.step(0.0001F, 0.0001F, 0.1F);
+        }
+        return ns;
+    }
+
+    private static float maxDifference(ArrayNavierStokes a,
+            ArrayNavierStokes b) {
+        float ret = 0F;
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                ret = Math.max(ret, Math.abs(a.getVelocityX(y, x) - b.getVelocityX(y, x)));
+                ret = Math.max(ret, Math.abs(a.getVelocityY(y, x) - b.getVelocityY(y, x)));
+                ret = Math.max(ret, Math.abs(a.getDensity(y, x) - b.getDensity(y, x)) / 100);
+            }
+        }
+        return ret;
+    }
+
+    @Test
+    public void testParallelMatchesSequential() {
+        ArrayNavierStokes seq = run(LinearSolver.GAUSS_SEIDEL, 20, null);
+        pool = new ForkJoinPool(4);
+        ArrayNavierStokes par = run(LinearSolver.GAUSS_SEIDEL, 20, pool);
+        assertEquals(0F, maxDifference(seq, par), 0F);
+    }
+
+    @Test
+    public void testLoadStore() {
+        Grid<Cell> grid = new Grid<>(new Cell(new int[1]), SIZE, SIZE, 3, 5);
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                Cell cell = grid.get(y + 3, x + 5);
+                for (int idx = 0; idx < 6; idx++) {
+                    cell.setNavierStokes(idx, 1, idx * 1000 + y * SIZE + x);
+                }
+            }
+        }
+        ArrayNavierStokes ns = new ArrayNavierStokes(SIZE, SIZE, null);
+        ns.load(grid, 1);
+        assertEquals(2000 + 2 * SIZE + 7, ns.getDensity(2, 7), 0F);
+        assertEquals(0 + 4 * SIZE + 1, ns.getVelocityX(4, 1), 0F);
+        assertEquals(1000 + 9 * SIZE + 3, ns.getVelocityY(9, 3), 0F);
+
+        Grid<Cell> copy = new Grid<>(new Cell(new int[1]), SIZE, SIZE, 3, 5);
+        ns.store(copy, 1);
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                for (int idx = 0; idx < 6; idx++) {
+                    assertEquals(grid.get(y + 3, x + 5).getNavierStokes(idx, 1),
+                            copy.get(y + 3, x + 5).getNavierStokes(idx, 1), 0F);
+                }
+            }
+        }
+        try {
+            ns.load(new Grid<>(new Cell(new int[1]), SIZE, SIZE - 1), 1);
+            fail("size mismatch");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testReport() {
+        ArrayNavierStokes ns = run(LinearSolver.GAUSS_SEIDEL, 20, null);
+        SolverReport report = ns.getReport();
+        assertEquals(5, report.getSolveCount());
+        assertEquals(100, report.getTotalIterations());
+        assertEquals(20, report.getIterations(4));
+        assertTrue(Float.isNaN(report.getResidual(0)));
+        assertFalse(report.hasResiduals());
+        try {
+            report.getMaxResidual();
+            fail("residuals were not measured");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+
+        ns.setMeasuring(true);
+        ns.step(0.0001F, 0.0001F, 0.1F);
+        for (int i = 0; i < report.getSolveCount(); i++) {
+            assertFalse(Float.isNaN(report.getResidual(i)));
+            assertTrue(report.getResidual(i) >= 0F);
+        }
+        assertTrue(report.hasResiduals());
+        assertTrue(report.getMaxResidual() >= 0F);
+    }
+
+    @Test
+    public void testMultigrid() {
+        ArrayNavierStokes ref = run(LinearSolver.GAUSS_SEIDEL, 2000, null);
+        ArrayNavierStokes mg = run(LinearSolver.MULTIGRID, 20, null);
+        SolverReport report = mg.getReport();
+        assertEquals(5, report.getSolveCount());
+        for (int i = 0; i < report.getSolveCount(); i++) {
+            assertTrue(report.getIterations(i) < 10);
+            assertTrue(report.getResidual(i) < 1e-4F);
+        }
+        assertEquals(0F, maxDifference(ref, mg), 1e-3F);
+    }
+
+    @Test
+    public void testConjugateGradient() {
+        ArrayNavierStokes ref = run(LinearSolver.GAUSS_SEIDEL, 2000, null);
+        ArrayNavierStokes cg = run(LinearSolver.CONJUGATE_GRADIENT, 20, null);
+        SolverReport report = cg.getReport();
+        assertTrue(report.getMaxResidual() < 1e-4F);
+        assertTrue(report.getTotalIterations() < 5 * cg.getMaxIterations());
+        assertEquals(0F, maxDifference(ref, cg), 1e-3F);
+    }
+
+    @Test
+    public void testActiveTracking() {
+        ArrayNavierStokes dense = run(LinearSolver.GAUSS_SEIDEL, 20, null);
+        ArrayNavierStokes ns = new ArrayNavierStokes(SIZE, SIZE, null);
+        ns.setTileSize(8);
+        ns.setActiveTracking(true);
+        assertEquals(0, ns.getActiveTileCount());
+        assertFalse(ns.isActive(SIZE / 2, SIZE / 2));
+        ns.setIterations(20);
+        for (int t = 0; t < 3; t++) {
+            ns.addDensitySource(SIZE / 2, SIZE / 2, 100F);
+            ns.addVelocitySource(SIZE / 2, SIZE / 2, 3F, 1F);
+            ns.addVelocitySource(SIZE / 3, SIZE / 4, -1F, 2F);
+            ns.step(0.0001F, 0.0001F, 0.1F);
+        }
+        assertTrue(ns.isActive(SIZE / 2, SIZE / 2));
+        assertTrue(ns.getActiveTileCount() < 25);
+        assertEquals(0F, maxDifference(dense, ns), 0.05F);
+
+        ns.setMeasuring(true);
+        ns.addDensitySource(SIZE / 2, SIZE / 2, 100F);
+        ns.step(0.0001F, 0.0001F, 0.1F);
+        SolverReport report = ns.getReport();
+        assertEquals(5, report.getSolveCount());
+        assertTrue(report.getMaxResidual() < 1F);
+
+        ns.setSleepThreshold(1e6F);
+        ns.step(0.0001F, 0.0001F, 0.1F);
+        assertEquals(0, ns.getActiveTileCount());
+        assertEquals(0F, ns.getDensity(SIZE / 2, SIZE / 2), 0F);
+    }
+
+    @Test
+    public void testTrackedSimulate() {
+        int[] touched = new int[1];
+        Grid<Cell> grid = new Grid<>(new Cell(touched), SIZE, SIZE);
+        Grid<Cell> denseGrid = new Grid<>(new Cell(new int[1]), SIZE, SIZE);
+        ArrayNavierStokes dense = new ArrayNavierStokes(SIZE, SIZE, null);
+        ArrayNavierStokes ns = new ArrayNavierStokes(SIZE, SIZE, null);
+        ns.setTileSize(4);
+        ns.setActiveTracking(true);
+        for (int t = 0; t < 4; t++) {
+            grid.get(4, 5).setNavierStokes(SOURCE, 0, 100F);
+            denseGrid.get(4, 5).setNavierStokes(SOURCE, 0, 100F);
+            touched[0] = 0;
+            ns.simulate(grid, 0, 0.0001F, 0.0001F, 0.1F);
+            dense.simulate(denseGrid, 0, 0.0001F, 0.0001F, 0.1F);
+            if (t == 0) {
+                // the first time copies everything
+                assertTrue(touched[0] >= 2 * 6 * SIZE * SIZE);
+            } else {
+                assertTrue(touched[0] < 6 * SIZE * SIZE / 2);
+            }
+        }
+        assertEquals(0F, maxDifference(dense, ns), 0.05F);
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                assertEquals(ns.getDensity(y, x),
+                        grid.get(y, x).getNavierStokes(DENSITY, 0), 0F);
+                assertEquals(0F, grid.get(y, x).getNavierStokes(SOURCE, 0), 0F);
+            }
+        }
+
+        // a source written to a far away sleeping cell needs a wake
+        int far = SIZE - 3;
+        assertFalse(ns.isActive(far, far));
+        grid.get(far, far).setNavierStokes(SOURCE, 0, 100F);
+        ns.wake(far, far);
+        ns.simulate(grid, 0, 0.0001F, 0.0001F, 0.1F);
+        assertTrue(ns.getDensity(far, far) > 0F);
+        assertEquals(ns.getDensity(far, far),
+                grid.get(far, far).getNavierStokes(DENSITY, 0), 0F);
+    }
+}
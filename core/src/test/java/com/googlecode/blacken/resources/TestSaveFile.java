@@ -0,0 +1,266 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.googlecode.blacken.resources;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for SaveFile.
+ *
+ * @author Steven Black
+ */
+public class TestSaveFile {
+    private static final int JOURNAL_MAGIC = 0x424c4b4a;
+    private static final int JOURNAL_COMMIT = 0x434f4d54;
+
+    private Path folder;
+    private Path path;
+    private Path journal;
+
+    private static class Chunk implements SaveChunk {
+        final String name;
+        long revision = 1;
+        byte[] data;
+        int writes = 0;
+
+        Chunk(String name, String data) {
+            this.name = name;
+            this.data = data.getBytes(StandardCharsets.UTF_8);
+        }
+
+        void change(String data) {
+            this.data = data.getBytes(StandardCharsets.UTF_8);
+            revision++;
+        }
+
+        String text() {
+            return new String(data, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String getChunkName() {
+            return name;
+        }
+
+        @Override
+        public long getRevision() {
+            return revision;
+        }
+
+        @Override
+        public int getSaveSize() {
+            return data.length;
+        }
+
+        @Override
+        public void writeChunk(ByteBuffer out) {
+            writes++;
+            out.put(data);
+        }
+
+        @Override
+        public void readChunk(ByteBuffer in, long revision) {
+            data = new byte[in.remaining()];
+            in.get(data);
+            this.revision = revision;
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("blacken-save");
+        path = folder.resolve("game.sav");
+        journal = Paths.get(path.toString() + SaveFile.JOURNAL_SUFFIX);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(folder)) {
+            for (Path f : files) {
+                Files.delete(f);
+            }
+        }
+        Files.delete(folder);
+    }
+
+    private String reload(String name) throws IOException {
+        try (SaveFile save = new SaveFile(path)) {
+            Chunk chunk = new Chunk(name, "");
+            assertTrue(save.load(chunk));
+            return chunk.text();
+        }
+    }
+
+    /**
+     * Find where some text is stored in the save file.
+     */
+    private long find(String text) throws IOException {
+        byte[] file = Files.readAllBytes(path);
+        byte[] want = text.getBytes(StandardCharsets.UTF_8);
+        outer:
+        for (int i = 0; i + want.length <= file.length; i++) {
+            for (int j = 0; j < want.length; j++) {
+                if (file[i + j] != want[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        throw new AssertionError(text + " not in save file");
+    }
+
+    private void writeJournal(long offset, String text, int length,
+            boolean commit) throws IOException {
+        byte[] data = text.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocate(4 + 4 + 8 + 4 + data.length + 4);
+        buf.putInt(JOURNAL_MAGIC);
+        buf.putInt(1);
+        buf.putLong(offset);
+        buf.putInt(length);
+        buf.put(data);
+        if (commit) {
+            buf.putInt(JOURNAL_COMMIT);
+        }
+        Files.write(journal, Arrays.copyOf(buf.array(), buf.position()));
+    }
+
+    @Test
+    public void skipsCleanChunks() throws IOException {
+        Chunk map = new Chunk("map", "level one");
+        Chunk items = new Chunk("items", "sword");
+        try (SaveFile save = new SaveFile(path)) {
+            assertEquals(2, save.save(Arrays.asList(map, items)));
+            assertFalse(save.isDirty(map));
+            assertEquals(0, save.save(Arrays.asList(map, items)));
+            assertEquals(1, map.writes);
+            assertEquals(1, items.writes);
+            items.change("shield");
+            assertTrue(save.isDirty(items));
+            assertEquals(1, save.save(Arrays.asList(map, items)));
+            assertEquals(1, map.writes);
+            assertEquals(2, items.writes);
+        }
+        assertFalse(Files.exists(journal));
+        assertEquals("level one", reload("map"));
+        assertEquals("shield", reload("items"));
+        try (SaveFile save = new SaveFile(path)) {
+            assertEquals(0, save.save(Arrays.asList(map, items)));
+        }
+    }
+
+    @Test
+    public void relocatesGrownChunks() throws IOException {
+        Chunk map = new Chunk("map", "small");
+        Chunk items = new Chunk("items", "sword");
+        try (SaveFile save = new SaveFile(path)) {
+            save.save(Arrays.asList(map, items));
+        }
+        long before = Files.size(path);
+        long mapAt = find("small");
+        char[] big = new char[1000];
+        Arrays.fill(big, 'x');
+        map.change(new String(big));
+        try (SaveFile save = new SaveFile(path)) {
+            assertEquals(1, save.save(Collections.singletonList(map)));
+        }
+        assertTrue(Files.size(path) > before);
+        assertTrue(find(new String(big)) > mapAt);
+        assertEquals(new String(big), reload("map"));
+        assertEquals("sword", reload("items"));
+
+        // shrinking again stays in the new space
+        map.change("tiny");
+        try (SaveFile save = new SaveFile(path)) {
+            save.save(Collections.singletonList(map));
+        }
+        assertTrue(find("tiny") > mapAt);
+        assertEquals("tiny", reload("map"));
+    }
+
+    @Test
+    public void replaysCompleteJournal() throws IOException {
+        try (SaveFile save = new SaveFile(path)) {
+            save.save(Collections.singletonList(new Chunk("map", "hello")));
+        }
+        writeJournal(find("hello"), "HELLO", 5, true);
+        assertEquals("HELLO", reload("map"));
+        assertFalse(Files.exists(journal));
+    }
+
+    @Test
+    public void discardsTornJournal() throws IOException {
+        try (SaveFile save = new SaveFile(path)) {
+            save.save(Collections.singletonList(new Chunk("map", "hello")));
+        }
+        long at = find("hello");
+        writeJournal(at, "HELLO", 5, false);
+        assertEquals("hello", reload("map"));
+        assertFalse(Files.exists(journal));
+
+        // a record claiming more data than the journal holds
+        writeJournal(at, "HELLO", Integer.MAX_VALUE, true);
+        assertEquals("hello", reload("map"));
+        assertFalse(Files.exists(journal));
+    }
+
+    @Test
+    public void rejectsDuplicateNames() throws IOException {
+        try (SaveFile save = new SaveFile(path)) {
+            try {
+                save.save(Arrays.asList(new Chunk("map", "one"),
+                                        new Chunk("map", "two")));
+                fail("duplicate names were accepted");
+            } catch (IllegalArgumentException ex) {
+                // expected
+            }
+            assertTrue(save.getChunkNames().isEmpty());
+            assertEquals(1, save.save(Collections.singletonList(new Chunk("map", "one"))));
+        }
+        try (SaveFile save = new SaveFile(path)) {
+            assertEquals(Collections.singleton("map"), save.getChunkNames());
+        }
+    }
+
+    @Test
+    public void rejectsCorruptNameLength() throws IOException {
+        try (SaveFile save = new SaveFile(path)) {
+            save.save(Collections.singletonList(new Chunk("map", "hello")));
+        }
+        byte[] file = Files.readAllBytes(path);
+        long at = find("map") - 2;
+        file[(int)at] = 0x7f;
+        file[(int)at + 1] = (byte)0xff;
+        Files.write(path, file);
+        try {
+            new SaveFile(path).close();
+            fail("corrupt directory was accepted");
+        } catch (IOException ex) {
+            // expected
+        }
+    }
+}
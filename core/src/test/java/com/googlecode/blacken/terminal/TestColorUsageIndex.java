@@ -0,0 +1,88 @@
+/* blacken - a library for Roguelike games
+ * Copyright © 2012 Steven Black <yam655@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package com.googlecode.blacken.terminal;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Steven Black
+ */
+public class TestColorUsageIndex {
+    private static final int ROWS = 8;
+    private static final int COLS = 10;
+
+    @Test
+    public void unusedColorsAreDropped() {
+        ColorUsageIndex usage = new ColorUsageIndex(ROWS, COLS, 0, 0);
+        for (int y = 0; y < ROWS; y++) {
+            for (int x = 0; x < COLS; x++) {
+                usage.update(y, x, 0, 1);
+            }
+        }
+        assertEquals(2, usage.getColorCount());
+        // a truecolor fade: every frame gives each cell a new color
+        for (int frame = 0; frame < 200; frame++) {
+            for (int y = 0; y < ROWS; y++) {
+                for (int x = 0; x < COLS; x++) {
+                    int argb = 0xff000000 | (frame << 16) | (y << 8) | x;
+                    usage.update(y, x, 0, argb);
+                }
+            }
+            assertTrue(usage.getColorCount() <= ROWS * COLS + 1);
+        }
+        assertEquals(ROWS * COLS + 1, usage.getColorCount());
+        assertEquals(0, usage.countUsing(1));
+        assertEquals(ROWS * COLS, usage.countUsing(0));
+        for (int y = 0; y < ROWS; y++) {
+            for (int x = 0; x < COLS; x++) {
+                usage.update(y, x, 0, 1);
+            }
+        }
+        assertEquals(2, usage.getColorCount());
+        assertEquals(ROWS * COLS, usage.countUsing(1));
+        assertEquals(0, usage.countUsing(0xff000000 | (199 << 16)));
+    }
+
+    @Test
+    public void sharedColorKeepsItsCells() {
+        ColorUsageIndex usage = new ColorUsageIndex(ROWS, COLS, 0, 0);
+        usage.update(1, 1, 3, 3);
+        assertEquals(1, usage.countUsing(3));
+        usage.update(1, 1, 3, 4);
+        assertEquals(1, usage.countUsing(3));
+        assertEquals(1, usage.countUsing(4));
+        usage.update(1, 1, 4, 4);
+        assertEquals(0, usage.countUsing(3));
+        assertEquals(1, usage.getColorCount());
+        usage.update(2, 2, 5, 6);
+        usage.update(3, 3, 6, 7);
+        usage.update(2, 2, 8, 8);
+        assertEquals(0, usage.countUsing(5));
+        assertEquals(1, usage.countUsing(6));
+        assertEquals(4, usage.getColorCount());
+        assertEquals(1, usage.forEachCell(Arrays.asList(6, 7), new ColorUsageIndex.CellVisitor() {
+            @Override
+            public void visit(int y, int x) {
+                assertEquals(3, y);
+                assertEquals(3, x);
+            }
+        }));
+    }
+}
@@ -16,6 +16,7 @@
 package com.googlecode.blacken.terminal;
 
 import com.googlecode.blacken.colors.ColorPalette;
+import com.googlecode.blacken.colors.transformers.NearestPaletteTransformer;
 import com.googlecode.blacken.core.Coverage;
 import com.googlecode.blacken.core.Covers;
 import com.googlecode.blacken.grid.BoxRegion;
@@ -657,6 +658,106 @@ public class TestUnboundTerminal {
         assertEquals(-1, terminal.getCursorY());
         assertEquals(-1, terminal.getCursorX());
     }
+
+    @Test
+    @Covers({"public ColorPalette setPalette(ColorPalette)",
+            "public ColorPalette setPalette(ColorPalette,AbstractTerminal$CoerceMethod,PaletteTransformer)",
+    })
+    public void setPalette_onlyChangedCells() {
+        ColorPalette palette = new ColorPalette();
+        palette.add(0xFF000000);
+        palette.add(0xFF808080);
+        palette.add(0xFF800000);
+        palette.add(0xFF008000);
+        palette.add(0xFF000080);
+        terminal.setPalette(palette);
+        for (int y = 0; y < NUM_ROWS; y++) {
+            for (int x = 0; x < NUM_COLS; x++) {
+                terminal.set(y, x, null, x % 5, 0);
+                terminal.get(y, x).setDirty(false);
+            }
+        }
+        ColorPalette faded = new ColorPalette();
+        faded.add(0xFF000000);
+        faded.add(0xFF808080);
+        faded.add(0xFF600000);
+        faded.add(0xFF008000);
+        faded.add(0xFF000080);
+        terminal.setPalette(faded);
+        for (int y = 0; y < NUM_ROWS; y++) {
+            for (int x = 0; x < NUM_COLS; x++) {
+                TerminalCellLike cell = terminal.get(y, x);
+                assertEquals(x % 5 == 2, cell.isDirty());
+            }
+        }
+        assertEquals(0xFF800000, terminal.get(0, 2).getForeground());
+        assertEquals(3, terminal.get(0, 3).getForeground());
+    }
+
+    @Test
+    @Covers("public ColorPalette setPalette(ColorPalette,AbstractTerminal$CoerceMethod,PaletteTransformer)")
+    public void setPalette_nearest() {
+        ColorPalette palette = new ColorPalette();
+        palette.add(0xFF000000);
+        palette.add(0xFFFFFFFF);
+        palette.add(0xFFC00000);
+        terminal.setPalette(palette);
+        terminal.set(0, 0, null, 0xFFF01010, 0);
+        terminal.set(0, 1, null, 0xFFE0E0E0, 0xFF101010);
+        terminal.set(0, 2, null, 2, 1);
+        ColorPalette blues = new ColorPalette();
+        blues.add(0xFF000000);
+        blues.add(0xFFFFFFFF);
+        blues.add(0xFF0000C0);
+        blues.add(0xFFD00000);
+        ((AbstractTerminal)terminal).setPalette(blues,
+                AbstractTerminal.CoerceMethod.COERCE_NOTHING,
+                new NearestPaletteTransformer());
+        assertSame(blues, terminal.getPalette());
+        assertEquals(3, terminal.get(0, 0).getForeground());
+        assertEquals(0, terminal.get(0, 0).getBackground());
+        assertEquals(1, terminal.get(0, 1).getForeground());
+        assertEquals(0, terminal.get(0, 1).getBackground());
+        // index 2 changed from red to blue; the red is still nearest to 3
+        assertEquals(3, terminal.get(0, 2).getForeground());
+        assertEquals(1, terminal.get(0, 2).getBackground());
+    }
+
+    @Test
+    @Covers({"public ColorPalette setPalette(ColorPalette)",
+            "public ColorPalette setPalette(ColorPalette,AbstractTerminal$CoerceMethod,PaletteTransformer)",
+    })
+    public void setPalette_changedInPlace() {
+        ColorPalette palette = new ColorPalette();
+        palette.add(0xFF000000);
+        palette.add(0xFF808080);
+        palette.add(0xFF800000);
+        palette.add(0xFF008000);
+        palette.add(0xFF000080);
+        terminal.setPalette(palette);
+        for (int y = 0; y < NUM_ROWS; y++) {
+            for (int x = 0; x < NUM_COLS; x++) {
+                terminal.set(y, x, null, x % 5, 0);
+                terminal.get(y, x).setDirty(false);
+            }
+        }
+        palette.set(2, 0xFF600000);
+        assertSame(palette, terminal.setPalette(palette));
+        for (int y = 0; y < NUM_ROWS; y++) {
+            for (int x = 0; x < NUM_COLS; x++) {
+                TerminalCellLike cell = terminal.get(y, x);
+                assertEquals(x % 5 == 2, cell.isDirty());
+                cell.setDirty(false);
+            }
+        }
+        // nothing changed since the last call
+        terminal.setPalette(palette);
+        for (int y = 0; y < NUM_ROWS; y++) {
+            for (int x = 0; x < NUM_COLS; x++) {
+                assertFalse(terminal.get(y, x).isDirty());
+            }
+        }
+    }
     
     @Test
     @Covers("public void set(int,int,TerminalCellLike)")
@@ -711,6 +812,29 @@ public class TestUnboundTerminal {
         assertEquals(cellA, cellC);
     }
 
+    @Test
+    @Covers({"public void setColorUsageTracking(boolean)",
+             "public ColorUsageIndex getColorUsage()",
+             "public void noteColors(int,int)"})
+    public void colorUsageTracking() {
+        AbstractTerminal terminal = (AbstractTerminal)this.terminal;
+        assertNull(terminal.getColorUsage());
+        terminal.set(1, 1, "A", 3, 4);
+        terminal.setColorUsageTracking(true);
+        ColorUsageIndex usage = terminal.getColorUsage();
+        assertNotNull(usage);
+        assertEquals(1, usage.countUsing(3));
+        terminal.set(1, 2, "B", 3, 4);
+        assertEquals(2, usage.countUsing(3));
+        terminal.get(1, 1).setForeground(5);
+        assertEquals(2, usage.countUsing(3));
+        terminal.noteColors(1, 1);
+        assertEquals(1, usage.countUsing(3));
+        assertEquals(1, usage.countUsing(5));
+        terminal.setColorUsageTracking(false);
+        assertNull(terminal.getColorUsage());
+    }
+
     @Test
     public void testCoverage() {
         // Parent is abstract, so we need to test it!
@@ -0,0 +1,122 @@
+package com.googlecode.blacken.terminal.editing;
+
+import com.googlecode.blacken.terminal.ColorUsageIndex;
+import com.googlecode.blacken.terminal.CursesLikeAPI;
+import com.googlecode.blacken.terminal.TerminalCell;
+import com.googlecode.blacken.terminal.UnboundTerminal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Steven Black
+ */
+public class TestImages {
+    private static final int ROWS = 10;
+    private static final int COLS = 12;
+
+    private List<String> refreshed = new ArrayList<>();
+    private UnboundTerminal term;
+
+    @Before
+    public void setUp() {
+        term = new UnboundTerminal() {
+            @Override
+            public void refresh(int y, int x) {
+                refreshed.add(y + "," + x);
+                super.refresh(y, x);
+            }
+        };
+        term.init(null, ROWS, COLS);
+        term.clear(new TerminalCell("."));
+        for (int y = 0; y < ROWS; y++) {
+            for (int x = 0; x < COLS; x++) {
+                term.set(y, x, null, 0, 1);
+            }
+        }
+        term.set(2, 3, "~", 4, 1);
+        term.set(2, 4, "~", 5, 1);
+        term.set(3, 3, "~", 0, 5);
+        refreshed.clear();
+    }
+
+    private void checkRefreshForColors() {
+        Images.refreshForColors(Arrays.asList(4, 5), term);
+        assertEquals(3, refreshed.size());
+        assertTrue(refreshed.contains("2,3"));
+        assertTrue(refreshed.contains("2,4"));
+        assertTrue(refreshed.contains("3,3"));
+    }
+
+    @Test
+    public void refreshForColors_scan() {
+        checkRefreshForColors();
+    }
+
+    @Test
+    public void refreshForColors_indexed() {
+        term.setColorUsageTracking(true);
+        ColorUsageIndex usage = term.getColorUsage();
+        assertNotNull(usage);
+        assertEquals(1, usage.countUsing(4));
+        assertEquals(2, usage.countUsing(5));
+        assertEquals(ROWS * COLS, usage.countUsing(1) + 1);
+        checkRefreshForColors();
+    }
+
+    @Test
+    public void index_followsChanges() {
+        term.setColorUsageTracking(true);
+        ColorUsageIndex usage = term.getColorUsage();
+        term.set(2, 3, ".", 0, 1);
+        assertEquals(0, usage.countUsing(4));
+        // changed behind the terminal's back; refresh() notices
+        term.get(5, 5).setForeground(4);
+        term.refresh();
+        assertEquals(1, usage.countUsing(4));
+        term.moveBlock(1, 2, 2, 3, 7, 7);
+        assertEquals(2, usage.countUsing(5));
+        refreshed.clear();
+        Images.refreshForColors(Arrays.asList(5), term);
+        assertTrue(refreshed.contains("7,8"));
+        assertTrue(refreshed.contains("3,3"));
+        assertEquals(2, refreshed.size());
+        term.clear();
+        assertEquals(0, usage.countUsing(5));
+    }
+
+    @Test
+    public void removeColors_indexed() {
+        term.setColorUsageTracking(true);
+        Images.removeColors(Arrays.asList(5), term, 1);
+        assertEquals(2, refreshed.size());
+        assertEquals(1, term.get(2, 4).getForeground());
+        assertEquals(1, term.get(3, 3).getBackground());
+        ColorUsageIndex usage = term.getColorUsage();
+        assertEquals(0, usage.countUsing(5));
+        refreshed.clear();
+        Images.removeColors(Arrays.asList(5), term, 1);
+        assertTrue(refreshed.isEmpty());
+    }
+
+    @Test
+    public void removeColors_indexedThroughWrapper() {
+        term.setColorUsageTracking(true);
+        ColorUsageIndex usage = term.getColorUsage();
+        int before = usage.countUsing(1);
+        Images.removeColors(Arrays.asList(5), new CursesLikeAPI(term), 1);
+        assertEquals(2, refreshed.size());
+        assertEquals(0, usage.countUsing(5));
+        // the recolored cells are listed under their new color
+        assertEquals(before + 1, usage.countUsing(1));
+        refreshed.clear();
+        Images.refreshForColors(Arrays.asList(1), term);
+        assertTrue(refreshed.contains("2,4"));
+        assertTrue(refreshed.contains("3,3"));
+    }
+}
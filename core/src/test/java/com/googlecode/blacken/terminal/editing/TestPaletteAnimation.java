@@ -0,0 +1,130 @@
+package com.googlecode.blacken.terminal.editing;
+
+import com.googlecode.blacken.colors.ColorHelper;
+import com.googlecode.blacken.colors.ColorPalette;
+import com.googlecode.blacken.terminal.TerminalCell;
+import com.googlecode.blacken.terminal.UnboundTerminal;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Steven Black
+ */
+public class TestPaletteAnimation {
+    private static final int ROWS = 10;
+    private static final int COLS = 12;
+
+    private List<String> refreshed = new ArrayList<>();
+    private UnboundTerminal term;
+    private ColorPalette palette;
+
+    @Before
+    public void setUp() {
+        term = new UnboundTerminal() {
+            @Override
+            public void refresh(int y, int x) {
+                refreshed.add(y + "," + x);
+                super.refresh(y, x);
+            }
+        };
+        term.init(null, ROWS, COLS);
+        term.clear(new TerminalCell("."));
+        palette = new ColorPalette();
+        for (int i = 0; i < 8; i++) {
+            palette.add(0xFF000000 | i);
+        }
+        term.setPalette(palette);
+        for (int y = 0; y < ROWS; y++) {
+            for (int x = 0; x < COLS; x++) {
+                term.set(y, x, null, 0, 1);
+            }
+        }
+        // a pool of water in the corner
+        term.set(2, 3, "~", 4, 1);
+        term.set(2, 4, "~", 5, 1);
+        term.set(3, 3, "~", 0, 5);
+        refreshed.clear();
+    }
+
+    @Test
+    public void onlyAnimatedCellsRefresh() {
+        int[] water = ColorHelper.createCyclicGradient(4, 0xFF0000A0, 0xFF4040FF);
+        PaletteAnimation anim = new PaletteAnimation(term);
+        PaletteAnimation.Channel channel = anim.addChannel(4, 2, water, 3);
+        assertEquals(water[0], (int)palette.get(4));
+        assertEquals(water[1], (int)palette.get(5));
+        anim.rescan();
+        assertEquals(3, channel.getCellCount());
+
+        assertEquals(0, anim.advance(2));
+        assertTrue(refreshed.isEmpty());
+        assertEquals(3, anim.advance(1));
+        assertEquals(1, channel.getPhase());
+        assertEquals(water[1], (int)palette.get(4));
+        assertEquals(water[2], (int)palette.get(5));
+        assertEquals(3, refreshed.size());
+        assertTrue(refreshed.contains("2,3"));
+        assertTrue(refreshed.contains("3,3"));
+
+        // the cell stops being water; it gets dropped
+        term.set(2, 4, ".", 0, 1);
+        refreshed.clear();
+        assertEquals(2, anim.advance(3));
+        assertFalse(refreshed.contains("2,4"));
+        assertEquals(2, channel.getCellCount());
+
+        // a new cell of water
+        term.set(0, 0, "~", 4, 1);
+        anim.addCell(0, 0);
+        assertEquals(3, anim.advance(30));
+        assertEquals((1 + 1 + 10) % 4, channel.getPhase());
+    }
+
+    @Test
+    public void addingCellsAgainDoesNotGrow() {
+        int[] water = ColorHelper.createCyclicGradient(4, 0xFF0000A0, 0xFF4040FF);
+        PaletteAnimation anim = new PaletteAnimation(term);
+        PaletteAnimation.Channel channel = anim.addChannel(4, 2, water, 1);
+        anim.rescan();
+        assertEquals(3, channel.getCellCount());
+        // a caller re-adding its cells on every redraw
+        for (int frame = 0; frame < 50; frame++) {
+            anim.addCell(2, 3);
+            anim.addCell(2, 4);
+            anim.addCell(3, 3);
+            anim.addCell(0, 0);
+        }
+        assertEquals(3, channel.getCellCount());
+        assertEquals(3, anim.advance(1));
+        assertEquals(3, refreshed.size());
+
+        // a dropped cell can come back
+        term.set(2, 4, ".", 0, 1);
+        assertEquals(2, anim.advance(1));
+        term.set(2, 4, "~", 5, 1);
+        anim.addCell(2, 4);
+        anim.addCell(2, 4);
+        assertEquals(3, channel.getCellCount());
+        anim.rescan();
+        assertEquals(3, channel.getCellCount());
+    }
+
+    @Test
+    public void channelsMayNotOverlap() {
+        PaletteAnimation anim = new PaletteAnimation(term);
+        anim.addChannel(4, 2, new int[] {1, 2}, 1);
+        try {
+            anim.addChannel(5, 2, new int[] {1, 2}, 1);
+            fail("overlapping channel");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+        anim.addChannel(6, 2, new int[] {1, 2}, 1);
+        assertEquals(2, anim.getChannels().size());
+    }
+}
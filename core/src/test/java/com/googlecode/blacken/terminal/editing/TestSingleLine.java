@@ -0,0 +1,110 @@
+package com.googlecode.blacken.terminal.editing;
+
+import com.googlecode.blacken.grid.Point;
+import com.googlecode.blacken.grid.Positionable;
+import com.googlecode.blacken.terminal.TerminalCell;
+import com.googlecode.blacken.terminal.TerminalCellTemplate;
+import com.googlecode.blacken.terminal.UnboundTerminal;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Steven Black
+ */
+public class TestSingleLine {
+    private List<String> refreshed = new ArrayList<>();
+    private UnboundTerminal term;
+
+    @Before
+    public void setUp() {
+        term = new UnboundTerminal() {
+            @Override
+            public void refresh(int y, int x) {
+                refreshed.add(y + "," + x);
+                super.refresh(y, x);
+            }
+        };
+        term.init(null, 4, 6);
+        term.clear(new TerminalCell("."));
+    }
+
+    @Test
+    public void putString_wide() {
+        Positionable end = SingleLine.putString(term, new Point(0, 0), null,
+                "a一b𠀀", null);
+        assertEquals("a", term.get(0, 0).getSequence());
+        assertEquals("一", term.get(0, 1).getSequence());
+        assertEquals("", term.get(0, 2).getSequence());
+        assertEquals("b", term.get(0, 3).getSequence());
+        assertEquals("𠀀", term.get(0, 4).getSequence());
+        assertEquals("", term.get(0, 5).getSequence());
+        assertEquals(0, end.getY());
+        assertEquals(6, end.getX());
+    }
+
+    @Test
+    public void putString_wideWraps() {
+        SingleLine.putString(term, new Point(0, 0), null, "abcde一", null);
+        assertEquals(".", term.get(0, 5).getSequence());
+        assertEquals("一", term.get(1, 0).getSequence());
+        assertEquals("", term.get(1, 1).getSequence());
+    }
+
+    @Test
+    public void putString_rightAligned() {
+        SingleLine.putString(term, new Point(1, 5), null, "一b", null,
+                Alignment.RIGHT);
+        assertEquals("一", term.get(1, 2).getSequence());
+        assertEquals("b", term.get(1, 4).getSequence());
+    }
+
+    @Test
+    public void putRow() {
+        TerminalCellTemplate t = new TerminalCellTemplate(null, 3, 4);
+        assertEquals(5, SingleLine.putRow(term, 2, 1, "ab́cd", t));
+        assertEquals(".", term.get(2, 0).getSequence());
+        assertEquals("a", term.get(2, 1).getSequence());
+        assertEquals("b́", term.get(2, 2).getSequence());
+        assertEquals("d", term.get(2, 4).getSequence());
+        assertEquals(3, term.get(2, 4).getForeground());
+        assertEquals(4, term.get(2, 4).getBackground());
+        assertEquals(4, refreshed.size());
+        assertFalse(term.get(2, 1).isDirty());
+
+        // the same text again changes nothing
+        refreshed.clear();
+        assertEquals(5, SingleLine.putRow(term, 2, 1, "ab́cd", t));
+        assertTrue(refreshed.isEmpty());
+
+        // only the cells that differ
+        SingleLine.putRow(term, 2, 1, "ab́Xd", t);
+        assertEquals(1, refreshed.size());
+        assertEquals("X", term.get(2, 3).getSequence());
+        assertEquals("b́", term.get(2, 2).getSequence());
+    }
+
+    @Test
+    public void putRow_codepoints() {
+        int[] cps = {'x', 0x4e00, 0x20000, 'y'};
+        assertEquals(5, SingleLine.putRow(term, 0, 0, cps, 1, 3, null));
+        assertEquals("一", term.get(0, 0).getSequence());
+        assertEquals("", term.get(0, 1).getSequence());
+        assertEquals("𠀀", term.get(0, 2).getSequence());
+        assertEquals("y", term.get(0, 4).getSequence());
+        // clipped at the edge; the wide character doesn't fit
+        assertEquals(5, SingleLine.putRow(term, 1, 3, "ab一", null));
+        assertEquals("b", term.get(1, 4).getSequence());
+        assertEquals(".", term.get(1, 5).getSequence());
+        assertEquals(6, SingleLine.putRow(term, 1, 3, "abcdef", null));
+        assertEquals("c", term.get(1, 5).getSequence());
+        refreshed.clear();
+        SingleLine.putRow(term, 1, 6, "́", null);
+        assertEquals("ć", term.get(1, 5).getSequence());
+        assertEquals(1, refreshed.size());
+    }
+}
@@ -0,0 +1,126 @@
+package com.googlecode.blacken.terminal.editing;
+
+import com.googlecode.blacken.terminal.BlackenKeys;
+import com.googlecode.blacken.terminal.TerminalCell;
+import com.googlecode.blacken.terminal.UnboundTerminal;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Steven Black
+ */
+public class TestStringViewer {
+    private int refreshed = 0;
+    private UnboundTerminal term;
+
+    @Before
+    public void setUp() {
+        term = new UnboundTerminal() {
+            @Override
+            public void refresh(int y, int x) {
+                refreshed++;
+                super.refresh(y, x);
+            }
+        };
+        term.init(null, 3, 5);
+        term.clear(new TerminalCell("."));
+    }
+
+    private String row(int y) {
+        StringBuilder out = new StringBuilder();
+        for (int x = 0; x < term.getWidth(); x++) {
+            out.append(term.get(y, x).getSequence());
+        }
+        return out.toString();
+    }
+
+    @Test
+    public void step() {
+        StringViewer viewer = new StringViewer(term, "one\nthree3333\ntwo\nfour");
+        assertEquals(4, viewer.getLines());
+        assertEquals(9, viewer.getMaxColumn());
+        viewer.step();
+        assertEquals("one  ", row(0));
+        assertEquals("three", row(1));
+        assertEquals("two  ", row(2));
+        refreshed = 0;
+        viewer.step();
+        assertEquals(0, refreshed);
+        viewer.handleCodepoint(BlackenKeys.KEY_DOWN);
+        viewer.step();
+        assertEquals("three", row(0));
+        assertEquals("four ", row(2));
+
+        viewer.setWrap(true);
+        viewer.handleCodepoint(BlackenKeys.KEY_HOME);
+        viewer.step();
+        assertEquals("one  ", row(0));
+        assertEquals("three", row(1));
+        assertEquals("3333 ", row(2));
+    }
+
+    @Test
+    public void tabs() {
+        StringViewer viewer = new StringViewer(term, "\tx\na\tb");
+        assertEquals(9, viewer.getMaxColumn());
+        viewer.step();
+        assertEquals("     ", row(0));
+        assertEquals("a    ", row(1));
+        viewer.setWrap(true);
+        viewer.step();
+        assertEquals("     ", row(0));
+        assertEquals("   x ", row(1));
+        assertEquals("a    ", row(2));
+    }
+
+    @Test
+    public void crlf() {
+        StringViewer viewer = new StringViewer(term, "one\r\nthree\r\ntwo\r\n");
+        assertEquals(3, viewer.getLines());
+        assertEquals(5, viewer.getMaxColumn());
+        viewer.step();
+        assertEquals("one  ", row(0));
+        assertEquals("three", row(1));
+        assertEquals("two  ", row(2));
+        viewer.setWrap(true);
+        viewer.step();
+        assertEquals("three", row(1));
+        assertEquals("two  ", row(2));
+    }
+
+    @Test
+    public void follow() {
+        TextBuffer log = new TextBuffer();
+        StringViewer viewer = new StringViewer(term, log);
+        viewer.setFollow(true);
+        viewer.step();
+        assertEquals("     ", row(0));
+        for (int i = 0; i < 5; i++) {
+            log.appendLine("m" + i);
+        }
+        viewer.step();
+        assertEquals("m2   ", row(0));
+        assertEquals("m4   ", row(2));
+        viewer.appendLine("m5");
+        viewer.step();
+        assertEquals("m5   ", row(2));
+
+        // scrolled back; new lines don't move the view
+        viewer.handleCodepoint(BlackenKeys.KEY_UP);
+        viewer.step();
+        assertEquals("m4   ", row(2));
+        viewer.appendLine("m6");
+        viewer.step();
+        assertEquals("m4   ", row(2));
+
+        viewer.handleCodepoint(BlackenKeys.KEY_END);
+        viewer.step();
+        assertEquals("m6   ", row(2));
+        viewer.append("m7");
+        viewer.step();
+        assertEquals("m7   ", row(2));
+    }
+}
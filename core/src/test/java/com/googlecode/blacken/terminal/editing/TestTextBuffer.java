@@ -0,0 +1,116 @@
+package com.googlecode.blacken.terminal.editing;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Steven Black
+ */
+public class TestTextBuffer {
+
+    @Test
+    public void lines() {
+        TextBuffer text = new TextBuffer();
+        assertEquals(0, text.getLineCount());
+        text.append("first\nsec");
+        assertEquals(2, text.getLineCount());
+        text.append("ond\n\nfourth");
+        assertEquals(4, text.getLineCount());
+        assertEquals("first", text.getLine(0));
+        assertEquals("second", text.getLine(1));
+        assertEquals("", text.getLine(2));
+        assertEquals("fourth", text.getLine(3));
+        text.appendLine(" line");
+        text.appendLine("");
+        assertEquals(5, text.getLineCount());
+        assertEquals("fourth line", text.getLine(3));
+        assertEquals(11, text.getMaxLineLength());
+        assertEquals(6, text.getLineSequence(1).length());
+        assertEquals('c', text.getLineSequence(1).charAt(2));
+        assertEquals("con", text.getLineSequence(1).subSequence(2, 5).toString());
+    }
+
+    @Test
+    public void tabs() {
+        TextBuffer text = new TextBuffer();
+        text.appendLine("a\tb");
+        text.append("12345678\t");
+        text.appendLine("x\t");
+        assertEquals("a       b", text.getLine(0));
+        assertEquals(9, text.getLineColumns(0));
+        assertEquals("12345678        x       ", text.getLine(1));
+        assertEquals(24, text.getLineLength(1));
+        assertEquals(24, text.getMaxLineLength());
+        assertEquals(5, text.getRowCount(8));
+        assertEquals("12345678", text.getRow(8, 2).toString());
+        assertEquals("        ", text.getRow(8, 3).toString());
+        assertEquals("x       ", text.getRow(8, 4).toString());
+    }
+
+    @Test
+    public void crlf() {
+        TextBuffer text = new TextBuffer();
+        text.append("first\r\nsecond\r");
+        text.append("\n\r\nbe\u0007ll\r\n");
+        assertEquals(4, text.getLineCount());
+        assertEquals("first", text.getLine(0));
+        assertEquals("second", text.getLine(1));
+        assertEquals("", text.getLine(2));
+        assertEquals("bell", text.getLine(3));
+        assertEquals(4, text.getLineColumns(3));
+        assertEquals(6, text.getMaxLineLength());
+        assertEquals(4, text.getRowCount(6));
+        text.appendLine("\r");
+        assertEquals(5, text.getLineCount());
+        assertEquals("", text.getLine(4));
+    }
+
+    @Test
+    public void manyChunks() {
+        TextBuffer text = new TextBuffer();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            text.appendLine("line " + i);
+        }
+        assertEquals(20000, text.getLineCount());
+        assertEquals("line 0", text.getLine(0));
+        assertEquals("line 12345", text.getLine(12345));
+        assertEquals("line 19999", text.getLine(19999));
+        for (int i = 0; i < 10000; i++) {
+            expected.append((char)('a' + i % 26));
+        }
+        text.appendLine(expected);
+        assertEquals(expected.toString(), text.getLine(20000));
+        assertEquals(10000, text.getMaxLineLength());
+    }
+
+    @Test
+    public void wrapped() {
+        TextBuffer text = new TextBuffer(new String[] {
+            "abcdefghij", "", "xy", "ab一一"});
+        assertEquals(4, text.getRowCount(10));
+        assertEquals(6, text.getLineColumns(3));
+        assertEquals(7, text.getRowCount(4));
+        assertEquals(0, text.getFirstRow(4, 0));
+        assertEquals(3, text.getFirstRow(4, 1));
+        assertEquals(5, text.getFirstRow(4, 3));
+        assertEquals("abcd", text.getRow(4, 0).toString());
+        assertEquals("ij", text.getRow(4, 2).toString());
+        assertEquals("", text.getRow(4, 3).toString());
+        assertEquals(2, text.getLineForRow(4, 4));
+        assertEquals("ab一", text.getRow(4, 5).toString());
+        assertEquals("一", text.getRow(4, 6).toString());
+        // a wide character doesn't get split over rows
+        assertEquals(9, text.getRowCount(3));
+
+        // appending keeps the layout current
+        text.append("abc");
+        assertEquals(8, text.getRowCount(4));
+        assertEquals("abc", text.getRow(4, 7).toString());
+        text.append("de");
+        assertEquals(9, text.getRowCount(4));
+        assertEquals("e", text.getRow(4, 8).toString());
+    }
+}
@@ -0,0 +1,56 @@
+package com.googlecode.blacken.terminal.utils;
+
+import com.googlecode.blacken.terminal.BlackenKeys;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Steven Black
+ */
+public class TestCodePointWidth {
+
+    @Test
+    public void columns() {
+        assertEquals(1, CodePointWidth.columns('A'));
+        assertEquals(1, CodePointWidth.columns(0xe9));
+        assertEquals(0, CodePointWidth.columns(0x301));
+        assertEquals(0, CodePointWidth.columns(0x20dd));
+        assertEquals(2, CodePointWidth.columns(0x4e00));
+        assertEquals(2, CodePointWidth.columns(0xac00));
+        assertEquals(2, CodePointWidth.columns(0xff21));
+        assertEquals(1, CodePointWidth.columns(0xff61));
+        assertEquals(2, CodePointWidth.columns(0x20000));
+        assertEquals(1, CodePointWidth.columns(0x10000));
+        assertEquals(2, CodePointWidth.columns(0x1F600));
+        assertEquals(2, CodePointWidth.columns(0x1F680));
+        assertTrue(CodePointWidth.isWide(0x3042));
+        assertTrue(CodePointWidth.isCombining(0x300));
+        assertEquals(6, CodePointWidth.columns("a一é𠀀"));
+    }
+
+    @Test
+    public void findAdvancing() {
+        String s = "a一𠀀é\nxyz";
+        int[] cp = CodePointUtils.findAdvancingCodepoints(s, 0);
+        assertEquals(4, cp[0]);
+        assertEquals(6, cp[1]);
+        int[] cols = CodePointUtils.findAdvancingColumns(s, 0);
+        assertEquals(6, cols[0]);
+        assertEquals(6, cols[1]);
+    }
+
+    @Test
+    public void findAdvancingSupplementaryTerminator() {
+        String s = "a\ud83d\ude00" + new String(Character.toChars(BlackenKeys.KEY_ENTER)) + "b";
+        int[] cp = CodePointUtils.findAdvancingCodepoints(s, 0);
+        assertEquals(2, cp[0]);
+        assertEquals(3, cp[1]);
+        int[] cols = CodePointUtils.findAdvancingColumns(s, 0);
+        assertEquals(3, cols[0]);
+        assertEquals(3, cols[1]);
+        s = "x" + new String(Character.toChars(BlackenKeys.KEY_TAB));
+        assertEquals(1, CodePointUtils.findAdvancingColumns(s, 0)[1]);
+    }
+}
@@ -0,0 +1,229 @@
+package com.googlecode.blacken.terminal.widgets;
+
+import com.googlecode.blacken.grid.BoxRegion;
+import com.googlecode.blacken.terminal.TerminalCell;
+import com.googlecode.blacken.terminal.TerminalViewInterface;
+import com.googlecode.blacken.terminal.UnboundTerminal;
+import java.util.Map;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Steven Black
+ */
+public class TestSimpleWidgetContainer {
+    private int refreshed = 0;
+    private UnboundTerminal term;
+    private SimpleWidgetContainer container;
+    private CountingButton first;
+    private CountingButton second;
+
+    private static class CountingButton extends Button {
+        int redraws = 0;
+
+        CountingButton(String name, int y, String text) {
+            super(name, 1, 6, y, 1, text);
+        }
+
+        @Override
+        public void redraw(TerminalViewInterface view) {
+            redraws++;
+            super.redraw(view);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        term = new UnboundTerminal() {
+            @Override
+            public void refresh(int y, int x) {
+                refreshed++;
+                super.refresh(y, x);
+            }
+        };
+        term.init(null, 5, 10);
+        term.clear(new TerminalCell("."));
+        container = new SimpleWidgetContainer("top", new BoxRegion(5, 10, 0, 0));
+        container.setColor(7, 0);
+        first = new CountingButton("first", 1, "ok");
+        first.setColor(2, 4);
+        second = new CountingButton("second", 3, "no");
+        second.setColor(2, 4);
+        container.addWidget(first);
+        container.addWidget(second);
+    }
+
+    @Test
+    public void firstRedrawDrawsEverything() {
+        assertTrue(container.isInvalid());
+        container.redraw(term);
+        assertFalse(container.isInvalid());
+        assertFalse(first.isInvalid());
+        assertEquals(1, first.redraws);
+        assertEquals(1, second.redraws);
+        assertEquals("[", term.get(1, 1).getSequence());
+        assertEquals("]", term.get(1, 6).getSequence());
+        assertEquals("[", term.get(3, 1).getSequence());
+        // each button only paints its own cells
+        assertEquals(0, (int)term.get(1, 0).getBackground());
+        assertEquals(0, (int)term.get(1, 7).getBackground());
+        assertEquals(0, (int)term.get(2, 1).getBackground());
+        assertEquals(4, (int)term.get(1, 1).getBackground());
+    }
+
+    @Test
+    public void unchangedRedrawDoesNothing() {
+        container.redraw(term);
+        refreshed = 0;
+        container.redraw(term);
+        assertEquals(0, refreshed);
+        assertEquals(1, first.redraws);
+        assertEquals(1, second.redraws);
+    }
+
+    @Test
+    public void changedWidgetRedrawsAlone() {
+        container.redraw(term);
+        refreshed = 0;
+        first.setFocused(true);
+        assertTrue(first.isInvalid());
+        assertTrue(container.isInvalid());
+        container.redraw(term);
+        assertEquals(2, first.redraws);
+        assertEquals(1, second.redraws);
+        assertEquals("<", term.get(1, 1).getSequence());
+        assertEquals(">", term.get(1, 6).getSequence());
+        assertTrue(refreshed > 0);
+        assertTrue(refreshed < 5 * 10);
+        // setting the same state again isn't a change
+        first.setFocused(true);
+        assertFalse(container.isInvalid());
+    }
+
+    @Test
+    public void damageRedrawsOverlappingWidgets() {
+        container.redraw(term);
+        container.invalidate(new BoxRegion(1, 1, 3, 2));
+        assertTrue(container.isInvalid());
+        assertFalse(second.isInvalid());
+        container.redraw(term);
+        assertEquals(1, first.redraws);
+        assertEquals(2, second.redraws);
+        // damage outside of the container is ignored
+        container.invalidate(new BoxRegion(1, 1, 20, 20));
+        assertFalse(container.isInvalid());
+    }
+
+    @Test
+    public void removedWidgetIsPaintedOver() {
+        container.redraw(term);
+        container.removeWidget(second);
+        assertNull(second.getWidgetParent());
+        container.redraw(term);
+        assertEquals(0, (int)term.get(3, 1).getBackground());
+        assertEquals(1, first.redraws);
+    }
+
+    @Test
+    public void resizeLaysOutAndRedraws() {
+        container.redraw(term);
+        container.setResizer(new BlackenWidgetResizer() {
+            @Override
+            public void resizeWidgets(Map<String, BlackenWidget> widgetMap) {
+                ((Button)widgetMap.get("second")).setY(2);
+            }
+        });
+        container.handleResizeEvent();
+        assertTrue(container.isInvalid());
+        container.redraw(term);
+        assertEquals(2, first.redraws);
+        assertEquals(2, second.redraws);
+        assertEquals("[", term.get(2, 1).getSequence());
+        assertEquals(0, (int)term.get(3, 1).getBackground());
+    }
+
+    @Test
+    public void fullRedrawRedrawsNestedContainers() {
+        SimpleWidgetContainer top = new SimpleWidgetContainer("outer",
+                new BoxRegion(5, 10, 0, 0));
+        top.setColor(7, 0);
+        Box box = new Box("box", new BoxRegion(4, 6, 1, 1),
+                Box.BoxMethod.SINGLE_UNICODE);
+        box.setColor(3, 5);
+        top.addWidget(box);
+        top.redraw(term);
+        String corner = term.get(1, 1).getSequence();
+        assertFalse(".".equals(corner));
+        assertEquals(5, (int)term.get(2, 2).getBackground());
+        top.setColor(7, 1);
+        top.redraw(term);
+        assertEquals(5, (int)term.get(2, 2).getBackground());
+        assertEquals(corner, term.get(1, 1).getSequence());
+        assertEquals(1, (int)term.get(0, 0).getBackground());
+        top.handleResizeEvent();
+        top.redraw(term);
+        assertEquals(5, (int)term.get(2, 2).getBackground());
+        assertEquals(corner, term.get(1, 1).getSequence());
+    }
+
+    @Test
+    public void partialDamageReachesDamagedNestedContainers() {
+        SimpleWidgetContainer top = new SimpleWidgetContainer("outer",
+                new BoxRegion(5, 10, 0, 0));
+        top.setColor(7, 0);
+        Box box = new Box("box", new BoxRegion(4, 8, 1, 0),
+                Box.BoxMethod.SINGLE_UNICODE);
+        box.setColor(3, 5);
+        CountingButton inner = new CountingButton("inner", 2, "ok");
+        inner.setColor(2, 4);
+        top.addWidget(box);
+        box.addWidget(inner);
+        top.redraw(term);
+        assertEquals(5, (int)term.get(3, 4).getBackground());
+        top.invalidate(new BoxRegion(1, 1, 3, 4));
+        // the box already has damage of its own
+        inner.setFocused(true);
+        assertTrue(box.isInvalid());
+        top.redraw(term);
+        assertEquals(5, (int)term.get(3, 4).getBackground());
+        assertEquals("<", term.get(2, 1).getSequence());
+        assertEquals(2, inner.redraws);
+        assertFalse(box.isInvalid());
+    }
+
+    @Test
+    public void childDrawingIsClippedToItsContainer() {
+        SimpleWidgetContainer top = new SimpleWidgetContainer("outer",
+                new BoxRegion(5, 10, 0, 0));
+        top.setColor(7, 0);
+        Box box = new Box("box", new BoxRegion(3, 8, 1, 0),
+                Box.BoxMethod.SINGLE_UNICODE);
+        box.setColor(3, 5);
+        CountingButton inner = new CountingButton("inner", 2, "ok");
+        inner.setColor(2, 4);
+        top.addWidget(box);
+        box.addWidget(inner);
+        // reaches past the right side of the box
+        inner.setWidth(9);
+        top.redraw(term);
+        assertEquals(1, inner.redraws);
+        assertEquals(4, (int)term.get(2, 3).getBackground());
+        assertEquals(0, (int)term.get(2, 8).getBackground());
+        assertEquals(0, (int)term.get(2, 9).getBackground());
+    }
+
+    @Test
+    public void movedWidgetDamagesOldArea() {
+        container.redraw(term);
+        second.setY(4);
+        assertFalse(second.isInvalid());
+        container.redraw(term);
+        assertEquals(1, first.redraws);
+        assertEquals(2, second.redraws);
+        assertEquals(0, (int)term.get(3, 1).getBackground());
+        assertEquals("[", term.get(4, 1).getSequence());
+        assertEquals(4, (int)term.get(4, 1).getBackground());
+    }
+}